@@ -2,6 +2,7 @@ plugins {
     application
     java
     id("org.openjfx.javafxplugin") version "0.0.14"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "org.mochaboy"
@@ -26,6 +27,8 @@ val os = when {
     else -> error("Unsupported OS")
 }
 
+// Build-time code generators. Kept out of the main module so they don't ship with the emulator
+val generator: SourceSet by sourceSets.creating
 
 dependencies {
     testImplementation(platform("org.junit:junit-bom:5.10.2"))
@@ -49,6 +52,7 @@ dependencies {
     runtimeOnly("org.lwjgl:lwjgl-glfw:3.3.2:natives-windows")
 
     implementation("com.google.code.gson:gson:2.11.0")
+    "generatorImplementation"("com.google.code.gson:gson:2.11.0")
 
     implementation("org.openjfx:javafx-base:$javafxVersion")
     implementation("org.openjfx:javafx-graphics:$javafxVersion")
@@ -68,6 +72,38 @@ application {
     mainClass.set("org.mochaboy.MochaBoy")
 }
 
+// Generates the switch-dispatch CPU core (org.mochaboy.opcode.GeneratedSwitchCore) from the opcode table
+val opcodeTable = file("src/main/resources/system/Opcodes.json")
+val switchCoreDir = layout.buildDirectory.dir("generated/sources/switchCore/java/main")
+val generateSwitchCore by tasks.registering(JavaExec::class) {
+    description = "Generates the switch-dispatch CPU core from Opcodes.json"
+    classpath = generator.runtimeClasspath
+    mainClass.set("org.mochaboy.generator.SwitchCoreGenerator")
+    inputs.file(opcodeTable)
+    outputs.dir(switchCoreDir)
+    argumentProviders.add(CommandLineArgumentProvider {
+        listOf(opcodeTable.absolutePath, switchCoreDir.get().asFile.absolutePath)
+    })
+}
+
+// Packs Opcodes.json into system/Opcodes.bin, the compact table OpcodeTable loads when the first CPU is created
+val opcodeTableDir = layout.buildDirectory.dir("generated/resources/opcodeTable")
+val generateOpcodeTable by tasks.registering(JavaExec::class) {
+    description = "Generates the binary opcode table from Opcodes.json"
+    classpath = generator.runtimeClasspath
+    mainClass.set("org.mochaboy.generator.OpcodeTableGenerator")
+    inputs.file(opcodeTable)
+    outputs.dir(opcodeTableDir)
+    argumentProviders.add(CommandLineArgumentProvider {
+        listOf(opcodeTable.absolutePath, opcodeTableDir.get().asFile.absolutePath)
+    })
+}
+
+sourceSets.main {
+    java.srcDir(generateSwitchCore)
+    resources.srcDir(generateOpcodeTable)
+}
+
 tasks.test {
     useJUnitPlatform()
     // Running tests on the module-path requires opening our modules
@@ -81,6 +117,11 @@ tasks.test {
     }
 }
 
+// Microbenchmarks live in src/jmh/java. Run with ./gradlew jmh
+jmh {
+    jmhVersion.set("1.37")
+}
+
 tasks.compileTestJava {
     extensions.configure(org.javamodularity.moduleplugin.extensions.CompileTestModuleOptions::class) {
         setCompileOnClasspath(true)
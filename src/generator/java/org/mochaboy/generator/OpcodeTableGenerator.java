@@ -0,0 +1,92 @@
+package org.mochaboy.generator;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Build-time generator for system/Opcodes.bin, the compact form of Opcodes.json that OpcodeTable loads at runtime.
+ * <p>
+ * Layout, written with DataOutputStream: magic, version, entry count, then one entry per opcode with the 256
+ * unprefixed opcodes first and the 256 CB-prefixed ones after them. Each entry is
+ * mnemonic (UTF), bytes, immediate, cycle count, cycles..., operand count,
+ * [name (UTF), bytes, immediate | increment &lt;&lt; 1 | decrement &lt;&lt; 2]..., then the Z, N, H and C columns (UTF).
+ * <p>
+ * Usage: OpcodeTableGenerator &lt;Opcodes.json&gt; &lt;output resource root&gt;
+ */
+public class OpcodeTableGenerator {
+    // Keep in sync with OpcodeTable
+    static final int MAGIC = 0x4D424F50; // "MBOP"
+    static final int VERSION = 1;
+    static final int ENTRIES = 0x200;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: OpcodeTableGenerator <Opcodes.json> <output resource root>");
+        }
+        JsonObject table;
+        try (Reader reader = Files.newBufferedReader(Path.of(args[0]), StandardCharsets.UTF_8)) {
+            table = JsonParser.parseReader(reader).getAsJsonObject();
+        }
+        Path target = Path.of(args[1], "system", "Opcodes.bin");
+        Files.createDirectories(target.getParent());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target)))) {
+            write(table, out);
+        }
+    }
+
+    static void write(JsonObject table, DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(ENTRIES);
+        writeOpcodes(table.getAsJsonObject("unprefixed"), out);
+        writeOpcodes(table.getAsJsonObject("cbprefixed"), out);
+    }
+
+    private static void writeOpcodes(JsonObject opcodes, DataOutputStream out) throws IOException {
+        for (int opcode = 0; opcode < 0x100; opcode++) {
+            String key = String.format("0x%02X", opcode);
+            JsonObject info = opcodes.getAsJsonObject(key);
+            if (info == null) throw new IllegalArgumentException("Opcodes.json is missing " + key);
+
+            out.writeUTF(info.get("mnemonic").getAsString());
+            out.writeByte(info.get("bytes").getAsInt());
+            out.writeBoolean(info.get("immediate").getAsBoolean());
+
+            JsonArray cycles = info.getAsJsonArray("cycles");
+            out.writeByte(cycles.size());
+            for (JsonElement cycle : cycles) {
+                out.writeByte(cycle.getAsInt());
+            }
+
+            JsonArray operands = info.getAsJsonArray("operands");
+            out.writeByte(operands.size());
+            for (JsonElement element : operands) {
+                JsonObject operand = element.getAsJsonObject();
+                out.writeUTF(operand.get("name").getAsString());
+                out.writeByte(operand.has("bytes") ? operand.get("bytes").getAsInt() : 0);
+                out.writeByte((flag(operand, "immediate") ? 1 : 0)
+                        | (flag(operand, "increment") ? 2 : 0)
+                        | (flag(operand, "decrement") ? 4 : 0));
+            }
+
+            JsonObject flags = info.getAsJsonObject("flags");
+            for (String column : new String[]{"Z", "N", "H", "C"}) {
+                out.writeUTF(flags.get(column).getAsString());
+            }
+        }
+    }
+
+    private static boolean flag(JsonObject operand, String name) {
+        return operand.has(name) && operand.get(name).getAsBoolean();
+    }
+}
@@ -0,0 +1,314 @@
+package org.mochaboy.generator;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Build-time generator for GeneratedSwitchCore. Reads Opcodes.json and writes one method per opcode that calls
+ * straight into the helpers in SwitchCore, with the cycle counts from the table baked in as constants, plus the
+ * switches that dispatch to them.
+ * <p>
+ * Usage: SwitchCoreGenerator &lt;Opcodes.json&gt; &lt;output source root&gt;
+ */
+public class SwitchCoreGenerator {
+    private static final Set<String> REGISTERS_8 = Set.of("A", "B", "C", "D", "E", "H", "L");
+    private static final Set<String> REGISTERS_16 = Set.of("AF", "BC", "DE", "HL", "SP");
+    private static final Set<String> BRANCHES = Set.of("JP", "JR", "CALL", "RET");
+
+    private final StringBuilder out = new StringBuilder();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: SwitchCoreGenerator <Opcodes.json> <output source root>");
+        }
+        JsonObject table;
+        try (Reader reader = Files.newBufferedReader(Path.of(args[0]), StandardCharsets.UTF_8)) {
+            table = JsonParser.parseReader(reader).getAsJsonObject();
+        }
+        String source = new SwitchCoreGenerator().generate(table);
+        Path target = Path.of(args[1], "org", "mochaboy", "opcode", "GeneratedSwitchCore.java");
+        Files.createDirectories(target.getParent());
+        Files.writeString(target, source, StandardCharsets.UTF_8);
+    }
+
+    String generate(JsonObject table) {
+        line(0, "// Generated from Opcodes.json by SwitchCoreGenerator. Do not edit.");
+        line(0, "package org.mochaboy.opcode;");
+        line(0, "");
+        line(0, "import org.mochaboy.CPU;");
+        line(0, "");
+        line(0, "final class GeneratedSwitchCore extends SwitchCore {");
+        line(0, "");
+        line(1, "GeneratedSwitchCore(CPU cpu) {");
+        line(2, "super(cpu);");
+        line(1, "}");
+        writeDispatch("executeUnprefixed", table.getAsJsonObject("unprefixed"), false);
+        writeDispatch("executePrefixed", table.getAsJsonObject("cbprefixed"), true);
+        line(0, "}");
+        return out.toString();
+    }
+
+    /**
+     * Write the dispatch switch plus one method per opcode. The per-opcode methods are what compiled blocks call
+     * directly, see {@code BlockCompiler}.
+     */
+    private void writeDispatch(String method, JsonObject opcodes, boolean prefixed) {
+        String prefix = prefixed ? "cb" : "op";
+        line(0, "");
+        line(1, "@Override");
+        line(1, "protected int " + method + "(int opcode) {");
+        line(2, "return switch (opcode) {");
+        for (int opcode = 0; opcode < 0x100; opcode++) {
+            line(3, String.format("case 0x%02X -> %s%02X();", opcode, prefix, opcode));
+        }
+        line(3, "default -> throw new IllegalArgumentException(\"Not an opcode: \" + opcode);");
+        line(2, "};");
+        line(1, "}");
+        for (int opcode = 0; opcode < 0x100; opcode++) {
+            String key = String.format("0x%02X", opcode);
+            JsonObject info = opcodes.getAsJsonObject(key);
+            if (info == null) throw new IllegalStateException("Opcodes.json has no entry for " + key);
+            line(0, "");
+            line(1, "// " + describe(info));
+            line(1, String.format("int %s%02X() {", prefix, opcode));
+            for (String statement : body(info, prefixed)) line(2, statement);
+            line(1, "}");
+        }
+    }
+
+    private List<String> body(JsonObject info, boolean prefixed) {
+        String m = info.get("mnemonic").getAsString();
+        Op[] ops = operands(info);
+        JsonArray cycleArray = info.getAsJsonArray("cycles");
+        int cycles = cycleArray.get(0).getAsInt();
+        int notTaken = cycleArray.size() > 1 ? cycleArray.get(1).getAsInt() : cycles;
+        List<String> b = new ArrayList<>();
+
+        if (prefixed) {
+            cbBody(b, m, ops);
+            b.add("return " + cycles + ";");
+            return b;
+        }
+
+        //Conditional branches end in two different returns, everything else falls through to a single one
+        if (BRANCHES.contains(m) && ops.length > 0 && isCondition(ops[0].name)) {
+            String cc = condition(ops[0].name);
+            switch (m) {
+                case "JP" -> b.add("int address = imm16();");
+                case "JR" -> b.add("int e8 = imm8();");
+                case "CALL" -> b.add("int address = imm16();");
+            }
+            b.add("if (" + cc + ") {");
+            switch (m) {
+                case "JP" -> b.add("    r.setPC(address);");
+                case "JR" -> b.add("    jr(e8);");
+                case "CALL" -> b.add("    call(address);");
+                case "RET" -> b.add("    ret();");
+            }
+            b.add("    return " + cycles + ";");
+            b.add("}");
+            b.add("return " + notTaken + ";");
+            return b;
+        }
+
+        switch (m) {
+            case "NOP" -> {
+            }
+            case "STOP" -> b.add("imm8(); //STOP isn't emulated, just skip its operand");
+            case "HALT" -> b.add("cpu.setHalt(true);");
+            case "DI" -> {
+                b.add("cpu.setIME(false);");
+                b.add("cpu.setPendingImeEnable(false);");
+            }
+            //The micro op engine applies a pending EI as soon as the EI itself completes, so do the same here
+            case "EI" -> b.add("cpu.setIME(true);");
+            case "PREFIX" -> {
+                b.add("return executePrefixed(imm8());");
+                return b;
+            }
+            case "LD", "LDH" -> load(b, ops);
+            case "INC", "DEC" -> {
+                String fn = m.equals("INC") ? "inc8" : "dec8";
+                Op d = ops[0];
+                if (d.immediate && REGISTERS_16.contains(d.name)) {
+                    String sign = m.equals("INC") ? "+" : "-";
+                    b.add("r.set" + d.name + "((r.get" + d.name + "() " + sign + " 1) & 0xFFFF);");
+                } else {
+                    readModifyWrite(b, d, fn);
+                }
+            }
+            case "ADD" -> {
+                switch (ops[0].name) {
+                    case "A" -> b.add("add8(" + read8(ops[1]) + ");");
+                    case "HL" -> b.add("addHL(r.get" + ops[1].name + "());");
+                    case "SP" -> b.add("r.setSP(addSpE8(imm8()));");
+                    default -> throw unsupported(info);
+                }
+            }
+            case "ADC", "SUB", "SBC", "AND", "XOR", "OR", "CP" ->
+                    b.add(m.toLowerCase() + "8(" + read8(ops[ops.length - 1]) + ");");
+            case "JP" -> b.add(ops[0].name.equals("HL") ? "r.setPC(r.getHL());" : "r.setPC(imm16());");
+            case "JR" -> b.add("jr(imm8());");
+            case "CALL" -> b.add("call(imm16());");
+            case "RET" -> b.add("ret();");
+            case "RETI" -> {
+                b.add("ret();");
+                b.add("cpu.setIME(true);");
+            }
+            case "RST" -> b.add("call(0x" + ops[0].name.substring(1) + ");");
+            case "PUSH" -> b.add("push(r.get" + ops[0].name + "());");
+            case "POP" -> b.add("r.set" + ops[0].name + "(pop());");
+            case "DAA", "CPL", "SCF", "CCF", "RLCA", "RRCA", "RLA", "RRA" -> b.add(m.toLowerCase() + "();");
+            default -> {
+                if (!m.startsWith("ILLEGAL")) throw unsupported(info);
+                b.add("//Illegal opcode, locks up real hardware. Treated as a NOP");
+            }
+        }
+        b.add("return " + cycles + ";");
+        return b;
+    }
+
+    private void cbBody(List<String> b, String m, Op[] ops) {
+        switch (m) {
+            case "RLC", "RRC", "RL", "RR", "SLA", "SRA", "SWAP", "SRL" -> readModifyWrite(b, ops[0], m.toLowerCase());
+            case "BIT" -> b.add("bit(" + mask(ops[0]) + ", " + read8(ops[1]) + ");");
+            case "RES" -> readModifyWrite(b, ops[1], "0x" + Integer.toHexString(~bitMask(ops[0]) & 0xFF).toUpperCase()
+                    + " & ");
+            case "SET" -> readModifyWrite(b, ops[1], mask(ops[0]) + " | ");
+            default -> throw new IllegalStateException("Unsupported CB mnemonic " + m);
+        }
+    }
+
+    private void load(List<String> b, Op[] ops) {
+        Op d = ops[0];
+        Op s = ops[1];
+        if (ops.length > 2) {
+            //LD HL, SP+e8
+            b.add("r.setHL(addSpE8(imm8()));");
+        } else if (d.name.equals("a16") && s.name.equals("SP")) {
+            b.add("write16(imm16(), r.getSP());");
+        } else if (d.immediate && REGISTERS_16.contains(d.name)) {
+            b.add("r.set" + d.name + "(" + (s.name.equals("n16") ? "imm16()" : "r.get" + s.name + "()") + ");");
+        } else {
+            b.add(write8(d, read8(s)));
+        }
+    }
+
+    /**
+     * Apply fn to an 8-bit register or [HL]. fn is either a helper name or a "mask &amp; " / "mask | " prefix.
+     */
+    private void readModifyWrite(List<String> b, Op target, String fn) {
+        boolean infix = fn.endsWith(" ");
+        if (target.immediate) {
+            String value = "r.get" + target.name + "()";
+            b.add("r.set" + target.name + "(" + (infix ? fn + value : fn + "(" + value + ")") + ");");
+        } else {
+            b.add("int address = r.getHL();");
+            b.add("write8(address, " + (infix ? fn + "read8(address)" : fn + "(read8(address))") + ");");
+        }
+    }
+
+    private String read8(Op o) {
+        if (o.immediate && REGISTERS_8.contains(o.name)) return "r.get" + o.name + "()";
+        return switch (o.name) {
+            case "n8" -> "imm8()";
+            case "a8" -> "read8(0xFF00 | imm8())";
+            case "a16" -> "read8(imm16())";
+            case "C" -> "read8(0xFF00 | r.getC())";
+            case "HL" -> "read8(" + hlAddress(o) + ")";
+            case "BC", "DE" -> "read8(r.get" + o.name + "())";
+            default -> throw new IllegalStateException("Can't read operand " + o.name);
+        };
+    }
+
+    private String write8(Op o, String value) {
+        if (o.immediate && REGISTERS_8.contains(o.name)) return "r.set" + o.name + "(" + value + ");";
+        String address = switch (o.name) {
+            case "a8" -> "0xFF00 | imm8()";
+            case "a16" -> "imm16()";
+            case "C" -> "0xFF00 | r.getC()";
+            case "HL" -> hlAddress(o);
+            case "BC", "DE" -> "r.get" + o.name + "()";
+            default -> throw new IllegalStateException("Can't write operand " + o.name);
+        };
+        return "write8(" + address + ", " + value + ");";
+    }
+
+    private static String hlAddress(Op o) {
+        if (o.increment) return "hlPostInc()";
+        if (o.decrement) return "hlPostDec()";
+        return "r.getHL()";
+    }
+
+    private static boolean isCondition(String name) {
+        return name.equals("Z") || name.equals("NZ") || name.equals("C") || name.equals("NC");
+    }
+
+    private static String condition(String name) {
+        return switch (name) {
+            case "Z" -> "z()";
+            case "NZ" -> "!z()";
+            case "C" -> "c()";
+            case "NC" -> "!c()";
+            default -> throw new IllegalStateException("Not a condition: " + name);
+        };
+    }
+
+    private static int bitMask(Op bit) {
+        return 1 << Integer.parseInt(bit.name);
+    }
+
+    private static String mask(Op bit) {
+        return String.format("0x%02X", bitMask(bit));
+    }
+
+    private static String describe(JsonObject info) {
+        StringBuilder sb = new StringBuilder(info.get("mnemonic").getAsString());
+        Op[] ops = operands(info);
+        for (int i = 0; i < ops.length; i++) {
+            sb.append(i == 0 ? " " : ", ");
+            String name = ops[i].name + (ops[i].increment ? "+" : "") + (ops[i].decrement ? "-" : "");
+            sb.append(ops[i].immediate ? name : "[" + name + "]");
+        }
+        return sb.toString();
+    }
+
+    private static Op[] operands(JsonObject info) {
+        JsonArray array = info.getAsJsonArray("operands");
+        Op[] ops = new Op[array.size()];
+        for (int i = 0; i < ops.length; i++) {
+            JsonObject o = array.get(i).getAsJsonObject();
+            ops[i] = new Op(o.get("name").getAsString(), flag(o, "immediate"), flag(o, "increment"),
+                    flag(o, "decrement"));
+        }
+        return ops;
+    }
+
+    private static boolean flag(JsonObject o, String name) {
+        JsonElement e = o.get(name);
+        return e != null && e.getAsBoolean();
+    }
+
+    private static IllegalStateException unsupported(JsonObject info) {
+        return new IllegalStateException("Unsupported opcode " + describe(info));
+    }
+
+    private void line(int indent, String text) {
+        if (!text.isEmpty()) out.append("    ".repeat(indent)).append(text);
+        out.append('\n');
+    }
+
+    private record Op(String name, boolean immediate, boolean increment, boolean decrement) {
+    }
+}
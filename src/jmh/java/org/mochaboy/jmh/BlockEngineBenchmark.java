@@ -0,0 +1,68 @@
+package org.mochaboy.jmh;
+
+import org.mochaboy.CPU;
+import org.mochaboy.Memory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per instruction of the same hot loop on the switch core, the interpreted block cache and the compiled blocks.
+ * The loop is one block, so BLOCK and JIT only differ in how the block's instructions are dispatched: through the
+ * switch core's opcode switch, or straight calls from the hidden class {@code BlockCompiler} writes. If JIT isn't
+ * clearly ahead of BLOCK here, the compiler isn't earning its keep.
+ * <p>
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockEngineBenchmark {
+    private static final int LOOPS = 256;
+    private static final int LOOP_INSTRUCTIONS = 5;
+    private static final int LOOP_CYCLES = 36;
+
+    @Param({"SWITCH", "BLOCK", "JIT"})
+    public CPU.Engine engine;
+
+    private CPU cpu;
+
+    @Setup
+    public void setUp() throws IOException {
+        Memory memory = new Memory();
+        cpu = new CPU(null, memory);
+        memory.setCpu(cpu);
+        cpu.setTestMode(true);
+        cpu.setCpuState(CPU.CPUState.FETCH);
+
+        //INC A; SWAP A; SWAP A; DEC B; JR -8, a loop that runs forever and never writes memory
+        int[] program = {0x3C, 0xCB, 0x37, 0xCB, 0x37, 0x05, 0x18, 0xF8};
+        for (int i = 0; i < program.length; i++) memory.writeByteUnrestricted(0x0100 + i, program[i]);
+        cpu.getRegisters().setPC(0x0100);
+        cpu.setEngine(engine);
+        if (engine == CPU.Engine.JIT) cpu.getBlockCache().setCompileThreshold(1); //Compiled from the first entry
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOPS * LOOP_INSTRUCTIONS)
+    public int run() {
+        int cycles = 0;
+        while (cycles < LOOPS * LOOP_CYCLES) cycles += cpu.step();
+        return cycles;
+    }
+}
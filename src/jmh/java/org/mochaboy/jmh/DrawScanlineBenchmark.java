@@ -0,0 +1,81 @@
+package org.mochaboy.jmh;
+
+import org.mochaboy.FrameBuffer;
+import org.mochaboy.Memory;
+import org.mochaboy.MemoryMap;
+import org.mochaboy.PPU;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link PPU#drawScanline()} per line over a whole frame. VRAM is filled the way a game screen usually is:
+ * random tile data, a background map that uses every tile, the window covering the bottom right, SCX and SCY off a
+ * tile boundary so the first and last tiles on each line are partial, and 40 sprites spread over the screen.
+ * <p>
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DrawScanlineBenchmark {
+    private static final int LINES = 144;
+
+    private Memory memory;
+    private PPU ppu;
+
+    @Setup
+    public void setUp() {
+        memory = new Memory();
+        FrameBuffer frameBuffer = new FrameBuffer(160, 144);
+        ppu = new PPU(memory, frameBuffer, null);
+        memory.setPpu(ppu);
+
+        Random random = new Random(42);
+        for (int address = 0x8000; address < 0x9800; address++) {
+            memory.writeByteUnrestricted(address, random.nextInt(256));
+        }
+        for (int address = 0x9800; address < 0xA000; address++) {
+            memory.writeByteUnrestricted(address, random.nextInt(256));
+        }
+        for (int sprite = 0; sprite < 40; sprite++) {
+            int oam = 0xFE00 + sprite * 4;
+            memory.writeByteUnrestricted(oam, random.nextInt(160) + 16);
+            memory.writeByteUnrestricted(oam + 1, random.nextInt(168));
+            memory.writeByteUnrestricted(oam + 2, random.nextInt(256));
+            memory.writeByteUnrestricted(oam + 3, random.nextInt(256) & 0xF0);
+        }
+
+        memory.writeByteUnrestricted(MemoryMap.LCDC, 0xF3); // LCD, window on 9C00, tiles at 8000, sprites, BG
+        memory.writeByteUnrestricted(MemoryMap.SCX, 3);
+        memory.writeByteUnrestricted(MemoryMap.SCY, 5);
+        memory.writeByteUnrestricted(MemoryMap.WX, 87);
+        memory.writeByteUnrestricted(MemoryMap.WY, 96);
+        memory.writeByteUnrestricted(MemoryMap.BGP, 0xE4);
+        memory.writeByteUnrestricted(MemoryMap.OBP0, 0xE4);
+        memory.writeByteUnrestricted(MemoryMap.OBP1, 0x1B);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void drawScanline() {
+        for (int ly = 0; ly < LINES; ly++) {
+            memory.writeByteUnrestricted(MemoryMap.LY, ly);
+            ppu.drawScanline();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.mochaboy.jmh;
+
+import org.mochaboy.CPU;
+import org.mochaboy.Input;
+import org.mochaboy.Memory;
+import org.mochaboy.MemoryMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per IO register access. {@link #table()} reads and writes LY, STAT, JOYP and DIV through {@link Memory}, which
+ * looks the handler up in its IO tables. {@link #chain()} does the same accesses the way they used to go: the address
+ * looked up by name in the {@link MemoryMap}, then the if/switch chain Memory used to decode IO with.
+ * <p>
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IoDispatchBenchmark {
+    private static final int ACCESSES = 1024;
+    private static final String[] REGISTERS = {"LY", "STAT", "JOYP", "DIV"};
+
+    private final String[] names = new String[ACCESSES];
+    private final int[] addresses = new int[ACCESSES];
+
+    private Memory memory;
+
+    //Old chain state
+    private Map<String, Integer> map;
+    private final byte[] io = new byte[0x10000];
+    private int div;
+
+    @Setup
+    public void setUp() throws IOException {
+        memory = new Memory();
+        CPU cpu = new CPU(null, memory);
+        memory.setCpu(cpu);
+        new Input(memory);
+        map = memory.getMemoryMap();
+        for (int i = 0; i < ACCESSES; i++) {
+            names[i] = REGISTERS[(i * 7) % REGISTERS.length];
+            addresses[i] = map.get(names[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES)
+    public int table() {
+        int sum = 0;
+        for (int address : addresses) {
+            int value = memory.readByte(address);
+            memory.writeByte(address, value);
+            sum += value;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES)
+    public int chain() {
+        int sum = 0;
+        for (String name : names) {
+            int address = map.get(name);
+            int value = chainRead(address);
+            chainWrite(address, value);
+            sum += value;
+        }
+        return sum;
+    }
+
+    private int chainRead(int address) {
+        if (address >= 0xFF80 && address != MemoryMap.IE) return io[address] & 0xFF;
+        if (address == 0xFF00) return 0x1F;
+        if ((address & 0xFFFC) == 0xFF04) return (div++ >> 8) & 0xFF;
+        if (address == MemoryMap.IF || address == MemoryMap.IE) return io[address] & 0xFF;
+        return io[address] & 0xFF;
+    }
+
+    private void chainWrite(int address, int value) {
+        if (address >= 0xFF80 && address != MemoryMap.IE) {
+            io[address] = (byte) value;
+            return;
+        }
+        if (address == 0xFF50) return;
+        switch (address) {
+            case 0xFF01 -> io[address] = (byte) value;
+            case 0xFF02 -> io[address] = (byte) value;
+            case 0xFF04, 0xFF05, 0xFF06, 0xFF07 -> div = 0;
+            case 0xFF0F, 0xFFFF -> io[address] = (byte) value;
+            case 0xFF40 -> io[address] = (byte) value;
+            case 0xFF46 -> io[address] = (byte) value;
+            case 0xFF00 -> io[address] = (byte) (value & 0xF0);
+            default -> io[address] = (byte) value;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.mochaboy.jmh;
+
+import org.mochaboy.CPU;
+import org.mochaboy.Memory;
+import org.mochaboy.opcode.Opcode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Boxed vs primitive operand passing between micro ops. The two pipelines run the same chain an ADD HL, n16 style
+ * instruction goes through (read two immediates, merge them, add to the destination) on an {@link Opcode} context:
+ * once with the old {@code Function<Opcode, Integer>}/{@code BiConsumer<Opcode, Integer>} plumbing and once with the
+ * {@code ToIntFunction}/{@code ObjIntConsumer} the micro ops use now. {@link #microOpEngine()} runs real instructions
+ * through the micro op engine for an end to end number.
+ * <p>
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MicroOpPipelineBenchmark {
+    private static final int INSTRUCTIONS = 1024;
+
+    //Boxed pipeline, as the micro ops were wired before
+    private final BiConsumer<Opcode, Integer> boxedSetSource = Opcode::setSourceValue;
+    private final BiConsumer<Opcode, Integer> boxedSetExtra = Opcode::setExtraValue;
+    private final BiConsumer<Opcode, Integer> boxedSetDestination = Opcode::setDestinationValue;
+    private final Function<Opcode, Integer> boxedSource = Opcode::getSourceValue;
+    private final Function<Opcode, Integer> boxedExtra = Opcode::getExtraValue;
+    private final Function<Opcode, Integer> boxedDestination = Opcode::getDestinationValue;
+
+    //Primitive pipeline
+    private final ObjIntConsumer<Opcode> setSource = Opcode::setSourceValue;
+    private final ObjIntConsumer<Opcode> setExtra = Opcode::setExtraValue;
+    private final ObjIntConsumer<Opcode> setDestination = Opcode::setDestinationValue;
+    private final ToIntFunction<Opcode> source = Opcode::getSourceValue;
+    private final ToIntFunction<Opcode> extra = Opcode::getExtraValue;
+    private final ToIntFunction<Opcode> destination = Opcode::getDestinationValue;
+
+    private final int[] bytes = new int[INSTRUCTIONS * 2];
+    private Opcode opcode;
+    private CPU cpu;
+
+    @Setup
+    public void setUp() throws IOException {
+        Memory memory = new Memory();
+        cpu = new CPU(null, memory);
+        memory.setCpu(cpu);
+        cpu.setTestMode(true);
+        cpu.setCpuState(CPU.CPUState.FETCH);
+        opcode = new Opcode(cpu);
+        for (int i = 0; i < bytes.length; i++) bytes[i] = (i * 73 + 41) & 0xFF;
+
+        //INC BC; ADD HL, BC; XOR A; ADC A, $12; JR -7, a tight loop the micro op engine can run forever
+        int[] program = {0x03, 0x09, 0xAF, 0xCE, 0x12, 0x18, 0xF9};
+        for (int i = 0; i < program.length; i++) memory.writeByteUnrestricted(0x0100 + i, program[i]);
+        cpu.getRegisters().setPC(0x0100);
+        cpu.setEngine(CPU.Engine.MICRO_OP);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public int boxed() {
+        Opcode op = opcode;
+        boxedSetDestination.accept(op, 0);
+        for (int i = 0; i < INSTRUCTIONS; i++) {
+            boxedSetSource.accept(op, bytes[i * 2]);
+            boxedSetExtra.accept(op, bytes[i * 2 + 1]);
+            boxedSetSource.accept(op, ((boxedExtra.apply(op) << 8) | boxedSource.apply(op)) & 0xFFFF);
+            boxedSetDestination.accept(op, (boxedDestination.apply(op) + boxedSource.apply(op)) & 0xFFFF);
+        }
+        return boxedDestination.apply(op);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public int primitive() {
+        Opcode op = opcode;
+        setDestination.accept(op, 0);
+        for (int i = 0; i < INSTRUCTIONS; i++) {
+            setSource.accept(op, bytes[i * 2]);
+            setExtra.accept(op, bytes[i * 2 + 1]);
+            setSource.accept(op, ((extra.applyAsInt(op) << 8) | source.applyAsInt(op)) & 0xFFFF);
+            setDestination.accept(op, (destination.applyAsInt(op) + source.applyAsInt(op)) & 0xFFFF);
+        }
+        return destination.applyAsInt(op);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public int microOpEngine() {
+        int cycles = 0;
+        for (int i = 0; i < INSTRUCTIONS; i++) {
+            cpu.setTestStepComplete(false);
+            while (!cpu.isTestStepComplete()) cycles += cpu.step();
+        }
+        return cycles;
+    }
+}
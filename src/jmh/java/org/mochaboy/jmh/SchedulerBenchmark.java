@@ -0,0 +1,99 @@
+package org.mochaboy.jmh;
+
+import org.mochaboy.Scheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per CPU step of keeping the timers and PPU in time. {@link #scheduler()} drives TIMA and PPU-like mode changes
+ * through {@link Scheduler}, {@link #polling()} does the work the way the run loop used to, checking every component's
+ * counter after every step, DIV included. DIV isn't an event any more, it's worked out from the cycle count when it's
+ * read. Steps are 4-24 cycles, like real instructions.
+ * <p>
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchedulerBenchmark {
+    private static final int STEPS = 1024;
+    private static final int TIMA_PERIOD = 16;
+    private static final int[] PPU_MODE_CYCLES = {80, 172, 204};
+
+    private final int[] stepCycles = new int[STEPS];
+
+    private Scheduler scheduler;
+    private int ppuMode;
+    private int events;
+
+    //Polling state
+    private int divAcc;
+    private int timaAcc;
+    private int ppuAcc;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < STEPS; i++) {
+            stepCycles[i] = 4 * (1 + (i * 7) % 6);
+        }
+        scheduler = new Scheduler();
+        scheduler.setHandler(Scheduler.TIMA, deadline -> {
+            events++;
+            scheduler.schedule(Scheduler.TIMA, deadline + TIMA_PERIOD);
+        });
+        scheduler.setHandler(Scheduler.PPU, deadline -> {
+            events++;
+            ppuMode = (ppuMode + 1) % PPU_MODE_CYCLES.length;
+            scheduler.schedule(Scheduler.PPU, deadline + PPU_MODE_CYCLES[ppuMode]);
+        });
+        scheduler.scheduleIn(Scheduler.TIMA, TIMA_PERIOD);
+        scheduler.scheduleIn(Scheduler.PPU, PPU_MODE_CYCLES[0]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public int scheduler() {
+        for (int cycles : stepCycles) {
+            scheduler.advance(cycles);
+        }
+        return events;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public int polling() {
+        for (int cycles : stepCycles) {
+            divAcc += cycles;
+            while (divAcc >= 256) {
+                events++;
+                divAcc -= 256;
+            }
+            timaAcc += cycles;
+            while (timaAcc >= TIMA_PERIOD) {
+                events++;
+                timaAcc -= TIMA_PERIOD;
+            }
+            ppuAcc += cycles;
+            if (ppuAcc >= PPU_MODE_CYCLES[ppuMode]) {
+                events++;
+                ppuAcc -= PPU_MODE_CYCLES[ppuMode];
+                ppuMode = (ppuMode + 1) % PPU_MODE_CYCLES.length;
+            }
+        }
+        return events;
+    }
+}
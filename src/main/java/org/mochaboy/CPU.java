@@ -2,7 +2,6 @@ package org.mochaboy;
 
 import org.mochaboy.opcode.*;
 import org.mochaboy.opcode.operations.MicroOperation;
-import org.mochaboy.opcode.operations.ReadImmediate8bit;
 import org.mochaboy.registers.Interrupt;
 import org.mochaboy.registers.Registers;
 import org.mochaboy.registers.Timer;
@@ -17,11 +16,16 @@ public class CPU extends Thread {
     private Timer timer;
     private Stack stack;
     private Interrupt interrupt;
+    private final Scheduler scheduler;
+    private final IdleLoopDetector idleLoopDetector;
+    private boolean idleLoopSkipping = true;
     private Input input;
-    private Opcode currentOpcodeObject;
-    private OpcodeLoader opcodeLoader;
-    private OpcodeBuilder opcodeBuilder;
-    private OpcodeWrapper opcodeWrapper;
+    private final Opcode currentOpcodeObject;
+    private OpcodeCache opcodeCache;
+    private SwitchCore switchCore;
+    private LockstepChecker lockstepChecker;
+    private BlockCache blockCache;
+    private Engine engine = Engine.MICRO_OP;
     private CPUState state;
 
     private static final int CYCLES_PER_FRAME = 70224;
@@ -30,15 +34,13 @@ public class CPU extends Thread {
 
     private long elapsedNs;
     private int totalCycles;
-    private int divCycleAcc;
-    private int timaCycleAcc;
 
     private long tStateCounter;
     private boolean built = false;
     private boolean IME;
     private boolean pendingImeEnable;
     private boolean halt;
-    private boolean running;
+    private volatile boolean running;
     private boolean lowPowerMode;
     private boolean stopMode;
 
@@ -46,6 +48,8 @@ public class CPU extends Thread {
     private boolean fetchedCb;
     private int opcode;
     private int fetchedAt;
+    private int instructionAt; //Differs from fetchedAt inside a block, where fetchedAt is the block's start
+    private int instructionCycle; //Cycles the current step ran before instructionAt
     private boolean runOnce = false;
     private Map<String, Integer> map;
     private RegSnap regBefore;
@@ -66,29 +70,55 @@ public class CPU extends Thread {
 
         registers = new Registers();
         interrupt = new Interrupt(this, this.memory);
-        timer = new Timer(this.memory, interrupt);
+        scheduler = new Scheduler();
+        timer = new Timer(interrupt, scheduler, this.memory);
+        if (this.memory.getMbc() != null) this.memory.getMbc().setScheduler(scheduler); //MBC3 clock counts cycles
+        scheduler.setHandler(Scheduler.SERIAL, deadline -> memory.completeSerialTransfer());
+        scheduler.setHandler(Scheduler.DMA, deadline -> memory.completeDma());
         stack = new Stack(this);
         input = new Input(memory);
-        opcodeLoader = new OpcodeLoader();
-        opcodeWrapper = opcodeLoader.getOpcodeWrapper();
-        opcodeBuilder = new OpcodeBuilder(this, opcodeWrapper);
+        opcodeCache = OpcodeCache.shared();
+        currentOpcodeObject = new Opcode(this);
+        switchCore = SwitchCore.create(this);
+        lockstepChecker = new LockstepChecker(this, switchCore);
+        blockCache = new BlockCache(this, switchCore, opcodeCache);
+        idleLoopDetector = new IdleLoopDetector(this, memory);
         map = memory.getMemoryMap();
     }
 
+    /**
+     * Start the emulation thread. Marked running here rather than in run(), so a kill() that comes before the thread
+     * gets going still stops it.
+     */
+    @Override
+    public synchronized void start() {
+        running = true;
+        super.start();
+    }
+
     @Override
     public void run() {
+        try {
+            emulate();
+        } finally {
+            memory.closeSaveFile(); //Only once nothing can write cart RAM any more
+        }
+    }
+
+    private void emulate() {
 
-        running = true;
         long frameStart = System.nanoTime();
         state = CPUState.FETCH;
 
         while (running) {
-            int cycles = halt ? 1 : step(); //Step if not in HALT
-
-            tickTimers(cycles);
-            if (IME) serviceInterrupts(); //Check interrupts if enabled
+            int cycles = halt ? cyclesUntilWake() : step(); //Step if not in HALT
+            if (idleLoopSkipping && testStepComplete && !halt) {
+                long untilEvent = Math.min(scheduler.cyclesUntilNextEvent(), CYCLES_PER_FRAME - totalCycles) - cycles;
+                cycles += idleLoopDetector.cyclesToSkip(fetchedAt, untilEvent);
+            }
 
-            ppu.step(cycles); //Run PPU for cycles this step
+            scheduler.advance(cycles); //Run PPU, timer and anything else that came due during this step
+            if (IME && interrupt.getPending() != 0) serviceInterrupts(); //Check interrupts if enabled
 
             totalCycles += cycles;
             elapsedNs += (long) (cycles * NS_PER_CYCLE);
@@ -105,65 +135,97 @@ public class CPU extends Thread {
                 }
                 totalCycles -= CYCLES_PER_FRAME;
                 frameStart = System.nanoTime();
+                if (memory.getMbc() != null) memory.getMbc().publishClock(); //For the save file flusher
             }
         }
     }
 
-    private void tickTimers(int cycles) {
-        if (!getMemory().isBootRomEnabled()) {
-//            int divCheck = memory.readByte(map.get("DIV"));
-//            int timaCheck = memory.readByte(map.get("TIMA"));
-//            int tmaCheck = memory.readByte(map.get("TMA"));
-//            int tacCheck = memory.readByte(map.get("TAC"));
-//            boolean isTacEnabled = timer.isTacEnabled();
-//            System.out.println("TAC is " + (isTacEnabled ? "ENABLED" : "DISABLED"));
-//            System.out.printf("\nDIV: %04X\nTIMA: %04X\nTMA: %04X\nTAC: %04X\n",
-//                    divCheck, timaCheck, tmaCheck, tacCheck);
-        }
-
-        //DIV - 256 cycles per increment
-        divCycleAcc += cycles;
-        while (divCycleAcc >= 256) {
-            timer.incDiv();
-            divCycleAcc -= 256;
-        }
-
-        //TIMA
-        if (timer.isTacEnabled()) {
-            int freq = timer.getTacRate();
-            timaCycleAcc += cycles;
-            while (timaCycleAcc >= freq) {
-                boolean overflow = timer.incTima();
-                if (overflow) {
-                    interrupt.setInterrupt(Interrupt.INTERRUPT.TIMER);
-                    timaCycleAcc = 0;
-                    break;
-                }
-                timaCycleAcc -= freq;
-            }
-        } else {
-            timaCycleAcc = 0;
-        }
+    /**
+     * How far a halted CPU can skip ahead in one go. Only a scheduled event can end HALT, so jumping straight to the
+     * next one is the same as idling one cycle at a time. Also stops at the end of the frame so frame pacing still
+     * runs on time.
+     */
+    private int cyclesUntilWake() {
+        if (IME && interrupt.getPending() != 0) return 1;
+        long cycles = Math.min(scheduler.cyclesUntilNextEvent(), CYCLES_PER_FRAME - totalCycles);
+        return (int) Math.max(1, cycles);
     }
 
     private void serviceInterrupts() {
-        int IE = memory.readByte(map.get("IE"));
-        int IF = memory.readByte(map.get("IF"));
-        int pending = IE & IF;
-        if (pending == 0) return;
-
-        for (int i = 0; i < 5; i++) {
-            if ((pending & (1 << i)) != 0) {
-                memory.writeByte(map.get("IF"), IF & ~(1 << i));
-                IME = false;
-                interrupt.handleInterrupt(Interrupt.INTERRUPT.values()[i]);
-                break;
-            }
-        }
+        IME = false;
+        interrupt.servicePending();
     }
 
 
+    /**
+     * Advance the selected engine. The micro op engine runs one machine cycle per call, the switch and lockstep
+     * engines run a whole instruction.
+     *
+     * @return T-states to hand to the timers and PPU
+     */
     public int step() {
+        return switch (engine) {
+            case MICRO_OP -> stepMicroOps();
+            case SWITCH -> stepSwitch();
+            case LOCKSTEP -> stepLockstep();
+            case BLOCK, JIT -> stepBlock();
+        };
+    }
+
+    private int stepBlock() {
+        applyPendingIme();
+        testStepComplete = false;
+        beginStep();
+        int cycles = blockCache.run();
+        testStepComplete = true;
+        return cycles;
+    }
+
+    private int stepSwitch() {
+        applyPendingIme();
+        testStepComplete = false;
+        beginStep();
+        int cycles = switchCore.step();
+        testStepComplete = true;
+        return cycles;
+    }
+
+    private int stepLockstep() {
+        applyPendingIme();
+        lockstepChecker.runCandidate();
+        int cycles = 0;
+        testStepComplete = false;
+        do {
+            cycles += stepMicroOps();
+        } while (!testStepComplete);
+        lockstepChecker.verify();
+        return cycles;
+    }
+
+    private void beginStep() {
+        fetchedAt = instructionAt = registers.getPC();
+        instructionCycle = 0;
+    }
+
+    /**
+     * Called by the block engines before each instruction of a block, which all run in one step.
+     *
+     * @param address Address of the instruction
+     * @param cycles  T-states the instructions before it in the block took
+     */
+    public void beginInstruction(int address, int cycles) {
+        instructionAt = address;
+        instructionCycle = cycles;
+    }
+
+    private void applyPendingIme() {
+        if (isPendingImeEnable()) {
+            setIME(true);
+            setPendingImeEnable(false);
+        }
+    }
+
+    private int stepMicroOps() {
 //        if(currentOpcodeObject!= null && currentOpcodeObject.getOpcodeInfo().getOpcode() == 0xF8)
 //        {
 //            System.out.println();
@@ -173,7 +235,7 @@ public class CPU extends Thread {
         switch (state) {
             case FETCH -> {
                 testStepComplete = false;
-                if (!fetchedCb) fetchedAt = registers.getPC();
+                if (!fetchedCb) beginStep();
                 fetch();
                 if (opcode != 0xCB || fetchedCb) {
                     state = CPUState.DECODE_AND_EXECUTE;
@@ -184,11 +246,7 @@ public class CPU extends Thread {
             }
             case DECODE_AND_EXECUTE -> {
                 if (!built) {
-                    if (testMode) {
-                        currentOpcodeObject = opcodeBuilder.build(opcode, fetchedCb);
-                    } else {
-                        currentOpcodeObject = opcodeBuilder.build(fetchedAt, opcode, fetchedCb);
-                    }
+                    currentOpcodeObject.begin(opcodeCache.get(opcode, fetchedCb), testMode ? 0x00 : fetchedAt);
 
                     fetchedCb = false;
                     built = true;
@@ -234,15 +292,10 @@ public class CPU extends Thread {
                 }
 
                 //handle pending IME switch
-                if (isPendingImeEnable()) {
-                    setIME(true);
-                    setPendingImeEnable(false);
-                }
+                applyPendingIme();
 
                 if (currentOpcodeObject.hasOperationsRemaining()) {//If this opcode still has work to do
 
-                    regBefore = new RegSnap(registers); //for debug
-
                     boolean done = false;
                     while (!done) { //Make sure we continuously execute any operations that don't consume cycles
                         if (currentOpcodeObject.getOpcodeInfo().getOpcode() == 0xC9) {
@@ -253,7 +306,7 @@ public class CPU extends Thread {
 
                         MicroOperation executed = currentOpcodeObject.execute(this, memory);
 
-                        MicroOperation nextOp = currentOpcodeObject.getMicroOps().peek();
+                        MicroOperation nextOp = currentOpcodeObject.peekNextOp();
                         if (nextOp == null) {
                             done = true;
                         } else if (nextOp.getCycles() != 0) { //Consume only 1 cycle per loop
@@ -267,15 +320,6 @@ public class CPU extends Thread {
                     state = CPUState.FETCH;
                     testStepComplete = true;
 
-
-                    int tima = timer.getTima();
-                    int tac = timer.getTac();
-                    int div = timer.getDiv();
-                    String interrupts = interrupt.getInterruptsAsString();
-                    if (currentOpcodeObject.getFetchedAt() == 0xC317) {
-                        System.out.println();
-                    }
-
                     if (!memory.isBootRomEnabled()) {
                         int ff = memory.readByteUnrestricted(0xFFA6);
                         if (ff != 0x0000 && ff != 0x00FA) {
@@ -304,9 +348,14 @@ public class CPU extends Thread {
     }
 
     private void fetch() {
-        new ReadImmediate8bit(this::setOpcode).execute(this, memory);
+        opcode = memory.readByte(registers.getPC()) & 0xFF;
+        registers.incrementPC();
     }
 
+    /**
+     * Stop the emulation loop. It finishes the step it's on, then closes the save file on its own thread, so join
+     * this one to wait for that.
+     */
     public void kill() {
         running = false;
     }
@@ -316,37 +365,31 @@ public class CPU extends Thread {
         RegSnap after = new RegSnap(registers);
 
         String mnemonic = formatMnemonic(currentOpcodeObject);
-        String delta = regBefore.diff(after);
+        String delta = regBefore != null ? regBefore.diff(after) : "";
 
-        //  memory write? -> Memory class remembers the last write (address,value)
+        //  memory write? -> only known while a WriteLog is attached to memory
         String memWrite = "";
-        Memory.LastWrite lastWrite = memory.getLastWrite(); // returns immutable record or null
-        if (lastWrite != null) {
-
-            int address = lastWrite.getAddress();
-            int value = lastWrite.getValue();
-            int cycleMarker = lastWrite.getCycleMarker();
-            if (cycleMarker == fetchedAt) { // wrote during THIS opcode
-                memWrite = String.format(" [WR %04X=%02X]", address, value);
-            }
-
-            System.out.printf("%04X  0x%02X  %-12s %s%s\n",
-                    fetchedAt,
-                    memory.readByte(fetchedAt) & 0xFF,
-                    mnemonic,
-                    delta,
-                    memWrite);
+        WriteLog writeLog = memory.getWriteLog();
+        if (writeLog != null && writeLog.size() > 0 && writeLog.getPc(0) == fetchedAt) { // wrote during THIS opcode
+            memWrite = String.format(" [WR %04X=%02X]", writeLog.getAddress(0), writeLog.getValue(0));
         }
+
+        System.out.printf("%04X  0x%02X  %-12s %s%s\n",
+                fetchedAt,
+                memory.readByte(fetchedAt) & 0xFF,
+                mnemonic,
+                delta,
+                memWrite);
     }
 
     private String formatMnemonic(Opcode op) {
-        Operand[] ops = op.getOpcodeInfo().getOperands();
-        if (ops.length == 0) return op.getOpcodeInfo().getMnemonic();
+        OpcodeInfo info = op.getOpcodeInfo();
+        if (info.getOperandCount() == 0) return info.getMnemonic();
 
-        StringBuilder sb = new StringBuilder(op.getOpcodeInfo().getMnemonic()).append(" ");
+        StringBuilder sb = new StringBuilder(info.getMnemonic()).append(" ");
         int pc = fetchedAt + 1; // immediate bytes start after opcode byte (prefix already eaten)
-        for (int i = 0; i < ops.length; i++) {
-            Operand o = ops[i];
+        for (int i = 0; i < info.getOperandCount(); i++) {
+            Operand o = info.getOperand(i);
             if (!o.isImmediate()) {                       // register / condition / [HL]
                 sb.append(o.getName());
             } else {
@@ -364,13 +407,13 @@ public class CPU extends Thread {
                     pc += 2;
                 }
             }
-            if (i != ops.length - 1) sb.append(", ");
+            if (i != info.getOperandCount() - 1) sb.append(", ");
         }
         return sb.toString();
     }
 
     public void stopCPU() {
-        running = false;
+        kill();
     }
 
 
@@ -388,6 +431,63 @@ public class CPU extends Thread {
         DECODE_AND_EXECUTE
     }
 
+    /**
+     * Instruction execution engines a CPU can run.
+     */
+    public enum Engine {
+        /**
+         * Cycle-stepped micro op pipeline built from Opcodes.json at runtime
+         */
+        MICRO_OP,
+        /**
+         * Switch dispatch generated from Opcodes.json at build time
+         */
+        SWITCH,
+        /**
+         * Runs both engines on every instruction and reports where they first disagree
+         */
+        LOCKSTEP,
+        /**
+         * Switch core running a cached basic block per step
+         */
+        BLOCK,
+        /**
+         * Block engine that compiles hot blocks to JVM bytecode
+         */
+        JIT
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Switch execution engine. Only call this between instructions.
+     */
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+        //Only the block engines need to hear about writes. Start from a clean cache since writes weren't tracked
+        if (engine == Engine.BLOCK || engine == Engine.JIT) {
+            blockCache.clear();
+            blockCache.setCompileThreshold(engine == Engine.JIT ? BlockCache.DEFAULT_COMPILE_THRESHOLD : 0);
+            memory.setBlockCache(blockCache);
+        } else {
+            memory.setBlockCache(null);
+        }
+    }
+
+    public LockstepChecker getLockstepChecker() {
+        return lockstepChecker;
+    }
+
+    public BlockCache getBlockCache() {
+        return blockCache;
+    }
+
+    public OpcodeCache getOpcodeCache() {
+        return opcodeCache;
+    }
+
     public CPUState getCpuState() {
         return state;
     }
@@ -408,6 +508,29 @@ public class CPU extends Thread {
         return interrupt;
     }
 
+    public Timer getTimer() {
+        return timer;
+    }
+
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    public IdleLoopDetector getIdleLoopDetector() {
+        return idleLoopDetector;
+    }
+
+    public boolean isIdleLoopSkipping() {
+        return idleLoopSkipping;
+    }
+
+    /**
+     * @param idleLoopSkipping Whether run() fast-forwards through polling loops, see {@link IdleLoopDetector}
+     */
+    public void setIdleLoopSkipping(boolean idleLoopSkipping) {
+        this.idleLoopSkipping = idleLoopSkipping;
+    }
+
     public long getTStateCounter() {
         return tStateCounter;
     }
@@ -477,6 +600,21 @@ public class CPU extends Thread {
         return currentOpcodeObject;
     }
 
+    /**
+     * @return Address the current instruction was fetched from, also inside a block
+     */
+    public int getInstructionAt() {
+        return instructionAt;
+    }
+
+    /**
+     * @return Scheduler cycle the current instruction started on. The scheduler only catches up after a whole block,
+     * so inside one this adds the cycles of the instructions before it.
+     */
+    public long getInstructionCycle() {
+        return scheduler.now() + instructionCycle;
+    }
+
     public boolean isTestStepComplete() {
         return testStepComplete;
     }
@@ -491,6 +629,7 @@ public class CPU extends Thread {
 
     public void setTestMode(boolean testMode) {
         this.testMode = testMode;
+        memory.setTestMode(testMode);
     }
 
     public boolean isBuilt() {
@@ -518,13 +657,12 @@ public class CPU extends Thread {
     private void printDebugLog(OpcodeInfo opcode) {
         int pc = getRegisters().getPC();
         int rawOpcode = memory.readByte(pc) & 0xFF;
-        Operand[] ops = opcode.getOperands();
         StringBuilder sb = new StringBuilder();
         int immOffset = 1; // For reading immediate bytes after this opcode
 
         // Print the opcode operands as usual
-        for (int i = 0; i < ops.length; i++) {
-            String name = ops[i].getName();
+        for (int i = 0; i < opcode.getOperandCount(); i++) {
+            String name = opcode.getOperand(i).getName();
             switch (name) {
                 case "n8", "d8", "a8", "e8" -> {
                     int val = memory.readByte(pc + immOffset) & 0xFF;
@@ -540,7 +678,7 @@ public class CPU extends Thread {
                 }
                 default -> sb.append(name);
             }
-            if (i < ops.length - 1) {
+            if (i < opcode.getOperandCount() - 1) {
                 sb.append(", ");
             }
         }
@@ -564,11 +702,6 @@ public class CPU extends Thread {
                 pc, rawOpcode, opcode.getMnemonic(), sb.toString(), extra);
     }
 
-    private void setOpcode(int opcode) {
-        this.opcode = opcode;
-    }
-
-
     private static final class RegSnap {
         final int A, B, C, D, E, H, L, F, SP, PC;
 
@@ -1,24 +1,104 @@
 package org.mochaboy;
 
 import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 public class Cartridge {
+    /**
+     * System property that makes {@link #open(Path)} map ROMs instead of loading them, e.g. -Dmochaboy.mappedRom=true
+     */
+    public static final String MAPPED_ROM_PROPERTY = "mochaboy.mappedRom";
 
-    private final byte[] cartData;
+    //Read-only mappings by file, shared by every Cartridge opened with mapped(). Dropped once nothing uses them, and
+    //their entries with them the next time a ROM is mapped.
+    private static final Map<Path, Mapping> MAPPINGS = new HashMap<>();
+    private static final ReferenceQueue<MappedByteBuffer> UNUSED_MAPPINGS = new ReferenceQueue<>();
+
+    private final Path file;
+    private final byte[] cartData; //Null when the ROM is mapped
+    private final ByteBuffer mappedData; //Null when the ROM is on the heap
+    private final int romSize;
     //Addresses
     public final static int ENTRY_POINT = 0x0100;
     public final static int NINTENDO_LOGO = 0x0104;
     public final static int TITLE = 0x0134;
     public final static int TITLE_END = 0x0143;
     public final static int MANUFACTURER_CODE = 0x013F; //Part of the title in older carts? Purpose unknown
+    public final static int CART_TYPE = 0x0147; //Which MBC, and whether there's RAM, a battery or a clock
     public final static int ROM_SIZE = 0x0148; //ROM size on cart
     public final static int RAM_SIZE = 0x0149; //RAM size on cart, if any
     public final static int HEADER_CHECKSUM = 0x014D; //8-bit checksum computed from title -?
 
+    //RAM size by the header byte at RAM_SIZE. 01 was never used in a licensed cart.
+    private final static int[] RAM_SIZES = {0, 0x800, 0x2000, 0x8000, 0x20000, 0x10000};
+
     public Cartridge(Path file) throws IOException {
-        cartData = Files.readAllBytes(file);
+        this.file = file;
+        byte[] data = Files.readAllBytes(file);
+        //Always at least the two banks the CPU can see, so the ROM window is never past the end of the array
+        cartData = data.length < 0x8000 ? Arrays.copyOf(data, 0x8000) : data;
+        mappedData = null;
+        romSize = cartData.length;
+    }
+
+    private Cartridge(Path file, MappedByteBuffer mappedData) {
+        this.file = file;
+        cartData = null;
+        this.mappedData = mappedData;
+        romSize = mappedData.capacity();
+    }
+
+    private static final class Mapping extends WeakReference<MappedByteBuffer> {
+        final Path key;
+
+        Mapping(Path key, MappedByteBuffer buffer) {
+            super(buffer, UNUSED_MAPPINGS);
+            this.key = key;
+        }
+    }
+
+    /**
+     * Open a ROM the way the {@link #MAPPED_ROM_PROPERTY} system property asks for: {@link #mapped(Path) mapped} if
+     * it's true, otherwise {@link #Cartridge(Path) loaded} onto the heap.
+     */
+    public static Cartridge open(Path file) throws IOException {
+        return Boolean.getBoolean(MAPPED_ROM_PROPERTY) ? mapped(file) : new Cartridge(file);
+    }
+
+    /**
+     * Open a ROM without reading it onto the heap. The file is mapped read-only once, and every cartridge opened from
+     * the same file shares that mapping, so many emulators running one game only hold one copy of it between them.
+     * ROM reads are a little slower than from a {@link #Cartridge(Path) loaded} cartridge.
+     */
+    public static Cartridge mapped(Path file) throws IOException {
+        Path key = file.toRealPath();
+        synchronized (MAPPINGS) {
+            Reference<? extends MappedByteBuffer> unused;
+            while ((unused = UNUSED_MAPPINGS.poll()) != null) {
+                Mapping mapping = (Mapping) unused;
+                MAPPINGS.remove(mapping.key, mapping); //Unless the file has been mapped again since
+            }
+            Mapping mapping = MAPPINGS.get(key);
+            MappedByteBuffer buffer = mapping != null ? mapping.get() : null;
+            if (buffer == null) {
+                try (FileChannel channel = FileChannel.open(key, StandardOpenOption.READ)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+                MAPPINGS.put(key, new Mapping(key, buffer));
+            }
+            return new Cartridge(file, buffer);
+        }
     }
 
     public void readCartDataAsString(int addressStart, int addressEnd){
@@ -26,14 +106,71 @@ public class Cartridge {
         StringBuilder titleStr = new StringBuilder();
         int j = 0;
         for (int i = addressStart; i <= addressEnd; i++) {
-            title[j] = cartData[i];
+            title[j] = (byte) read(i);
             titleStr.append((char) title[j]);
             j++;
         }
         System.out.println(titleStr);
     }
 
+    /**
+     * @return The ROM, or null if it's {@link #mapped(Path) mapped}
+     */
     public byte[] getCartData() {
         return cartData;
     }
+
+    /**
+     * @return The read-only ROM mapping, or null if the ROM was loaded onto the heap
+     */
+    public ByteBuffer getMappedData() {
+        return mappedData;
+    }
+
+    public boolean isMapped() {
+        return mappedData != null;
+    }
+
+    public int getRomSize() {
+        return romSize;
+    }
+
+    /**
+     * @return ROM byte at offset, or 0xFF past the end of a mapped ROM
+     */
+    public int read(int offset) {
+        if (cartData != null) return cartData[offset] & 0xFF;
+        return offset < romSize ? mappedData.get(offset) & 0xFF : 0xFF;
+    }
+
+    public int getCartType() {
+        return read(CART_TYPE);
+    }
+
+    /**
+     * @return True if the cartridge type says its RAM is kept alive by a battery
+     */
+    public boolean hasBattery() {
+        return switch (getCartType()) {
+            case 0x03, 0x06, 0x09, 0x0D, 0x0F, 0x10, 0x13, 0x1B, 0x1E -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * @return The ROM's path with a .sav extension, where battery-backed RAM is kept
+     */
+    public Path getSavePath() {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return file.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".sav");
+    }
+
+    /**
+     * @return Bytes of external RAM the header asks for
+     */
+    public int getRamSize() {
+        int code = read(RAM_SIZE);
+        return code < RAM_SIZES.length ? RAM_SIZES[code] : 0;
+    }
 }
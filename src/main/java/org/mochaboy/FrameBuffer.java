@@ -1,28 +1,171 @@
 package org.mochaboy;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Triple buffered screen, written by the emulation thread and shown by one UI thread, with no locks between them.
+ * <p>
+ * The PPU draws into the back buffer and {@link #publish()}es it once the frame is done, which swaps it with the
+ * middle buffer in one atomic step. {@link #getFrame()} swaps the middle buffer to the front if a newer frame is
+ * waiting there. Neither side ever waits on the other or copies a frame: the writer always has a buffer to draw into,
+ * and the reader keeps the frame it has until it asks for a newer one. Frames the reader was too slow to pick up are
+ * dropped.
+ * <p>
+ * Pixels are one byte each, the shade the palette register picked (0 white to 3 black) plus which palette it came
+ * from, see {@link #pixel(int, int)}. Front ends turn a frame into the format they draw with only when they show it,
+ * through a 16 entry lookup table: {@link #toArgb}, {@link #toRgb565} and {@link #toGray} come with DMG grays, and any
+ * other table can tint the background and each sprite palette differently.
+ */
 public class FrameBuffer {
+    private static final int INDEX_MASK = 0x03;
+    private static final int FRESH = 0x04; //Set on middle when it holds a frame the reader hasn't taken yet
+
+    public static final int PALETTE_BG = 0;
+    public static final int PALETTE_OBP0 = 1;
+    public static final int PALETTE_OBP1 = 2;
+    public static final int LUT_SIZE = 16;
+
+    public static final int[] ARGB_SHADES = {0xFFFFFFFF, 0xFFC0C0C0, 0xFF606060, 0xFF000000};
+    public static final int[] ARGB_LUT = lut(ARGB_SHADES);
+    public static final int[] RGB565_LUT = lut(new int[]{0xFFFF, 0xC618, 0x630C, 0x0000});
+    public static final int[] GRAY_LUT = lut(new int[]{0xFF, 0xC0, 0x60, 0x00});
+
     private final int width;
     private final int height;
-    private final int[] pixels;
+    private final byte[][] buffers = new byte[3][];
+    private final long[] frameNumbers = new long[3];
+
+    private final AtomicInteger middle = new AtomicInteger(1); //Buffer index, plus FRESH
+    private int back = 0; //Writer's
+    private int front = 2; //Reader's
+    private long nextFrameNumber = 1;
 
     public FrameBuffer(int width, int height) {
         this.width = width;
         this.height = height;
-        this.pixels = new int[width * height];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = new byte[width * height];
+        }
+    }
+
+    /**
+     * @param palette PALETTE_BG, PALETTE_OBP0 or PALETTE_OBP1
+     * @param shade   0-3, after the palette register
+     * @return The pixel byte for a shade from palette
+     */
+    public static byte pixel(int palette, int shade) {
+        return (byte) (palette << 2 | shade);
     }
 
-    public synchronized void setPixel(int x, int y, int color) {
+    /**
+     * Writer only. Sets one pixel of the frame being drawn.
+     *
+     * @param pixel See {@link #pixel(int, int)}
+     */
+    public void setPixel(int x, int y, int pixel) {
         if (x < 0 || x >= width || y < 0 || y >= height) return;
-        pixels[y * width + x] = color;
+        buffers[back][y * width + x] = (byte) pixel;
     }
 
-    public synchronized int[] getPixels() {
-        return pixels.clone();
+    /**
+     * Writer only. Copies a whole line of the frame being drawn.
+     *
+     * @param pixels At least width pixels, see {@link #pixel(int, int)}
+     */
+    public void setLine(int y, byte[] pixels) {
+        if (y < 0 || y >= height) return;
+        System.arraycopy(pixels, 0, buffers[back], y * width, width);
     }
 
-    public synchronized int getPixel(int x, int y) {
+    /**
+     * Writer only. Hands the frame that's been drawn to the reader and starts the next one in another buffer. The new
+     * back buffer holds an older frame, every line of it has to be drawn again.
+     *
+     * @return The number of the frame just published, counting up from 1
+     */
+    public long publish() {
+        long frameNumber = nextFrameNumber++;
+        frameNumbers[back] = frameNumber;
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+        return frameNumber;
+    }
+
+    /**
+     * Writer only. Reads a pixel of the frame being drawn.
+     *
+     * @return The pixel in ARGB DMG grays
+     */
+    public int getPixel(int x, int y) {
         if (x < 0 || x >= width || y < 0 || y >= height) return 0;
-        else return pixels[y * width + x];
+        else return ARGB_LUT[buffers[back][y * width + x]];
+    }
+
+    /**
+     * Reader only. Get the latest published frame without copying it. The array mustn't be written to, and stays the
+     * same until the next call.
+     *
+     * @return width * height pixels, see {@link #pixel(int, int)}. All white until the first frame is published.
+     */
+    public byte[] getFrame() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+        return buffers[front];
+    }
+
+    /**
+     * Reader only.
+     *
+     * @return Number of the frame {@link #getFrame()} last returned, 0 before any frame was published
+     */
+    public long getFrameNumber() {
+        return frameNumbers[front];
+    }
+
+    /**
+     * @return Whether a frame newer than the one the reader holds has been published
+     */
+    public boolean hasNewFrame() {
+        return (middle.get() & FRESH) != 0;
+    }
+
+    /**
+     * Convert a frame through a lookup table indexed by pixel byte. A plain gather loop, so the JIT can unroll it.
+     *
+     * @param lut {@link #LUT_SIZE} colors, like {@link #ARGB_LUT}
+     */
+    public static void convert(byte[] frame, int[] lut, int[] out) {
+        for (int i = 0; i < frame.length; i++) {
+            out[i] = lut[frame[i]];
+        }
+    }
+
+    public static void toArgb(byte[] frame, int[] out) {
+        convert(frame, ARGB_LUT, out);
+    }
+
+    public static void toRgb565(byte[] frame, short[] out) {
+        for (int i = 0; i < frame.length; i++) {
+            out[i] = (short) RGB565_LUT[frame[i]];
+        }
+    }
+
+    public static void toGray(byte[] frame, byte[] out) {
+        for (int i = 0; i < frame.length; i++) {
+            out[i] = (byte) GRAY_LUT[frame[i]];
+        }
+    }
+
+    /**
+     * @param shades Colors for shades 0-3, the same for every palette
+     * @return A {@link #LUT_SIZE} entry table
+     */
+    public static int[] lut(int[] shades) {
+        int[] lut = new int[LUT_SIZE];
+        for (int i = 0; i < LUT_SIZE; i++) {
+            lut[i] = shades[i & 0x03];
+        }
+        return lut;
     }
 
     public int getWidth() {
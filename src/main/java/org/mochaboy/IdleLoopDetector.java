@@ -0,0 +1,262 @@
+package org.mochaboy;
+
+import org.mochaboy.opcode.OpcodeInfo;
+import org.mochaboy.opcode.OpcodeTable;
+import org.mochaboy.opcode.Operand;
+import org.mochaboy.registers.Registers;
+
+import java.util.Arrays;
+
+/**
+ * Spots polling loops like {@code LDH A,[LY]; CP n; JR NZ} and skips the iterations that can't see anything change.
+ * <p>
+ * A loop qualifies if it's a short run of ROM code ending in a jump back to its start, that only loads registers
+ * from memory, compares or tests them, and never writes memory or carries a register from one iteration to the next.
+ * Each iteration then depends on nothing but memory, and nothing the loop reads can change before the next scheduled
+ * event or an interrupt. Once the CPU has just jumped back to the start of such a loop, every whole iteration up to
+ * the next event can be skipped.
+ * <p>
+ * Loops are analyzed the first time the CPU jumps back to them and the result is cached by address and the ROM bank
+ * mapped there, for 0x0000-0x3FFF as well as 0x4000-0x7FFF.
+ */
+public class IdleLoopDetector {
+    private static final int MAX_LOOP_BYTES = 16;
+    private static final int CACHE_SIZE = 256;
+    private static final int NOT_IDLE = -1;
+    private static final int BOOT_ROM = 1 << 30; //Cache key flag for loops in the boot ROM overlay
+
+    //Memory read addresses that come from a register instead of the instruction
+    private static final int READ_BC = -2;
+    private static final int READ_DE = -3;
+    private static final int READ_HL = -4;
+    private static final int READ_HIGH_C = -5;
+
+    private final CPU cpu;
+    private final Memory memory;
+
+    //Direct mapped cache of analyzed loops, keyed by bank << 16 | start address
+    private final int[] keys = new int[CACHE_SIZE];
+    private final int[] branches = new int[CACHE_SIZE];
+    private final int[] iterationCycles = new int[CACHE_SIZE];
+    private final int[][] reads = new int[CACHE_SIZE][];
+
+    private long loopsDetected;
+    private long loopsSkipped;
+    private long cyclesSkipped;
+
+    public IdleLoopDetector(CPU cpu, Memory memory) {
+        this.cpu = cpu;
+        this.memory = memory;
+        Arrays.fill(keys, -1);
+    }
+
+    /**
+     * Called right after an instruction (or block) finishes, before the scheduler catches up with it.
+     *
+     * @param lastAddress Address the last instruction or block was fetched from
+     * @param maxCycles   Cycles until the next scheduled event, counted from the end of the last instruction
+     * @return Extra cycles to count as spent, a whole number of loop iterations, or 0 if this isn't an idle loop
+     */
+    public int cyclesToSkip(int lastAddress, long maxCycles) {
+        int start = cpu.getRegisters().getPC();
+        //Only worth looking at right after a jump back to a nearby address
+        if (start > lastAddress || lastAddress - start >= MAX_LOOP_BYTES || start >= 0x8000) return 0;
+
+        int key = start;
+        if (start >= 0x4000) key |= memory.getRomBank() << 16;
+        else if (start < 0x100 && memory.isBootRomEnabled()) key |= BOOT_ROM;
+        else key |= memory.getLowRomBank() << 16;
+        int slot = (start ^ (start >> 8)) & (CACHE_SIZE - 1);
+        if (keys[slot] != key) {
+            analyze(slot, key, start);
+        }
+        int cycles = iterationCycles[slot];
+        if (cycles == NOT_IDLE) return 0;
+        //The jump back must be what just ran. The block engines report the start of the block, which is the loop.
+        if (lastAddress != branches[slot] && lastAddress != start) return 0;
+        if (!readsAreEventDriven(reads[slot])) return 0;
+        if (cpu.isPendingImeEnable()) return 0;
+        if (cpu.isIME() && cpu.getInterrupt().getPending() != 0) return 0;
+
+        long iterations = maxCycles / cycles;
+        if (iterations <= 0) return 0;
+        int skipped = (int) Math.min(iterations * cycles, Integer.MAX_VALUE - cycles);
+        loopsSkipped++;
+        cyclesSkipped += skipped;
+        return skipped;
+    }
+
+    /**
+     * DIV and TIMA move on without a scheduled event, so a loop watching them has to run for real.
+     */
+    private boolean readsAreEventDriven(int[] addresses) {
+        Registers r = cpu.getRegisters();
+        for (int address : addresses) {
+            address = switch (address) {
+                case READ_BC -> r.getBC();
+                case READ_DE -> r.getDE();
+                case READ_HL -> r.getHL();
+                case READ_HIGH_C -> 0xFF00 | r.getC();
+                default -> address;
+            };
+            if (address == 0xFF04 || address == 0xFF05) return false;
+        }
+        return true;
+    }
+
+    private void analyze(int slot, int key, int start) {
+        keys[slot] = key;
+        iterationCycles[slot] = NOT_IDLE;
+        reads[slot] = new int[0];
+
+        int written = 0; //Registers written so far this iteration
+        int carried = 0; //Registers read before this iteration wrote them
+        int[] addresses = new int[MAX_LOOP_BYTES];
+        int readCount = 0;
+        int cycles = 0;
+        int pc = start;
+
+        while (pc - start < MAX_LOOP_BYTES) {
+            int opcode = fetch(pc);
+            boolean prefixed = opcode == 0xCB;
+            OpcodeInfo info = prefixed ? OpcodeTable.get(fetch(pc + 1), true) : OpcodeTable.get(opcode, false);
+            String mnemonic = info.getMnemonic();
+            cycles += info.getCycles(0);
+
+            if (mnemonic.equals("JR") || mnemonic.equals("JP")) {
+                Operand target = info.getOperand(info.getOperandCount() - 1);
+                int destination;
+                if (target.getName().equals("e8")) destination = (pc + 2 + (byte) fetch(pc + 1)) & 0xFFFF;
+                else if (target.getName().equals("a16")) destination = fetch(pc + 1) | (fetch(pc + 2) << 8);
+                else return; //JP HL
+                if (destination != start) return;
+                if (info.getOperandCount() == 2) carried |= bit(Registers.REG_F) & ~written; //Condition reads a flag
+                if ((carried & written) != 0) return;
+                branches[slot] = pc;
+                iterationCycles[slot] = cycles;
+                reads[slot] = Arrays.copyOf(addresses, readCount);
+                loopsDetected++;
+                return;
+            }
+
+            int readMask = 0;
+            int writeMask = 0;
+            switch (mnemonic) {
+                case "NOP" -> {
+                }
+                case "LD", "LDH" -> {
+                    Operand destination = info.getOperand(0);
+                    Operand source = info.getOperand(1);
+                    int register = Registers.indexOf(destination.getName());
+                    if (!destination.isImmediate() || register < Registers.REG_A || register > Registers.REG_L) return;
+                    if (source.isIncrement() || source.isDecrement()) return;
+                    writeMask = bit(register);
+                    if (source.isImmediate()) {
+                        readMask = registerBits(source.getName());
+                    } else {
+                        int address = memoryRead(source.getName(), pc);
+                        if (address == NOT_IDLE) return;
+                        addresses[readCount++] = address;
+                        readMask = addressBits(address);
+                    }
+                }
+                case "CP", "AND", "OR", "XOR" -> {
+                    Operand source = info.getOperand(1);
+                    readMask = bit(Registers.REG_A);
+                    if (source.isImmediate()) {
+                        readMask |= registerBits(source.getName());
+                    } else {
+                        addresses[readCount++] = READ_HL;
+                        readMask |= addressBits(READ_HL);
+                    }
+                    writeMask = mnemonic.equals("CP") ? 0 : bit(Registers.REG_A);
+                }
+                case "BIT" -> {
+                    Operand source = info.getOperand(1);
+                    if (source.isImmediate()) {
+                        readMask = registerBits(source.getName());
+                    } else {
+                        addresses[readCount++] = READ_HL;
+                        readMask = addressBits(READ_HL);
+                    }
+                }
+                default -> {
+                    return;
+                }
+            }
+            //Flags marked "-" are kept, so anything that sets some flags but not all of them readMask F too
+            String[] flags = {info.getFlags().getZ(), info.getFlags().getN(), info.getFlags().getH(),
+                    info.getFlags().getC()};
+            boolean touchesFlags = false;
+            boolean keepsFlags = false;
+            for (String flag : flags) {
+                if (flag.equals("-")) keepsFlags = true;
+                else touchesFlags = true;
+            }
+            if (touchesFlags) {
+                writeMask |= bit(Registers.REG_F);
+                if (keepsFlags) readMask |= bit(Registers.REG_F);
+            }
+
+            carried |= readMask & ~written;
+            written |= writeMask;
+            pc += info.getBytes();
+        }
+    }
+
+    /**
+     * @return Fixed address, one of the READ_* register modes, or NOT_IDLE if it isn't a plain read
+     */
+    private int memoryRead(String operand, int pc) {
+        return switch (operand) {
+            case "BC" -> READ_BC;
+            case "DE" -> READ_DE;
+            case "HL" -> READ_HL;
+            case "C" -> READ_HIGH_C;
+            case "a8" -> 0xFF00 | fetch(pc + 1);
+            case "a16" -> fetch(pc + 1) | (fetch(pc + 2) << 8);
+            default -> NOT_IDLE;
+        };
+    }
+
+    private static int addressBits(int address) {
+        return switch (address) {
+            case READ_BC -> bit(Registers.REG_B) | bit(Registers.REG_C);
+            case READ_DE -> bit(Registers.REG_D) | bit(Registers.REG_E);
+            case READ_HL -> bit(Registers.REG_H) | bit(Registers.REG_L);
+            case READ_HIGH_C -> bit(Registers.REG_C);
+            default -> 0;
+        };
+    }
+
+    private static int registerBits(String name) {
+        int register = Registers.indexOf(name);
+        return register >= Registers.REG_A && register <= Registers.REG_L ? bit(register) : 0;
+    }
+
+    private static int bit(int register) {
+        return 1 << register;
+    }
+
+    private int fetch(int address) {
+        return memory.readByte(address & 0xFFFF) & 0xFF;
+    }
+
+    /**
+     * @return Loops found to be idle, each counted once when first analyzed
+     */
+    public long getLoopsDetected() {
+        return loopsDetected;
+    }
+
+    /**
+     * @return Times an idle loop was fast-forwarded
+     */
+    public long getLoopsSkipped() {
+        return loopsSkipped;
+    }
+
+    public long getCyclesSkipped() {
+        return cyclesSkipped;
+    }
+}
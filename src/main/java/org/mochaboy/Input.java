@@ -1,20 +1,27 @@
 package org.mochaboy;
 
-import java.util.Map;
-
 public class Input {
     private Memory memory;
-    private Map<String, Integer> map;
 
     public Input(Memory memory) {
         this.memory = memory;
-        map = memory.getMemoryMap();
+        memory.registerCpuIo(MemoryMap.JOYP, this::readJoyp, this::writeJoyp);
 
         init();
     }
 
     private void init() {
-        memory.writeByteUnrestricted(map.get("JOYP"), 0xCF);
+        memory.writeByteUnrestricted(MemoryMap.JOYP, 0xCF);
+    }
+
+    private int readJoyp(int address) {
+//        int v = memory.readByteUnrestricted(address);
+//        if ((v >> 4 == 3)) return v & 0xFF;
+        return 0x1F;
+    }
+
+    private void writeJoyp(int address, int value) {
+        memory.writeByteUnrestricted(address, value & 0xF0); //Only the select bits can be written
     }
 
 }
@@ -1,36 +1,132 @@
 package org.mochaboy;
 
+import org.mochaboy.mbc.MBC;
+import org.mochaboy.mbc.SaveFile;
+import org.mochaboy.opcode.BlockCache;
 import org.mochaboy.registers.Interrupt;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Map;
 
+/**
+ * The CPU's view of the address space. Reads and writes go through a table of 256-byte pages: each page either points
+ * straight into a backing array at some offset, or at a handler for IO registers and regions the PPU has locked. The
+ * boot ROM overlay, VRAM/OAM locking and test mode are all handled by swapping page entries when they change, so an
+ * ordinary access is one table lookup.
+ */
 public class Memory {
+    private static final int SERIAL_TRANSFER_CYCLES = 4096; //8 bits on the 8192 Hz internal clock
+    private static final int DMA_CYCLES = 640; //160 bytes, one per M-cycle
+
+    private static final int PAGE_SHIFT = 8;
+    private static final int PAGE_COUNT = 0x100;
+    private static final int ROM_BANK_PAGE = 0x40;
+    private static final int VRAM_PAGE = 0x80;
+    private static final int CART_RAM_PAGE = 0xA0;
+    private static final int CART_RAM_PAGE_END = 0xC0;
+    private static final int OAM_PAGE = 0xFE;
+    private static final int IO_PAGE = 0xFF;
+    private static final int IO_REGISTERS = 0x80;
 
     private byte[] memory;
     private byte[] bootRom;
     private Cartridge cartridge;
+    private MBC mbc;
+    private SaveFile saveFile; //Null unless the cart has battery-backed RAM
     private Map<String, Integer> map;
     private PPU ppu;
     private CPU cpu;
     private boolean bootRomEnabled = true;
     private boolean oamBlocked = false;
     private boolean vramBlocked = false;
-    private LastWrite lastWrite;
+    private boolean dmaActive = false;
+    private boolean testMode = false;
+    private WriteLog writeLog;
+    private boolean logWrites; //writeLog != null, checked on every write
+    private WriteJournal writeTap;
+    private BlockCache blockCache;
+    private final TileCache tileCache;
+    private final SpriteIndex spriteIndex;
+    private Interrupt interrupt; //For IE, the one interrupt register outside 0xFF00-0xFF7F
+
+    //Page tables. A null array means the page goes to the handler instead.
+    private final byte[][] readPages = new byte[PAGE_COUNT][];
+    private final int[] readOffsets = new int[PAGE_COUNT]; //Added to the address to index the page's array
+    private final ReadHandler[] readHandlers = new ReadHandler[PAGE_COUNT];
+    private final byte[][] writePages = new byte[PAGE_COUNT][];
+    private final int[] writeOffsets = new int[PAGE_COUNT];
+    private final WriteHandler[] writeHandlers = new WriteHandler[PAGE_COUNT];
+
+    private final ReadHandler ioRead = this::readIo;
+    private final ReadHandler ioReadUnrestricted = this::readIoUnrestricted;
+    private final ReadHandler blockedRead = this::readBlocked;
+    private final WriteHandler ioWrite = this::writeIo;
+    private final WriteHandler ioWriteUnrestricted = this::writeIoUnrestricted;
+    private final WriteHandler blockedWrite = this::writeBlocked;
+    private final WriteHandler romWrite = (address, value) -> {
+    };
+    private final WriteHandler mbcWrite = this::writeMbc;
+    private final ReadHandler mappedRomRead = this::readMappedRom;
+    private final ReadHandler cartRamRead = address -> mbc.readRam(address);
+    private final WriteHandler cartRamWrite = (address, value) -> {
+        if (mbc.writeRam(address, value) && saveFile != null) {
+            saveFile.markDirty((address - 0xA000) % mbc.getRam().length);
+        }
+        onStore(address, value);
+    };
+
+    //IO register handlers by address - 0xFF00. cpuIo* is what readByte/writeByte see, io* is what unrestricted
+    //accesses and test mode see.
+    private final ReadHandler[] cpuIoReads = new ReadHandler[IO_REGISTERS];
+    private final WriteHandler[] cpuIoWrites = new WriteHandler[IO_REGISTERS];
+    private final ReadHandler[] ioReads = new ReadHandler[IO_REGISTERS];
+    private final WriteHandler[] ioWrites = new WriteHandler[IO_REGISTERS];
+
+    //Bank offsets the page tables currently point at, to tell which windows an MBC write moved
+    private int mappedRomOffset;
+    private int mappedLowRomOffset;
+    private int mappedRamOffset;
+
+    /**
+     * Reads a page or register that isn't plain memory.
+     */
+    @FunctionalInterface
+    public interface ReadHandler {
+        int read(int address);
+    }
+
+    /**
+     * Writes a page or register that isn't plain memory.
+     */
+    @FunctionalInterface
+    public interface WriteHandler {
+        void write(int address, int value);
+    }
 
     public Memory(Cartridge cartridge) {
         this.cartridge = cartridge;
+        mbc = MBC.create(cartridge);
         map = new MemoryMap().getMap();
         memory = new byte[0x10000];
         bootRom = new byte[0x100];
+        tileCache = new TileCache(memory);
+        spriteIndex = new SpriteIndex(memory);
+        initIo();
         init();
+        openSaveFile();
+        mapPages();
     }
 
     public Memory() {
         map = new MemoryMap().getMap();
         memory = new byte[0x10000];
         bootRom = new byte[0x100];
+        tileCache = new TileCache(memory);
+        spriteIndex = new SpriteIndex(memory);
+        initIo();
+        mapPages();
     }
 
     public void init() {
@@ -46,46 +142,14 @@ public class Memory {
      */
     public int readByte(int address) {
         address &= 0xFFFF;
-
-        if (!cpu.isTestMode()) {
-            if (address == map.get("JOYP")) {
-//                int v = memory[address];
-//                if ((v >> 4 == 3)) return v & 0xFF;
-                return 0x1F;
-            }
-
-
-            //If reading from OAM
-            if (address >= map.get("OAM_START") && address <= map.get("OAM_END")) {
-                if (oamBlocked) return 0xFF;
-            }
-
-            if (address >= map.get("VRAM_START") && address <= map.get("VRAM_END")) {
-                if (vramBlocked) return 0xFF;
-            }
-            
-            if (address == map.get("DIV")) {
-                if (!bootRomEnabled) {
-                    System.out.printf("");
-                }
-            }
-
-            if (bootRomEnabled && address <= 0x00FF) {
-                return bootRom[address] & 0xFF;
-            }
-
-            if (!bootRomEnabled && address <= 0x7FFF) {
-                return cartridge.getCartData()[address];
-            }
-
-            return memory[address] & 0xFF;
-        } else {
-            return readByteUnrestricted(address);
-        }
+        int page = address >>> PAGE_SHIFT;
+        byte[] data = readPages[page];
+        if (data != null) return data[readOffsets[page] + address] & 0xFF;
+        return readHandlers[page].read(address);
     }
 
     public int readByteUnrestricted(int address) {
-
+        if (address >= 0xFF00) return readIoUnrestricted(address);
         return memory[address] & 0xFF;
     }
 
@@ -93,6 +157,26 @@ public class Memory {
         return memory[address & 0xFFFF];
     }
 
+    private int readIo(int address) {
+        if (address <= MemoryMap.IO_END) return cpuIoReads[address - MemoryMap.IO_START].read(address);
+        if (address == MemoryMap.IE && interrupt != null) return interrupt.read(address);
+        return memory[address] & 0xFF; //HRAM
+    }
+
+    private int readIoUnrestricted(int address) {
+        if (address <= MemoryMap.IO_END) return ioReads[address - MemoryMap.IO_START].read(address);
+        if (address == MemoryMap.IE && interrupt != null) return interrupt.read(address);
+        return memory[address] & 0xFF;
+    }
+
+    /**
+     * VRAM while the PPU is drawing, OAM during OAM scan, drawing and DMA. The unusable area after OAM shares its page.
+     */
+    private int readBlocked(int address) {
+        if (address <= 0xFE9F) return 0xFF;
+        return memory[address] & 0xFF;
+    }
+
     /**
      * Write byte at address.
      *
@@ -103,85 +187,200 @@ public class Memory {
         value = value & 0xFF;
         address = address & 0xFFFF;
 
-        if (address == 0xFFE1) {
-            //System.out.printf("%04X: Writing %02X to FFE1\n", cpu.getCurrentOpcodeObject().getFetchedAt(), value);
+        if (writeTap != null) writeTap.record(address, value);
+
+        int page = address >>> PAGE_SHIFT;
+        byte[] data = writePages[page];
+        if (data != null) {
+            data[writeOffsets[page] + address] = (byte) value;
+            onStore(address, value);
+        } else {
+            writeHandlers[page].write(address, value);
         }
+    }
 
-        if (ppu != null && !ppu.isLcdEnabled()) {
-            vramBlocked = false;
+    /**
+     * Bookkeeping for a byte that's reached memory.
+     */
+    private void onStore(int address, int value) {
+        if (blockCache != null) blockCache.onWrite(address);
+        if ((address & 0xE000) == 0x8000) tileCache.onWrite(address);
+        else if ((address & 0xFF00) == 0xFE00) spriteIndex.invalidate();
+        if (saveFile != null && (address & 0xE000) == 0xA000 && writePages[address >>> PAGE_SHIFT] == mbc.getRam()) {
+            saveFile.markDirty(writeOffsets[address >>> PAGE_SHIFT] + address);
         }
+        if (logWrites) logWrite(address, value);
+    }
 
-        if (cpu.isTestMode()) {
-            writeByteUnrestricted(address, value);
-            return;
+    private void logWrite(int address, int value) {
+        if (cpu == null) writeLog.record(address, value, 0, 0);
+        else writeLog.record(address, value, cpu.getInstructionCycle(), cpu.getInstructionAt());
+    }
+
+    private void store(int address, int value) {
+        memory[address] = (byte) value;
+        onStore(address, value);
+    }
+
+    private void writeBlocked(int address, int value) {
+        if (address >= 0xFEA0) store(address, value);
+    }
+
+    /**
+     * @return Offset into the ROM that address in 0x0000-0x7FFF reads under the current banks
+     */
+    private int romOffset(int address) {
+        if (address < MBC.ROM_BANK_SIZE) return mappedLowRomOffset + address;
+        return mappedRomOffset + address - MBC.ROM_BANK_SIZE;
+    }
+
+    private int readMappedRom(int address) {
+        return cartridge.read(romOffset(address));
+    }
+
+    /**
+     * Pass a write to 0x0000-0x7FFF on to the MBC, then move whichever windows it switched to a different bank.
+     */
+    private void writeMbc(int address, int value) {
+        mbc.write(address, value);
+        if (mbc.getRomOffset() != mappedRomOffset) {
+            for (int page = ROM_BANK_PAGE; page < VRAM_PAGE; page++) mapPage(page);
+            if (blockCache != null) blockCache.onBankSwitch();
+        }
+        if (mbc.getLowRomOffset() != mappedLowRomOffset) {
+            for (int page = 0; page < ROM_BANK_PAGE; page++) {
+                mapPage(page);
+                if (blockCache != null) blockCache.invalidatePage(page);
+            }
+        }
+        if (mbc.getRamOffset() != mappedRamOffset) {
+            for (int page = CART_RAM_PAGE; page < CART_RAM_PAGE_END; page++) {
+                mapPage(page);
+                if (blockCache != null) blockCache.onWrite(page << PAGE_SHIFT); //Code run from the old bank
+            }
         }
+    }
 
-        //If MBC = 0?
-        if (address == 0x2000) {
-            return;
+    private void writeIo(int address, int value) {
+        if (address <= MemoryMap.IO_END) {
+            cpuIoWrites[address - MemoryMap.IO_START].write(address, value);
+        } else if (address == MemoryMap.IE && interrupt != null) {
+            interrupt.write(address, value);
+            onStore(address, value);
+        } else {
+            store(address, value); //HRAM
         }
+    }
 
-        //Prohibit writes to ROM space.
-        //TODO: Implement MBC detection and bank switching here
-        if (address < 0x8000) {
+    private void writeIoUnrestricted(int address, int value) {
+        if (address <= MemoryMap.IO_END) {
+            ioWrites[address - MemoryMap.IO_START].write(address, value);
             return;
         }
+        if (address == MemoryMap.IE && interrupt != null) interrupt.write(address, value);
+        store(address, value);
+    }
 
-        //Prohibited usage
-        if (address >= map.get("OAM_START") && address <= map.get("OAM_END")) {
-            if (oamBlocked) return;
+    /**
+     * Hand an IO register (0xFF00-0xFF7F) to the component that holds its value. Every access goes through the
+     * handlers, unrestricted ones and test mode included. Null leaves that direction as it was.
+     */
+    public void registerIo(int address, ReadHandler read, WriteHandler write) {
+        int index = address - MemoryMap.IO_START;
+        if (read != null) {
+            ioReads[index] = read;
+            cpuIoReads[index] = read;
         }
-
-        if (address >= map.get("VRAM_START") && address <= map.get("VRAM_END")) {
-            if (vramBlocked) return;
+        if (write != null) {
+            WriteHandler logged = (a, v) -> {
+                write.write(a, v);
+                onStore(a, v);
+            };
+            ioWrites[index] = logged;
+            cpuIoWrites[index] = logged;
         }
+    }
+
+    /**
+     * Handlers for an IO register whose value lives in memory, but that behaves differently when the CPU accesses it
+     * through {@link #readByte(int)} and {@link #writeByte(int, int)}. Unrestricted accesses and test mode see the
+     * stored value, so a write handler stores with {@link #writeByteUnrestricted(int, int)}. Null leaves that
+     * direction as it was.
+     */
+    public void registerCpuIo(int address, ReadHandler read, WriteHandler write) {
+        int index = address - MemoryMap.IO_START;
+        if (read != null) cpuIoReads[index] = read;
+        if (write != null) cpuIoWrites[index] = write;
+    }
 
-        if (address == 0xFF50) {
-            bootRomEnabled = false;
+    private void initIo() {
+        ReadHandler ram = address -> memory[address] & 0xFF;
+        WriteHandler ramWrite = this::store;
+        Arrays.fill(ioReads, ram);
+        Arrays.fill(cpuIoReads, ram);
+        Arrays.fill(ioWrites, ramWrite);
+        Arrays.fill(cpuIoWrites, ramWrite);
+        registerCpuIo(MemoryMap.SC, null, this::writeSerialControl);
+        registerCpuIo(MemoryMap.DMA, null, (address, value) -> {
+            store(address, value);
+            startDma(value);
+        });
+        registerCpuIo(MemoryMap.BOOT, null, (address, value) -> {
+            setBootRomEnabled(false);
+            if (blockCache != null) blockCache.invalidatePage(0x00); //Cart code shows up under the boot ROM
             //System.out.println("Boot rom disabled.");
-            return;
-        }
-        // Reset DIV if writing to DIV register
-        else if (address == map.get("DIV")) {
-            value = 0x00;
-        }
+        });
+    }
 
-        if (address == map.get("SB")) {
-            memory[address] = (byte) value;
-            lastWrite = new LastWrite(address, value, cpu.getCurrentOpcodeObject().getFetchedAt());
-            return;
+    private void writeSerialControl(int address, int value) {
+        store(address, value);
+        if ((value & 0x80) != 0) {
+            int data = memory[MemoryMap.SB] & 0xFF;
+            System.out.print((char) data);
+            //Nothing is plugged into the link port, so the transfer shifts in 0xFF and finishes on its own
+            cpu.getScheduler().scheduleIn(Scheduler.SERIAL, SERIAL_TRANSFER_CYCLES);
         }
+    }
 
-        if (address == map.get("SC")) {
-            memory[address] = (byte) value;
-            if ((value & 0x80) != 0) {
-                int data = memory[map.get("SB")] & 0xFF;
-                System.out.print((char) data);
-                memory[0xFF01] = (byte) 0xFF;
-                memory[address] = (byte) (value & 0x7F);
-                int ifAddr = map.get("IF");
-                cpu.getInterrupt().setInterrupt(Interrupt.INTERRUPT.SERIAL);
-            }
-            lastWrite = new LastWrite(address, value, cpu.getCurrentOpcodeObject().getFetchedAt());
-            return;
-        }
+    /**
+     * Finish a serial transfer started by writing SC. Run by the scheduler.
+     */
+    public void completeSerialTransfer() {
+        memory[MemoryMap.SB] = (byte) 0xFF;
+        memory[MemoryMap.SC] = (byte) (memory[MemoryMap.SC] & 0x7F);
+        cpu.getInterrupt().setInterrupt(Interrupt.INTERRUPT.SERIAL);
+    }
 
-        if (address == map.get("JOYP")) {
-            value = value & 0xF0;
+    /**
+     * Copy 160 bytes from source << 8 into OAM. The copy happens up front, the CPU just can't read OAM until the
+     * scheduler calls {@link #completeDma()}.
+     */
+    private void startDma(int source) {
+        int from = source << 8;
+        if (from >= 0xE000) from -= 0x2000; //Sources past WRAM read the echo
+        int page = from >>> PAGE_SHIFT;
+        if (page < VRAM_PAGE || (page >= CART_RAM_PAGE && page < CART_RAM_PAGE_END)) {
+            //ROM and cart RAM come from wherever their banks are mapped
+            for (int i = 0; i < 0xA0; i++) memory[0xFE00 + i] = (byte) readByte(from + i);
+        } else {
+            System.arraycopy(memory, from, memory, 0xFE00, 0xA0);
         }
+        spriteIndex.invalidate();
+        dmaActive = true;
+        mapPage(OAM_PAGE);
+        cpu.getScheduler().scheduleIn(Scheduler.DMA, DMA_CYCLES);
+    }
 
-
-        // Normal memory write for all other addresses
-        if (cpu != null) lastWrite = new LastWrite(address, value, cpu.getCurrentOpcodeObject().getFetchedAt());
-        memory[address] = (byte) value;
+    public void completeDma() {
+        dmaActive = false;
+        mapPage(OAM_PAGE);
     }
 
     public void writeByteUnrestricted(int address, int value) {
         value = value & 0xFF;
         address = address & 0xFFFF;
-        memory[address] = (byte) value;
-        if (cpu != null && cpu.getCurrentOpcodeObject() != null)
-            lastWrite = new LastWrite(address, value, cpu.getCurrentOpcodeObject().getFetchedAt());
+        if (address >= 0xFF00) writeIoUnrestricted(address, value);
+        else store(address, value);
     }
 
 
@@ -191,6 +390,22 @@ public class Memory {
         int valueLow = value & 0xFF;
         int valueHigh = (value >> 8) & 0xFF;
 
+        int page = address >>> PAGE_SHIFT;
+        byte[] data = writePages[page];
+        if (data != null && (address & 0xFF) != 0xFF) { //Both bytes on one plain page
+            if (writeTap != null) {
+                writeTap.record(address, valueLow);
+                writeTap.record(address + 1, valueHigh);
+            }
+            int index = writeOffsets[page] + address;
+            data[index] = (byte) valueLow;
+            data[index + 1] = (byte) valueHigh;
+            if (logWrites) logWrite(address, valueLow);
+            if ((address & 0xE000) == 0x8000) tileCache.onWrite(address); //The low byte can end the row before
+            onStore(address + 1, valueHigh); //Same page, so one call covers both bytes
+            return;
+        }
+
         writeByte(address, valueLow);
         int nextAddress = (address + 1) & 0xFFFF;
         writeByte(nextAddress, valueHigh);
@@ -202,11 +417,116 @@ public class Memory {
      */
     public int readWord(int address) {
         address &= 0xFFFF;
+        int page = address >>> PAGE_SHIFT;
+        byte[] data = readPages[page];
+        if (data != null && (address & 0xFF) != 0xFF) {
+            int index = readOffsets[page] + address;
+            return (data[index] & 0xFF) | ((data[index + 1] & 0xFF) << 8);
+        }
         int lowByte = readByte(address & 0xFFFF);
         int highByte = readByte((address + 1) & 0xFFFF);
         return ((highByte << 8) | lowByte) & 0xFFFF;
     }
 
+    /**
+     * Point every page at its backing array or handler for the current boot ROM, PPU and test mode state.
+     */
+    private void mapPages() {
+        for (int page = 0; page < PAGE_COUNT; page++) {
+            mapPage(page);
+        }
+    }
+
+    private void mapPage(int page) {
+        int address = page << PAGE_SHIFT;
+        if (testMode) {
+            //Flat RAM, only the registers that don't live in the array are special
+            if (page == IO_PAGE) {
+                mapReadHandler(page, ioReadUnrestricted);
+                mapWriteHandler(page, ioWriteUnrestricted);
+            } else {
+                mapRead(page, memory, address);
+                mapWrite(page, memory, address);
+            }
+            return;
+        }
+
+        if (page < VRAM_PAGE) {
+            if (page == 0 && bootRomEnabled) {
+                mapRead(page, bootRom, 0);
+            } else if (mbc == null) {
+                mapRead(page, memory, address);
+            } else {
+                if (page < ROM_BANK_PAGE) mappedLowRomOffset = mbc.getLowRomOffset();
+                else mappedRomOffset = mbc.getRomOffset();
+                if (cartridge.isMapped()) mapReadHandler(page, mappedRomRead);
+                else mapRead(page, cartridge.getCartData(), romOffset(address));
+            }
+            mapWriteHandler(page, mbc == null ? romWrite : mbcWrite);
+        } else if (page >= CART_RAM_PAGE && page < CART_RAM_PAGE_END && mbc != null) {
+            mappedRamOffset = mbc.getRamOffset();
+            if (mappedRamOffset == MBC.NO_RAM_MAPPING) {
+                mapReadHandler(page, cartRamRead);
+                mapWriteHandler(page, cartRamWrite);
+            } else {
+                byte[] ram = mbc.getRam();
+                int start = (mappedRamOffset + address - 0xA000) % ram.length; //Mirrors RAM smaller than 8 KiB
+                mapRead(page, ram, start);
+                mapWrite(page, ram, start);
+            }
+        } else if (page < CART_RAM_PAGE) {
+            if (vramBlocked) {
+                mapReadHandler(page, blockedRead);
+                mapWriteHandler(page, blockedWrite);
+            } else {
+                mapRead(page, memory, address);
+                mapWrite(page, memory, address);
+            }
+        } else if (page == OAM_PAGE) {
+            if (oamBlocked || dmaActive) mapReadHandler(page, blockedRead);
+            else mapRead(page, memory, address);
+            if (oamBlocked) mapWriteHandler(page, blockedWrite);
+            else mapWrite(page, memory, address);
+        } else if (page == IO_PAGE) {
+            mapReadHandler(page, ioRead);
+            mapWriteHandler(page, ioWrite);
+        } else {
+            mapRead(page, memory, address);
+            mapWrite(page, memory, address);
+        }
+    }
+
+    /**
+     * Map page to data, with the page's first byte at data[start].
+     */
+    private void mapRead(int page, byte[] data, int start) {
+        readPages[page] = data;
+        readOffsets[page] = start - (page << PAGE_SHIFT);
+        readHandlers[page] = null;
+    }
+
+    private void mapWrite(int page, byte[] data, int start) {
+        writePages[page] = data;
+        writeOffsets[page] = start - (page << PAGE_SHIFT);
+        writeHandlers[page] = null;
+    }
+
+    private void mapReadHandler(int page, ReadHandler handler) {
+        readPages[page] = null;
+        readHandlers[page] = handler;
+    }
+
+    private void mapWriteHandler(int page, WriteHandler handler) {
+        writePages[page] = null;
+        writeHandlers[page] = handler;
+    }
+
+    private void mapVram() {
+        for (int page = VRAM_PAGE; page < CART_RAM_PAGE; page++) {
+            mapPage(page);
+        }
+    }
+
     /**
      * Loads DMG_BOOT.bin to memory
      */
@@ -224,8 +544,34 @@ public class Memory {
         }
     }
 
+    private void openSaveFile() {
+        if (!cartridge.hasBattery() || mbc.getRam().length + mbc.getClockSaveSize() == 0) return;
+        try {
+            saveFile = SaveFile.open(cartridge.getSavePath(), mbc, SaveFile.DEFAULT_FLUSH_INTERVAL_MS);
+        } catch (IOException e) {
+            System.out.println("Couldn't open save file, cartridge RAM won't be kept: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write out any unsaved cartridge RAM and stop saving it. Call on the emulation thread, or once it has stopped.
+     */
+    public void closeSaveFile() {
+        if (saveFile == null) return;
+        mbc.publishClock();
+        saveFile.close();
+    }
+
+    /**
+     * @return Battery-backed RAM's save file, or null if the cart has none
+     */
+    public SaveFile getSaveFile() {
+        return saveFile;
+    }
+
     private void loadCart(Cartridge cartridge) {
         byte[] cartData = cartridge.getCartData();
+        if (cartData == null) return; //Mapped, ROM reads go straight to the mapping
 
         System.arraycopy(cartData, 0x0000, memory, 0x0000, 0x8000);
 
@@ -245,6 +591,50 @@ public class Memory {
 
     public void setBootRomEnabled(boolean bootRomEnabled) {
         this.bootRomEnabled = bootRomEnabled;
+        mapPage(0x00);
+    }
+
+    /**
+     * @return ROM bank mapped into 0x4000-0x7FFF
+     */
+    public int getRomBank() {
+        return mbc != null ? mbc.getRomBank() : 1;
+    }
+
+    /**
+     * @return ROM bank mapped into 0x0000-0x3FFF, which only MBC1 in mode 1 moves off bank 0
+     */
+    public int getLowRomBank() {
+        return mbc != null ? mbc.getLowRomBank() : 0;
+    }
+
+    /**
+     * @return The cartridge's bank controller, or null if no cartridge is loaded
+     */
+    public MBC getMbc() {
+        return mbc;
+    }
+
+    public Cartridge getCartridge() {
+        return cartridge;
+    }
+
+    /**
+     * @return Decoded copy of the tile data in VRAM, kept up to date as it's written
+     */
+    public TileCache getTileCache() {
+        return tileCache;
+    }
+
+    /**
+     * @return Sprites sorted out by scanline, marked stale whenever OAM changes
+     */
+    public SpriteIndex getSpriteIndex() {
+        return spriteIndex;
+    }
+
+    public void setBlockCache(BlockCache blockCache) {
+        this.blockCache = blockCache;
     }
 
     public Map<String, Integer> getMemoryMap() {
@@ -255,12 +645,18 @@ public class Memory {
         this.ppu = ppu;
     }
 
+    public void setInterruptController(Interrupt interrupt) {
+        this.interrupt = interrupt;
+    }
+
     public boolean isOamBlocked() {
         return oamBlocked;
     }
 
     public void setOamBlocked(boolean oamBlocked) {
+        if (this.oamBlocked == oamBlocked) return;
         this.oamBlocked = oamBlocked;
+        mapPage(OAM_PAGE);
     }
 
     public boolean isVramBlocked() {
@@ -268,58 +664,48 @@ public class Memory {
     }
 
     public void setVramBlocked(boolean vramBlocked) {
+        if (this.vramBlocked == vramBlocked) return;
         this.vramBlocked = vramBlocked;
+        mapVram();
     }
 
-    public LastWrite getLastWrite() {
-        return lastWrite;
+    public WriteLog getWriteLog() {
+        return writeLog;
     }
 
-    public void setLastWrite(LastWrite lastWrite) {
-        this.lastWrite = lastWrite;
+    /**
+     * @param writeLog Log to record every write that reaches memory into, or null to stop logging
+     */
+    public void setWriteLog(WriteLog writeLog) {
+        this.writeLog = writeLog;
+        this.logWrites = writeLog != null;
     }
 
-    public CPU getCpu() {
-        return cpu;
+    /**
+     * @param writeTap Journal that records every write issued through {@link #writeByte(int, int)}, or null
+     */
+    public void setWriteTap(WriteJournal writeTap) {
+        this.writeTap = writeTap;
     }
 
-    public void setCpu(CPU cpu) {
-        this.cpu = cpu;
+    public boolean isTestMode() {
+        return testMode;
     }
 
-    public static class LastWrite {
-        private int address;
-        private int value;
-        private int cycleMarker;
-
-        public LastWrite(int address, int value, int cycleMarker) {
-            this.address = address;
-            this.value = value;
-            this.cycleMarker = cycleMarker;
-        }
-
-        public int getAddress() {
-            return address;
-        }
-
-        public void setAddress(int address) {
-            this.address = address;
-        }
-
-        public int getValue() {
-            return value;
-        }
-
-        public void setValue(int value) {
-            this.value = value;
-        }
+    /**
+     * Test mode turns the whole address space into plain RAM, with no ROM, boot ROM or PPU locking. Set through
+     * {@link CPU#setTestMode(boolean)}.
+     */
+    public void setTestMode(boolean testMode) {
+        this.testMode = testMode;
+        mapPages();
+    }
 
-        public int getCycleMarker() {
-            return cycleMarker;
-        }
+    public CPU getCpu() {
+        return cpu;
+    }
 
-        public void setCycleMarker(int cycleMarker) {
-            this.cycleMarker = cycleMarker;
-        }
+    public void setCpu(CPU cpu) {
+        this.cpu = cpu;
     }
 }
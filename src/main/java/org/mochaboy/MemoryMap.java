@@ -3,7 +3,36 @@ package org.mochaboy;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Names for the hardware registers and regions. The constants are for code that touches a register on every access,
+ * the map is for looking them up by name.
+ */
 public class MemoryMap {
+    public static final int JOYP = 0xFF00;
+    public static final int SB = 0xFF01;
+    public static final int SC = 0xFF02;
+    public static final int DIV = 0xFF04;
+    public static final int TIMA = 0xFF05;
+    public static final int TMA = 0xFF06;
+    public static final int TAC = 0xFF07;
+    public static final int IF = 0xFF0F;
+    public static final int LCDC = 0xFF40;
+    public static final int STAT = 0xFF41;
+    public static final int SCY = 0xFF42;
+    public static final int SCX = 0xFF43;
+    public static final int LY = 0xFF44;
+    public static final int LYC = 0xFF45;
+    public static final int DMA = 0xFF46;
+    public static final int BGP = 0xFF47;
+    public static final int OBP0 = 0xFF48;
+    public static final int OBP1 = 0xFF49;
+    public static final int WY = 0xFF4A;
+    public static final int WX = 0xFF4B;
+    public static final int BOOT = 0xFF50;
+    public static final int IE = 0xFFFF;
+    public static final int IO_START = 0xFF00;
+    public static final int IO_END = 0xFF7F;
+
     private final Map<String, Integer> map;
 
     public MemoryMap() {
@@ -12,14 +41,14 @@ public class MemoryMap {
     }
 
     private void mapMemory() {
-        map.put("JOYP", 0xFF00);
-        map.put("SB", 0xFF01);
-        map.put("SC", 0xFF02);
-        map.put("DIV", 0xFF04);
-        map.put("TIMA", 0xFF05);
-        map.put("TMA", 0xFF06);
-        map.put("TAC", 0xFF07);
-        map.put("IF", 0xFF0F);
+        map.put("JOYP", JOYP);
+        map.put("SB", SB);
+        map.put("SC", SC);
+        map.put("DIV", DIV);
+        map.put("TIMA", TIMA);
+        map.put("TMA", TMA);
+        map.put("TAC", TAC);
+        map.put("IF", IF);
 
         map.put("NR10", 0xFF10);
         map.put("NR11", 0xFF11);
@@ -39,18 +68,19 @@ public class MemoryMap {
         map.put("NR51", 0xFF25);
         map.put("NR52", 0xFF26);
 
-        map.put("LCDC", 0xFF40);
-        map.put("STAT", 0xFF41);
-        map.put("SCY", 0xFF42);
-        map.put("SCX", 0xFF43);
-        map.put("LY", 0xFF44);
-        map.put("LYC", 0xFF45);
-        map.put("BGP", 0xFF47);
-        map.put("OBP0", 0xFF48);
-        map.put("OBP1", 0xFF49);
-        map.put("WY", 0xFF4A);
-        map.put("WX", 0xFF4B);
-        map.put("IE", 0xFFFF);
+        map.put("LCDC", LCDC);
+        map.put("STAT", STAT);
+        map.put("SCY", SCY);
+        map.put("SCX", SCX);
+        map.put("LY", LY);
+        map.put("LYC", LYC);
+        map.put("DMA", DMA);
+        map.put("BGP", BGP);
+        map.put("OBP0", OBP0);
+        map.put("OBP1", OBP1);
+        map.put("WY", WY);
+        map.put("WX", WX);
+        map.put("IE", IE);
 
         map.put("VRAM_START", 0x8000);
         map.put("VRAM_END", 0x9FFF);
@@ -3,6 +3,7 @@ package org.mochaboy;
 import javafx.application.Application;
 import javafx.stage.Stage;
 import org.mochaboy.gui.fx.GuiFxEmulator;
+import org.mochaboy.mbc.MBC3;
 
 import java.io.IOException;
 import java.nio.file.Path;
@@ -34,8 +35,9 @@ public class MochaBoy extends Application {
 
         try {
 
-            Cartridge cartridge = new Cartridge(path);
+            Cartridge cartridge = Cartridge.open(path); //-Dmochaboy.mappedRom=true maps the ROM instead
             Memory memory = new Memory(cartridge);
+            if (memory.getMbc() instanceof MBC3 mbc3) mbc3.catchUpToWallClock(); //Time passed while closed
             FrameBuffer fb = gui.getDisplay().getFrameBuffer();
             PPU ppu = new PPU(memory, fb, gui.getDisplay());
             CPU cpu = new CPU(ppu, memory);
@@ -4,7 +4,7 @@ import javafx.application.Platform;
 import org.mochaboy.gui.fx.GuiFxDisplay;
 import org.mochaboy.registers.Interrupt;
 
-import java.util.Map;
+import java.util.Arrays;
 
 public class PPU {
     private PPU_MODE ppuMode;
@@ -13,7 +13,6 @@ public class PPU {
     private boolean statInterruptLine;
     private boolean lastStatInterruptLine;
     private boolean lycEqualsLy;
-    private final Map<String, Integer> memoryMap;
     private static final int SCANLINE_CYCLES = 456; //cycles per scanline
 
     private final Memory memory;
@@ -22,14 +21,21 @@ public class PPU {
     private Interrupt interrupt;
 
     private CPU cpu;
+    private Scheduler scheduler;
+    private long lastSync; //Scheduler cycle the PPU was last stepped to
+    private final byte[] linePixels = new byte[160]; //Frame buffer pixels of the line being drawn
+    private final byte[] paletteLut = new byte[12]; //Frame buffer pixel by palette * 4 + color index
+    private int lutPalettes = -1; //OBP1 << 16 | OBP0 << 8 | BGP that paletteLut was built for
+    private final byte[] bgIndices = new byte[160]; //Background/window color indices of the line being drawn
+    private final boolean[] spriteDrawn = new boolean[160]; //Pixels of the line a sprite has already claimed
 
     public PPU(Memory memory, FrameBuffer frameBuffer, GuiFxDisplay display) {
         this.memory = memory;
         this.frameBuffer = frameBuffer;
         this.display = display;
         this.cycleCounter = 0;
-        memoryMap = memory.getMemoryMap();
         init();
+        memory.registerCpuIo(MemoryMap.LCDC, null, this::writeLcdc);
     }
 
     public enum PPU_MODE {
@@ -43,26 +49,25 @@ public class PPU {
         //Init values for PPU at boot time
         setPpuMode(PPU_MODE.HBLANK);
         lcdEnabled = false;
-        Map<String, Integer> map = memory.getMemoryMap();
-        memory.writeByteUnrestricted(map.get("LY"), 0x00);
-        memory.writeByteUnrestricted(map.get("LCDC"), 0x0);
-        memory.writeByteUnrestricted(map.get("BGP"), 0xFC); //bg palette
-        memory.writeByteUnrestricted(map.get("OBP0"), 0xFF); //Sprite palette 0
-        memory.writeByteUnrestricted(map.get("OBP1"), 0xFF); //Sprite palette 1
+        memory.writeByteUnrestricted(MemoryMap.LY, 0x00);
+        memory.writeByteUnrestricted(MemoryMap.LCDC, 0x0);
+        memory.writeByteUnrestricted(MemoryMap.BGP, 0xFC); //bg palette
+        memory.writeByteUnrestricted(MemoryMap.OBP0, 0xFF); //Sprite palette 0
+        memory.writeByteUnrestricted(MemoryMap.OBP1, 0xFF); //Sprite palette 1
     }
 
     public void step(int cycles) {
 
-        int lcdc = memory.readByteUnrestricted(memoryMap.get("LCDC"));
+        int lcdc = memory.readByteUnrestricted(MemoryMap.LCDC);
         lcdEnabled = isLcdEnabled();
         if (!isLcdEnabled()) {
             // LCD is off – hardware forces LY=0 and STAT mode=HBlank
-            memory.writeByteUnrestricted(memoryMap.get("LY"), 0);
+            memory.writeByteUnrestricted(MemoryMap.LY, 0);
             cycleCounter = 0;
             setPpuMode(PPU_MODE.HBLANK);
             return;
         }
-        int lyAddress = memory.getMemoryMap().get("LY");
+        int lyAddress = MemoryMap.LY;
         int ly = memory.readByteUnrestricted(lyAddress);
 
         cycleCounter += cycles;
@@ -101,61 +106,73 @@ public class PPU {
         }
     }
 
+    /**
+     * Cycles until step() would next change mode or LY, which is also the soonest the PPU can raise an interrupt.
+     * Stepping by anything up to this amount in one call does the same as stepping one cycle at a time.
+     *
+     * @return Distance to the next event, at least 1, or Integer.MAX_VALUE while the LCD is off
+     */
+    public int cyclesUntilNextEvent() {
+        if (!isLcdEnabled()) return Integer.MAX_VALUE;
+        int ly = memory.readByteUnrestricted(MemoryMap.LY);
+        PPU_MODE expected;
+        int boundary;
+        if (ly >= 144) {
+            expected = PPU_MODE.VBLANK;
+            boundary = SCANLINE_CYCLES;
+        } else if (cycleCounter < 80) {
+            expected = PPU_MODE.OAM_SCAN;
+            boundary = 80;
+        } else if (cycleCounter < 252) {
+            expected = PPU_MODE.DRAWING;
+            boundary = 252;
+        } else {
+            expected = PPU_MODE.HBLANK;
+            boundary = SCANLINE_CYCLES;
+        }
+        //A mode change is already due on the next step
+        if (ppuMode != expected || !lcdEnabled) return 1;
+        return Math.max(1, boundary - cycleCounter);
+    }
+
     public void drawScanline() {
-        int lcdc = memory.readByteUnrestricted(memoryMap.get("LCDC"));
-        int scx = memory.readByteUnrestricted(memoryMap.get("SCX"));
-        int scy = memory.readByteUnrestricted(memoryMap.get("SCY"));
-        int wy = memory.readByteUnrestricted(memoryMap.get("WY"));
-        int wx = memory.readByteUnrestricted(memoryMap.get("WX")) - 7;
-        int ly = memory.readByteUnrestricted(memoryMap.get("LY"));
-        int bgp = memory.readByteUnrestricted(memoryMap.get("BGP"));
-        int obp0 = memory.readByteUnrestricted(memoryMap.get("OBP0"));
-        int obp1 = memory.readByteUnrestricted(memoryMap.get("OBP1"));
-
-        int[] lineColors = new int[160];
+        int lcdc = memory.readByteUnrestricted(MemoryMap.LCDC);
+        int scx = memory.readByteUnrestricted(MemoryMap.SCX);
+        int scy = memory.readByteUnrestricted(MemoryMap.SCY);
+        int wy = memory.readByteUnrestricted(MemoryMap.WY);
+        int wx = memory.readByteUnrestricted(MemoryMap.WX) - 7;
+        int ly = memory.readByteUnrestricted(MemoryMap.LY);
+        int bgp = memory.readByteUnrestricted(MemoryMap.BGP);
+        int obp0 = memory.readByteUnrestricted(MemoryMap.OBP0);
+        int obp1 = memory.readByteUnrestricted(MemoryMap.OBP1);
+
+        byte[] linePixels = this.linePixels;
+        updatePaletteLut(obp1 << 16 | obp0 << 8 | bgp);
 
         int bgTileMapBase = ((lcdc & 0x08) != 0) ? 0x9C00 : 0x9800;
         int winTileMapBase = ((lcdc & 0x40) != 0) ? 0x9c00 : 0x9800;
         int tileDataBase = ((lcdc & 0x10) != 0) ? 0x8000 : 0x9000;
+        byte[] tilePixels = memory.getTileCache().getPixels();
 
-        for (int pixel = 0; pixel < 160; pixel++) {
-            boolean window = ((lcdc & 0x20) != 0) && ly >= wy && pixel >= wx;
-            int tileMapBase = window ? winTileMapBase : bgTileMapBase;
-            int xOffset = window ? (pixel - wx) & 0xFF : (scx + pixel) & 0xFF;
-            int yOffset = window ? (ly - wy) & 0xFF : (scy + ly) & 0xFF;
-
-            int tileRow = (yOffset >> 3) & 31;
-            int tileCol = (xOffset >> 3) & 31;
-            int tileAddress = tileMapBase + tileRow * 32 + tileCol;
-            int tileNum = memory.readByteUnrestricted(tileAddress);
-            if (tileDataBase == 0x9000) tileNum = (byte) tileNum;
-            int tileDataAddress = tileDataBase + tileNum * 16;
-            tileDataAddress = 0x8000 | ((tileDataAddress - 0x8000) & 0x1FFF);
-
-            int tileY = yOffset % 8;
-            int tileData1 = memory.readByteUnrestricted((tileDataAddress + (tileY * 2)) & 0xFFFF);
-            int tileData2 = memory.readByteUnrestricted((tileDataAddress + (tileY * 2) + 1) & 0xFFFF);
-            int tileX = xOffset % 8;
-
-            int colorBitLow = (tileData1 >> (7 - tileX)) & 1;
-            int colorBitHigh = (tileData2 >> (7 - tileX)) & 1;
-            int colorIndex = (colorBitHigh << 1) | colorBitLow;
-
-            int color = (bgp >> (colorIndex * 2)) & 0x03;
-            lineColors[pixel] = color;
-        }
+        //The background runs up to WX, the window takes over from there to the end of the line
+        int windowStart = ((lcdc & 0x20) != 0 && ly >= wy) ? Math.min(Math.max(wx, 0), 160) : 160;
+        drawTiles(linePixels, 0, windowStart, bgTileMapBase, tileDataBase, scx, (scy + ly) & 0xFF);
+        drawTiles(linePixels, windowStart, 160, winTileMapBase, tileDataBase, (windowStart - wx) & 0xFF,
+                (ly - wy) & 0xFF);
 
         int spriteHeight = ((lcdc & 0x04) != 0) ? 16 : 8;
-        for (int i = 0; i < 40; i++) {
-            int oamAddr = 0xFE00 + i * 4;
-            int spriteX = memory.readByteUnrestricted(oamAddr) - 16;
-            int spriteY = memory.readByteUnrestricted(oamAddr + 1) - 8;
-            int tile = memory.readByteUnrestricted(oamAddr + 2);
-            int attr = memory.readByteUnrestricted(oamAddr + 3);
-
-            if (ly < spriteY || ly >= spriteY + spriteHeight) continue;
-
-            int line = ly - spriteY;
+        SpriteIndex sprites = memory.getSpriteIndex();
+        sprites.update(spriteHeight);
+        int spriteCount = sprites.count(ly);
+        if (spriteCount > 0) Arrays.fill(spriteDrawn, false);
+        //Highest priority first. A sprite pixel hides the ones under it even if the background then hides it.
+        for (int n = 0; n < spriteCount; n++) {
+            int sprite = sprites.sprite(ly, n);
+            int spriteX = sprites.getX(sprite);
+            int tile = sprites.getTile(sprite);
+            int attr = sprites.getAttributes(sprite);
+
+            int line = ly - sprites.getY(sprite);
             if ((attr & 0x40) != 0) line = spriteHeight - 1 - line;
             if (spriteHeight == 16) {
                 tile &= 0xFE;
@@ -165,45 +182,71 @@ public class PPU {
                 }
             }
 
-            int tileDataAddress = 0x8000 + tile * 16;
-            int tileData1 = memory.readByteUnrestricted(tileDataAddress + line * 2);
-            int tileData2 = memory.readByteUnrestricted(tileDataAddress + line * 2 + 1);
-
+            int rowIndex = TileCache.rowIndex(tile, line);
+            int lutBase = ((attr & 0x10) != 0 ? FrameBuffer.PALETTE_OBP1 : FrameBuffer.PALETTE_OBP0) * 4;
+            boolean behindBg = (attr & 0x80) != 0;
             for (int x = 0; x < 8; x++) {
                 int pixelX = spriteX + ((attr & 0x20) != 0 ? (7 - x) : x);
-                if (pixelX < 0 || pixelX >= 160) continue;
+                if (pixelX < 0 || pixelX >= 160 || spriteDrawn[pixelX]) continue;
 
-                int low = (tileData1 >> (7 - x)) & 1;
-                int high = (tileData2 >> (7 - x)) & 1;
-                int index = (high << 1) | low;
+                int index = tilePixels[rowIndex + x];
                 if (index == 0) continue;
 
-                int palette = (attr & 0x10) != 0 ? obp1 : obp0;
-                int color = (palette >> (index * 2)) & 0x03;
-                lineColors[pixelX] = color;
+                spriteDrawn[pixelX] = true;
+                if (behindBg && bgIndices[pixelX] != 0) continue;
+                linePixels[pixelX] = paletteLut[lutBase + index];
             }
         }
 
-        for (int pixel = 0; pixel < 160; pixel++) {
-            int actualColor = getColor(lineColors[pixel]);
-            frameBuffer.setPixel(pixel, ly, actualColor);
-        }
+        frameBuffer.setLine(ly, linePixels);
 
     }
 
-    private int getColor(int colorIndex) {
-        return switch (colorIndex) {
-            case 0 -> 0xFFFFFFFF; // White
-            case 1 -> 0xFFC0C0C0; // Light Gray
-            case 2 -> 0xFF606060; // Dark Gray
-            case 3 -> 0xFF000000; // Black
-            default -> 0xFF000000;
-        };
+    /**
+     * Draw pixels [from, to) of the line from one tile map, a tile at a time. Only the first and last tile can be
+     * partial.
+     *
+     * @param x Tile map x of the first pixel, 0-255
+     * @param y Tile map y of the line, 0-255
+     */
+    private void drawTiles(byte[] linePixels, int from, int to, int tileMapBase, int tileDataBase, int x, int y) {
+        byte[] tilePixels = memory.getTileCache().getPixels();
+        int mapRow = tileMapBase + (y >> 3) * 32;
+        int tileY = y & 7;
+        int pixel = from;
+        while (pixel < to) {
+            int tileX = x & 7;
+            int count = Math.min(8 - tileX, to - pixel);
+            int tileNum = memory.readByteUnrestricted(mapRow + (x >> 3));
+            if (tileDataBase == 0x9000) tileNum = (byte) tileNum;
+            int tileDataAddress = 0x8000 | ((tileDataBase + tileNum * 16 - 0x8000) & 0x1FFF);
+            int index = TileCache.rowIndex(TileCache.tileAt(tileDataAddress), tileY) + tileX;
+            System.arraycopy(tilePixels, index, bgIndices, pixel, count);
+            for (int i = pixel; i < pixel + count; i++) {
+                linePixels[i] = paletteLut[bgIndices[i]]; //BG entries come first
+            }
+            pixel += count;
+            x = (x + count) & 0xFF;
+        }
+    }
+
+    /**
+     * Rebuild the palette lookup table if BGP, OBP0 or OBP1 changed since the last line.
+     */
+    private void updatePaletteLut(int palettes) {
+        if (palettes == lutPalettes) return;
+        lutPalettes = palettes;
+        int[] registers = {palettes & 0xFF, (palettes >> 8) & 0xFF, (palettes >> 16) & 0xFF};
+        for (int palette = FrameBuffer.PALETTE_BG; palette <= FrameBuffer.PALETTE_OBP1; palette++) {
+            for (int index = 0; index < 4; index++) {
+                int shade = (registers[palette] >> (index * 2)) & 0x03;
+                paletteLut[palette * 4 + index] = FrameBuffer.pixel(palette, shade);
+            }
+        }
     }
 
     public int incrementLY() {
-        Map<String, Integer> map = memory.getMemoryMap();
-        int LYAddress = map.get("LY");
+        int LYAddress = MemoryMap.LY;
         int LY = memory.readByteUnrestricted(LYAddress);
         //LY = (LY + 1) % 154;
         LY++;
@@ -268,6 +311,7 @@ public class PPU {
                 memory.setVramBlocked(false);
                 memory.setOamBlocked(false);
                 interrupt.setInterrupt(Interrupt.INTERRUPT.VBLANK);
+                frameBuffer.publish();
                 display.setFrameReady(true);
                 break;
             case OAM_SCAN:
@@ -283,8 +327,7 @@ public class PPU {
     }
 
     private void updateStatRegister() {
-        Map<String, Integer> map = memory.getMemoryMap();
-        int statAddress = map.get("STAT");
+        int statAddress = MemoryMap.STAT;
         int stat = memory.readByteUnrestricted(statAddress);
 
         //Keep bits 7-2, get bits 1-0 from ppuMode enum
@@ -303,7 +346,7 @@ public class PPU {
         lastStatInterruptLine = statInterruptLine;
         statInterruptLine = false;
 
-        int stat = memory.readByteUnrestricted(memoryMap.get("STAT"));
+        int stat = memory.readByteUnrestricted(MemoryMap.STAT);
 
         //Check interrupt sources
         if ((stat & 0x40) != 0 && lycEqualsLy) {
@@ -326,8 +369,8 @@ public class PPU {
     }
 
     private void checkLyCoincidence() {
-        int ly = memory.readByteUnrestricted(memoryMap.get("LY"));
-        int lyc = memory.readByteUnrestricted(memoryMap.get("LYC"));
+        int ly = memory.readByteUnrestricted(MemoryMap.LY);
+        int lyc = memory.readByteUnrestricted(MemoryMap.LYC);
         lycEqualsLy = (ly == lyc);
         updateStatRegister();
         checkStatInterrupts();
@@ -336,10 +379,46 @@ public class PPU {
     public void setCPU(CPU cpu) {
         this.cpu = cpu;
         interrupt = cpu.getInterrupt(); //This is stupid
+        scheduler = cpu.getScheduler();
+        scheduler.setHandler(Scheduler.PPU, deadline -> sync());
+        lastSync = scheduler.now();
+        scheduler.scheduleIn(Scheduler.PPU, 0);
+    }
+
+    /**
+     * Step up to the scheduler's current cycle and schedule the next mode or LY change. Events are scheduled right on
+     * those changes, so every sync crosses at most one and stepping in one go is the same as stepping every
+     * instruction.
+     */
+    private void sync() {
+        long now = scheduler.now();
+        step((int) (now - lastSync));
+        lastSync = now;
+        int next = cyclesUntilNextEvent();
+        if (next == Integer.MAX_VALUE) scheduler.cancel(Scheduler.PPU); //LCD off, woken up by an LCDC write
+        else scheduler.scheduleIn(Scheduler.PPU, next);
+    }
+
+    /**
+     * The CPU writing LCDC. The PPU catches up under the old value first, then checks again once the write lands.
+     */
+    private void writeLcdc(int address, int value) {
+        onLcdcWrite();
+        memory.writeByteUnrestricted(address, value);
+        if (!isLcdEnabled()) memory.setVramBlocked(false); //VRAM is always open with the LCD off
+    }
+
+    /**
+     * Called before LCDC is written. Catches up under the old value, then checks again once the write has landed.
+     */
+    private void onLcdcWrite() {
+        if (scheduler == null) return;
+        sync();
+        scheduler.scheduleIn(Scheduler.PPU, 0);
     }
 
     public boolean isLcdEnabled() {
-        int lcdc = memory.readByteUnrestricted(memoryMap.get("LCDC"));
+        int lcdc = memory.readByteUnrestricted(MemoryMap.LCDC);
         return ((lcdc >> 7) & 0x1) == 1;
     }
 }
\ No newline at end of file
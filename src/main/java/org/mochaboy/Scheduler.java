@@ -0,0 +1,131 @@
+package org.mochaboy;
+
+import java.util.Arrays;
+
+/**
+ * Central event scheduler, keyed on a cycle counter that only ever goes up. Each component that does something at a
+ * known time (the PPU changing mode, TIMA overflowing, a serial transfer or OAM DMA finishing) schedules its next
+ * event here, and the CPU only has to call {@link #advance(int)} after each step instead of polling every component.
+ * <p>
+ * There's a fixed slot per event holding its deadline, NEVER when it isn't scheduled. With this few events a scan of
+ * the slots beats keeping a heap in order, and the earliest deadline is cached so advance() is one compare when
+ * nothing is due. Nothing allocates once the handlers are registered. Events due on the same cycle run in slot order.
+ */
+public final class Scheduler {
+    public static final int TIMA = 0;
+    public static final int SERIAL = 1;
+    public static final int DMA = 2;
+    public static final int PPU = 3;
+    public static final int EVENT_COUNT = 4;
+
+    public static final long NEVER = Long.MAX_VALUE;
+
+    /**
+     * Called when an event comes due. The event is no longer scheduled by then, handlers reschedule it themselves.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        /**
+         * @param deadline The cycle the event was scheduled for. {@link #now()} can be a little past it, events only
+         *                 run between CPU steps.
+         */
+        void onEvent(long deadline);
+    }
+
+    private final Handler[] handlers = new Handler[EVENT_COUNT];
+    private final long[] deadlines = new long[EVENT_COUNT];
+    private long now;
+    private long next = NEVER; //Earliest deadline
+    private int nextEvent; //Event with the earliest deadline, only valid when next != NEVER
+
+    public Scheduler() {
+        Arrays.fill(deadlines, NEVER);
+    }
+
+    public void setHandler(int event, Handler handler) {
+        handlers[event] = handler;
+    }
+
+    /**
+     * @return Cycles since the scheduler was created
+     */
+    public long now() {
+        return now;
+    }
+
+    /**
+     * Schedule event at an absolute cycle, replacing any earlier deadline for it. A deadline that has already passed
+     * runs on the next {@link #advance(int)}.
+     */
+    public void schedule(int event, long deadline) {
+        deadlines[event] = deadline;
+        if (deadline < next || (deadline == next && event < nextEvent)) {
+            next = deadline;
+            nextEvent = event;
+        } else if (event == nextEvent) {
+            findNext(); //Pushed back the earliest event, something else may be first now
+        }
+    }
+
+    public void scheduleIn(int event, long cycles) {
+        schedule(event, now + cycles);
+    }
+
+    public void cancel(int event) {
+        deadlines[event] = NEVER;
+        if (event == nextEvent) findNext();
+    }
+
+    public boolean isScheduled(int event) {
+        return deadlines[event] != NEVER;
+    }
+
+    /**
+     * @return The cycle event is scheduled for, or NEVER
+     */
+    public long deadline(int event) {
+        return deadlines[event];
+    }
+
+    /**
+     * @return Cycle of the earliest pending event, or NEVER
+     */
+    public long nextDeadline() {
+        return next;
+    }
+
+    /**
+     * @return Cycles until the earliest pending event, 0 if one is already due, or Long.MAX_VALUE if none is pending
+     */
+    public long cyclesUntilNextEvent() {
+        return next == NEVER ? Long.MAX_VALUE : Math.max(0, next - now);
+    }
+
+    /**
+     * Move time forward and run every event that's come due, in deadline order. Events a handler schedules at or
+     * before the new time run in the same call.
+     */
+    public void advance(int cycles) {
+        now += cycles;
+        while (next <= now) {
+            int event = nextEvent;
+            long deadline = next;
+            deadlines[event] = NEVER;
+            findNext();
+            handlers[event].onEvent(deadline);
+        }
+    }
+
+    private void findNext() {
+        long earliest = NEVER;
+        int first = 0;
+        for (int event = 0; event < EVENT_COUNT; event++) {
+            if (deadlines[event] < earliest) {
+                earliest = deadlines[event];
+                first = event;
+            }
+        }
+        next = earliest;
+        nextEvent = first;
+    }
+}
@@ -0,0 +1,121 @@
+package org.mochaboy;
+
+import java.util.Arrays;
+
+/**
+ * OAM sorted out by scanline, so drawing a line only looks at the sprites on it.
+ * <p>
+ * Like the hardware's OAM scan, each line gets the first 10 sprites in OAM order whose rows cover it, including ones
+ * off the left or right edge. Each line's sprites are then sorted the way the DMG decides which one shows where they
+ * overlap: smaller X first, then lower OAM index.
+ * <p>
+ * Memory marks the index stale whenever OAM is written or DMA'd, and it's rebuilt the next time a line asks for it, so
+ * usually once per frame at most. Anything that changes OAM behind Memory's back has to call {@link #invalidate()}.
+ */
+public final class SpriteIndex {
+    public static final int SPRITE_COUNT = 40;
+    public static final int SPRITES_PER_LINE = 10;
+    public static final int OAM_START = 0xFE00;
+
+    private static final int LINES = 144;
+
+    private final byte[] oam; //Indexed by address, like Memory's array
+
+    //Sprite attributes as of the last rebuild, by OAM index
+    private final int[] x = new int[SPRITE_COUNT];
+    private final int[] y = new int[SPRITE_COUNT];
+    private final int[] tiles = new int[SPRITE_COUNT];
+    private final int[] attributes = new int[SPRITE_COUNT];
+
+    //OAM indexes of the sprites on each line, SPRITES_PER_LINE slots per line, highest priority first
+    private final int[] lineSprites = new int[LINES * SPRITES_PER_LINE];
+    private final int[] lineCounts = new int[LINES];
+
+    private boolean stale = true;
+    private int builtHeight;
+
+    /**
+     * @param memory Array that holds OAM at its real addresses
+     */
+    public SpriteIndex(byte[] memory) {
+        this.oam = memory;
+    }
+
+    public void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * Rebuild the index if OAM or the sprite height changed since the last one.
+     *
+     * @param spriteHeight 8 or 16, from LCDC
+     */
+    public void update(int spriteHeight) {
+        if (!stale && spriteHeight == builtHeight) return;
+        stale = false;
+        builtHeight = spriteHeight;
+
+        Arrays.fill(lineCounts, 0);
+        for (int sprite = 0; sprite < SPRITE_COUNT; sprite++) {
+            int address = OAM_START + sprite * 4;
+            int top = (oam[address] & 0xFF) - 16;
+            y[sprite] = top;
+            x[sprite] = (oam[address + 1] & 0xFF) - 8;
+            tiles[sprite] = oam[address + 2] & 0xFF;
+            attributes[sprite] = oam[address + 3] & 0xFF;
+
+            int first = Math.max(top, 0);
+            int last = Math.min(top + spriteHeight, LINES);
+            for (int line = first; line < last; line++) {
+                int count = lineCounts[line];
+                if (count == SPRITES_PER_LINE) continue;
+                //Insertion sort by X. Sprites come in OAM order, so equal X keeps the lower index first.
+                int base = line * SPRITES_PER_LINE;
+                int slot = count;
+                while (slot > 0 && x[lineSprites[base + slot - 1]] > x[sprite]) {
+                    lineSprites[base + slot] = lineSprites[base + slot - 1];
+                    slot--;
+                }
+                lineSprites[base + slot] = sprite;
+                lineCounts[line] = count + 1;
+            }
+        }
+    }
+
+    /**
+     * @return Sprites on line, at most {@link #SPRITES_PER_LINE}
+     */
+    public int count(int line) {
+        return line < 0 || line >= LINES ? 0 : lineCounts[line];
+    }
+
+    /**
+     * @param n 0 for the sprite that shows over all the others on the line, up to count(line) - 1
+     * @return OAM index of the sprite
+     */
+    public int sprite(int line, int n) {
+        return lineSprites[line * SPRITES_PER_LINE + n];
+    }
+
+    /**
+     * @return Screen x of the sprite's left edge, -8 to 247
+     */
+    public int getX(int sprite) {
+        return x[sprite];
+    }
+
+    /**
+     * @return Screen y of the sprite's top row, -16 to 239
+     */
+    public int getY(int sprite) {
+        return y[sprite];
+    }
+
+    public int getTile(int sprite) {
+        return tiles[sprite];
+    }
+
+    public int getAttributes(int sprite) {
+        return attributes[sprite];
+    }
+}
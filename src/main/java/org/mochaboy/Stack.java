@@ -1,5 +1,7 @@
 package org.mochaboy;
 
+import org.mochaboy.registers.Registers;
+
 import java.util.LinkedList;
 
 public class Stack {
@@ -12,7 +14,7 @@ public class Stack {
     }
 
     public void push(int value) {
-        int sp = cpu.getRegisters().getSP();
+        int sp = cpu.getRegisters().get(Registers.REG_SP);
 
         // Push high byte first
         sp = (sp - 1) & 0xFFFF;
@@ -24,11 +26,11 @@ public class Stack {
         cpu.getMemory().writeByte(sp, value & 0xFF);
         debugStack.push(value & 0xFF);
 
-        cpu.getRegisters().setSP(sp);
+        cpu.getRegisters().set(Registers.REG_SP, sp);
     }
 
     public int pop() {
-        int sp = cpu.getRegisters().getSP();
+        int sp = cpu.getRegisters().get(Registers.REG_SP);
 
         // Read low byte first
         int lowByte = cpu.getMemory().readByte(sp);
@@ -47,13 +49,13 @@ public class Stack {
 //        }
 
         sp = (sp + 1) & 0xFFFF; // Increment SP again to point to the next value on the stack
-        cpu.getRegisters().setSP(sp);
+        cpu.getRegisters().set(Registers.REG_SP, sp);
 
         return ((highByte << 8) | lowByte) & 0xFFFF;
     }
 
     public int peek() {
-        int sp = cpu.getRegisters().getSP();
+        int sp = cpu.getRegisters().get(Registers.REG_SP);
         return cpu.getMemory().readWord(sp);
     }
 
@@ -0,0 +1,79 @@
+package org.mochaboy;
+
+/**
+ * The 384 tiles in 0x8000-0x97FF, decoded to one 2-bit color index per pixel. VRAM stores each tile row as two
+ * bit planes, so reading a pixel straight from it takes two reads and a shift and mask per plane. Here a row of a tile
+ * is 8 consecutive bytes, ready to copy into a scanline.
+ * <p>
+ * Memory decodes the row again every time one of its two bytes is written, so the cache is always up to date. Anything
+ * that changes VRAM behind Memory's back has to call {@link #rebuild()}.
+ */
+public final class TileCache {
+    public static final int TILE_COUNT = 384;
+    public static final int TILE_DATA_START = 0x8000;
+    public static final int TILE_DATA_END = 0x97FF;
+
+    private final byte[] vram; //Indexed by address, like Memory's array
+    private final byte[] pixels = new byte[TILE_COUNT * 64];
+
+    /**
+     * @param memory Array that holds VRAM at its real addresses
+     */
+    public TileCache(byte[] memory) {
+        this.vram = memory;
+        rebuild();
+    }
+
+    /**
+     * Re-decode the row holding address, if it's tile data.
+     */
+    public void onWrite(int address) {
+        if (address < TILE_DATA_START || address > TILE_DATA_END) return;
+        decodeRow((address - TILE_DATA_START) >> 1);
+    }
+
+    public void rebuild() {
+        for (int row = 0; row < TILE_COUNT * 8; row++) {
+            decodeRow(row);
+        }
+    }
+
+    /**
+     * @param row Tile * 8 + the row within the tile
+     */
+    private void decodeRow(int row) {
+        int address = TILE_DATA_START + row * 2;
+        int low = vram[address] & 0xFF;
+        int high = vram[address + 1] & 0xFF;
+        int index = row * 8;
+        for (int x = 0; x < 8; x++) {
+            int bit = 7 - x;
+            pixels[index + x] = (byte) (((high >> bit) & 1) << 1 | ((low >> bit) & 1));
+        }
+    }
+
+    /**
+     * Decoded pixels, tile after tile, 8 rows of 8 per tile. Pixel x of row y of a tile is at
+     * {@code rowIndex(tile, y) + x}. Read only.
+     */
+    public byte[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * @param tile 0-383, numbered from 0x8000
+     * @param y    Row within the tile, 0-7
+     * @return Index of the row's first pixel in {@link #getPixels()}
+     */
+    public static int rowIndex(int tile, int y) {
+        return (tile << 6) | (y << 3);
+    }
+
+    /**
+     * @param address Any address inside a tile, 0x8000-0x97FF
+     * @return The tile number counted from 0x8000
+     */
+    public static int tileAt(int address) {
+        return (address - TILE_DATA_START) >> 4;
+    }
+}
@@ -0,0 +1,75 @@
+package org.mochaboy;
+
+/**
+ * Small fixed-size list of (address, value) memory writes. Used to capture what a single instruction writes so two
+ * execution engines can be compared without either of them allocating.
+ */
+public class WriteJournal {
+    private static final int CAPACITY = 16;
+
+    private final int[] addresses = new int[CAPACITY];
+    private final int[] values = new int[CAPACITY];
+    private int size;
+    private boolean overflowed;
+
+    public void record(int address, int value) {
+        if (size == CAPACITY) {
+            overflowed = true;
+            return;
+        }
+        addresses[size] = address & 0xFFFF;
+        values[size] = value & 0xFF;
+        size++;
+    }
+
+    public void clear() {
+        size = 0;
+        overflowed = false;
+    }
+
+    /**
+     * @param address Address to look up
+     * @return The most recent value recorded for address, or -1 if nothing was written there.
+     */
+    public int find(int address) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (addresses[i] == address) return values[i];
+        }
+        return -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isOverflowed() {
+        return overflowed;
+    }
+
+    public int getAddress(int index) {
+        return addresses[index];
+    }
+
+    public int getValue(int index) {
+        return values[index];
+    }
+
+    public boolean contentEquals(WriteJournal other) {
+        if (size != other.size) return false;
+        for (int i = 0; i < size; i++) {
+            if (addresses[i] != other.addresses[i] || values[i] != other.values[i]) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(String.format("%04X=%02X", addresses[i], values[i]));
+        }
+        if (overflowed) sb.append(", ...");
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,96 @@
+package org.mochaboy;
+
+/**
+ * Ring buffer of the most recent bus writes, for debuggers and tracers. Each entry is the address, the value, the
+ * scheduler cycle and the address of the instruction that did the write, kept in parallel primitive arrays so
+ * recording never allocates. Once full, each new write replaces the oldest one.
+ * <p>
+ * Memory only records writes while a log is attached with {@link Memory#setWriteLog(WriteLog)}, otherwise logging
+ * costs one boolean check per write.
+ */
+public class WriteLog {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int[] addresses;
+    private final int[] values;
+    private final long[] cycles;
+    private final int[] pcs;
+    private final int mask;
+    private long total; //Writes recorded since the last clear, including ones that have been overwritten
+
+    public WriteLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Entries kept, rounded up to a power of two
+     */
+    public WriteLog(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        addresses = new int[size];
+        values = new int[size];
+        cycles = new long[size];
+        pcs = new int[size];
+        mask = size - 1;
+    }
+
+    public void record(int address, int value, long cycle, int pc) {
+        int slot = (int) total & mask;
+        addresses[slot] = address & 0xFFFF;
+        values[slot] = value & 0xFF;
+        cycles[slot] = cycle;
+        pcs[slot] = pc & 0xFFFF;
+        total++;
+    }
+
+    public void clear() {
+        total = 0;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return Entries currently held, at most {@link #capacity()}
+     */
+    public int size() {
+        return (int) Math.min(total, capacity());
+    }
+
+    /**
+     * @return Writes recorded since the last clear, including ones that have since been overwritten
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Entries are indexed from the newest: 0 is the last write, size() - 1 the oldest one still held.
+     */
+    private int slot(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+        return (int) (total - 1 - index) & mask;
+    }
+
+    public int getAddress(int index) {
+        return addresses[slot(index)];
+    }
+
+    public int getValue(int index) {
+        return values[slot(index)];
+    }
+
+    public long getCycle(int index) {
+        return cycles[slot(index)];
+    }
+
+    /**
+     * @return Address of the instruction that made the write
+     */
+    public int getPc(int index) {
+        return pcs[slot(index)];
+    }
+}
@@ -28,6 +28,7 @@ public class GuiFxDisplay {
         writableImage = new WritableImage(width, height);
         pixelWriter = writableImage.getPixelWriter();
         frameBuffer = new FrameBuffer(160, 144);
+        frame = new int[width * height];
         enabled = true;
         frameReady = false;
     }
@@ -36,7 +37,7 @@ public class GuiFxDisplay {
         if (enabled) {
             if (frameReady) {
                 setFrameReady(false);
-                frame = frameBuffer.getPixels();
+                FrameBuffer.toArgb(frameBuffer.getFrame(), frame);
                 pixelWriter.setPixels(0, 0, width, height,
                         PixelFormat.getIntArgbInstance(),
                         frame, 0, width);
@@ -19,9 +19,11 @@ public class GuiGlEmulator {
     private long window;
     private final FrameBuffer frameBuffer;
     private int textureId; // Store the texture ID
+    private int[] pixels;
 
     public GuiGlEmulator(FrameBuffer frameBuffer) {
         this.frameBuffer = frameBuffer;
+        this.pixels = new int[frameBuffer.getWidth() * frameBuffer.getHeight()];
     }
 
     public void run() {
@@ -99,7 +101,7 @@ public class GuiGlEmulator {
         while (!glfwWindowShouldClose(window)) {
             glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT); // Clear framebuffer
 
-            int[] pixels = frameBuffer.getPixels();
+            FrameBuffer.toArgb(frameBuffer.getFrame(), pixels);
 
             // Update the texture data using glTexSubImage2D()
             glBindTexture(GL_TEXTURE_2D, textureId); // You might not even need this here if the texture is already bound
@@ -18,7 +18,7 @@ public class GuiSwingDisplay extends JPanel {
 
     public GuiSwingDisplay(FrameBuffer frameBuffer) {
         this.frameBuffer = frameBuffer;
-        frame = frameBuffer.getPixels();
+        frame = new int[width * height];
         init();
     }
 
@@ -42,7 +42,7 @@ public class GuiSwingDisplay extends JPanel {
         if (enabled) {
             if (frameReady) {
                 setFrameReady(false);
-                frame = frameBuffer.getPixels();
+                FrameBuffer.toArgb(frameBuffer.getFrame(), frame);
                 image.setRGB(0, 0, width, height, frame, 0, width);
                 validate();
                 repaint();
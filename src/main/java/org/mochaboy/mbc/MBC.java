@@ -0,0 +1,150 @@
+package org.mochaboy.mbc;
+
+import org.mochaboy.Cartridge;
+import org.mochaboy.Scheduler;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Memory bank controller on the cartridge. Memory hands it every write to 0x0000-0x7FFF, then points the ROM and RAM
+ * windows straight into the cartridge's arrays at the offsets it reports, so switching banks never copies anything.
+ */
+public abstract class MBC {
+    public static final int ROM_BANK_SIZE = 0x4000;
+    public static final int RAM_BANK_SIZE = 0x2000;
+
+    /**
+     * Returned by {@link #getRamOffset()} when 0xA000-0xBFFF can't be mapped onto the RAM array, and reads and writes
+     * have to go through {@link #readRam(int)} and {@link #writeRam(int, int)}.
+     */
+    public static final int NO_RAM_MAPPING = -1;
+
+    protected final byte[] ram;
+    protected final int romBanks;
+    protected final int ramBanks;
+    protected boolean ramEnabled;
+
+    protected MBC(int romSize, int ramSize) {
+        this.ram = new byte[ramSize];
+        romBanks = Math.max(2, romSize / ROM_BANK_SIZE);
+        ramBanks = Math.max(1, ramSize / RAM_BANK_SIZE);
+    }
+
+    /**
+     * Pick the controller named by the cartridge type byte at 0x0147.
+     */
+    public static MBC create(Cartridge cartridge) {
+        int rom = cartridge.getRomSize();
+        int ramSize = cartridge.getRamSize();
+        int type = cartridge.getCartType();
+        return switch (type) {
+            case 0x00 -> new RomOnly(rom, 0);
+            case 0x08, 0x09 -> new RomOnly(rom, ramSize);
+            case 0x01, 0x02, 0x03 -> new MBC1(rom, ramSize);
+            case 0x05, 0x06 -> new MBC2(rom);
+            case 0x0F, 0x10 -> new MBC3(rom, ramSize, true);
+            case 0x11, 0x12, 0x13 -> new MBC3(rom, ramSize, false);
+            case 0x19, 0x1A, 0x1B, 0x1C, 0x1D, 0x1E -> new MBC5(rom, ramSize);
+            default -> {
+                System.out.printf("Unsupported cartridge type %02X, running it as ROM only.%n", type);
+                yield new RomOnly(rom, ramSize);
+            }
+        };
+    }
+
+    /**
+     * A write to 0x0000-0x7FFF.
+     */
+    public abstract void write(int address, int value);
+
+    /**
+     * @return Offset into the ROM of the bank mapped at 0x4000-0x7FFF
+     */
+    public abstract int getRomOffset();
+
+    /**
+     * @return Offset into the ROM of the bank mapped at 0x0000-0x3FFF
+     */
+    public int getLowRomOffset() {
+        return 0;
+    }
+
+    /**
+     * @return Offset into the RAM array mapped at 0xA000, or NO_RAM_MAPPING. RAM smaller than a bank is mirrored.
+     */
+    public int getRamOffset() {
+        return ramEnabled && ram.length > 0 ? 0 : NO_RAM_MAPPING;
+    }
+
+    /**
+     * Read from 0xA000-0xBFFF while {@link #getRamOffset()} is NO_RAM_MAPPING.
+     */
+    public int readRam(int address) {
+        return 0xFF;
+    }
+
+    /**
+     * Write to 0xA000-0xBFFF while {@link #getRamOffset()} is NO_RAM_MAPPING.
+     *
+     * @return Whether a byte of RAM was stored, false if the write was ignored or went to a clock register
+     */
+    public boolean writeRam(int address, int value) {
+        return false;
+    }
+
+    /**
+     * Give a controller with a clock the cycle counter to run it from.
+     */
+    public void setScheduler(Scheduler scheduler) {
+    }
+
+    /**
+     * @return Bytes the controller's clock takes in the save file after the RAM, 0 if it has no clock
+     */
+    public int getClockSaveSize() {
+        return 0;
+    }
+
+    /**
+     * Called on the emulation thread to tell the clock how far emulation has got, so the save file's flusher can save
+     * it without reading the scheduler.
+     */
+    public void publishClock() {
+    }
+
+    /**
+     * @return Whether the game set the clock since it was last saved
+     */
+    public boolean isClockWritten() {
+        return false;
+    }
+
+    /**
+     * Write the clock as of the last {@link #publishClock()} into the save file at offset. Called from the save
+     * file's flusher thread.
+     */
+    public void saveClock(ByteBuffer out, int offset) {
+    }
+
+    /**
+     * Restore the clock from the save file at offset.
+     */
+    public void loadClock(ByteBuffer in, int offset) {
+    }
+
+    public int getRomBank() {
+        return getRomOffset() / ROM_BANK_SIZE;
+    }
+
+    public int getLowRomBank() {
+        return getLowRomOffset() / ROM_BANK_SIZE;
+    }
+
+    public byte[] getRam() {
+        return ram;
+    }
+
+    public boolean isRamEnabled() {
+        return ramEnabled;
+    }
+}
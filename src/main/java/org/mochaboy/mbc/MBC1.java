@@ -0,0 +1,44 @@
+package org.mochaboy.mbc;
+
+/**
+ * Up to 2 MiB of ROM and 32 KiB of RAM. A 5-bit ROM bank register plus a 2-bit register that either extends the ROM
+ * bank, or in mode 1 selects the RAM bank and the bank mapped at 0x0000.
+ */
+public class MBC1 extends MBC {
+    private int bank1 = 1; //Low 5 bits of the ROM bank, never 0
+    private int bank2;
+    private boolean advancedMode;
+
+    public MBC1(int romSize, int ramSize) {
+        super(romSize, ramSize);
+    }
+
+    @Override
+    public void write(int address, int value) {
+        switch (address >> 13) {
+            case 0 -> ramEnabled = (value & 0x0F) == 0x0A;
+            case 1 -> {
+                bank1 = value & 0x1F;
+                if (bank1 == 0) bank1 = 1;
+            }
+            case 2 -> bank2 = value & 0x03;
+            default -> advancedMode = (value & 0x01) != 0;
+        }
+    }
+
+    @Override
+    public int getRomOffset() {
+        return ((bank2 << 5 | bank1) % romBanks) * ROM_BANK_SIZE;
+    }
+
+    @Override
+    public int getLowRomOffset() {
+        return advancedMode ? ((bank2 << 5) % romBanks) * ROM_BANK_SIZE : 0;
+    }
+
+    @Override
+    public int getRamOffset() {
+        if (!ramEnabled || ram.length == 0) return NO_RAM_MAPPING;
+        return advancedMode ? (bank2 % ramBanks) * RAM_BANK_SIZE : 0;
+    }
+}
@@ -0,0 +1,52 @@
+package org.mochaboy.mbc;
+
+/**
+ * Up to 256 KiB of ROM and 512 4-bit cells of built-in RAM, repeated through 0xA000-0xBFFF. Bit 8 of the address
+ * picks between the RAM enable and ROM bank registers.
+ */
+public class MBC2 extends MBC {
+    private static final int RAM_CELLS = 0x200;
+
+    private int romBank = 1;
+
+    public MBC2(int romSize) {
+        super(romSize, RAM_CELLS);
+    }
+
+    @Override
+    public void write(int address, int value) {
+        if (address >= 0x4000) return;
+        if ((address & 0x100) == 0) {
+            ramEnabled = (value & 0x0F) == 0x0A;
+        } else {
+            romBank = value & 0x0F;
+            if (romBank == 0) romBank = 1;
+        }
+    }
+
+    @Override
+    public int getRomOffset() {
+        return (romBank % romBanks) * ROM_BANK_SIZE;
+    }
+
+    /**
+     * Only the low nibble is stored, so the RAM always goes through readRam/writeRam.
+     */
+    @Override
+    public int getRamOffset() {
+        return NO_RAM_MAPPING;
+    }
+
+    @Override
+    public int readRam(int address) {
+        if (!ramEnabled) return 0xFF;
+        return 0xF0 | ram[address & (RAM_CELLS - 1)];
+    }
+
+    @Override
+    public boolean writeRam(int address, int value) {
+        if (!ramEnabled) return false;
+        ram[address & (RAM_CELLS - 1)] = (byte) (value & 0x0F);
+        return true;
+    }
+}
@@ -0,0 +1,245 @@
+package org.mochaboy.mbc;
+
+import org.mochaboy.Scheduler;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Up to 2 MiB of ROM, 32 KiB of RAM and a real time clock. Writing 08-0C to the RAM bank register maps one of the
+ * clock registers at 0xA000-0xBFFF instead of RAM, and writing 00 then 01 to 0x6000-0x7FFF latches the clock.
+ * <p>
+ * The clock counts emulated cycles, not wall time, so it runs at whatever speed the emulator does and a headless run
+ * always sees the same times. Like the timer it's only brought up to date when it's latched, written or saved. The
+ * save file can still carry it across the time the emulator wasn't running, see {@link #catchUpToWallClock()}.
+ * <p>
+ * The clock methods are synchronized because the save file flusher reads the clock from its own thread. The flusher
+ * never reads the scheduler, it brings the clock up to the cycle the emulation thread last published.
+ */
+public class MBC3 extends MBC {
+    public static final long CYCLES_PER_SECOND = 4194304;
+
+    private static final int RTC_SECONDS = 0x08;
+    private static final int RTC_REGISTERS = 5;
+    private static final int CLOCK_SAVE_SIZE = 48; //Registers and latched registers as 32-bit ints, then a timestamp
+
+    private final boolean hasClock;
+    private int romBank = 1;
+    private int ramBank; //00-03 for RAM, 08-0C for a clock register
+
+    private Scheduler scheduler;
+    private long lastCycle; //Scheduler cycle the clock was last brought up to date at
+    private long subSecondCycles;
+    private int seconds;
+    private int minutes;
+    private int hours;
+    private int days; //9 bits
+    private boolean halted;
+    private boolean dayCarry;
+    private final int[] latchedRtc = new int[RTC_REGISTERS];
+    private int lastLatchWrite = -1;
+    private long savedAt; //Unix time of the loaded save, 0 if there wasn't one
+    private volatile long publishedCycle; //Scheduler cycle the emulation thread last published
+    private boolean clockWritten; //Set since the last save
+
+    public MBC3(int romSize, int ramSize, boolean hasClock) {
+        super(romSize, ramSize);
+        this.hasClock = hasClock;
+    }
+
+    @Override
+    public void write(int address, int value) {
+        switch (address >> 13) {
+            case 0 -> ramEnabled = (value & 0x0F) == 0x0A;
+            case 1 -> {
+                romBank = value & 0x7F;
+                if (romBank == 0) romBank = 1;
+            }
+            case 2 -> ramBank = value & 0x0F;
+            default -> {
+                if (lastLatchWrite == 0x00 && value == 0x01) latch();
+                lastLatchWrite = value;
+            }
+        }
+    }
+
+    @Override
+    public int getRomOffset() {
+        return (romBank % romBanks) * ROM_BANK_SIZE;
+    }
+
+    @Override
+    public int getRamOffset() {
+        if (!ramEnabled || ram.length == 0 || ramBank > 0x03) return NO_RAM_MAPPING;
+        return (ramBank % ramBanks) * RAM_BANK_SIZE;
+    }
+
+    @Override
+    public synchronized int readRam(int address) {
+        if (!ramEnabled || !isRtcSelected()) return 0xFF;
+        return latchedRtc[ramBank - RTC_SECONDS];
+    }
+
+    @Override
+    public synchronized boolean writeRam(int address, int value) {
+        if (ramEnabled && isRtcSelected()) {
+            setRegister(ramBank - RTC_SECONDS, value & 0xFF);
+            clockWritten = true;
+        }
+        return false; //RAM banks are mapped, only the clock comes through here
+    }
+
+    private boolean isRtcSelected() {
+        return hasClock && ramBank >= RTC_SECONDS && ramBank < RTC_SECONDS + RTC_REGISTERS;
+    }
+
+    @Override
+    public synchronized void setScheduler(Scheduler scheduler) {
+        this.scheduler = scheduler;
+        lastCycle = publishedCycle = scheduler.now();
+    }
+
+    @Override
+    public void publishClock() {
+        if (scheduler != null) publishedCycle = scheduler.now();
+    }
+
+    @Override
+    public synchronized boolean isClockWritten() {
+        return clockWritten;
+    }
+
+    private synchronized void latch() {
+        sync();
+        for (int i = 0; i < RTC_REGISTERS; i++) {
+            latchedRtc[i] = getRegister(i);
+        }
+    }
+
+    /**
+     * Count the whole seconds emulated since the last sync. Emulation thread only.
+     */
+    private void sync() {
+        if (scheduler != null) syncTo(scheduler.now());
+    }
+
+    /**
+     * @param now Scheduler cycle to bring the clock up to, earlier ones are ignored
+     */
+    private void syncTo(long now) {
+        long elapsed = now - lastCycle;
+        if (elapsed <= 0) return;
+        lastCycle = now;
+        if (halted) return;
+        subSecondCycles += elapsed;
+        long elapsedSeconds = subSecondCycles / CYCLES_PER_SECOND;
+        subSecondCycles %= CYCLES_PER_SECOND;
+        advance(elapsedSeconds);
+    }
+
+    private void advance(long elapsedSeconds) {
+        //Out of range values a game wrote count up to their field's limit and wrap without carrying, one at a time
+        while (elapsedSeconds > 0 && (seconds > 59 || minutes > 59 || hours > 23)) {
+            tick();
+            elapsedSeconds--;
+        }
+        if (elapsedSeconds == 0) return;
+        long total = seconds + 60 * (minutes + 60 * (hours + 24L * days)) + elapsedSeconds;
+        seconds = (int) (total % 60);
+        total /= 60;
+        minutes = (int) (total % 60);
+        total /= 60;
+        hours = (int) (total % 24);
+        total /= 24;
+        if (total > 0x1FF) dayCarry = true;
+        days = (int) (total & 0x1FF);
+    }
+
+    private void tick() {
+        if (seconds != 59) {
+            seconds = (seconds + 1) & 0x3F;
+            return;
+        }
+        seconds = 0;
+        if (minutes != 59) {
+            minutes = (minutes + 1) & 0x3F;
+            return;
+        }
+        minutes = 0;
+        if (hours != 23) {
+            hours = (hours + 1) & 0x1F;
+            return;
+        }
+        hours = 0;
+        if (++days > 0x1FF) {
+            days = 0;
+            dayCarry = true;
+        }
+    }
+
+    private int getRegister(int register) {
+        return switch (register) {
+            case 0 -> seconds;
+            case 1 -> minutes;
+            case 2 -> hours;
+            case 3 -> days & 0xFF;
+            default -> (days >> 8) | (halted ? 0x40 : 0) | (dayCarry ? 0x80 : 0);
+        };
+    }
+
+    private void setRegister(int register, int value) {
+        sync();
+        switch (register) {
+            case 0 -> {
+                seconds = value & 0x3F;
+                subSecondCycles = 0; //Writing the seconds resets the divider under them
+            }
+            case 1 -> minutes = value & 0x3F;
+            case 2 -> hours = value & 0x1F;
+            case 3 -> days = (days & 0x100) | value;
+            default -> {
+                days = (days & 0xFF) | ((value & 0x01) << 8);
+                halted = (value & 0x40) != 0;
+                dayCarry = (value & 0x80) != 0;
+            }
+        }
+    }
+
+    /**
+     * Move the clock on by the wall time since the save it was loaded from was written, as if the cartridge's clock
+     * had kept running with the emulator closed. Does nothing without a save, and only works once.
+     */
+    public synchronized void catchUpToWallClock() {
+        if (savedAt == 0) return;
+        long elapsed = System.currentTimeMillis() / 1000 - savedAt;
+        savedAt = 0;
+        sync();
+        if (elapsed > 0 && !halted) advance(elapsed);
+        clockWritten = true;
+    }
+
+    @Override
+    public int getClockSaveSize() {
+        return hasClock ? CLOCK_SAVE_SIZE : 0;
+    }
+
+    @Override
+    public synchronized void saveClock(ByteBuffer out, int offset) {
+        syncTo(publishedCycle);
+        clockWritten = false;
+        for (int i = 0; i < RTC_REGISTERS; i++) {
+            out.putInt(offset + 4 * i, getRegister(i));
+            out.putInt(offset + 4 * (RTC_REGISTERS + i), latchedRtc[i]);
+        }
+        out.putLong(offset + 8 * RTC_REGISTERS, System.currentTimeMillis() / 1000);
+    }
+
+    @Override
+    public synchronized void loadClock(ByteBuffer in, int offset) {
+        for (int i = 0; i < RTC_REGISTERS; i++) {
+            setRegister(i, in.getInt(offset + 4 * i) & 0xFF);
+            latchedRtc[i] = in.getInt(offset + 4 * (RTC_REGISTERS + i)) & 0xFF;
+        }
+        subSecondCycles = 0;
+        savedAt = in.getLong(offset + 8 * RTC_REGISTERS);
+    }
+}
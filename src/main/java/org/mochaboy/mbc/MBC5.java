@@ -0,0 +1,37 @@
+package org.mochaboy.mbc;
+
+/**
+ * Up to 8 MiB of ROM and 128 KiB of RAM, with a 9-bit ROM bank register split over 0x2000 and 0x3000. Unlike the
+ * older controllers, bank 0 can be mapped at 0x4000.
+ */
+public class MBC5 extends MBC {
+    private int romBank = 1;
+    private int ramBank;
+
+    public MBC5(int romSize, int ramSize) {
+        super(romSize, ramSize);
+    }
+
+    @Override
+    public void write(int address, int value) {
+        switch (address >> 12) {
+            case 0, 1 -> ramEnabled = (value & 0x0F) == 0x0A;
+            case 2 -> romBank = (romBank & 0x100) | (value & 0xFF);
+            case 3 -> romBank = (romBank & 0xFF) | ((value & 0x01) << 8);
+            case 4, 5 -> ramBank = value & 0x0F;
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public int getRomOffset() {
+        return (romBank % romBanks) * ROM_BANK_SIZE;
+    }
+
+    @Override
+    public int getRamOffset() {
+        if (!ramEnabled || ram.length == 0) return NO_RAM_MAPPING;
+        return (ramBank % ramBanks) * RAM_BANK_SIZE;
+    }
+}
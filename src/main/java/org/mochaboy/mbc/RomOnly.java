@@ -0,0 +1,21 @@
+package org.mochaboy.mbc;
+
+/**
+ * 32 KiB of ROM and no controller, optionally with up to 8 KiB of RAM that's always on.
+ */
+public class RomOnly extends MBC {
+
+    public RomOnly(int romSize, int ramSize) {
+        super(romSize, Math.min(ramSize, RAM_BANK_SIZE));
+        ramEnabled = true;
+    }
+
+    @Override
+    public void write(int address, int value) {
+    }
+
+    @Override
+    public int getRomOffset() {
+        return ROM_BANK_SIZE;
+    }
+}
@@ -0,0 +1,134 @@
+package org.mochaboy.mbc;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Keeps battery-backed cartridge RAM in a memory-mapped .sav file.
+ * <p>
+ * The emulator keeps working on the MBC's RAM array, so the page tables can still map it directly. A write only marks
+ * its 256-byte page dirty, and a background thread copies dirty pages into the mapping and forces them to disk every
+ * flush interval. The emulation thread never touches the file. One flusher thread is shared by every save file.
+ * <p>
+ * A controller with a clock has it saved after the RAM in the 48-byte layout other emulators use, along with a
+ * timestamp. It's only written when RAM is, when the game set the clock, and on close: a running clock doesn't need
+ * saving, since loading it catches up by the wall time since the timestamp.
+ */
+public final class SaveFile {
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 1000;
+
+    private static final int PAGE_SHIFT = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    private static class Flusher {
+        static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "save-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private final MBC mbc;
+    private final byte[] ram;
+    private final MappedByteBuffer file;
+    private final AtomicIntegerArray dirty; //1 per page written since it was last flushed
+    private ScheduledFuture<?> task;
+    private boolean closed;
+
+    private SaveFile(MBC mbc, MappedByteBuffer file) {
+        this.mbc = mbc;
+        this.ram = mbc.getRam();
+        this.file = file;
+        dirty = new AtomicIntegerArray((ram.length + PAGE_SIZE - 1) >> PAGE_SHIFT);
+    }
+
+    /**
+     * Map path, creating it if it doesn't exist, and load what's saved there into the MBC's RAM and clock.
+     */
+    public static SaveFile open(Path path, MBC mbc, long flushIntervalMs) throws IOException {
+        byte[] ram = mbc.getRam();
+        int size = ram.length + mbc.getClockSaveSize();
+        boolean hasClock = mbc.getClockSaveSize() > 0 && Files.exists(path) && Files.size(path) >= size;
+        MappedByteBuffer file;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            file = channel.map(FileChannel.MapMode.READ_WRITE, 0, size); //Grows a new or short file
+        }
+        file.order(ByteOrder.LITTLE_ENDIAN);
+        file.get(0, ram);
+        if (hasClock) mbc.loadClock(file, ram.length);
+        SaveFile saveFile = new SaveFile(mbc, file);
+        saveFile.setFlushInterval(flushIntervalMs);
+        return saveFile;
+    }
+
+    /**
+     * Called on the emulation thread after a byte of RAM changes. The release store makes the RAM write visible to
+     * the flusher before the flag is.
+     *
+     * @param index Offset into the RAM array
+     */
+    public void markDirty(int index) {
+        dirty.lazySet(index >> PAGE_SHIFT, 1);
+    }
+
+    /**
+     * Copy every dirty page into the file and write it out. Runs on the flusher thread, or whichever thread closes.
+     */
+    public synchronized void flush() {
+        flush(false);
+    }
+
+    private void flush(boolean closing) {
+        boolean wrote = false;
+        for (int page = 0; page < dirty.length(); page++) {
+            if (dirty.getAndSet(page, 0) == 0) continue;
+            int start = page << PAGE_SHIFT;
+            file.put(start, ram, start, Math.min(PAGE_SIZE, ram.length - start));
+            wrote = true;
+        }
+        if (mbc.getClockSaveSize() > 0 && (wrote || closing || mbc.isClockWritten())) {
+            mbc.saveClock(file, ram.length);
+            wrote = true;
+        }
+        if (wrote) file.force();
+    }
+
+    /**
+     * @param flushIntervalMs How often dirty pages are written out, or 0 to only write them on {@link #close()}
+     */
+    public synchronized void setFlushInterval(long flushIntervalMs) {
+        if (task != null) task.cancel(false);
+        task = null;
+        if (flushIntervalMs > 0 && !closed) {
+            task = Flusher.INSTANCE.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop the periodic flushes and write out whatever is still dirty.
+     */
+    public synchronized void close() {
+        setFlushInterval(0);
+        closed = true;
+        flush(true);
+    }
+
+    public boolean isDirty() {
+        for (int page = 0; page < dirty.length(); page++) {
+            if (dirty.get(page) != 0) return true;
+        }
+        return false;
+    }
+}
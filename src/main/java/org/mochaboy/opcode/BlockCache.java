@@ -0,0 +1,232 @@
+package org.mochaboy.opcode;
+
+import org.mochaboy.CPU;
+import org.mochaboy.Memory;
+import org.mochaboy.registers.Registers;
+
+import java.util.Arrays;
+
+/**
+ * Cache of basic blocks for the switch core, keyed by (ROM bank, PC). A block is a straight-line run of opcodes that
+ * ends at the first jump, call, return, RST or IME/HALT change, and is executed in one dispatch without fetching or
+ * decoding opcode bytes. Immediate operands are still read from memory as the instructions run.
+ * <p>
+ * Blocks are dropped a page (256 bytes) at a time whenever memory in that page is written, so self-modifying code in
+ * WRAM/HRAM keeps working. Blocks in 0x4000-0x7FFF are keyed by bank and survive bank switches, but a switch stops
+ * the block that is currently running.
+ * <p>
+ * With a compile threshold set, a block that has been entered that many times is compiled to a hidden class by
+ * {@link BlockCompiler} and runs from then on without going through the dispatch switch at all. Cold blocks and code
+ * outside the cacheable regions keep running on the switch core, and a compiled block is thrown away with the rest of
+ * its page when that page is written. A block that fails to compile is never tried again and stays interpreted.
+ */
+public class BlockCache {
+    private static final int MAX_INSTRUCTIONS = 32;
+    private static final int MAX_BLOCK_BYTES = MAX_INSTRUCTIONS * 3;
+    private static final int BANKED_START = 0x4000;
+    private static final int BANKED_END = 0x8000;
+    private static final int MAX_BANKS = 0x200;
+    public static final int DEFAULT_COMPILE_THRESHOLD = 64;
+
+    private final SwitchCore core;
+    private final Registers r;
+    private final Memory memory;
+    private final OpcodeCache opcodeCache;
+    private final BlockCompiler compiler = new BlockCompiler();
+    private final Block[] unbanked = new Block[0x10000];
+    private final Block[][] banked = new Block[MAX_BANKS][];
+    private final boolean[] codePages = new boolean[0x100];
+    private final int[] scratch = new int[MAX_INSTRUCTIONS];
+    private Block running;
+    private int compileThreshold;
+    private long compiledBlocks;
+    //Read by compiled blocks between instructions
+    boolean aborted;
+
+    public BlockCache(CPU cpu, SwitchCore core, OpcodeCache opcodeCache) {
+        this.core = core;
+        this.r = cpu.getRegisters();
+        this.memory = cpu.getMemory();
+        this.opcodeCache = opcodeCache;
+    }
+
+    /**
+     * Run the block at PC, building it first if needed. Code outside the cacheable regions runs one instruction at a
+     * time on the switch core.
+     *
+     * @return T-states taken by every instruction that ran
+     */
+    public int run() {
+        int pc = r.getPC();
+        Block block = lookup(pc);
+        if (block == null) {
+            if (isCacheable(pc)) block = build(pc);
+            if (block == null) return core.step();
+        }
+
+        if (block.compiled == null && !block.uncompilable && compileThreshold > 0
+                && ++block.entries >= compileThreshold) {
+            try {
+                block.compiled = compiler.compile(block.opcodes);
+                compiledBlocks++;
+            } catch (IllegalStateException e) {
+                block.uncompilable = true;
+                System.out.printf("Couldn't compile block at %04X, interpreting it: %s%n", block.start, e.getCause());
+            }
+        }
+
+        running = block;
+        aborted = false;
+        int cycles = block.compiled != null ? block.compiled.run(core, this) : interpret(block.opcodes);
+        running = null;
+        return cycles;
+    }
+
+    private int interpret(int[] opcodes) {
+        int cycles = 0;
+        for (int opcode : opcodes) {
+            core.skip(opcode > 0xFF ? 2 : 1, cycles);
+            cycles += core.executeDecoded(opcode);
+            if (aborted) break; //The block overwrote itself or switched its own bank out
+        }
+        return cycles;
+    }
+
+    /**
+     * Called for every byte that reaches memory. Drops all blocks overlapping the written page.
+     */
+    public void onWrite(int address) {
+        int page = (address >> 8) & 0xFF;
+        if (codePages[page]) invalidatePage(page);
+    }
+
+    /**
+     * Called when the MBC maps a different bank into 0x4000-0x7FFF.
+     */
+    public void onBankSwitch() {
+        if (running != null && running.start >= BANKED_START && running.start < BANKED_END) aborted = true;
+    }
+
+    public void invalidatePage(int page) {
+        codePages[page] = false;
+        int pageStart = page << 8;
+        int pageEnd = pageStart + 0x100;
+        for (int address = Math.max(0, pageStart - MAX_BLOCK_BYTES); address < pageEnd; address++) {
+            Block b = unbanked[address];
+            if (b != null && b.end > pageStart) unbanked[address] = null;
+            if (address >= BANKED_START && address < BANKED_END) {
+                for (Block[] bank : banked) {
+                    if (bank == null) continue;
+                    b = bank[address - BANKED_START];
+                    if (b != null && b.end > pageStart) bank[address - BANKED_START] = null;
+                }
+            }
+        }
+        if (running != null && running.start < pageEnd && running.end > pageStart) aborted = true;
+    }
+
+    /**
+     * @param compileThreshold Number of entries after which a block is compiled, or 0 to never compile
+     */
+    public void setCompileThreshold(int compileThreshold) {
+        this.compileThreshold = compileThreshold;
+    }
+
+    public int getCompileThreshold() {
+        return compileThreshold;
+    }
+
+    /**
+     * @return Number of blocks compiled since the cache was created, including ones that were later invalidated
+     */
+    public long getCompiledBlocks() {
+        return compiledBlocks;
+    }
+
+    public void clear() {
+        Arrays.fill(unbanked, null);
+        Arrays.fill(banked, null);
+        Arrays.fill(codePages, false);
+    }
+
+    private Block lookup(int pc) {
+        if (pc >= BANKED_START && pc < BANKED_END) {
+            Block[] bank = banked[memory.getRomBank() & (MAX_BANKS - 1)];
+            return bank != null ? bank[pc - BANKED_START] : null;
+        }
+        return unbanked[pc];
+    }
+
+    private Block build(int start) {
+        int regionEnd = regionEnd(start);
+        int pc = start;
+        int count = 0;
+        while (count < MAX_INSTRUCTIONS && pc < regionEnd) {
+            int opcode = memory.readByte(pc) & 0xFF;
+            boolean prefixed = opcode == 0xCB;
+            if (prefixed) {
+                if (pc + 1 >= regionEnd) break;
+                opcode = memory.readByte(pc + 1) & 0xFF;
+            }
+            OpcodeInfo info = opcodeCache.get(opcode, prefixed).getOpcodeInfo();
+            int length = prefixed ? 2 : info.getBytes();
+            if (pc + length > regionEnd) break;
+
+            scratch[count++] = prefixed ? 0x100 | opcode : opcode;
+            pc += length;
+            if (endsBlock(info.getMnemonic())) break;
+        }
+        //An instruction straddling the region end can't be cached, so it runs on its own
+        if (count == 0) return null;
+
+        int[] opcodes = new int[count];
+        System.arraycopy(scratch, 0, opcodes, 0, count);
+        Block block = new Block(start, pc, opcodes);
+        if (start >= BANKED_START && start < BANKED_END) {
+            int bank = memory.getRomBank() & (MAX_BANKS - 1);
+            if (banked[bank] == null) banked[bank] = new Block[BANKED_END - BANKED_START];
+            banked[bank][start - BANKED_START] = block;
+        } else {
+            unbanked[start] = block;
+        }
+        for (int page = start >> 8; page <= (pc - 1) >> 8; page++) codePages[page] = true;
+        return block;
+    }
+
+    private static boolean endsBlock(String mnemonic) {
+        return switch (mnemonic) {
+            case "JP", "JR", "CALL", "RET", "RETI", "RST", "HALT", "STOP", "EI", "DI" -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * ROM, external RAM, WRAM and HRAM. VRAM and OAM can read back as 0xFF depending on the PPU mode, and nothing
+     * sensible runs from IO registers.
+     */
+    private static boolean isCacheable(int pc) {
+        return pc < 0x8000 || (pc >= 0xA000 && pc < 0xFE00) || (pc >= 0xFF80 && pc < 0xFFFF);
+    }
+
+    private static int regionEnd(int pc) {
+        if (pc < BANKED_START) return BANKED_START;
+        if (pc < BANKED_END) return BANKED_END;
+        if (pc < 0xFE00) return 0xFE00;
+        return 0xFFFF;
+    }
+
+    private static final class Block {
+        final int start;
+        final int end;
+        final int[] opcodes;
+        int entries;
+        boolean uncompilable;
+        BlockCompiler.Compiled compiled;
+
+        Block(int start, int end, int[] opcodes) {
+            this.start = start;
+            this.end = end;
+            this.opcodes = opcodes;
+        }
+    }
+}
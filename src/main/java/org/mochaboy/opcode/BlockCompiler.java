@@ -0,0 +1,246 @@
+package org.mochaboy.opcode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiles a hot basic block to a hidden class whose {@code run} method calls the generated per-opcode methods of
+ * {@link GeneratedSwitchCore} one after another with no dispatch in between. Every call site is monomorphic with a
+ * constant target, so HotSpot can inline the whole block down to plain register field and memory accesses.
+ * <p>
+ * A compiled block for {@code LD B, n8; INC A} is equivalent to:
+ * <pre>
+ * public int run(SwitchCore core, BlockCache cache) {
+ *     GeneratedSwitchCore c = (GeneratedSwitchCore) core;
+ *     int cycles = 0;
+ *     c.skip(1, cycles);
+ *     cycles += c.op06();
+ *     if (cache.aborted) return cycles;
+ *     c.skip(1, cycles);
+ *     cycles += c.op3C();
+ *     return cycles;
+ * }
+ * </pre>
+ * The class file is written by hand in the pre-Java 6 format, so the branches don't need stack map frames. Hidden
+ * classes are unloaded once the block is dropped from the cache.
+ */
+final class BlockCompiler {
+    private static final String CORE = "org/mochaboy/opcode/SwitchCore";
+    private static final String GENERATED_CORE = "org/mochaboy/opcode/GeneratedSwitchCore";
+    private static final String CACHE = "org/mochaboy/opcode/BlockCache";
+    private static final String COMPILED = "org/mochaboy/opcode/BlockCompiler$Compiled";
+    private static final String RUN_DESCRIPTOR = "(L" + CORE + ";L" + CACHE + ";)I";
+    private static final int CLASS_VERSION = 49;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ICONST_0 = 0x03;
+    private static final int ICONST_1 = 0x04;
+    private static final int ICONST_2 = 0x05;
+    private static final int ILOAD_3 = 0x1D;
+    private static final int ALOAD_0 = 0x2A;
+    private static final int ALOAD_1 = 0x2B;
+    private static final int ALOAD_2 = 0x2C;
+    private static final int ISTORE_3 = 0x3E;
+    private static final int ASTORE_1 = 0x4C;
+    private static final int IADD = 0x60;
+    private static final int IFEQ = 0x99;
+    private static final int IRETURN = 0xAC;
+    private static final int RETURN = 0xB1;
+    private static final int GETFIELD = 0xB4;
+    private static final int INVOKEVIRTUAL = 0xB6;
+    private static final int INVOKESPECIAL = 0xB7;
+    private static final int CHECKCAST = 0xC0;
+
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    /**
+     * A compiled block. Runs with PC on the first opcode of the block and leaves it wherever the last instruction put
+     * it.
+     */
+    interface Compiled {
+        /**
+         * @return T-states taken by every instruction that ran
+         */
+        int run(SwitchCore core, BlockCache cache);
+    }
+
+    /**
+     * @param opcodes Block opcodes, 0x100-0x1FF for CB prefixed ones
+     */
+    Compiled compile(int[] opcodes) {
+        try {
+            byte[] bytes = classFile(opcodes);
+            MethodHandles.Lookup hidden = lookup.defineHiddenClass(bytes, true);
+            return (Compiled) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Couldn't compile block", e);
+        }
+    }
+
+    private byte[] classFile(int[] opcodes) throws IOException {
+        ConstantPool cp = new ConstantPool();
+        int thisClass = cp.classRef("org/mochaboy/opcode/CompiledBlock");
+        int superClass = cp.classRef("java/lang/Object");
+        int compiledInterface = cp.classRef(COMPILED);
+        int objectInit = cp.methodRef("java/lang/Object", "<init>", "()V");
+        int generatedCore = cp.classRef(GENERATED_CORE);
+        int skip = cp.methodRef(CORE, "skip", "(II)V");
+        int aborted = cp.fieldRef(CACHE, "aborted", "Z");
+        int[] targets = new int[opcodes.length];
+        for (int i = 0; i < opcodes.length; i++) {
+            int opcode = opcodes[i];
+            String name = String.format("%s%02X", opcode > 0xFF ? "cb" : "op", opcode & 0xFF);
+            targets[i] = cp.methodRef(GENERATED_CORE, name, "()I");
+        }
+
+        Code init = new Code();
+        init.op(ALOAD_0).op(INVOKESPECIAL).u2(objectInit).op(RETURN);
+
+        Code run = new Code();
+        run.op(ALOAD_1).op(CHECKCAST).u2(generatedCore).op(ASTORE_1);
+        run.op(ICONST_0).op(ISTORE_3);
+        for (int i = 0; i < opcodes.length; i++) {
+            boolean prefixed = opcodes[i] > 0xFF;
+            run.op(ALOAD_1).op(prefixed ? ICONST_2 : ICONST_1).op(ILOAD_3).op(INVOKEVIRTUAL).u2(skip);
+            run.op(ILOAD_3).op(ALOAD_1).op(INVOKEVIRTUAL).u2(targets[i]).op(IADD).op(ISTORE_3);
+            if (i < opcodes.length - 1) {
+                //if (cache.aborted) return cycles; the branch skips the 2 bytes of the early return
+                run.op(ALOAD_2).op(GETFIELD).u2(aborted).op(IFEQ).u2(3 + 2).op(ILOAD_3).op(IRETURN);
+            }
+        }
+        run.op(ILOAD_3).op(IRETURN);
+
+        int codeAttribute = cp.utf8("Code");
+        int initName = cp.utf8("<init>");
+        int initDescriptor = cp.utf8("()V");
+        int runName = cp.utf8("run");
+        int runDescriptor = cp.utf8(RUN_DESCRIPTOR);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(CLASS_VERSION);
+        cp.writeTo(out);
+        out.writeShort(ACC_FINAL | ACC_SUPER);
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1);
+        out.writeShort(compiledInterface);
+        out.writeShort(0); //Fields
+        out.writeShort(2); //Methods
+        writeMethod(out, initName, initDescriptor, codeAttribute, 1, 1, init);
+        writeMethod(out, runName, runDescriptor, codeAttribute, 3, 4, run);
+        out.writeShort(0); //Attributes
+        return bytes.toByteArray();
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeAttribute, int maxStack,
+                                    int maxLocals, Code code) throws IOException {
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeAttribute);
+        out.writeInt(2 + 2 + 4 + code.size() + 2 + 2);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.size());
+        code.writeTo(out);
+        out.writeShort(0); //Exception table
+        out.writeShort(0); //Attributes
+    }
+
+    private static final class Code extends ByteArrayOutputStream {
+        Code op(int opcode) {
+            write(opcode);
+            return this;
+        }
+
+        Code u2(int value) {
+            write(value >> 8);
+            write(value);
+            return this;
+        }
+    }
+
+    private static final class ConstantPool {
+        private static final int UTF8 = 1;
+        private static final int CLASS = 7;
+        private static final int FIELD_REF = 9;
+        private static final int METHOD_REF = 10;
+        private static final int NAME_AND_TYPE = 12;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<>();
+        private int count = 1;
+
+        int utf8(String value) throws IOException {
+            Integer index = entries.get("U" + value);
+            if (index != null) return index;
+            out.writeByte(UTF8);
+            out.writeUTF(value);
+            return add("U" + value);
+        }
+
+        int classRef(String name) throws IOException {
+            Integer index = entries.get("C" + name);
+            if (index != null) return index;
+            int nameIndex = utf8(name);
+            out.writeByte(CLASS);
+            out.writeShort(nameIndex);
+            return add("C" + name);
+        }
+
+        int methodRef(String owner, String name, String descriptor) throws IOException {
+            return memberRef(METHOD_REF, owner, name, descriptor);
+        }
+
+        int fieldRef(String owner, String name, String descriptor) throws IOException {
+            return memberRef(FIELD_REF, owner, name, descriptor);
+        }
+
+        private int memberRef(int tag, String owner, String name, String descriptor) throws IOException {
+            String key = tag + owner + "." + name + descriptor;
+            Integer index = entries.get(key);
+            if (index != null) return index;
+            int ownerIndex = classRef(owner);
+            int nameAndType = nameAndType(name, descriptor);
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+            return add(key);
+        }
+
+        private int nameAndType(String name, String descriptor) throws IOException {
+            String key = "N" + name + ":" + descriptor;
+            Integer index = entries.get(key);
+            if (index != null) return index;
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            out.writeByte(NAME_AND_TYPE);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+            return add(key);
+        }
+
+        private int add(String key) {
+            entries.put(key, count);
+            return count++;
+        }
+
+        void writeTo(DataOutputStream target) throws IOException {
+            target.writeShort(count);
+            bytes.writeTo(target);
+        }
+    }
+}
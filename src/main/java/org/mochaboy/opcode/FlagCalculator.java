@@ -3,360 +3,175 @@ package org.mochaboy.opcode;
 import org.mochaboy.CPU;
 import org.mochaboy.registers.Registers;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Class responsible for getting conditions in how a register flag is set after an operation on the CPU.
+ * <p>
+ * Each opcode's flag behaviour is decoded once into a {@link FlagPlan}. 8-bit ADD/ADC/SUB/SBC/CP/INC/DEC read their
+ * flags straight out of precomputed tables of F values, everything else is a couple of bit tests on the operands.
  */
 public class FlagCalculator {
-    private Map<String, FlagConditionCalculator> calculators = new HashMap<>();
-
-    public FlagCalculator() {
-        registerArithmeticCalculators();
-        registerBitOperationCalculators();
-        registerComparisonCalculators();
-        registerMiscCalculators();
-    }
-
-    private void registerArithmeticCalculators() {
-        //ADD
-        calculators.put("ADD", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            switch (operands[1].getName()) {
-                //Immediate 8-bit values
-                case "e8":
-                    int lowSp = xVal & 0x00FF;
-                    int e8 = yVal & 0x00FF;
-                    conditions.isHalfCarry = ((lowSp & 0x0F) + (e8 & 0x0F)) > 0x0F;
-                    conditions.isCarry = (lowSp + e8) > 0xFF;
-                    break;
-                //values of any 16-bit register
-                case "AF":
-                case "BC":
-                case "DE":
-                case "HL":
-                case "SP":
-                case "PC":
-                    if (operands[0].getName().length() > 1) {       // dest is 16-bit?
-                        conditions.isZero = ((xVal + yVal) & 0xFFFF) == 0;
-                        conditions.isHalfCarry = (((xVal & 0x0FFF) + (yVal & 0x0FFF)) & 0x1000) != 0;
-                        conditions.isCarry = (xVal + yVal) > 0xFFFF;
-                        break;
-                    }
-                default:
-                    conditions.isZero = ((xVal + yVal) & 0xFF) == 0;
-                    conditions.isHalfCarry = (xVal & 0xF) + (yVal & 0xF) > 0xF;
-                    conditions.isCarry = (xVal + yVal) > 0xFF;
-                    break;
+    //F after ADD/ADC and SUB/SBC/CP, indexed by carry in << 16 | x << 8 | y
+    private static final byte[] ADD_FLAGS = new byte[0x20000];
+    private static final byte[] SUB_FLAGS = new byte[0x20000];
+    //F after INC/DEC, indexed by the value before the operation
+    private static final byte[] INC_FLAGS = new byte[0x100];
+    private static final byte[] DEC_FLAGS = new byte[0x100];
+
+    static {
+        for (int carry = 0; carry <= 1; carry++) {
+            for (int x = 0; x < 0x100; x++) {
+                for (int y = 0; y < 0x100; y++) {
+                    int index = (carry << 16) | (x << 8) | y;
+                    int sum = x + y + carry;
+                    ADD_FLAGS[index] = (byte) (flag(Registers.FLAG_ZERO, (sum & 0xFF) == 0)
+                            | flag(Registers.FLAG_HALF_CARRY, (x & 0xF) + (y & 0xF) + carry > 0xF)
+                            | flag(Registers.FLAG_CARRY, sum > 0xFF));
+                    int difference = (x - (y + carry)) & 0xFF;
+                    SUB_FLAGS[index] = (byte) (flag(Registers.FLAG_ZERO, difference == 0)
+                            | Registers.FLAG_SUBTRACT
+                            | flag(Registers.FLAG_HALF_CARRY, ((x ^ y ^ difference) & 0x10) != 0)
+                            | flag(Registers.FLAG_CARRY, (y + carry) > x));
+                }
             }
-            return conditions;
-        });
-
-        calculators.put("ADC", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            int carry = cpu.getRegisters().isFlagSet(Registers.FLAG_CARRY) ? 1 : 0;
-            conditions.isZero = ((xVal + yVal + carry) & 0xFF) == 0;
-            conditions.isHalfCarry = (xVal & 0xF) + (yVal & 0xF) + carry > 0xF;
-            conditions.isCarry = (xVal + yVal + carry) > 0xFF;
-            return conditions;
-        });
-
-        calculators.put("DEC", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isZero = ((xVal - 1) & 0xFF) == 0;
-            conditions.isHalfCarry = (xVal & 0x0F) == 0;
-            return conditions;
-        });
-
-        calculators.put("INC", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isZero = ((xVal + 1) & 0xFF) == 0;
-            conditions.isHalfCarry = ((xVal & 0xF) + (1 & 0xF)) > 0xF;
-            return conditions;
-        });
-
-        calculators.put("SBC", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            int carry = cpu.getRegisters().isFlagSet(Registers.FLAG_CARRY) ? 1 : 0;
-            conditions.isZero = ((xVal - (yVal + carry)) & 0xFF) == 0;
-            conditions.isHalfCarry = ((xVal ^ yVal ^ ((xVal - (yVal + carry)) & 0xFF)) & 0x10) != 0; //My brain
-            conditions.isCarry = (yVal + carry) > xVal;
-            return conditions;
-        });
-
-        calculators.put("SUB", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isZero = ((xVal - (yVal)) & 0xFF) == 0;
-            conditions.isHalfCarry = ((xVal ^ yVal ^ ((xVal - yVal) & 0xFF)) & 0x10) != 0; //My brain
-            conditions.isCarry = (yVal > xVal);
-            return conditions;
-        });
-    }
-
-    private void registerBitOperationCalculators() {
-        calculators.put("AND", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isZero = ((xVal & yVal) & 0xFF) == 0;
-            return conditions;
-        });
-
-        calculators.put("BIT", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isZero = (yVal & (1 << xVal)) == 0;
-            return conditions;
-        });
-
-        calculators.put("OR", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isZero = ((xVal | yVal) & 0xFF) == 0;
-            return conditions;
-        });
-
-        calculators.put("RL", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isZero = (xVal == 0);
-            conditions.isCarry = (yVal == 1);
-            return conditions;
-        });
-
-        calculators.put("RLA", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isCarry = (yVal == 1);
-            return conditions;
-        });
-
-        calculators.put("RLC", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isZero = (xVal == 0);
-            conditions.isCarry = (yVal == 1);
-            return conditions;
-        });
-
-        calculators.put("RLCA", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isCarry = (yVal == 1);
-            return conditions;
-        });
-
-        calculators.put("RR", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isZero = (xVal == 0);
-            conditions.isCarry = (yVal == 1);
-            return conditions;
-        });
-
-        calculators.put("RRA", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isCarry = (yVal == 1);
-            return conditions;
-        });
-
-        calculators.put("RRC", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isZero = (xVal == 0);
-            conditions.isCarry = (yVal == 1);
-            return conditions;
-        });
-
-        calculators.put("RRCA", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isCarry = (yVal == 1);
-            return conditions;
-        });
-
-        calculators.put("SLA", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isZero = (xVal == 0);
-            conditions.isCarry = (yVal == 1);
-            return conditions;
-        });
-
-        calculators.put("SRA", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isZero = (xVal == 0);
-            conditions.isCarry = (yVal == 1);
-            return conditions;
-        });
-
-        calculators.put("SRL", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isZero = (xVal == 0);
-            conditions.isCarry = (yVal == 1);
-            return conditions;
-        });
-
-        calculators.put("SWAP", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            int result = ((xVal >> 4) | (xVal << 4));
-            conditions.isZero = (result == 0);
-            return conditions;
-        });
-
-        calculators.put("XOR", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isZero = ((xVal ^ yVal) & 0xFF) == 0;
-            return conditions;
-        });
+        }
+        for (int x = 0; x < 0x100; x++) {
+            INC_FLAGS[x] = (byte) (flag(Registers.FLAG_ZERO, ((x + 1) & 0xFF) == 0)
+                    | flag(Registers.FLAG_HALF_CARRY, (x & 0xF) == 0xF));
+            DEC_FLAGS[x] = (byte) (flag(Registers.FLAG_ZERO, ((x - 1) & 0xFF) == 0)
+                    | Registers.FLAG_SUBTRACT
+                    | flag(Registers.FLAG_HALF_CARRY, (x & 0xF) == 0));
+        }
     }
 
-    private void registerComparisonCalculators() {
-        calculators.put("CP", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isZero = ((xVal - yVal) & 0xFF) == 0;
-            conditions.isHalfCarry = ((xVal ^ yVal ^ ((xVal - yVal) & 0xFF)) & 0x10) != 0;
-            conditions.isCarry = (yVal > xVal);
-            return conditions;
-        });
+    /**
+     * How the computed flags of an opcode are derived from its x and y values.
+     */
+    enum Rule {
+        NONE,
+        ADD8,
+        ADC8,
+        SUB8,
+        SBC8,
+        INC8,
+        DEC8,
+        ADD16,
+        ADD_SP_E8,
+        LD_HL_SP_E8,
+        AND,
+        OR,
+        XOR,
+        BIT,
+        SWAP,
+        SHIFT,  //Rotates and shifts, x is the result and y the bit shifted out
+        POP,
+        CCF
     }
 
-
-    private void registerMiscCalculators() {
-        calculators.put("CPL", (cpu, xVal, yVal, operands) -> {
-            return null;
-        });
-        calculators.put("SCF", (cpu, xVal, yVal, operands) -> {
-            return null;
-        });
-        /*
-        calculators.put("DAA", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isZero = (xVal == 0);
-            conditions.isCarry = ((xVal & 0x100) != 0);
-            return conditions;
-        });*/
-
-        calculators.put("POP", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            int low = xVal & 0xFF;
-            conditions.isZero = ((low & 0x80) != 0);
-            conditions.isSubtract = ((low & 0x40) != 0);
-            conditions.isHalfCarry = ((low & 0x20) != 0);
-            conditions.isCarry = ((low & 0x10) != 0);
-            return conditions;
-        });
-
-        calculators.put("LD", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            if (operands.length > 2) {
-                //LD HL, SP + e8
-                int sp = yVal & 0xFFFF;
-                int offset = (byte) cpu.getCurrentOpcodeObject().getExtraValue(); // sign-extend e8
-                int sum = (sp + offset) & 0xFFFF;
-                conditions.isHalfCarry = ((sp ^ offset ^ sum) & 0x10) != 0;
-                conditions.isCarry = ((sp ^ offset ^ sum) & 0x100) != 0;
-                return conditions;
-            } else {
-                conditions.isHalfCarry = (((xVal & 0x0FFF) + (yVal & 0x0FFF)) & 0x1000) != 0;
-                conditions.isCarry = ((xVal & 0xFFFF) + (yVal & 0xFFFF)) > 0xFFFF;
-                return conditions;
+    /**
+     * Decode the flag behaviour of an opcode.
+     *
+     * @throws IllegalArgumentException if the opcode touches flags in a way nothing here calculates
+     */
+    public FlagPlan plan(OpcodeInfo opcodeInfo) {
+        Flags flags = opcodeInfo.getFlags();
+        int keep = 0;
+        int set = 0;
+        int computed = 0;
+        String[] columns = {flags.getZ(), flags.getN(), flags.getH(), flags.getC()};
+        int[] bits = {Registers.FLAG_ZERO, Registers.FLAG_SUBTRACT, Registers.FLAG_HALF_CARRY, Registers.FLAG_CARRY};
+        for (int i = 0; i < columns.length; i++) {
+            switch (columns[i]) {
+                case "-" -> keep |= bits[i];
+                case "0" -> {
+                }
+                case "1" -> set |= bits[i];
+                default -> computed |= bits[i];
             }
-        });
-
-        calculators.put("CCF", (cpu, xVal, yVal, operands) -> {
-            FlagConditions conditions = new FlagConditions();
-            conditions.isCarry = (!cpu.getRegisters().isFlagSet(Registers.FLAG_CARRY));
-            return conditions;
-        });
-
-
-        calculators.put("LDH", (cpu, xVal, yVal, operands) -> {
-            return new FlagConditions();
-        });
-    }
-
-
-    public void processFlags(CPU cpu, OpcodeInfo opcodeInfo, int xVal, int yVal) {
-        FlagConditions conditions = calculateFlags(cpu, opcodeInfo.getMnemonic(), xVal, yVal, opcodeInfo.getOperands());
-        applyFlags(cpu, opcodeInfo.getFlags(), conditions);
+        }
+        Rule rule = computed == 0 ? Rule.NONE : rule(opcodeInfo);
+        return new FlagPlan(rule, keep, set, computed);
     }
 
-    public FlagConditions calculateFlags(CPU cpu, String mnemonic, int xVal, int yVal, Operand[] operands) {
-        FlagConditionCalculator calculator = calculators.get(mnemonic);
-        if (calculator == null) throw new IllegalArgumentException("No flag calculator for " + mnemonic);
-        return calculator.calculate(cpu, xVal, yVal, operands);
+    private static Rule rule(OpcodeInfo opcodeInfo) {
+        String mnemonic = opcodeInfo.getMnemonic();
+        return switch (mnemonic) {
+            case "ADD" -> {
+                if (opcodeInfo.getOperand(1).getName().equals("e8")) yield Rule.ADD_SP_E8;
+                if (opcodeInfo.getOperand(0).getName().length() > 1) yield Rule.ADD16;
+                yield Rule.ADD8;
+            }
+            case "ADC" -> Rule.ADC8;
+            case "SUB", "CP" -> Rule.SUB8;
+            case "SBC" -> Rule.SBC8;
+            case "INC" -> Rule.INC8;
+            case "DEC" -> Rule.DEC8;
+            case "AND" -> Rule.AND;
+            case "OR" -> Rule.OR;
+            case "XOR" -> Rule.XOR;
+            case "BIT" -> Rule.BIT;
+            case "SWAP" -> Rule.SWAP;
+            case "RL", "RLA", "RLC", "RLCA", "RR", "RRA", "RRC", "RRCA", "SLA", "SRA", "SRL" -> Rule.SHIFT;
+            case "POP" -> Rule.POP;
+            //LD HL, SP + e8 is the only load that touches flags
+            case "LD" -> opcodeInfo.getOperandCount() > 2 ? Rule.LD_HL_SP_E8 : Rule.ADD16;
+            case "CCF" -> Rule.CCF;
+            case "CPL", "SCF", "LDH" -> Rule.NONE;
+            default -> throw new IllegalArgumentException("No flag calculator for " + mnemonic);
+        };
     }
 
     /**
-     * Apply flags to CPU based on calculated conditions or opcode info.
-     * Flag states are set to their expected values when Opcodes.json indicates "0", "1", or "-" for flag states.
-     * Otherwise, FlagCalculator determines the set flag.
+     * Apply an opcode's flags to the CPU.
      *
-     * @param flags
-     * @param conditions
+     * @param xVal Usually the destination value before the operation
+     * @param yVal Usually the source value
      */
-    private void applyFlags(CPU cpu, Flags flags, FlagConditions conditions) {
+    public void processFlags(CPU cpu, FlagPlan plan, int xVal, int yVal) {
         Registers r = cpu.getRegisters();
-        //Zero flag
-        switch (flags.getZ()) {
-            //OpcodeInfo indicates this flag should be set based on conditions that were set in the flag calculator
-            case "Z":
-                r.setFlag(Registers.FLAG_ZERO, conditions.isZero);
-                break;
-            //Opcode info indicates this flag should always be cleared
-            case "0":
-                r.clearFlag(Registers.FLAG_ZERO);
-                break;
-            //Opcode info indicates this flags should always be set
-            case "1":
-                r.setFlag(Registers.FLAG_ZERO);
-                break;
-            //Opcode info could give "-", indicating nothing should change with this flag
-        }
-
-        // Subtract flag
-        switch (flags.getN()) {
-            case "N":
-                r.setFlag(Registers.FLAG_SUBTRACT, conditions.isSubtract);
-                break;
-            case "0":
-                r.clearFlag(Registers.FLAG_SUBTRACT);
-                break;
-            case "1":
-                r.setFlag(Registers.FLAG_SUBTRACT);
-                break;
-            // "-" and other cases - do nothing
-        }
-
-        // Half-carry flag
-        switch (flags.getH()) {
-            case "H":
-                r.setFlag(Registers.FLAG_HALF_CARRY, conditions.isHalfCarry);
-                break;
-            case "0":
-                r.clearFlag(Registers.FLAG_HALF_CARRY);
-                break;
-            case "1":
-                r.setFlag(Registers.FLAG_HALF_CARRY);
-                break;
-            // "-" case - do nothing
-        }
-
-        // Carry flag
-        switch (flags.getC()) {
-            case "C":
-                r.setFlag(Registers.FLAG_CARRY, conditions.isCarry);
-                break;
-            case "0":
-                r.clearFlag(Registers.FLAG_CARRY);
-                break;
-            case "1":
-                r.setFlag(Registers.FLAG_CARRY);
-                break;
-            // "-" case - do nothing
-        }
+        int f = r.getF();
+        int computed = plan.getComputedMask() == 0 ? 0 : calculate(cpu, plan.getRule(), f, xVal, yVal);
+        r.setF((f & plan.getKeepMask()) | plan.getSetMask() | (computed & plan.getComputedMask()));
     }
-}
 
+    /**
+     * @param f F before the operation
+     * @return F bits for the flags the rule computes. Callers mask out the ones the opcode doesn't use.
+     */
+    static int calculate(CPU cpu, Rule rule, int f, int x, int y) {
+        int carry = (f >> 4) & 1;
+        int flags = switch (rule) {
+            case NONE -> 0;
+            case ADD8 -> ADD_FLAGS[((x & 0xFF) << 8) | (y & 0xFF)];
+            case ADC8 -> ADD_FLAGS[(carry << 16) | ((x & 0xFF) << 8) | (y & 0xFF)];
+            case SUB8 -> SUB_FLAGS[((x & 0xFF) << 8) | (y & 0xFF)];
+            case SBC8 -> SUB_FLAGS[(carry << 16) | ((x & 0xFF) << 8) | (y & 0xFF)];
+            case INC8 -> INC_FLAGS[x & 0xFF];
+            case DEC8 -> DEC_FLAGS[x & 0xFF];
+            case ADD16 -> flag(Registers.FLAG_ZERO, ((x + y) & 0xFFFF) == 0)
+                    | flag(Registers.FLAG_HALF_CARRY, (((x & 0x0FFF) + (y & 0x0FFF)) & 0x1000) != 0)
+                    | flag(Registers.FLAG_CARRY, (x & 0xFFFF) + (y & 0xFFFF) > 0xFFFF);
+            case ADD_SP_E8 -> flag(Registers.FLAG_HALF_CARRY, (x & 0x0F) + (y & 0x0F) > 0x0F)
+                    | flag(Registers.FLAG_CARRY, (x & 0xFF) + (y & 0xFF) > 0xFF);
+            case LD_HL_SP_E8 -> {
+                int sp = y & 0xFFFF;
+                int offset = (byte) cpu.getCurrentOpcodeObject().getExtraValue(); // sign-extend e8
+                int sum = (sp + offset) & 0xFFFF;
+                yield flag(Registers.FLAG_HALF_CARRY, ((sp ^ offset ^ sum) & 0x10) != 0)
+                        | flag(Registers.FLAG_CARRY, ((sp ^ offset ^ sum) & 0x100) != 0);
+            }
+            case AND -> flag(Registers.FLAG_ZERO, (x & y & 0xFF) == 0);
+            case OR -> flag(Registers.FLAG_ZERO, ((x | y) & 0xFF) == 0);
+            case XOR -> flag(Registers.FLAG_ZERO, ((x ^ y) & 0xFF) == 0);
+            case BIT -> flag(Registers.FLAG_ZERO, (y & (1 << x)) == 0);
+            case SWAP -> flag(Registers.FLAG_ZERO, x == 0);
+            case SHIFT -> flag(Registers.FLAG_ZERO, x == 0) | flag(Registers.FLAG_CARRY, y == 1);
+            case POP -> x & 0xF0;
+            case CCF -> (f & Registers.FLAG_CARRY) ^ Registers.FLAG_CARRY;
+        };
+        return flags & 0xF0;
+    }
 
-@FunctionalInterface
-interface FlagConditionCalculator {
-    FlagConditions calculate(CPU cpu, int xVal, int yVal, Operand[] operands);
+    private static int flag(int flag, boolean condition) {
+        return condition ? flag : 0;
+    }
 }
-
-class FlagConditions {
-    boolean isZero;
-    boolean isHalfCarry;
-    boolean isCarry;
-    boolean isSubtract;
-}
\ No newline at end of file
@@ -0,0 +1,45 @@
+package org.mochaboy.opcode;
+
+/**
+ * Pre-decoded flag behaviour of a single opcode, built once by {@link FlagCalculator#plan(OpcodeInfo)}. The Z/N/H/C
+ * columns of Opcodes.json are folded into masks: the flags to keep, the flags to force on, and the flags that come
+ * from the calculation. Everything else is cleared.
+ */
+public final class FlagPlan {
+    private final FlagCalculator.Rule rule;
+    private final int keepMask;
+    private final int setMask;
+    private final int computedMask;
+
+    FlagPlan(FlagCalculator.Rule rule, int keepMask, int setMask, int computedMask) {
+        this.rule = rule;
+        this.keepMask = keepMask;
+        this.setMask = setMask;
+        this.computedMask = computedMask;
+    }
+
+    FlagCalculator.Rule getRule() {
+        return rule;
+    }
+
+    /**
+     * @return Flags marked "-", left as they were
+     */
+    public int getKeepMask() {
+        return keepMask;
+    }
+
+    /**
+     * @return Flags marked "1"
+     */
+    public int getSetMask() {
+        return setMask;
+    }
+
+    /**
+     * @return Flags set from the result of the operation
+     */
+    public int getComputedMask() {
+        return computedMask;
+    }
+}
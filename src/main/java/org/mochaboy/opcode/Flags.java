@@ -3,47 +3,39 @@ package org.mochaboy.opcode;
 import org.mochaboy.CPU;
 import org.mochaboy.registers.Registers;
 
-public class Flags {
-    private String Z;
-    private String N;
-    private String H;
-    private String C;
+public final class Flags {
+    private final String Z;
+    private final String N;
+    private final String H;
+    private final String C;
 
-    public Flags() {
+    Flags(String z, String n, String h, String c) {
+        Z = z;
+        N = n;
+        H = h;
+        C = c;
     }
 
-    public String getZ() {
-        return Z;
+    private Flags() { //For Gson
+        this(null, null, null, null);
     }
 
-    public void setZ(String z) {
-        Z = z;
+    public String getZ() {
+        return Z;
     }
 
     public String getN() {
         return N;
     }
 
-    public void setN(String n) {
-        N = n;
-    }
-
     public String getH() {
         return H;
     }
 
-    public void setH(String h) {
-        H = h;
-    }
-
     public String getC() {
         return C;
     }
 
-    public void setC(String c) {
-        C = c;
-    }
-
     public static boolean CheckFlagsByChar(CPU cpu, char flagString) {
         switch (flagString) {
             case 'Z':
@@ -0,0 +1,154 @@
+package org.mochaboy.opcode;
+
+import org.mochaboy.CPU;
+import org.mochaboy.WriteJournal;
+import org.mochaboy.registers.Registers;
+
+/**
+ * Differential check between the switch core and the micro op engine. Before each instruction the switch core runs
+ * with its writes journaled instead of committed, the CPU is rewound, and the micro op engine then runs the same
+ * instruction for real. Registers, flags, IME/HALT state, cycles and the writes each engine issued are compared
+ * afterwards. The micro op engine stays the source of truth, so emulation carries on normally after a divergence.
+ */
+public class LockstepChecker {
+    private final CPU cpu;
+    private final SwitchCore candidate;
+    private final WriteJournal candidateWrites = new WriteJournal();
+    private final WriteJournal referenceWrites = new WriteJournal();
+    private final State before = new State();
+    private final State candidateState = new State();
+    private final State referenceState = new State();
+    private int candidateCycles;
+    private long instructionsChecked;
+    private long divergenceCount;
+    private String firstDivergence;
+
+    public LockstepChecker(CPU cpu, SwitchCore candidate) {
+        this.cpu = cpu;
+        this.candidate = candidate;
+    }
+
+    /**
+     * Run the next instruction on the switch core, then rewind the CPU so the micro op engine can run it.
+     * Must be called on an instruction boundary.
+     */
+    public void runCandidate() {
+        before.capture(cpu);
+        candidateWrites.clear();
+        candidate.setJournal(candidateWrites);
+        try {
+            candidateCycles = candidate.step();
+        } finally {
+            candidate.setJournal(null);
+        }
+        candidateState.capture(cpu);
+        before.restore(cpu);
+
+        referenceWrites.clear();
+        cpu.getMemory().setWriteTap(referenceWrites);
+    }
+
+    /**
+     * Compare against the micro op engine once it has finished the instruction.
+     */
+    public void verify() {
+        cpu.getMemory().setWriteTap(null);
+        referenceState.capture(cpu);
+        instructionsChecked++;
+
+        Opcode reference = cpu.getCurrentOpcodeObject();
+        //Unimplemented opcodes are skipped by the micro op engine without a cycle count, so there's nothing to compare
+        boolean cyclesMatch = reference.isUnimplError() || reference.getRealCycles() == candidateCycles;
+        boolean writesMatch = referenceWrites.contentEquals(candidateWrites);
+        //Only describe the divergence once there is one, so agreeing instructions don't allocate
+        if (cyclesMatch && writesMatch && referenceState.matches(candidateState)) return;
+
+        StringBuilder sb = new StringBuilder();
+        referenceState.diff(candidateState, sb);
+        if (!writesMatch) {
+            sb.append(" writes: switch=").append(candidateWrites).append(" micro-op=").append(referenceWrites);
+        }
+        if (!cyclesMatch) {
+            sb.append(" cycles: switch=").append(candidateCycles).append(" micro-op=").append(reference.getRealCycles());
+        }
+
+        divergenceCount++;
+        if (firstDivergence == null) {
+            firstDivergence = String.format("%04X %s:%s", before.pc, reference.getOpcodeInfo().getMnemonic(), sb);
+            System.err.println("Lockstep divergence at " + firstDivergence);
+        }
+    }
+
+    /**
+     * @return Description of the first divergence seen, or null if the engines have agreed so far.
+     */
+    public String getFirstDivergence() {
+        return firstDivergence;
+    }
+
+    public long getDivergenceCount() {
+        return divergenceCount;
+    }
+
+    public long getInstructionsChecked() {
+        return instructionsChecked;
+    }
+
+    public void reset() {
+        firstDivergence = null;
+        divergenceCount = 0;
+        instructionsChecked = 0;
+    }
+
+    private static final class State {
+        //Indexed by the Registers.REG_* constants
+        private static final String[] NAMES = {"A", "B", "C", "D", "E", "F", "H", "L", "SP", "PC"};
+
+        final int[] registers = new int[Registers.SNAPSHOT_SIZE];
+        int pc;
+        boolean ime, pendingIme, halt;
+
+        void capture(CPU cpu) {
+            Registers r = cpu.getRegisters();
+            r.snapshot(registers);
+            pc = r.getPC();
+            ime = cpu.isIME();
+            pendingIme = cpu.isPendingImeEnable();
+            halt = cpu.isHalt();
+        }
+
+        void restore(CPU cpu) {
+            cpu.getRegisters().restore(registers);
+            cpu.setIME(ime);
+            cpu.setPendingImeEnable(pendingIme);
+            cpu.setHalt(halt);
+        }
+
+        boolean matches(State candidate) {
+            for (int i = 0; i < Registers.SNAPSHOT_SIZE; i++) {
+                int mask = i >= Registers.REG_SP ? 0xFFFF : 0xFF;
+                if ((registers[i] & mask) != (candidate.registers[i] & mask)) return false;
+            }
+            return ime == candidate.ime && pendingIme == candidate.pendingIme && halt == candidate.halt;
+        }
+
+        void diff(State candidate, StringBuilder sb) {
+            for (int i = 0; i < Registers.SNAPSHOT_SIZE; i++) {
+                int mask = i >= Registers.REG_SP ? 0xFFFF : 0xFF;
+                add(sb, NAMES[i], registers[i], candidate.registers[i], mask);
+            }
+            if (ime != candidate.ime) sb.append(" IME: switch=").append(candidate.ime).append(" micro-op=").append(ime);
+            if (pendingIme != candidate.pendingIme)
+                sb.append(" EI pending: switch=").append(candidate.pendingIme).append(" micro-op=").append(pendingIme);
+            if (halt != candidate.halt) sb.append(" HALT: switch=").append(candidate.halt).append(" micro-op=").append(halt);
+        }
+
+        private static void add(StringBuilder sb, String name, int reference, int candidate, int mask) {
+            if ((reference & mask) == (candidate & mask)) return;
+            String format = mask == 0xFF ? "%02X" : "%04X";
+            sb.append(' ').append(name)
+                    .append(": switch=").append(String.format(format, candidate & mask))
+                    .append(" micro-op=").append(String.format(format, reference & mask));
+        }
+    }
+}
@@ -5,78 +5,96 @@ import org.mochaboy.DataType;
 import org.mochaboy.Memory;
 import org.mochaboy.opcode.operations.MicroOperation;
 
-import java.util.LinkedList;
-
+/**
+ * Execution context for the opcode the CPU is currently running. Each CPU owns a single instance and re-arms it with
+ * {@link #begin(OpcodePlan, int)} for every instruction, so executing an opcode doesn't allocate.
+ */
 public class Opcode {
-    private final LinkedList<MicroOperation> microOps;
-    private OpcodeInfo opcodeInfo;
-    private String cc;
-    private String destinationOperandString;
-    private String sourceOperandString;
-    private String extraOperandString;
-    private String opcodeHex;
-    private Operand destinationOperand;
-    private Operand sourceOperand;
-    private Operand extraOperand;
-    private DataType sourceType;
-    private DataType destinationType;
-    private int[] cycleChoices;
-    private int realCycles;
+    private final CPU cpu;
+    private OpcodePlan plan;
+    private MicroOperation[] microOps;
+    private int nextOp;
     private boolean taken;
     private int fetchedAt;
     private int sourceValue;
     private int destinationValue;
     private int extraValue;
+    private int realCycles;
     private int cyclesConsumed;
     private boolean operationsRemaining;
-    private boolean unimplError = false;
     private boolean killRemainingOps = false;
 
 
-    public Opcode() {
-        microOps = new LinkedList<>();
+    public Opcode(CPU cpu) {
+        this.cpu = cpu;
+    }
+
+    /**
+     * Reset this context to run the given plan from its first micro op.
+     *
+     * @param plan      Pre-decoded plan to execute
+     * @param fetchedAt Address the opcode was fetched from
+     */
+    public void begin(OpcodePlan plan, int fetchedAt) {
+        this.plan = plan;
+        this.microOps = plan.getMicroOps();
+        this.fetchedAt = fetchedAt;
+        nextOp = 0;
+        destinationValue = plan.getInitialDestinationValue();
+        sourceValue = plan.getInitialSourceValue();
+        extraValue = 0;
+        realCycles = 0;
+        cyclesConsumed = 0;
+        taken = false;
+        killRemainingOps = false;
+        operationsRemaining = microOps.length > 0;
     }
 
     public MicroOperation execute(CPU cpu, Memory memory) {
-        MicroOperation mo = microOps.pop();
-        mo.execute(cpu, memory);
+        MicroOperation mo = microOps[nextOp++];
+        mo.execute(cpu, memory, this);
         if (killRemainingOps) {
-            microOps.clear();
+            nextOp = microOps.length;
             operationsRemaining = false;
-        } else if (microOps.isEmpty()) {
+        } else if (nextOp >= microOps.length) {
             operationsRemaining = false;
         }
         return mo;
     }
 
-    public MicroOperation addOp(MicroOperation microOperation) {
-        operationsRemaining = true;
-        microOps.add(microOperation);
-        return microOperation;
+    /**
+     * @return The micro op that will run next, or null if this opcode is finished.
+     */
+    public MicroOperation peekNextOp() {
+        return nextOp < microOps.length ? microOps[nextOp] : null;
     }
 
-    public String getDestinationOperandString() {
-        return destinationOperandString;
+    public CPU getCpu() {
+        return cpu;
     }
 
-    public void setDestinationOperandString(String destinationOperandString) {
-        this.destinationOperandString = destinationOperandString;
+    public OpcodePlan getPlan() {
+        return plan;
     }
 
-    public String getSourceOperandString() {
-        return sourceOperandString;
+    public String getDestinationOperandString() {
+        return plan.getDestinationOperandString();
     }
 
-    public void setSourceOperandString(String sourceOperandString) {
-        this.sourceOperandString = sourceOperandString;
+    public String getSourceOperandString() {
+        return plan.getSourceOperandString();
     }
 
     public String getExtraOperandString() {
-        return extraOperandString;
+        return plan.getExtraOperandString();
+    }
+
+    public int getDestinationRegister() {
+        return plan.getDestinationRegister();
     }
 
-    public void setExtraOperandString(String extraOperandString) {
-        this.extraOperandString = extraOperandString;
+    public int getSourceRegister() {
+        return plan.getSourceRegister();
     }
 
     public int getSourceValue() {
@@ -103,10 +121,6 @@ public class Opcode {
         this.extraValue = extraValue;
     }
 
-    public LinkedList<MicroOperation> getMicroOps() {
-        return microOps;
-    }
-
     public boolean hasOperationsRemaining() {
         return operationsRemaining;
     }
@@ -116,43 +130,23 @@ public class Opcode {
     }
 
     public Operand getDestinationOperand() {
-        return destinationOperand;
-    }
-
-    public void setDestinationOperand(Operand destinationOperand) {
-        this.destinationOperand = destinationOperand;
+        return plan.getDestinationOperand();
     }
 
     public Operand getSourceOperand() {
-        return sourceOperand;
-    }
-
-    public void setSourceOperand(Operand sourceOperand) {
-        this.sourceOperand = sourceOperand;
+        return plan.getSourceOperand();
     }
 
     public Operand getExtraOperand() {
-        return extraOperand;
-    }
-
-    public void setExtraOperand(Operand extraOperand) {
-        this.extraOperand = extraOperand;
+        return plan.getExtraOperand();
     }
 
     public String getCc() {
-        return cc;
-    }
-
-    public void setCc(String cc) {
-        this.cc = cc;
+        return plan.getCc();
     }
 
     public OpcodeInfo getOpcodeInfo() {
-        return opcodeInfo;
-    }
-
-    public void setOpcodeInfo(OpcodeInfo opcodeInfo) {
-        this.opcodeInfo = opcodeInfo;
+        return plan.getOpcodeInfo();
     }
 
     public int getFetchedAt() {
@@ -164,11 +158,7 @@ public class Opcode {
     }
 
     public boolean isUnimplError() {
-        return unimplError;
-    }
-
-    public void setUnimplError(boolean unimplError) {
-        this.unimplError = unimplError;
+        return plan.isUnimplError();
     }
 
     public int getCyclesConsumed() {
@@ -180,35 +170,15 @@ public class Opcode {
     }
 
     public String getOpcodeHex() {
-        return opcodeHex;
-    }
-
-    public void setOpcodeHex(String opcodeHex) {
-        this.opcodeHex = opcodeHex;
+        return plan.getOpcodeHex();
     }
 
     public DataType getSourceType() {
-        return sourceType;
-    }
-
-    public void setSourceType(DataType sourceType) {
-        this.sourceType = sourceType;
+        return plan.getSourceType();
     }
 
     public DataType getDestinationType() {
-        return destinationType;
-    }
-
-    public void setDestinationType(DataType destinationType) {
-        this.destinationType = destinationType;
-    }
-
-    public int[] getCycleChoices() {
-        return cycleChoices;
-    }
-
-    public void setCycleChoices(int[] cycleChoices) {
-        this.cycleChoices = cycleChoices;
+        return plan.getDestinationType();
     }
 
     public int getRealCycles() {
@@ -236,9 +206,9 @@ public class Opcode {
     }
 
     public String toString() {
-        Operand[] o = opcodeInfo.getOperands();
+        OpcodeInfo opcodeInfo = getOpcodeInfo();
         String mnemonic = opcodeInfo.getMnemonic();
-        if (unimplError) mnemonic = "unimplemented " + mnemonic;
+        if (isUnimplError()) mnemonic = "unimplemented " + mnemonic;
         String hs = getOpcodeHex();
         String fs = String.format("%04X", fetchedAt);
         String ds = String.format("%04X", destinationValue);
@@ -252,32 +222,32 @@ public class Opcode {
         boolean destinationIsInc = true;
         boolean sourceIsInc = false;
 
-        if (o.length > 0) {
-            destinationIsImmediate = o[0].isImmediate();
-            destinationIsDec = o[0].isDecrement();
-            destinationIsInc = o[0].isIncrement();
+        if (opcodeInfo.getOperandCount() > 0) {
+            destinationIsImmediate = opcodeInfo.getOperand(0).isImmediate();
+            destinationIsDec = opcodeInfo.getOperand(0).isDecrement();
+            destinationIsInc = opcodeInfo.getOperand(0).isIncrement();
         }
 
-        if (o.length > 1) {
-            sourceIsImmediate = o[1].isImmediate();
-            sourceIsDec = o[1].isDecrement();
-            sourceIsInc = o[1].isIncrement();
+        if (opcodeInfo.getOperandCount() > 1) {
+            sourceIsImmediate = opcodeInfo.getOperand(1).isImmediate();
+            sourceIsDec = opcodeInfo.getOperand(1).isDecrement();
+            sourceIsInc = opcodeInfo.getOperand(1).isIncrement();
         }
 
         StringBuilder sb = new StringBuilder();
 
         sb.append(fs).append(": ").append(hs).append(" ").append(mnemonic).append(" ");
-        if (o.length > 0) {
+        if (opcodeInfo.getOperandCount() > 0) {
             if (!destinationIsImmediate) sb.append("[");
-            sb.append(o[0].getName());
+            sb.append(opcodeInfo.getOperand(0).getName());
             if (destinationIsDec) sb.append("-");
             if (destinationIsInc) sb.append("+");
             if (!destinationIsImmediate) sb.append("]");
             sb.append("(").append(ds).append(") ");
 
-            if (o.length > 1) {
+            if (opcodeInfo.getOperandCount() > 1) {
                 if (!sourceIsImmediate) sb.append("[");
-                sb.append(o[1].getName());
+                sb.append(opcodeInfo.getOperand(1).getName());
                 if (sourceIsDec) sb.append("-");
                 if (sourceIsInc) sb.append("+");
                 if (!sourceIsImmediate) sb.append("]");
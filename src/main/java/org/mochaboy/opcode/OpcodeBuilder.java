@@ -1,66 +1,54 @@
 package org.mochaboy.opcode;
 
-import org.mochaboy.CPU;
 import org.mochaboy.DataType;
 import org.mochaboy.opcode.operations.*;
+import org.mochaboy.registers.Registers;
 
 public class OpcodeBuilder {
-    private final CPU cpu;
-    private final OpcodeWrapper opcodeWrapper;
     private final FlagCalculator flagCalculator;
     private boolean checkIncDec;
 
-    public OpcodeBuilder(CPU cpu, OpcodeWrapper opcodeWrapper) {
-        this.cpu = cpu;
-        this.opcodeWrapper = opcodeWrapper;
+    public OpcodeBuilder() {
         this.flagCalculator = new FlagCalculator();
     }
 
-    public Opcode build(int predefinedOpcode, boolean isPrefixed) {
-        return build(
-                0x00, predefinedOpcode, isPrefixed
-        );
-    }
-
-    public Opcode build(int fetchedAt, int opcode, boolean isPrefixed) {
-        if (fetchedAt == 0x0A) {
-            //System.out.println();
-        }
-        Opcode opcodeObject = new Opcode();
-        opcodeObject.setFetchedAt(fetchedAt);
+    /**
+     * Decode an opcode into an execution plan. Plans don't depend on any CPU state and can be reused indefinitely.
+     *
+     * @param opcode     Opcode byte
+     * @param isPrefixed Whether the opcode followed a 0xCB prefix
+     * @return The sealed plan for this opcode
+     */
+    public OpcodePlan build(int opcode, boolean isPrefixed) {
         String hexKey = String.format("0x%02X", opcode);
-        opcodeObject.setOpcodeHex(hexKey);
-        OpcodeInfo opcodeInfo = isPrefixed ?
-                opcodeWrapper.getCbprefixed().get(hexKey) : opcodeWrapper.getUnprefixed().get(hexKey);
-        opcodeObject.setOpcodeInfo(opcodeInfo);
+        OpcodeInfo opcodeInfo = OpcodeTable.get(opcode, isPrefixed);
+        OpcodePlan plan = new OpcodePlan(opcodeInfo, hexKey);
 
 
         //Build opcode
-        buildMicroOpsFromOperands(opcodeObject, opcodeInfo);
-        buildOpsFromMnemonics(opcodeObject, opcodeInfo);
+        buildMicroOpsFromOperands(plan, opcodeInfo);
+        buildOpsFromMnemonics(plan, opcodeInfo);
 
         //Queue up a flag process op if needed
         Flags f = opcodeInfo.getFlags();
         if (!f.getC().equals("-") || !f.getH().equals("-") || !f.getN().equals("-") || !f.getZ().equals("-")) {
-            if (!opcodeObject.getOpcodeInfo().getMnemonic().equals("DAA")) {
-                opcodeObject.addOp(new HandleFlags(flagCalculator, cpu, opcodeInfo,
-                        opcodeObject::getDestinationValue, opcodeObject::getSourceValue));
+            if (!plan.getOpcodeInfo().getMnemonic().equals("DAA")) {
+                plan.addOp(new HandleFlags(flagCalculator, flagCalculator.plan(opcodeInfo),
+                        Opcode::getDestinationValue, Opcode::getSourceValue));
             }
 
         }
 
         //Determine if this is LD [HL-/+]
         if (checkIncDec) {
-            handlePostIncDec(opcodeObject, opcodeInfo);
+            handlePostIncDec(plan, opcodeInfo);
         }
 
-        //
-        //opcodeObject.setCyclesConsumed(calculateCycles(opcodeObject));
-        opcodeObject.addOp(
-                new CalculateCycles(opcodeObject)
+        plan.addOp(
+                new CalculateCycles()
         );
 
-        return opcodeObject;
+        return plan.freeze();
     }
 
     //Builds an opcode object, setting up micro operations
@@ -74,50 +62,49 @@ public class OpcodeBuilder {
     Flags: None affected.
 
      */
-    private void buildMicroOpsFromOperands(Opcode opcodeObject, OpcodeInfo opcodeInfo) {
-        Operand[] operands = opcodeInfo.getOperands();
-        Operand d = operands.length > 0 ? operands[0] : null;
-        Operand s = operands.length > 1 ? operands[1] : null;
-        Operand x = operands.length > 2 ? operands[2] : null;
+    private void buildMicroOpsFromOperands(OpcodePlan plan, OpcodeInfo opcodeInfo) {
+        Operand d = opcodeInfo.getOperandCount() > 0 ? opcodeInfo.getOperand(0) : null;
+        Operand s = opcodeInfo.getOperandCount() > 1 ? opcodeInfo.getOperand(1) : null;
+        Operand x = opcodeInfo.getOperandCount() > 2 ? opcodeInfo.getOperand(2) : null;
         int result;
 
         //Handle destination operand
         if (d != null) {
-            handleDestinationOperand(opcodeObject, d);
+            handleDestinationOperand(plan, d);
         }
 
         //Handle source operand
         if (s != null) {
-            handleSourceOperand(opcodeObject, s, opcodeInfo);
+            handleSourceOperand(plan, s, opcodeInfo);
         }
 
-        if (operands.length > 2) {
+        if (opcodeInfo.getOperandCount() > 2) {
             //This must be LD HL, SP+e8
-            opcodeObject.addOp(
-                    new ReadImmediate8bit(opcodeObject::setExtraValue)
+            plan.addOp(
+                    new ReadImmediate8bit(Opcode::setExtraValue)
             );
-            opcodeObject.addOp(
+            plan.addOp(
                     new EmptyCycle() //Because this opcode needs 3 cycles
             );
         }
 
     }
 
-    private void handleDestinationOperand(Opcode opcodeObject, Operand d) {
-        opcodeObject.setDestinationOperandString(d.getName());
-        opcodeObject.setDestinationOperand(d);
+    private void handleDestinationOperand(OpcodePlan plan, Operand d) {
+        plan.setDestinationOperandString(d.getName());
+        plan.setDestinationOperand(d);
         switch (d.getName()) {
             case "e8" -> {
                 //Should only appear in JR n8 (aka JR n16)
                 //Will end in imaginary ADD PC, e8? so setup source value here
-                opcodeObject.setSourceType(DataType.E8);
-                opcodeObject.addOp(new ReadImmediate8bit(opcodeObject::setSourceValue));
+                plan.setSourceType(DataType.E8);
+                plan.addOp(new ReadImmediate8bit(Opcode::setSourceValue));
             }
             case "a8" -> {
                 //Only occurs in LDH
-                opcodeObject.setDestinationType(DataType.A8);
-                opcodeObject.addOp(
-                        new ReadImmediate8bit(opcodeObject::setDestinationValue, true) //Adds offset of FF00
+                plan.setDestinationType(DataType.A8);
+                plan.addOp(
+                        new ReadImmediate8bit(Opcode::setDestinationValue, true) //Adds offset of FF00
                 );
             }
             case "a16" -> {
@@ -125,35 +112,35 @@ public class OpcodeBuilder {
                 //2 cycles to read 16-bit address
                 //Gets the low and high bytes, stores them temporarily in the opcode's dest and source values,
                 //then merges them together to be stored in dest value. Source val is overwritten later.
-                opcodeObject.setDestinationType(DataType.N16);
-                opcodeObject.addOp(new ReadImmediate8bit(opcodeObject::setDestinationValue));
-                opcodeObject.addOp(new ReadImmediate8bit(opcodeObject::setSourceValue));
-                opcodeObject.addOp(
+                plan.setDestinationType(DataType.N16);
+                plan.addOp(new ReadImmediate8bit(Opcode::setDestinationValue));
+                plan.addOp(new ReadImmediate8bit(Opcode::setSourceValue));
+                plan.addOp(
                         new MergeOperands(
-                                opcodeObject::getDestinationValue, opcodeObject::getSourceValue,
-                                opcodeObject::setDestinationValue)
+                                Opcode::getDestinationValue, Opcode::getSourceValue,
+                                Opcode::setDestinationValue)
                 );
             }
             case "A", "B", "C", "D", "E", "H", "L" -> {
                 //Operand C could refer to register C, or flag condition cc, depending on the mnemonic
                 //Explicitly set a condition if so and break
-                OpcodeInfo o = opcodeObject.getOpcodeInfo();
+                OpcodeInfo o = plan.getOpcodeInfo();
                 if (o.getMnemonic().equals("CALL")
                         || o.getMnemonic().equals("JP")
                         || o.getMnemonic().equals("JR")
                         || o.getMnemonic().equals("RET")) {
-                    opcodeObject.setCc("C");
+                    plan.setCc("C");
                     break;
                 }
 
                 if (!d.isImmediate()) {
                     //If it's an 8b register and not immediate, it must be LD [C], A
-                    opcodeObject.setDestinationType(DataType.A8);
+                    plan.setDestinationType(DataType.A8);
                 } else {
-                    opcodeObject.setDestinationType(DataType.R8);
+                    plan.setDestinationType(DataType.R8);
                 }
-                opcodeObject.addOp(
-                        new ReadRegister8Bit(opcodeObject::setDestinationValue, d.getName())
+                plan.addOp(
+                        new ReadRegister8Bit(Opcode::setDestinationValue, Registers.indexOf(d.getName()))
                 );
             }
             case "AF", "BC", "DE", "HL", "SP", "PC" -> {
@@ -162,22 +149,22 @@ public class OpcodeBuilder {
 
                 //If not an immediate value, read the address held in a 16-bit register
                 if (!d.isImmediate()) {
-                    opcodeObject.setDestinationType(DataType.N16);
-                    opcodeObject.addOp(new ReadRegister16Bit(opcodeObject::setDestinationValue, d.getName()));
+                    plan.setDestinationType(DataType.N16);
+                    plan.addOp(new ReadRegister16Bit(Opcode::setDestinationValue, Registers.indexOf(d.getName())));
                 } else {
-                    //This is a register. Set opcodeObject.destinationValue to the value held in that register
-                    opcodeObject.setDestinationType(DataType.R16);
-                    opcodeObject.addOp(
-                            new ReadRegister16Bit(opcodeObject::setDestinationValue, d.getName()));
+                    //This is a register. Set plan.destinationValue to the value held in that register
+                    plan.setDestinationType(DataType.R16);
+                    plan.addOp(
+                            new ReadRegister16Bit(Opcode::setDestinationValue, Registers.indexOf(d.getName())));
                 }
             }
             //RES - set bit u3 to 0 in r8 or [HL]
             //BIT - test bit u3 in r8
             case "0", "1", "2", "3", "4", "5", "6", "7", "8", "9" -> {
-                opcodeObject.setDestinationValue(Integer.parseInt(d.getName()));
+                plan.setInitialDestinationValue(Integer.parseInt(d.getName()));
             }
             case "Z", "NZ", "NC" -> {
-                opcodeObject.setCc(d.getName()); //Other flag conditions
+                plan.setCc(d.getName()); //Other flag conditions
             }
             case "$00", "$08", "$10", "$18", "$20", "$28", "$30", "$38" -> {
             }
@@ -185,74 +172,74 @@ public class OpcodeBuilder {
 
     }
 
-    private void handleSourceOperand(Opcode opcodeObject, Operand s, OpcodeInfo opcodeInfo) {
-        opcodeObject.setSourceOperandString(s.getName());
-        opcodeObject.setSourceOperand(s);
+    private void handleSourceOperand(OpcodePlan plan, Operand s, OpcodeInfo opcodeInfo) {
+        plan.setSourceOperandString(s.getName());
+        plan.setSourceOperand(s);
         switch (s.getName()) {
             case "n8":
-                opcodeObject.setSourceType(DataType.N8);
-                opcodeObject.addOp(
-                        new ReadImmediate8bit(opcodeObject::setSourceValue)
+                plan.setSourceType(DataType.N8);
+                plan.addOp(
+                        new ReadImmediate8bit(Opcode::setSourceValue)
                 );
                 break;
             case "a8":
-                opcodeObject.setSourceType(DataType.A8);
-                opcodeObject.addOp(
-                        new ReadImmediate8bit(opcodeObject::setSourceValue, true)
+                plan.setSourceType(DataType.A8);
+                plan.addOp(
+                        new ReadImmediate8bit(Opcode::setSourceValue, true)
                 );
-                //opcodeObject.addOp(new ReadMemory8Bit(opcodeObject::setSourceValue, opcodeObject::getSourceValue));
+                //plan.addOp(new ReadMemory8Bit(Opcode::setSourceValue, Opcode::getSourceValue));
                 break;
             case "n16":
                 //Read integer constant value, then merge, set as operand 2
-                opcodeObject.setSourceType(DataType.N16);
-                opcodeObject.addOp(
-                        new ReadImmediate8bit(opcodeObject::setSourceValue)
+                plan.setSourceType(DataType.N16);
+                plan.addOp(
+                        new ReadImmediate8bit(Opcode::setSourceValue)
                 );
-                opcodeObject.addOp(
-                        new ReadImmediate8bit(opcodeObject::setExtraValue)
+                plan.addOp(
+                        new ReadImmediate8bit(Opcode::setExtraValue)
                 );
-                opcodeObject.addOp(
+                plan.addOp(
                         new FlipBytes(
-                                opcodeObject::getSourceValue, opcodeObject::getExtraValue, opcodeObject::setSourceValue)
+                                Opcode::getSourceValue, Opcode::getExtraValue, Opcode::setSourceValue)
                 );
                 break;
 
             case "a16":
-                opcodeObject.setSourceType(DataType.N16);
-                opcodeObject.addOp(
-                        new ReadImmediate8bit(opcodeObject::setDestinationValue)
+                plan.setSourceType(DataType.N16);
+                plan.addOp(
+                        new ReadImmediate8bit(Opcode::setDestinationValue)
                 );
-                opcodeObject.addOp(
-                        new ReadImmediate8bit(opcodeObject::setSourceValue)
+                plan.addOp(
+                        new ReadImmediate8bit(Opcode::setSourceValue)
                 );
 
                 //Change where MergeOperands result is stored depending on whether of not this is a call
                 //Trust me bro
-                OpcodeInfo o = opcodeObject.getOpcodeInfo();
+                OpcodeInfo o = plan.getOpcodeInfo();
                 if (o.getMnemonic().equals("CALL")
                         || o.getMnemonic().equals("JP")
                         || o.getMnemonic().equals("JR")
                         || o.getMnemonic().equals("RET")) {
-                    opcodeObject.addOp(
+                    plan.addOp(
                             new MergeOperands(
-                                    opcodeObject::getDestinationValue, opcodeObject::getSourceValue, opcodeObject::setDestinationValue)
+                                    Opcode::getDestinationValue, Opcode::getSourceValue, Opcode::setDestinationValue)
                     );
                     break;
                 } else {
-                    opcodeObject.addOp(
+                    plan.addOp(
                             new MergeOperands(
-                                    opcodeObject::getDestinationValue, opcodeObject::getSourceValue, opcodeObject::setSourceValue)
+                                    Opcode::getDestinationValue, Opcode::getSourceValue, Opcode::setSourceValue)
                     );
                 }
 
-                opcodeObject.addOp(new ReadMemory8Bit(
-                        opcodeObject::setSourceValue, opcodeObject::getSourceValue
+                plan.addOp(new ReadMemory8Bit(
+                        Opcode::setSourceValue, Opcode::getSourceValue
                 ));
                 break;
             case "e8":
-                opcodeObject.setSourceType(DataType.E8);
-                opcodeObject.addOp(new ReadImmediate8bit(opcodeObject::setSourceValue));
-                opcodeObject.addOp(new EmptyCycle()); //To make sure ADD SP, e8 takes 4 cycles
+                plan.setSourceType(DataType.E8);
+                plan.addOp(new ReadImmediate8bit(Opcode::setSourceValue));
+                plan.addOp(new EmptyCycle()); //To make sure ADD SP, e8 takes 4 cycles
                 break;
             case "A":
             case "B":
@@ -261,19 +248,19 @@ public class OpcodeBuilder {
             case "E":
             case "H":
             case "L":
-                if (opcodeObject.getSourceOperand().isImmediate()) {
-                    opcodeObject.setSourceType(DataType.R8);
+                if (plan.getSourceOperand().isImmediate()) {
+                    plan.setSourceType(DataType.R8);
                     String m = opcodeInfo.getMnemonic();
                     //Stupid check to make sure INC and DEC get handled correctly. Trust me
                     if (m.equals("INC") || m.equals("DEC")) {
-                        opcodeObject.addOp(new ReadRegister8Bit(opcodeObject::setDestinationValue, s.getName()));
+                        plan.addOp(new ReadRegister8Bit(Opcode::setDestinationValue, Registers.indexOf(s.getName())));
                         break;
-                    } else opcodeObject.addOp(new ReadRegister8Bit(opcodeObject::setSourceValue, s.getName()));
+                    } else plan.addOp(new ReadRegister8Bit(Opcode::setSourceValue, Registers.indexOf(s.getName())));
                     break;
                 } else {
-                    opcodeObject.setSourceType(DataType.A8);
-                    opcodeObject.addOp(new ReadRegister8Bit(opcodeObject::setSourceValue, s.getName()));
-                    //opcodeObject.addOp(new ReadMemory8Bit(opcodeObject::setSourceValue, opcodeObject::getSourceValue));
+                    plan.setSourceType(DataType.A8);
+                    plan.addOp(new ReadRegister8Bit(Opcode::setSourceValue, Registers.indexOf(s.getName())));
+                    //plan.addOp(new ReadMemory8Bit(Opcode::setSourceValue, Opcode::getSourceValue));
                 }
                 break;
             case "AF":
@@ -283,333 +270,325 @@ public class OpcodeBuilder {
             case "SP":
             case "PC":
                 if (s.isIncrement() || s.isDecrement()) checkIncDec = true;
-                if (opcodeObject.getSourceOperand().isImmediate()) {
-                    opcodeObject.setSourceType(DataType.R16);
-                    opcodeObject.addOp(
-                            new ReadRegister16Bit(opcodeObject::setSourceValue, s.getName())
+                if (plan.getSourceOperand().isImmediate()) {
+                    plan.setSourceType(DataType.R16);
+                    plan.addOp(
+                            new ReadRegister16Bit(Opcode::setSourceValue, Registers.indexOf(s.getName()))
                     );
                     break;
                 } else {
-                    opcodeObject.setSourceType(DataType.N16);
-                    opcodeObject.addOp(
-                            new ReadRegister16Bit(opcodeObject::setSourceValue, s.getName())
+                    plan.setSourceType(DataType.N16);
+                    plan.addOp(
+                            new ReadRegister16Bit(Opcode::setSourceValue, Registers.indexOf(s.getName()))
                     );
-                    opcodeObject.addOp(
-                            new ReadMemory8Bit(opcodeObject::setSourceValue, opcodeObject::getSourceValue)
+                    plan.addOp(
+                            new ReadMemory8Bit(Opcode::setSourceValue, Opcode::getSourceValue)
                     );
                     break;
                 }
         }
     }
 
-    private void buildOpsFromMnemonics(Opcode opcodeObject, OpcodeInfo opcodeInfo) {
+    private void buildOpsFromMnemonics(OpcodePlan plan, OpcodeInfo opcodeInfo) {
         String m = opcodeInfo.getMnemonic();
         switch (m) {
             //ALU operations
-            case "ADC" -> opcodeObject.addOp(
-                    new AluOperation(AluOperation.Type.ADC, opcodeObject, opcodeObject::getDestinationValue, opcodeObject::getSourceValue)
+            case "ADC" -> plan.addOp(
+                    new AluOperation(AluOperation.Type.ADC, plan, Opcode::getDestinationValue, Opcode::getSourceValue)
             );
             case "ADD" -> {
-                opcodeObject.addOp(
-                        new AluOperation(AluOperation.Type.ADD, opcodeObject, opcodeObject::getDestinationValue, opcodeObject::getSourceValue)
+                plan.addOp(
+                        new AluOperation(AluOperation.Type.ADD, plan, Opcode::getDestinationValue, Opcode::getSourceValue)
                 );
             }
-            case "CP" -> opcodeObject.addOp(
-                    new AluOperation(AluOperation.Type.CP, opcodeObject, opcodeObject::getDestinationValue, opcodeObject::getSourceValue)
+            case "CP" -> plan.addOp(
+                    new AluOperation(AluOperation.Type.CP, plan, Opcode::getDestinationValue, Opcode::getSourceValue)
             );
             case "DEC" -> {
-                opcodeObject.addOp(
-                        new AluOperation(AluOperation.Type.DEC, opcodeObject, opcodeObject::getDestinationValue, opcodeObject::getSourceValue)
+                plan.addOp(
+                        new AluOperation(AluOperation.Type.DEC, plan, Opcode::getDestinationValue, Opcode::getSourceValue)
                 );
             }
-            case "INC" -> opcodeObject.addOp(
-                    new AluOperation(AluOperation.Type.INC, opcodeObject, opcodeObject::getDestinationValue, opcodeObject::getSourceValue)
+            case "INC" -> plan.addOp(
+                    new AluOperation(AluOperation.Type.INC, plan, Opcode::getDestinationValue, Opcode::getSourceValue)
             );
-            case "SBC" -> opcodeObject.addOp(
-                    new AluOperation(AluOperation.Type.SBC, opcodeObject, opcodeObject::getDestinationValue, opcodeObject::getSourceValue)
+            case "SBC" -> plan.addOp(
+                    new AluOperation(AluOperation.Type.SBC, plan, Opcode::getDestinationValue, Opcode::getSourceValue)
             );
-            case "SUB" -> opcodeObject.addOp(
-                    new AluOperation(AluOperation.Type.SUB, opcodeObject, opcodeObject::getDestinationValue, opcodeObject::getSourceValue)
+            case "SUB" -> plan.addOp(
+                    new AluOperation(AluOperation.Type.SUB, plan, Opcode::getDestinationValue, Opcode::getSourceValue)
             );
 
 
             //LD Operations
             case "LD", "LDH" -> {
                 // special‑case opcode 0x08 :  LD (a16),SP
-                if (opcodeObject.getOpcodeInfo().getOpcode() == 0x08) {
+                if (plan.getOpcodeInfo().getOpcode() == 0x08) {
                     //Write a 16 bits at address a16, one byte at a time per cycle
-                    opcodeObject.addOp(
+                    plan.addOp(
                             new WriteMemory8Bit(
-                                    opcodeObject::getDestinationValue,
-                                    () -> opcodeObject.getSourceValue() & 0x00FF
+                                    Opcode::getDestinationValue,
+                                    op -> op.getSourceValue() & 0x00FF
                             )
                     );
-                    opcodeObject.addOp(
+                    plan.addOp(
                             new WriteMemory8Bit(
-                                    () -> (opcodeObject.getDestinationValue() + 1) & 0xFFFF,
-                                    () -> (opcodeObject.getSourceValue() >>> 8) & 0x00FF
+                                    op -> (op.getDestinationValue() + 1) & 0xFFFF,
+                                    op -> (op.getSourceValue() >>> 8) & 0x00FF
                             )
                     );
                 } else {
-                    opcodeObject.addOp(new Load(opcodeObject));
+                    plan.addOp(new Load());
                 }
             }
 
             //Bitwise operations
-            case "AND" -> opcodeObject.addOp(
-                    new BitwiseOperation(BitwiseOperation.Type.AND, opcodeObject, opcodeObject::getSourceValue)
+            case "AND" -> plan.addOp(
+                    new BitwiseOperation(BitwiseOperation.Type.AND, Opcode::getSourceValue)
             );
-            case "CPL" -> opcodeObject.addOp(
-                    new BitwiseOperation(BitwiseOperation.Type.CPL, opcodeObject, opcodeObject::getSourceValue)
+            case "CPL" -> plan.addOp(
+                    new BitwiseOperation(BitwiseOperation.Type.CPL, Opcode::getSourceValue)
             );
-            case "OR" -> opcodeObject.addOp(
-                    new BitwiseOperation(BitwiseOperation.Type.OR, opcodeObject, opcodeObject::getSourceValue)
+            case "OR" -> plan.addOp(
+                    new BitwiseOperation(BitwiseOperation.Type.OR, Opcode::getSourceValue)
             );
-            case "XOR" -> opcodeObject.addOp(
-                    new BitwiseOperation(BitwiseOperation.Type.XOR, opcodeObject, opcodeObject::getSourceValue)
+            case "XOR" -> plan.addOp(
+                    new BitwiseOperation(BitwiseOperation.Type.XOR, Opcode::getSourceValue)
             );
 
             //Bit flag operations
             case "BIT" -> {
             } //Changes no values, is implied in FlagCalculator
-            case "RES" -> opcodeObject.addOp(
-                    new BitFlagOperation(BitFlagOperation.Type.RES, opcodeObject, opcodeObject::getDestinationValue, opcodeObject::getSourceValue)
+            case "RES" -> plan.addOp(
+                    new BitFlagOperation(BitFlagOperation.Type.RES, Opcode::getDestinationValue, Opcode::getSourceValue)
             );
-            case "SET" -> opcodeObject.addOp(
-                    new BitFlagOperation(BitFlagOperation.Type.SET, opcodeObject, opcodeObject::getDestinationValue, opcodeObject::getSourceValue)
+            case "SET" -> plan.addOp(
+                    new BitFlagOperation(BitFlagOperation.Type.SET, Opcode::getDestinationValue, Opcode::getSourceValue)
             );
 
             //Bit shift operations
             case "RL" -> {
-                opcodeObject.addOp(
-                        new BitShiftOperation(BitShiftOperation.Type.RL, opcodeObject, opcodeObject::getDestinationValue)
+                plan.addOp(
+                        new BitShiftOperation(BitShiftOperation.Type.RL, plan, Opcode::getDestinationValue)
                 );
             }
             case "RLA" -> {
-                opcodeObject.addOp(new ReadRegister8Bit(opcodeObject::setDestinationValue, "A"));
-                opcodeObject.addOp(
-                        new BitShiftOperation(BitShiftOperation.Type.RLA, opcodeObject, opcodeObject::getDestinationValue)
+                plan.addOp(new ReadRegister8Bit(Opcode::setDestinationValue, Registers.REG_A));
+                plan.addOp(
+                        new BitShiftOperation(BitShiftOperation.Type.RLA, plan, Opcode::getDestinationValue)
                 );
             }
             case "RLC" -> {
-                opcodeObject.addOp(
-                        new BitShiftOperation(BitShiftOperation.Type.RLC, opcodeObject, opcodeObject::getDestinationValue)
+                plan.addOp(
+                        new BitShiftOperation(BitShiftOperation.Type.RLC, plan, Opcode::getDestinationValue)
                 );
             }
             case "RLCA" -> {
-                opcodeObject.addOp(new ReadRegister8Bit(opcodeObject::setDestinationValue, "A"));
-                opcodeObject.addOp(
-                        new BitShiftOperation(BitShiftOperation.Type.RLCA, opcodeObject, opcodeObject::getDestinationValue)
+                plan.addOp(new ReadRegister8Bit(Opcode::setDestinationValue, Registers.REG_A));
+                plan.addOp(
+                        new BitShiftOperation(BitShiftOperation.Type.RLCA, plan, Opcode::getDestinationValue)
                 );
             }
             case "RR" -> {
-                opcodeObject.addOp(
-                        new BitShiftOperation(BitShiftOperation.Type.RR, opcodeObject, opcodeObject::getDestinationValue)
+                plan.addOp(
+                        new BitShiftOperation(BitShiftOperation.Type.RR, plan, Opcode::getDestinationValue)
                 );
             }
             case "RRA" -> {
-                opcodeObject.addOp(new ReadRegister8Bit(opcodeObject::setDestinationValue, "A"));
-                opcodeObject.addOp(
-                        new BitShiftOperation(BitShiftOperation.Type.RRA, opcodeObject, opcodeObject::getDestinationValue)
+                plan.addOp(new ReadRegister8Bit(Opcode::setDestinationValue, Registers.REG_A));
+                plan.addOp(
+                        new BitShiftOperation(BitShiftOperation.Type.RRA, plan, Opcode::getDestinationValue)
                 );
             }
             case "RRC" -> {
-                opcodeObject.addOp(
-                        new BitShiftOperation(BitShiftOperation.Type.RRC, opcodeObject, opcodeObject::getDestinationValue)
+                plan.addOp(
+                        new BitShiftOperation(BitShiftOperation.Type.RRC, plan, Opcode::getDestinationValue)
                 );
             }
             case "RRCA" -> {
-                opcodeObject.addOp(new ReadRegister8Bit(opcodeObject::setDestinationValue, "A"));
-                opcodeObject.addOp(
-                        new BitShiftOperation(BitShiftOperation.Type.RRCA, opcodeObject, opcodeObject::getDestinationValue)
+                plan.addOp(new ReadRegister8Bit(Opcode::setDestinationValue, Registers.REG_A));
+                plan.addOp(
+                        new BitShiftOperation(BitShiftOperation.Type.RRCA, plan, Opcode::getDestinationValue)
                 );
             }
             case "SLA" -> {
-                opcodeObject.addOp(
-                        new BitShiftOperation(BitShiftOperation.Type.SLA, opcodeObject, opcodeObject::getDestinationValue)
+                plan.addOp(
+                        new BitShiftOperation(BitShiftOperation.Type.SLA, plan, Opcode::getDestinationValue)
                 );
             }
             case "SRA" -> {
-                opcodeObject.addOp(
-                        new BitShiftOperation(BitShiftOperation.Type.SRA, opcodeObject, opcodeObject::getDestinationValue)
+                plan.addOp(
+                        new BitShiftOperation(BitShiftOperation.Type.SRA, plan, Opcode::getDestinationValue)
                 );
             }
             case "SRL" -> {
-                opcodeObject.addOp(
-                        new BitShiftOperation(BitShiftOperation.Type.SRL, opcodeObject, opcodeObject::getDestinationValue)
+                plan.addOp(
+                        new BitShiftOperation(BitShiftOperation.Type.SRL, plan, Opcode::getDestinationValue)
                 );
             }
             case "SWAP" -> {
-                opcodeObject.addOp(
-                        new BitShiftOperation(BitShiftOperation.Type.SWAP, opcodeObject, opcodeObject::getDestinationValue)
+                plan.addOp(
+                        new BitShiftOperation(BitShiftOperation.Type.SWAP, plan, Opcode::getDestinationValue)
                 );
             }
 
             //Subroutine instructions
             case "CALL" -> {
                 //Read address target from immediate, merge, store into sourceValue of opcode
-//                opcodeObject.addOp(
-//                        new ReadImmediate8bit(opcodeObject::setDestinationValue));
-//                opcodeObject.addOp(
-//                        new ReadImmediate8bit(opcodeObject::setSourceValue));
-//                opcodeObject.addOp(
+//                plan.addOp(
+//                        new ReadImmediate8bit(Opcode::setDestinationValue));
+//                plan.addOp(
+//                        new ReadImmediate8bit(Opcode::setSourceValue));
+//                plan.addOp(
 //                        new MergeOperands(
-//                            opcodeObject::getDestinationValue,
-//                            opcodeObject::getSourceValue,
-//                            opcodeObject::setSourceValue));
+//                            Opcode::getDestinationValue,
+//                            Opcode::getSourceValue,
+//                            Opcode::setSourceValue));
 
                 //Check conditions cc
-                if (opcodeObject.getCc() != null) {
-                    switch (opcodeObject.getCc()) {
-                        case "Z" -> opcodeObject.addOp(new CheckCC(CheckCC.Type.Z, opcodeObject));
-                        case "NZ" -> opcodeObject.addOp(new CheckCC(CheckCC.Type.NZ, opcodeObject));
-                        case "C" -> opcodeObject.addOp(new CheckCC(CheckCC.Type.C, opcodeObject));
-                        case "NC" -> opcodeObject.addOp(new CheckCC(CheckCC.Type.NC, opcodeObject));
+                if (plan.getCc() != null) {
+                    switch (plan.getCc()) {
+                        case "Z" -> plan.addOp(new CheckCC(CheckCC.Type.Z));
+                        case "NZ" -> plan.addOp(new CheckCC(CheckCC.Type.NZ));
+                        case "C" -> plan.addOp(new CheckCC(CheckCC.Type.C));
+                        case "NC" -> plan.addOp(new CheckCC(CheckCC.Type.NC));
                     }
                 }
 
-                opcodeObject.addOp(new EmptyCycle());
+                plan.addOp(new EmptyCycle());
 
                 //Push current PC onto stack
-                opcodeObject.addOp(
-                        new StackOperation(StackOperation.Type.PUSH_HIGH,
-                                opcodeObject,
-                                () -> cpu.getRegisters().getPC())
+                plan.addOp(
+                        new StackOperation(StackOperation.Type.PUSH_HIGH, op -> op.getCpu().getRegisters().getPC())
                 );
-                opcodeObject.addOp(
-                        new StackOperation(StackOperation.Type.PUSH_LOW,
-                                opcodeObject,
-                                () -> cpu.getRegisters().getPC())
+                plan.addOp(
+                        new StackOperation(StackOperation.Type.PUSH_LOW, op -> op.getCpu().getRegisters().getPC())
                 );
                 //Set PC to target stored in sourceValue by doing LD PC, n16
-                opcodeObject.setDestinationOperandString("PC");
-                opcodeObject.setDestinationType(DataType.R16);
-                opcodeObject.setSourceOperandString("n16");
-                opcodeObject.setSourceType(DataType.N16);
-                opcodeObject.addOp(new FlipOperands(opcodeObject));
-                opcodeObject.addOp(
-                        new Load(opcodeObject)
+                plan.setDestinationOperandString("PC");
+                plan.setDestinationType(DataType.R16);
+                plan.setSourceOperandString("n16");
+                plan.setSourceType(DataType.N16);
+                plan.addOp(new FlipOperands());
+                plan.addOp(
+                        new Load()
                 );
             }
 
             case "JP" -> {
-                String ds = opcodeObject.getDestinationOperandString();
+                String ds = plan.getDestinationOperandString();
                 if (ds.equals("HL")) {
                     //JP HL, do imaginary LD PC HL
-                    opcodeObject.setDestinationOperandString("PC");
-                    opcodeObject.setSourceType(DataType.R16);
-                    opcodeObject.setSourceOperandString("HL");
-                    opcodeObject.addOp(new ReadRegister16Bit(opcodeObject::setSourceValue, "HL"));
-                    opcodeObject.addOp(new Load(opcodeObject));
+                    plan.setDestinationOperandString("PC");
+                    plan.setSourceType(DataType.R16);
+                    plan.setSourceOperandString("HL");
+                    plan.addOp(new ReadRegister16Bit(Opcode::setSourceValue, Registers.REG_HL));
+                    plan.addOp(new Load());
                 } else if (ds.equals("n16") || ds.equals("a16") || ds.equals("Z") || ds.equals("NZ") || ds.equals("C") || ds.equals("NC")) {
                     //JP n16/JP cc,n16, read n16 then do imaginary LD PC n16
-//                    opcodeObject.addOp(new ReadImmediate8bit(opcodeObject::setDestinationValue));
-//                    opcodeObject.addOp(new ReadImmediate8bit(opcodeObject::setSourceValue));
-//                    opcodeObject.addOp(new MergeOperands(opcodeObject::getDestinationValue, opcodeObject::getSourceValue,
-//                            opcodeObject::setSourceValue));
-                    opcodeObject.setDestinationOperandString("PC");
-                    opcodeObject.setDestinationType(DataType.R16);
-                    opcodeObject.setSourceOperandString("n16");
-                    opcodeObject.setSourceType(DataType.N16);
-                    if (opcodeObject.getCc() != null) {
-                        switch (opcodeObject.getCc()) {
-                            case "Z" -> opcodeObject.addOp(new CheckCC(CheckCC.Type.Z, opcodeObject));
-                            case "NZ" -> opcodeObject.addOp(new CheckCC(CheckCC.Type.NZ, opcodeObject));
-                            case "C" -> opcodeObject.addOp(new CheckCC(CheckCC.Type.C, opcodeObject));
-                            case "NC" -> opcodeObject.addOp(new CheckCC(CheckCC.Type.NC, opcodeObject));
+//                    plan.addOp(new ReadImmediate8bit(Opcode::setDestinationValue));
+//                    plan.addOp(new ReadImmediate8bit(Opcode::setSourceValue));
+//                    plan.addOp(new MergeOperands(Opcode::getDestinationValue, Opcode::getSourceValue,
+//                            Opcode::setSourceValue));
+                    plan.setDestinationOperandString("PC");
+                    plan.setDestinationType(DataType.R16);
+                    plan.setSourceOperandString("n16");
+                    plan.setSourceType(DataType.N16);
+                    if (plan.getCc() != null) {
+                        switch (plan.getCc()) {
+                            case "Z" -> plan.addOp(new CheckCC(CheckCC.Type.Z));
+                            case "NZ" -> plan.addOp(new CheckCC(CheckCC.Type.NZ));
+                            case "C" -> plan.addOp(new CheckCC(CheckCC.Type.C));
+                            case "NC" -> plan.addOp(new CheckCC(CheckCC.Type.NC));
                         }
                     }
-                    opcodeObject.addOp(new FlipOperands(opcodeObject));
-                    opcodeObject.addOp(new Load(opcodeObject));
+                    plan.addOp(new FlipOperands());
+                    plan.addOp(new Load());
                 }
             }
 
             case "JR" -> {
                 //Read 8-bit offset, check for conditions
-                //opcodeObject.addOp(new ReadImmediate8bit(opcodeObject::setSourceValue));
-                if (opcodeObject.getCc() != null) {
-                    switch (opcodeObject.getCc()) {
-                        case "Z" -> opcodeObject.addOp(new CheckCC(CheckCC.Type.Z, opcodeObject));
-                        case "NZ" -> opcodeObject.addOp(new CheckCC(CheckCC.Type.NZ, opcodeObject));
-                        case "C" -> opcodeObject.addOp(new CheckCC(CheckCC.Type.C, opcodeObject));
-                        case "NC" -> opcodeObject.addOp(new CheckCC(CheckCC.Type.NC, opcodeObject));
+                //plan.addOp(new ReadImmediate8bit(Opcode::setSourceValue));
+                if (plan.getCc() != null) {
+                    switch (plan.getCc()) {
+                        case "Z" -> plan.addOp(new CheckCC(CheckCC.Type.Z));
+                        case "NZ" -> plan.addOp(new CheckCC(CheckCC.Type.NZ));
+                        case "C" -> plan.addOp(new CheckCC(CheckCC.Type.C));
+                        case "NC" -> plan.addOp(new CheckCC(CheckCC.Type.NC));
                     }
                 }
                 //If no cc or conditions satisfied, idle once and add the offset to PC
-                opcodeObject.addOp(new EmptyCycle());
-                opcodeObject.setDestinationOperandString("PC");
-                opcodeObject.setDestinationType(DataType.R16);
-                //opcodeObject.addOp(new FlipOperands(opcodeObject));
-                opcodeObject.addOp(new AluOperation(
+                plan.addOp(new EmptyCycle());
+                plan.setDestinationOperandString("PC");
+                plan.setDestinationType(DataType.R16);
+                //plan.addOp(new FlipOperands());
+                plan.addOp(new AluOperation(
                         AluOperation.Type.ADD,
-                        opcodeObject,
-                        () -> cpu.getRegisters().getPC(),
-                        opcodeObject::getSourceValue
+                        plan,
+                        op -> op.getCpu().getRegisters().getPC(),
+                        Opcode::getSourceValue
                 ));
 
             }
 
             case "RET", "RETI" -> {
-                if (opcodeObject.getCc() != null) {
-                    opcodeObject.addOp(new EmptyCycle());
-                    switch (opcodeObject.getCc()) {
-                        case "Z" -> opcodeObject.addOp(new CheckCC(CheckCC.Type.Z, opcodeObject));
-                        case "NZ" -> opcodeObject.addOp(new CheckCC(CheckCC.Type.NZ, opcodeObject));
-                        case "C" -> opcodeObject.addOp(new CheckCC(CheckCC.Type.C, opcodeObject));
-                        case "NC" -> opcodeObject.addOp(new CheckCC(CheckCC.Type.NC, opcodeObject));
+                if (plan.getCc() != null) {
+                    plan.addOp(new EmptyCycle());
+                    switch (plan.getCc()) {
+                        case "Z" -> plan.addOp(new CheckCC(CheckCC.Type.Z));
+                        case "NZ" -> plan.addOp(new CheckCC(CheckCC.Type.NZ));
+                        case "C" -> plan.addOp(new CheckCC(CheckCC.Type.C));
+                        case "NC" -> plan.addOp(new CheckCC(CheckCC.Type.NC));
                     }
                 }
-                opcodeObject.addOp(new ReadMemory8Bit(opcodeObject::setDestinationValue, () -> cpu.getRegisters().getSP()));
-                opcodeObject.addOp(new ReadMemory8Bit(opcodeObject::setSourceValue, () -> ((cpu.getRegisters().getSP() + 1) & 0xFFFF)));
-                opcodeObject.addOp(
-                        new MergeOperands(opcodeObject::getDestinationValue, opcodeObject::getSourceValue, opcodeObject::setSourceValue)
+                plan.addOp(new ReadMemory8Bit(Opcode::setDestinationValue, op -> op.getCpu().getRegisters().getSP()));
+                plan.addOp(new ReadMemory8Bit(Opcode::setSourceValue, op -> ((op.getCpu().getRegisters().getSP() + 1) & 0xFFFF)));
+                plan.addOp(
+                        new MergeOperands(Opcode::getDestinationValue, Opcode::getSourceValue, Opcode::setSourceValue)
                 );
-                opcodeObject.setDestinationOperandString("PC");
+                plan.setDestinationOperandString("PC");
 
-                if (opcodeObject.getOpcodeInfo().getMnemonic().equals("RETI")) {
-                    opcodeObject.addOp(
-                            new InterruptOperation(InterruptOperation.Type.EI_QUICK, cpu)
+                if (plan.getOpcodeInfo().getMnemonic().equals("RETI")) {
+                    plan.addOp(
+                            new InterruptOperation(InterruptOperation.Type.EI_QUICK)
                     );
                 }
 
-                opcodeObject.addOp(
-                        new StackOperation(StackOperation.Type.POP, opcodeObject, opcodeObject::getSourceValue)
+                plan.addOp(
+                        new StackOperation(StackOperation.Type.POP, Opcode::getSourceValue)
                 );
 
 
             }
 
             case "RST" -> {
-                opcodeObject.addOp(new EmptyCycle());
-                String ds = opcodeObject.getDestinationOperandString();
+                plan.addOp(new EmptyCycle());
+                String ds = plan.getDestinationOperandString();
                 switch (ds) {
-                    case "$00" -> opcodeObject.setSourceValue(0x0000);
-                    case "$08" -> opcodeObject.setSourceValue(0x0008);
-                    case "$10" -> opcodeObject.setSourceValue(0x0010);
-                    case "$18" -> opcodeObject.setSourceValue(0x0018);
-                    case "$20" -> opcodeObject.setSourceValue(0x0020);
-                    case "$28" -> opcodeObject.setSourceValue(0x0028);
-                    case "$30" -> opcodeObject.setSourceValue(0x0030);
-                    case "$38" -> opcodeObject.setSourceValue(0x0038);
+                    case "$00" -> plan.setInitialSourceValue(0x0000);
+                    case "$08" -> plan.setInitialSourceValue(0x0008);
+                    case "$10" -> plan.setInitialSourceValue(0x0010);
+                    case "$18" -> plan.setInitialSourceValue(0x0018);
+                    case "$20" -> plan.setInitialSourceValue(0x0020);
+                    case "$28" -> plan.setInitialSourceValue(0x0028);
+                    case "$30" -> plan.setInitialSourceValue(0x0030);
+                    case "$38" -> plan.setInitialSourceValue(0x0038);
                 }
 
                 //Push current PC onto stack
-                opcodeObject.addOp(
-                        new StackOperation(StackOperation.Type.PUSH_HIGH,
-                                opcodeObject,
-                                () -> cpu.getRegisters().getPC())
+                plan.addOp(
+                        new StackOperation(StackOperation.Type.PUSH_HIGH, op -> op.getCpu().getRegisters().getPC())
                 );
-                opcodeObject.addOp(
-                        new StackOperation(StackOperation.Type.PUSH_LOW,
-                                opcodeObject,
-                                () -> cpu.getRegisters().getPC())
+                plan.addOp(
+                        new StackOperation(StackOperation.Type.PUSH_LOW, op -> op.getCpu().getRegisters().getPC())
                 );
 
-                opcodeObject.setDestinationOperandString("PC");
-                opcodeObject.setDestinationType(DataType.R16);
-                opcodeObject.setSourceType(DataType.N16);
-                opcodeObject.setSourceOperandString("n16");
-                opcodeObject.addOp(new Load(opcodeObject));
+                plan.setDestinationOperandString("PC");
+                plan.setDestinationType(DataType.R16);
+                plan.setSourceType(DataType.N16);
+                plan.setSourceOperandString("n16");
+                plan.addOp(new Load());
             }
 
             //Carry flag instructions
@@ -622,88 +601,77 @@ public class OpcodeBuilder {
 
             //Stack instructions
             case "POP" -> {
-                opcodeObject.addOp(new ReadMemory8Bit(opcodeObject::setDestinationValue, () -> cpu.getRegisters().getSP()));
-                opcodeObject.addOp(new ReadMemory8Bit(opcodeObject::setSourceValue, () -> (cpu.getRegisters().getSP() + 1) & 0xFFFF));
-                opcodeObject.addOp(
-                        new MergeOperands(opcodeObject::getDestinationValue, opcodeObject::getSourceValue, opcodeObject::setDestinationValue)
+                plan.addOp(new ReadMemory8Bit(Opcode::setDestinationValue, op -> op.getCpu().getRegisters().getSP()));
+                plan.addOp(new ReadMemory8Bit(Opcode::setSourceValue, op -> (op.getCpu().getRegisters().getSP() + 1) & 0xFFFF));
+                plan.addOp(
+                        new MergeOperands(Opcode::getDestinationValue, Opcode::getSourceValue, Opcode::setDestinationValue)
                 );
-                opcodeObject.addOp(
-                        new StackOperation(StackOperation.Type.POP, opcodeObject, opcodeObject::getDestinationValue)
+                plan.addOp(
+                        new StackOperation(StackOperation.Type.POP, Opcode::getDestinationValue)
                 );
             }
 
             case "PUSH" -> {
-                opcodeObject.addOp(new EmptyCycle());
-                opcodeObject.addOp(new StackOperation(
-                        StackOperation.Type.PUSH_HIGH, opcodeObject,
-                        () -> cpu.getRegisters().getByName(opcodeObject.getDestinationOperandString())
+                plan.addOp(new EmptyCycle());
+                plan.addOp(new StackOperation(
+                        StackOperation.Type.PUSH_HIGH, op -> op.getCpu().getRegisters().get(op.getDestinationRegister())
                 ));
-                opcodeObject.addOp(new StackOperation(
-                        StackOperation.Type.PUSH_LOW, opcodeObject,
-                        () -> cpu.getRegisters().getByName(opcodeObject.getDestinationOperandString())
+                plan.addOp(new StackOperation(
+                        StackOperation.Type.PUSH_LOW, op -> op.getCpu().getRegisters().get(op.getDestinationRegister())
                 ));
             }
 
             //Interrupt instructions
             case "DI" -> {
-                opcodeObject.addOp(
-                        new InterruptOperation(InterruptOperation.Type.DI, cpu));
+                plan.addOp(
+                        new InterruptOperation(InterruptOperation.Type.DI));
             }
             case "EI" -> {
-                opcodeObject.addOp(
-                        new InterruptOperation(InterruptOperation.Type.EI, cpu));
+                plan.addOp(
+                        new InterruptOperation(InterruptOperation.Type.EI));
             }
             case "HALT" -> {
-                opcodeObject.addOp(
-                        new InterruptOperation(InterruptOperation.Type.HALT, cpu)
+                plan.addOp(
+                        new InterruptOperation(InterruptOperation.Type.HALT)
                 );
             }
 
             //Misc instructions
             case "DAA" -> {
-                opcodeObject.addOp(new AluOperation(AluOperation.Type.DAA, opcodeObject, opcodeObject::getDestinationValue, opcodeObject::getSourceValue));
+                plan.addOp(new AluOperation(AluOperation.Type.DAA, plan, Opcode::getDestinationValue, Opcode::getSourceValue));
             }
             case "NOP" -> {
-                opcodeObject.addOp(new EmptyCycle());
+                plan.addOp(new EmptyCycle());
             }
 
             default -> {
-                opcodeObject.setUnimplError(true);
+                plan.setUnimplError(true);
             }
         }
     }
 
-    private void handlePostIncDec(Opcode opcodeObject, OpcodeInfo opcodeInfo) {
-        Operand[] o = opcodeInfo.getOperands();
+    private void handlePostIncDec(OpcodePlan plan, OpcodeInfo opcodeInfo) {
         checkIncDec = false;
-        if (o[0].isIncrement()) {
-            opcodeObject.addOp(
-                    new AluOperation(AluOperation.Type.POST_INC, opcodeObject, opcodeObject::getDestinationValue, opcodeObject::getSourceValue)
+        if (opcodeInfo.getOperand(0).isIncrement()) {
+            plan.addOp(
+                    new AluOperation(AluOperation.Type.POST_INC, plan, Opcode::getDestinationValue, Opcode::getSourceValue)
             );
-        } else if (o[0].isDecrement()) {
-            opcodeObject.addOp(
-                    new AluOperation(AluOperation.Type.POST_DEC, opcodeObject, opcodeObject::getDestinationValue, opcodeObject::getSourceValue)
+        } else if (opcodeInfo.getOperand(0).isDecrement()) {
+            plan.addOp(
+                    new AluOperation(AluOperation.Type.POST_DEC, plan, Opcode::getDestinationValue, Opcode::getSourceValue)
             );
         }
-        if (o.length > 1) {
-            if (o[1].isIncrement()) {
-                opcodeObject.addOp(
-                        new AluOperation(AluOperation.Type.POST_INC, opcodeObject, opcodeObject::getDestinationValue, opcodeObject::getSourceValue)
+        if (opcodeInfo.getOperandCount() > 1) {
+            if (opcodeInfo.getOperand(1).isIncrement()) {
+                plan.addOp(
+                        new AluOperation(AluOperation.Type.POST_INC, plan, Opcode::getDestinationValue, Opcode::getSourceValue)
                 );
-            } else if (o[1].isDecrement()) {
-                opcodeObject.addOp(
-                        new AluOperation(AluOperation.Type.POST_DEC, opcodeObject, opcodeObject::getDestinationValue, opcodeObject::getSourceValue)
+            } else if (opcodeInfo.getOperand(1).isDecrement()) {
+                plan.addOp(
+                        new AluOperation(AluOperation.Type.POST_DEC, plan, Opcode::getDestinationValue, Opcode::getSourceValue)
                 );
             }
         }
     }
 
-    private int calculateCycles(Opcode opcodeObject) {
-        int cycles = 0;
-        for (MicroOperation mo : opcodeObject.getMicroOps()) {
-            cycles += mo.getCycles();
-        }
-        return cycles;
-    }
-
 }
@@ -0,0 +1,41 @@
+package org.mochaboy.opcode;
+
+/**
+ * Decode cache holding one pre-built {@link OpcodePlan} for each of the 256 unprefixed and 256 CB-prefixed opcodes.
+ * Every plan is built up front, so decoding at runtime is a single array load.
+ * <p>
+ * Plans hold no CPU state, so normally every CPU uses the one from {@link #shared()} and only the first CPU in a JVM
+ * pays for building it.
+ */
+public class OpcodeCache {
+    private static final int CB_OFFSET = OpcodeTable.CB_OFFSET;
+
+    private final OpcodePlan[] plans = new OpcodePlan[OpcodeTable.SIZE];
+
+    public OpcodeCache(OpcodeBuilder opcodeBuilder) {
+        for (int opcode = 0; opcode < 0x100; opcode++) {
+            plans[opcode] = opcodeBuilder.build(opcode, false);
+            plans[CB_OFFSET | opcode] = opcodeBuilder.build(opcode, true);
+        }
+    }
+
+    private static final class Holder {
+        static final OpcodeCache SHARED = new OpcodeCache(new OpcodeBuilder());
+    }
+
+    /**
+     * @return The cache shared by every CPU, built on first use
+     */
+    public static OpcodeCache shared() {
+        return Holder.SHARED;
+    }
+
+    /**
+     * @param opcode     Opcode byte
+     * @param isPrefixed Whether the opcode followed a 0xCB prefix
+     * @return The plan for this opcode
+     */
+    public OpcodePlan get(int opcode, boolean isPrefixed) {
+        return plans[(isPrefixed ? CB_OFFSET : 0) | (opcode & 0xFF)];
+    }
+}
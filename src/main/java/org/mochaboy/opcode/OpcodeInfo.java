@@ -1,21 +1,39 @@
 package org.mochaboy.opcode;
 
-public class OpcodeInfo {
-    private boolean prefixed;
-    private boolean cbprefixed;
-    private int opcode;
-    private String mnemonic;
-    private int bytes;
-    private int[] cycles;
-    private Operand[] operands;
-    private boolean immediate;
-    private Flags flags;
-
-    public OpcodeInfo() {
+/**
+ * Metadata for one opcode, as listed in Opcodes.json. Immutable, so one instance is shared by every CPU.
+ */
+public final class OpcodeInfo {
+    private final boolean cbprefixed;
+    private final int opcode;
+    private final String mnemonic;
+    private final int bytes;
+    private final int[] cycles;
+    private final Operand[] operands;
+    private final boolean immediate;
+    private final Flags flags;
+
+    OpcodeInfo(int opcode, boolean cbprefixed, String mnemonic, int bytes, boolean immediate, int[] cycles,
+               Operand[] operands, Flags flags) {
+        this.opcode = opcode;
+        this.cbprefixed = cbprefixed;
+        this.mnemonic = mnemonic;
+        this.bytes = bytes;
+        this.immediate = immediate;
+        this.cycles = cycles.clone();
+        this.operands = operands.clone();
+        this.flags = flags;
+    }
+
+    private OpcodeInfo() { //For Gson, which fills the fields in from Opcodes.json
+        this(0, false, null, 0, false, new int[0], new Operand[0], null);
     }
 
-    public boolean isPrefixed() {
-        return prefixed;
+    /**
+     * @return A copy with the opcode number filled in, which Opcodes.json only has as the map key
+     */
+    OpcodeInfo withOpcode(int opcode) {
+        return new OpcodeInfo(opcode, opcode > 0xFF, mnemonic, bytes, immediate, cycles, operands, flags);
     }
 
     public int getOpcode() {
@@ -30,12 +48,27 @@ public class OpcodeInfo {
         return bytes;
     }
 
-    public int[] getCycles() {
-        return cycles;
+    /**
+     * @return 1, or 2 for a conditional instruction whose cycles depend on whether it's taken
+     */
+    public int getCycleCount() {
+        return cycles.length;
+    }
+
+    /**
+     * @param index 0 for the taken (or only) count, 1 for not taken
+     * @return T-states
+     */
+    public int getCycles(int index) {
+        return cycles[index];
     }
 
-    public Operand[] getOperands() {
-        return operands;
+    public int getOperandCount() {
+        return operands.length;
+    }
+
+    public Operand getOperand(int index) {
+        return operands[index];
     }
 
     public boolean isImmediate() {
@@ -50,61 +83,20 @@ public class OpcodeInfo {
         return cbprefixed;
     }
 
-    public void setPrefixed(boolean prefixed) {
-        this.prefixed = prefixed;
-    }
-
-    public void setOpcode(int opcode) {
-        this.opcode = opcode;
-    }
-
-    public void setMnemonic(String mnemonic) {
-        this.mnemonic = mnemonic;
-    }
-
-    public void setBytes(int bytes) {
-        this.bytes = bytes;
-    }
-
-    public void setCycles(int[] cycles) {
-        this.cycles = cycles;
-    }
-
-    public void setOperands(Operand[] operands) {
-        this.operands = operands;
-    }
-
-    public void setImmediate(boolean immediate) {
-        this.immediate = immediate;
-    }
-
-    public void setFlags(Flags flags) {
-        this.flags = flags;
-    }
-
-    public void setCbprefixed(boolean cbprefixed) {
-        this.cbprefixed = cbprefixed;
-    }
-
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append(String.format("\nopcode=0x%02X, ", opcode));
         sb.append("\nmnemonic=").append(mnemonic).append(", ");
-        sb.append("\nprefixed=").append(prefixed).append(", ");
         sb.append("\ncbprefixed=").append(cbprefixed).append(", ");
         sb.append(String.format("\nbytes=0x%02X, ", bytes));
         sb.append("\ncycles=[");
-        if (cycles != null) {
-            for (int i = 0; i < cycles.length; i++) {
-                sb.append(String.format("0x%02X", cycles[i]));
-                if (i < cycles.length - 1) sb.append(", ");
-            }
+        for (int i = 0; i < cycles.length; i++) {
+            sb.append(String.format("0x%02X", cycles[i]));
+            if (i < cycles.length - 1) sb.append(", ");
         }
         sb.append("], \noperands=");
-        if (operands != null) {
-            for (Operand op : operands) sb.append(op.getName()).append(" ");
-        }
+        for (Operand op : operands) sb.append(op.getName()).append(" ");
         sb.append(", \nimmediate=").append(immediate).append(", ");
         sb.append("\nflags=").append(flags.toString());
         return sb.toString();
@@ -30,7 +30,7 @@ public class OpcodeLoader {
     }
 
     /**
-     * Populate the opcode field of each OpcodeInfo using the key.
+     * Replace each OpcodeInfo with a copy that has its opcode filled in from the key.
      *
      * @param opcodeMap The map containing opcode keys and OpcodeInfo values
      * @param isPrefixed Boolean to distinguish if it's from prefixed opcodes or unprefixed
@@ -38,7 +38,6 @@ public class OpcodeLoader {
     private void populateOpcodeValues(Map<String, OpcodeInfo> opcodeMap, boolean isPrefixed) {
         for (Map.Entry<String, OpcodeInfo> entry : opcodeMap.entrySet()) {
             String key = entry.getKey();
-            OpcodeInfo opcodeInfo = entry.getValue();
 
             int opcode = Integer.parseInt(key.substring(2), 16);
 
@@ -46,7 +45,7 @@ public class OpcodeLoader {
                 opcode |= 0xCB00;
             }
 
-            opcodeInfo.setOpcode(opcode);
+            entry.setValue(entry.getValue().withOpcode(opcode));
         }
     }
 
@@ -0,0 +1,188 @@
+package org.mochaboy.opcode;
+
+import org.mochaboy.DataType;
+import org.mochaboy.opcode.operations.MicroOperation;
+import org.mochaboy.registers.Registers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pre-decoded execution plan for a single opcode. Plans are built once by {@link OpcodeBuilder} and shared by every
+ * execution of that opcode; per-execution values live in the {@link Opcode} context instead.
+ */
+public class OpcodePlan {
+    private static final MicroOperation[] NO_OPS = new MicroOperation[0];
+
+    private final OpcodeInfo opcodeInfo;
+    private final String opcodeHex;
+    private List<MicroOperation> pendingOps = new ArrayList<>();
+    private MicroOperation[] microOps = NO_OPS;
+    private String cc;
+    private String destinationOperandString;
+    private String sourceOperandString;
+    private String extraOperandString;
+    private int destinationRegister = Registers.NO_REGISTER;
+    private int sourceRegister = Registers.NO_REGISTER;
+    private Operand destinationOperand;
+    private Operand sourceOperand;
+    private Operand extraOperand;
+    private DataType sourceType;
+    private DataType destinationType;
+    private int initialDestinationValue;
+    private int initialSourceValue;
+    private boolean unimplError = false;
+
+    OpcodePlan(OpcodeInfo opcodeInfo, String opcodeHex) {
+        this.opcodeInfo = opcodeInfo;
+        this.opcodeHex = opcodeHex;
+    }
+
+    MicroOperation addOp(MicroOperation microOperation) {
+        pendingOps.add(microOperation);
+        return microOperation;
+    }
+
+    /**
+     * Seals the plan once the builder is done with it.
+     */
+    OpcodePlan freeze() {
+        microOps = pendingOps.toArray(NO_OPS);
+        pendingOps = null;
+        return this;
+    }
+
+    public MicroOperation[] getMicroOps() {
+        return microOps;
+    }
+
+    public int getOpCount() {
+        return microOps.length;
+    }
+
+    public OpcodeInfo getOpcodeInfo() {
+        return opcodeInfo;
+    }
+
+    public String getOpcodeHex() {
+        return opcodeHex;
+    }
+
+    public String getCc() {
+        return cc;
+    }
+
+    void setCc(String cc) {
+        this.cc = cc;
+    }
+
+    public String getDestinationOperandString() {
+        return destinationOperandString;
+    }
+
+    void setDestinationOperandString(String destinationOperandString) {
+        this.destinationOperandString = destinationOperandString;
+        this.destinationRegister = Registers.indexOf(destinationOperandString);
+    }
+
+    /**
+     * @return Register index of the destination operand string, or {@link Registers#NO_REGISTER}
+     */
+    public int getDestinationRegister() {
+        return destinationRegister;
+    }
+
+    public String getSourceOperandString() {
+        return sourceOperandString;
+    }
+
+    void setSourceOperandString(String sourceOperandString) {
+        this.sourceOperandString = sourceOperandString;
+        this.sourceRegister = Registers.indexOf(sourceOperandString);
+    }
+
+    /**
+     * @return Register index of the source operand string, or {@link Registers#NO_REGISTER}
+     */
+    public int getSourceRegister() {
+        return sourceRegister;
+    }
+
+    public String getExtraOperandString() {
+        return extraOperandString;
+    }
+
+    void setExtraOperandString(String extraOperandString) {
+        this.extraOperandString = extraOperandString;
+    }
+
+    public Operand getDestinationOperand() {
+        return destinationOperand;
+    }
+
+    void setDestinationOperand(Operand destinationOperand) {
+        this.destinationOperand = destinationOperand;
+    }
+
+    public Operand getSourceOperand() {
+        return sourceOperand;
+    }
+
+    void setSourceOperand(Operand sourceOperand) {
+        this.sourceOperand = sourceOperand;
+    }
+
+    public Operand getExtraOperand() {
+        return extraOperand;
+    }
+
+    void setExtraOperand(Operand extraOperand) {
+        this.extraOperand = extraOperand;
+    }
+
+    public DataType getSourceType() {
+        return sourceType;
+    }
+
+    void setSourceType(DataType sourceType) {
+        this.sourceType = sourceType;
+    }
+
+    public DataType getDestinationType() {
+        return destinationType;
+    }
+
+    void setDestinationType(DataType destinationType) {
+        this.destinationType = destinationType;
+    }
+
+    /**
+     * @return Value the destination slot holds before the first micro op runs, e.g. the bit index of BIT/RES/SET.
+     */
+    public int getInitialDestinationValue() {
+        return initialDestinationValue;
+    }
+
+    void setInitialDestinationValue(int initialDestinationValue) {
+        this.initialDestinationValue = initialDestinationValue;
+    }
+
+    /**
+     * @return Value the source slot holds before the first micro op runs, e.g. the target address of RST.
+     */
+    public int getInitialSourceValue() {
+        return initialSourceValue;
+    }
+
+    void setInitialSourceValue(int initialSourceValue) {
+        this.initialSourceValue = initialSourceValue;
+    }
+
+    public boolean isUnimplError() {
+        return unimplError;
+    }
+
+    void setUnimplError(boolean unimplError) {
+        this.unimplError = unimplError;
+    }
+}
@@ -0,0 +1,87 @@
+package org.mochaboy.opcode;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Opcode metadata for all 512 opcodes, indexed 0x000-0x0FF for unprefixed and 0x100-0x1FF for CB-prefixed opcodes.
+ * <p>
+ * Loaded once per JVM from system/Opcodes.bin, which OpcodeTableGenerator writes from Opcodes.json at build time, and
+ * shared by every CPU. The entries are immutable, so they're safe to read from any thread.
+ */
+public final class OpcodeTable {
+    public static final int SIZE = 0x200;
+    public static final int CB_OFFSET = 0x100;
+
+    // Keep in sync with OpcodeTableGenerator
+    private static final String RESOURCE = "/system/Opcodes.bin";
+    private static final int MAGIC = 0x4D424F50;
+    private static final int VERSION = 1;
+
+    private OpcodeTable() {
+    }
+
+    private static final class Holder {
+        static final OpcodeInfo[] TABLE = load();
+    }
+
+    /**
+     * @param index 0x000-0x1FF, CB-prefixed opcodes are at CB_OFFSET + opcode
+     */
+    public static OpcodeInfo get(int index) {
+        return Holder.TABLE[index];
+    }
+
+    /**
+     * @param opcode     Opcode byte
+     * @param isPrefixed Whether the opcode followed a 0xCB prefix
+     */
+    public static OpcodeInfo get(int opcode, boolean isPrefixed) {
+        return Holder.TABLE[(isPrefixed ? CB_OFFSET : 0) | (opcode & 0xFF)];
+    }
+
+    private static OpcodeInfo[] load() {
+        try (InputStream resource = OpcodeTable.class.getResourceAsStream(RESOURCE)) {
+            if (resource == null) {
+                throw new IllegalStateException(RESOURCE + " not found, run the generateOpcodeTable task");
+            }
+            return read(new DataInputStream(new BufferedInputStream(resource)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't read " + RESOURCE, e);
+        }
+    }
+
+    private static OpcodeInfo[] read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readUnsignedShort() != VERSION || in.readUnsignedShort() != SIZE) {
+            throw new IOException(RESOURCE + " is stale or corrupt, regenerate it from Opcodes.json");
+        }
+        OpcodeInfo[] table = new OpcodeInfo[SIZE];
+        for (int index = 0; index < SIZE; index++) {
+            boolean prefixed = index >= CB_OFFSET;
+            String mnemonic = in.readUTF();
+            int bytes = in.readUnsignedByte();
+            boolean immediate = in.readBoolean();
+
+            int[] cycles = new int[in.readUnsignedByte()];
+            for (int i = 0; i < cycles.length; i++) {
+                cycles[i] = in.readUnsignedByte();
+            }
+
+            Operand[] operands = new Operand[in.readUnsignedByte()];
+            for (int i = 0; i < operands.length; i++) {
+                String name = in.readUTF();
+                int operandBytes = in.readUnsignedByte();
+                int bits = in.readUnsignedByte();
+                operands[i] = new Operand(name, operandBytes, (bits & 1) != 0, (bits & 2) != 0, (bits & 4) != 0);
+            }
+
+            Flags flags = new Flags(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+            table[index] = new OpcodeInfo(prefixed ? 0xCB00 | (index & 0xFF) : index, prefixed, mnemonic, bytes,
+                    immediate, cycles, operands, flags);
+        }
+        return table;
+    }
+}
@@ -1,79 +1,41 @@
 package org.mochaboy.opcode;
 
-public class Operand {
-    private String name;
-    private int bytes;
-    private boolean immediate;
-    private boolean increment;
-    private boolean decrement;
-    private boolean register;
-    private boolean memory;
-    private int value;
+public final class Operand {
+    private final String name;
+    private final int bytes;
+    private final boolean immediate;
+    private final boolean increment;
+    private final boolean decrement;
+
+    Operand(String name, int bytes, boolean immediate, boolean increment, boolean decrement) {
+        this.name = name;
+        this.bytes = bytes;
+        this.immediate = immediate;
+        this.increment = increment;
+        this.decrement = decrement;
+    }
 
-    public Operand() {
+    private Operand() { //For Gson
+        this(null, 0, false, false, false);
     }
 
     public String getName() {
         return name;
     }
 
-    public void setName(String name) {
-        this.name = name;
-    }
-
     public int getBytes() {
         return bytes;
     }
 
-    public void setBytes(int bytes) {
-        this.bytes = bytes;
-    }
-
     public boolean isImmediate() {
         return immediate;
     }
 
-    public void setImmediate(boolean immediate) {
-        this.immediate = immediate;
-    }
-
     public boolean isIncrement() {
         return increment;
     }
 
-    public void setIncrement(boolean increment) {
-        this.increment = increment;
-    }
-
     public boolean isDecrement() {
         return decrement;
     }
-
-    public void setDecrement(boolean decrement) {
-        this.decrement = decrement;
-    }
-
-    public boolean isRegister() {
-        return register;
-    }
-
-    public void setRegister(boolean register) {
-        this.register = register;
-    }
-
-    public boolean isMemory() {
-        return memory;
-    }
-
-    public void setMemory(boolean memory) {
-        this.memory = memory;
-    }
-
-    public int getValue() {
-        return value;
-    }
-
-    public void setValue(int value) {
-        this.value = value;
-    }
 }
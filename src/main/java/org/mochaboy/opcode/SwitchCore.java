@@ -0,0 +1,353 @@
+package org.mochaboy.opcode;
+
+import org.mochaboy.CPU;
+import org.mochaboy.Memory;
+import org.mochaboy.WriteJournal;
+import org.mochaboy.registers.Registers;
+
+/**
+ * Switch-dispatched execution engine. Unlike the micro op pipeline, an instruction runs to completion in one call to
+ * {@link #step()} and operands are plain ints, so the JIT can inline a whole instruction.
+ * <p>
+ * The dispatch switches live in {@code GeneratedSwitchCore}, which the {@code generateSwitchCore} build task writes
+ * from Opcodes.json. This class only holds the operand and ALU helpers the generated arms call into.
+ */
+public abstract class SwitchCore {
+    protected final CPU cpu;
+    protected final Registers r;
+    protected final Memory memory;
+    private WriteJournal journal;
+
+    protected SwitchCore(CPU cpu) {
+        this.cpu = cpu;
+        this.r = cpu.getRegisters();
+        this.memory = cpu.getMemory();
+    }
+
+    public static SwitchCore create(CPU cpu) {
+        return new GeneratedSwitchCore(cpu);
+    }
+
+    /**
+     * Fetch and execute one instruction, including a CB prefixed one.
+     *
+     * @return T-states taken by the instruction
+     */
+    public int step() {
+        return executeUnprefixed(imm8());
+    }
+
+    /**
+     * Execute an opcode whose bytes were already fetched, with PC pointing past them.
+     *
+     * @param opcode 0x000-0x0FF for unprefixed opcodes, 0x100-0x1FF for CB prefixed ones
+     * @return T-states taken by the instruction
+     */
+    int executeDecoded(int opcode) {
+        return opcode > 0xFF ? executePrefixed(opcode & 0xFF) : executeUnprefixed(opcode);
+    }
+
+    protected abstract int executeUnprefixed(int opcode);
+
+    protected abstract int executePrefixed(int opcode);
+
+    /**
+     * Send writes to a journal instead of memory, so the instruction can be evaluated without side effects.
+     *
+     * @param journal Journal to record into, or null to write through to memory again
+     */
+    void setJournal(WriteJournal journal) {
+        this.journal = journal;
+    }
+
+    //Memory access
+
+    protected final int read8(int address) {
+        address &= 0xFFFF;
+        if (journal != null) {
+            int v = journal.find(address);
+            if (v >= 0) return v;
+        }
+        return memory.readByte(address) & 0xFF;
+    }
+
+    protected final void write8(int address, int value) {
+        if (journal != null) journal.record(address, value);
+        else memory.writeByte(address, value);
+    }
+
+    protected final void write16(int address, int value) {
+        write8(address, value & 0xFF);
+        write8((address + 1) & 0xFFFF, (value >> 8) & 0xFF);
+    }
+
+    protected final int imm8() {
+        int pc = r.getPC();
+        r.setPC((pc + 1) & 0xFFFF);
+        return read8(pc);
+    }
+
+    protected final int imm16() {
+        int low = imm8();
+        return (imm8() << 8) | low;
+    }
+
+    /**
+     * Step PC over opcode bytes that were decoded ahead of time, and tell the CPU which instruction of the block is
+     * running.
+     *
+     * @param cycles T-states the block has taken so far
+     */
+    protected final void skip(int bytes, int cycles) {
+        int pc = r.getPC();
+        cpu.beginInstruction(pc, cycles);
+        r.setPC((pc + bytes) & 0xFFFF);
+    }
+
+    protected final int hlPostInc() {
+        int hl = r.getHL();
+        r.setHL((hl + 1) & 0xFFFF);
+        return hl;
+    }
+
+    protected final int hlPostDec() {
+        int hl = r.getHL();
+        r.setHL((hl - 1) & 0xFFFF);
+        return hl;
+    }
+
+    protected final void push(int value) {
+        int sp = (r.getSP() - 1) & 0xFFFF;
+        write8(sp, (value >> 8) & 0xFF);
+        sp = (sp - 1) & 0xFFFF;
+        write8(sp, value & 0xFF);
+        r.setSP(sp);
+    }
+
+    protected final int pop() {
+        int sp = r.getSP();
+        int low = read8(sp);
+        int high = read8((sp + 1) & 0xFFFF);
+        r.setSP((sp + 2) & 0xFFFF);
+        return (high << 8) | low;
+    }
+
+    //Control flow
+
+    protected final boolean z() {
+        return r.isFlagSet(Registers.FLAG_ZERO);
+    }
+
+    protected final boolean c() {
+        return r.isFlagSet(Registers.FLAG_CARRY);
+    }
+
+    protected final void jr(int e8) {
+        r.setPC((r.getPC() + (byte) e8) & 0xFFFF);
+    }
+
+    protected final void call(int address) {
+        push(r.getPC());
+        r.setPC(address);
+    }
+
+    protected final void ret() {
+        r.setPC(pop());
+    }
+
+    //ALU
+
+    private static int zero(int result) {
+        return (result & 0xFF) == 0 ? Registers.FLAG_ZERO : 0;
+    }
+
+    private int carryFlag() {
+        return r.getF() & Registers.FLAG_CARRY;
+    }
+
+    protected final void add8(int v) {
+        int a = r.getA();
+        int result = a + v;
+        r.setF(zero(result)
+                | ((a & 0xF) + (v & 0xF) > 0xF ? Registers.FLAG_HALF_CARRY : 0)
+                | (result > 0xFF ? Registers.FLAG_CARRY : 0));
+        r.setA(result & 0xFF);
+    }
+
+    protected final void adc8(int v) {
+        int a = r.getA();
+        int carry = c() ? 1 : 0;
+        int result = a + v + carry;
+        r.setF(zero(result)
+                | ((a & 0xF) + (v & 0xF) + carry > 0xF ? Registers.FLAG_HALF_CARRY : 0)
+                | (result > 0xFF ? Registers.FLAG_CARRY : 0));
+        r.setA(result & 0xFF);
+    }
+
+    protected final void sub8(int v) {
+        r.setA(compare(v, 0));
+    }
+
+    protected final void sbc8(int v) {
+        r.setA(compare(v, c() ? 1 : 0));
+    }
+
+    protected final void cp8(int v) {
+        compare(v, 0);
+    }
+
+    private int compare(int v, int carry) {
+        int a = r.getA();
+        int result = a - v - carry;
+        r.setF(zero(result)
+                | Registers.FLAG_SUBTRACT
+                | ((a & 0xF) - (v & 0xF) - carry < 0 ? Registers.FLAG_HALF_CARRY : 0)
+                | (result < 0 ? Registers.FLAG_CARRY : 0));
+        return result & 0xFF;
+    }
+
+    protected final void and8(int v) {
+        int result = r.getA() & v;
+        r.setF(zero(result) | Registers.FLAG_HALF_CARRY);
+        r.setA(result);
+    }
+
+    protected final void xor8(int v) {
+        int result = (r.getA() ^ v) & 0xFF;
+        r.setF(zero(result));
+        r.setA(result);
+    }
+
+    protected final void or8(int v) {
+        int result = (r.getA() | v) & 0xFF;
+        r.setF(zero(result));
+        r.setA(result);
+    }
+
+    protected final int inc8(int v) {
+        int result = (v + 1) & 0xFF;
+        r.setF(zero(result) | ((v & 0xF) == 0xF ? Registers.FLAG_HALF_CARRY : 0) | carryFlag());
+        return result;
+    }
+
+    protected final int dec8(int v) {
+        int result = (v - 1) & 0xFF;
+        r.setF(zero(result) | Registers.FLAG_SUBTRACT | ((v & 0xF) == 0 ? Registers.FLAG_HALF_CARRY : 0)
+                | carryFlag());
+        return result;
+    }
+
+    protected final void addHL(int v) {
+        int hl = r.getHL();
+        int result = hl + v;
+        r.setF((r.getF() & Registers.FLAG_ZERO)
+                | ((hl & 0x0FFF) + (v & 0x0FFF) > 0x0FFF ? Registers.FLAG_HALF_CARRY : 0)
+                | (result > 0xFFFF ? Registers.FLAG_CARRY : 0));
+        r.setHL(result & 0xFFFF);
+    }
+
+    /**
+     * SP + signed e8, shared by ADD SP, e8 and LD HL, SP+e8. Flags come from the unsigned low byte addition.
+     */
+    protected final int addSpE8(int e8) {
+        int sp = r.getSP();
+        r.setF(((sp & 0xF) + (e8 & 0xF) > 0xF ? Registers.FLAG_HALF_CARRY : 0)
+                | ((sp & 0xFF) + (e8 & 0xFF) > 0xFF ? Registers.FLAG_CARRY : 0));
+        return (sp + (byte) e8) & 0xFFFF;
+    }
+
+    protected final void daa() {
+        int a = r.getA();
+        int f = r.getF();
+        boolean carry = (f & Registers.FLAG_CARRY) != 0;
+        if ((f & Registers.FLAG_SUBTRACT) == 0) {
+            if (carry || a > 0x99) {
+                a += 0x60;
+                carry = true;
+            }
+            if ((f & Registers.FLAG_HALF_CARRY) != 0 || (a & 0xF) > 9) a += 0x06;
+        } else {
+            if (carry) a -= 0x60;
+            if ((f & Registers.FLAG_HALF_CARRY) != 0) a -= 0x06;
+        }
+        a &= 0xFF;
+        r.setF(zero(a) | (f & Registers.FLAG_SUBTRACT) | (carry ? Registers.FLAG_CARRY : 0));
+        r.setA(a);
+    }
+
+    protected final void cpl() {
+        r.setA(~r.getA() & 0xFF);
+        r.setF(r.getF() | Registers.FLAG_SUBTRACT | Registers.FLAG_HALF_CARRY);
+    }
+
+    protected final void scf() {
+        r.setF((r.getF() & Registers.FLAG_ZERO) | Registers.FLAG_CARRY);
+    }
+
+    protected final void ccf() {
+        r.setF((r.getF() & Registers.FLAG_ZERO) | (carryFlag() ^ Registers.FLAG_CARRY));
+    }
+
+    //Rotates and shifts. The A variants always clear Z, the CB variants set it from the result
+
+    private int shifted(int result, int carryOut) {
+        r.setF(zero(result) | (carryOut != 0 ? Registers.FLAG_CARRY : 0));
+        return result & 0xFF;
+    }
+
+    protected final int rlc(int v) {
+        return shifted((v << 1) | (v >> 7), v & 0x80);
+    }
+
+    protected final int rrc(int v) {
+        return shifted((v >> 1) | (v << 7), v & 0x01);
+    }
+
+    protected final int rl(int v) {
+        return shifted((v << 1) | (c() ? 1 : 0), v & 0x80);
+    }
+
+    protected final int rr(int v) {
+        return shifted((v >> 1) | (c() ? 0x80 : 0), v & 0x01);
+    }
+
+    protected final int sla(int v) {
+        return shifted(v << 1, v & 0x80);
+    }
+
+    protected final int sra(int v) {
+        return shifted((v >> 1) | (v & 0x80), v & 0x01);
+    }
+
+    protected final int srl(int v) {
+        return shifted(v >> 1, v & 0x01);
+    }
+
+    protected final int swap(int v) {
+        return shifted((v >> 4) | (v << 4), 0);
+    }
+
+    protected final void rlca() {
+        r.setA(rlc(r.getA()));
+        r.clearFlag(Registers.FLAG_ZERO);
+    }
+
+    protected final void rrca() {
+        r.setA(rrc(r.getA()));
+        r.clearFlag(Registers.FLAG_ZERO);
+    }
+
+    protected final void rla() {
+        r.setA(rl(r.getA()));
+        r.clearFlag(Registers.FLAG_ZERO);
+    }
+
+    protected final void rra() {
+        r.setA(rr(r.getA()));
+        r.clearFlag(Registers.FLAG_ZERO);
+    }
+
+    protected final void bit(int mask, int v) {
+        r.setF(((v & mask) == 0 ? Registers.FLAG_ZERO : 0) | Registers.FLAG_HALF_CARRY | carryFlag());
+    }
+}
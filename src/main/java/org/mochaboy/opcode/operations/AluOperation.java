@@ -4,45 +4,57 @@ import org.mochaboy.CPU;
 import org.mochaboy.DataType;
 import org.mochaboy.Memory;
 import org.mochaboy.opcode.Opcode;
+import org.mochaboy.opcode.Operand;
 import org.mochaboy.opcode.OpcodeInfo;
+import org.mochaboy.opcode.OpcodePlan;
 import org.mochaboy.registers.Registers;
 
-import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 
 public class AluOperation implements MicroOperation {
-    private final Supplier<Integer> destinationValue;
-    private Supplier<Integer> sourceValue;
+    private final ToIntFunction<Opcode> destinationValue;
+    private ToIntFunction<Opcode> sourceValue;
     private final Type type;
-    private int result;
-    private int x;
-    private int y;
     private boolean is16BitOperation;
-    private Opcode opcode;
+    private int postIncDecRegister = Registers.NO_REGISTER;
+    private boolean signedDisplacement; //ADD SP, e8 and JR add a signed offset
 
-    public AluOperation(Type type, Supplier<Integer> destinationValue) {
+    public AluOperation(Type type, ToIntFunction<Opcode> destinationValue) {
         this.type = type;
         this.destinationValue = destinationValue;
     }
 
-    public AluOperation(Type type, Opcode opcode, Supplier<Integer> destinationValue, Supplier<Integer> sourceValue) {
+    public AluOperation(Type type, OpcodePlan plan, ToIntFunction<Opcode> destinationValue, ToIntFunction<Opcode> sourceValue) {
         this.type = type;
-        this.opcode = opcode;
         this.destinationValue = destinationValue;
         this.sourceValue = sourceValue;
-        if (opcode.getDestinationType() != null)
-            is16BitOperation = (opcode.getDestinationType().equals(DataType.R16) || opcode.getDestinationType().equals(DataType.N16));
+        //Width is fixed by the operand types decoded so far, so resolve it once while the plan is being built
+        if (plan.getDestinationType() != null)
+            is16BitOperation = (plan.getDestinationType().equals(DataType.R16) || plan.getDestinationType().equals(DataType.N16));
         else is16BitOperation = false;
+        OpcodeInfo info = plan.getOpcodeInfo();
+        signedDisplacement = (info.getOperandCount() > 1 && info.getOperand(1).getName().equals("e8"))
+                || info.getMnemonic().equals("JR");
+        if (type == Type.POST_INC || type == Type.POST_DEC) {
+            Operand s = plan.getSourceOperand();
+            Operand d = plan.getDestinationOperand();
+            if (s != null && (s.isIncrement() || s.isDecrement())) postIncDecRegister = Registers.indexOf(s.getName());
+            else if (d != null && (d.isIncrement() || d.isDecrement())) postIncDecRegister = Registers.indexOf(d.getName());
+        }
     }
 
 
     @Override
-    public MicroOperation execute(CPU cpu, Memory memory) {
-        if (destinationValue != null) x = destinationValue.get();
-        if (sourceValue != null) y = sourceValue.get();
+    public MicroOperation execute(CPU cpu, Memory memory, Opcode opcode) {
+        int x = 0;
+        int y = 0;
+        int result = 0;
+        if (destinationValue != null) x = destinationValue.applyAsInt(opcode);
+        if (sourceValue != null) y = sourceValue.applyAsInt(opcode);
         switch (type) {
             case ADC -> result = adc(cpu, x, y);
-            case ADD -> result = add(x, y, cpu);
+            case ADD -> result = add(x, y);
             case CP -> {
                 opcode.setSourceValue(y);
                 opcode.setDestinationValue(x);
@@ -53,39 +65,25 @@ public class AluOperation implements MicroOperation {
                 return this;
             }
             case DEC -> {
-                result = dec(x, memory,cpu);
+                result = dec(x, memory, cpu, opcode);
             }
             case INC -> {
-                result = inc(x, memory,cpu);
+                result = inc(x, memory, cpu, opcode);
             }
             case SBC -> result = sbc(cpu, x, y);
             case SUB -> result = sub(x, y);
             case POST_DEC -> {
                 Registers r = cpu.getRegisters();
-                String targetReg = "";
-                if (opcode.getSourceOperand().isIncrement() || opcode.getSourceOperand().isDecrement()) {
-                    targetReg = opcode.getSourceOperand().getName();
-                } else if (opcode.getDestinationOperand().isIncrement() || opcode.getDestinationOperand().isDecrement()) {
-                    targetReg = opcode.getDestinationOperand().getName();
-                }
-                int val = (r.getByName(targetReg) - 1) & 0xFFFF;
-                r.setByName(targetReg, val);
+                r.set(postIncDecRegister, (r.get(postIncDecRegister) - 1) & 0xFFFF);
                 return this; //Exit early
             }
             case POST_INC -> {
                 Registers r = cpu.getRegisters();
-                String targetReg = "";
-                if (opcode.getSourceOperand().isIncrement() || opcode.getSourceOperand().isDecrement()) {
-                    targetReg = opcode.getSourceOperand().getName();
-                } else if (opcode.getDestinationOperand().isIncrement() || opcode.getDestinationOperand().isDecrement()) {
-                    targetReg = opcode.getDestinationOperand().getName();
-                }
-                int val = (r.getByName(targetReg) + 1) & 0xFFFF;
-                r.setByName(targetReg, val);
+                r.set(postIncDecRegister, (r.get(postIncDecRegister) + 1) & 0xFFFF);
                 return this; //Exit early
             }
         }
-        applyResult(cpu);
+        applyResult(cpu, opcode, result);
         return this;
     }
 
@@ -94,10 +92,8 @@ public class AluOperation implements MicroOperation {
         return ((x + y) + c) & 0xFF;
     }
 
-    private int add(int x, int y, CPU cpu) {
-        OpcodeInfo o = opcode.getOpcodeInfo();
-        if ((o.getOperands().length > 1 && o.getOperands()[1].getName().equals("e8"))
-                || opcode.getOpcodeInfo().getMnemonic().equals("JR")) { //If this is ADD SP, e8 or a JR;
+    private int add(int x, int y) {
+        if (signedDisplacement) { //If this is ADD SP, e8 or a JR;
             //System.out.printf("\n%04X", cpu.getRegisters().getPC());
             int signedDisp = (y << 24) >> 24; //Extend e8 to 32 bits
             return ((x + signedDisp) & 0xFFFF);
@@ -107,7 +103,7 @@ public class AluOperation implements MicroOperation {
         }
     }
 
-    private int dec(int x, Memory memory, CPU cpu) {
+    private int dec(int x, Memory memory, CPU cpu, Opcode opcode) {
         if (!opcode.getDestinationOperand().isImmediate()) {
             x = memory.readByte(cpu.getRegisters().getHL());
             opcode.setDestinationValue(x);
@@ -115,7 +111,7 @@ public class AluOperation implements MicroOperation {
         return (x - 1) & (is16BitOperation ? 0xFFFF : 0xFF);
     }
 
-    private int inc(int x, Memory memory, CPU cpu) {
+    private int inc(int x, Memory memory, CPU cpu, Opcode opcode) {
         if (!opcode.getDestinationOperand().isImmediate()) {
             x = memory.readByte(cpu.getRegisters().getHL());
             opcode.setDestinationValue(x);
@@ -167,21 +163,16 @@ public class AluOperation implements MicroOperation {
         return 0;
     }
 
-    @Override
-    public int getResult() {
-        return result;
-    }
-
-    public void applyResult(CPU cpu) {
+    public void applyResult(CPU cpu, Opcode opcode, int result) {
         DataType dt = opcode.getDestinationType();
-        String destinationRegister = opcode.getDestinationOperandString();
+        int destinationRegister = opcode.getDestinationRegister();
         if (dt == DataType.N16) {
             //Writes result to memory for INC [HL], DEC [HL]
             int addr = cpu.getRegisters().getHL();
             cpu.getMemory().writeByte(addr, result & 0xFF);
         } else {
-            if (Registers.isValidRegister(cpu, destinationRegister)) {
-                cpu.getRegisters().setByName(destinationRegister, result);
+            if (destinationRegister != Registers.NO_REGISTER) {
+                cpu.getRegisters().set(destinationRegister, result);
             }
         }
     }
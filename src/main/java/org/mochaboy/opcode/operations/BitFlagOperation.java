@@ -5,42 +5,39 @@ import org.mochaboy.Memory;
 import org.mochaboy.opcode.Opcode;
 import org.mochaboy.registers.Registers;
 
-import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 public class BitFlagOperation implements MicroOperation {
     private final Type type;
-    private final Supplier<Integer> bitIndex;
-    private final Supplier<Integer> targetValue;
-    private final Opcode opcode;
-    private int result;
+    private final ToIntFunction<Opcode> bitIndex;
+    private final ToIntFunction<Opcode> targetValue;
 
     //FYI - BIT is not handled here because it changes no values, it's handled in FlagCalculator
 
-    public BitFlagOperation(Type type, Opcode opcode, Supplier<Integer> bitIndex, Supplier<Integer> targetValue) {
+    public BitFlagOperation(Type type, ToIntFunction<Opcode> bitIndex, ToIntFunction<Opcode> targetValue) {
         this.type = type;
-        this.opcode = opcode;
         this.bitIndex = bitIndex;
         this.targetValue = targetValue;
     }
 
     @Override
-    public MicroOperation execute(CPU cpu, Memory memory) {
+    public MicroOperation execute(CPU cpu, Memory memory, Opcode opcode) {
         int b = 0;
         int t = 0;
-        result = 0;
-        if (bitIndex != null) b = bitIndex.get();
-        if (targetValue != null) t = targetValue.get();
+        int result = 0;
+        if (bitIndex != null) b = bitIndex.applyAsInt(opcode);
+        if (targetValue != null) t = targetValue.applyAsInt(opcode);
         switch (type) {
             case RES -> result = (t & ~(1 << b));
             case SET -> result = t | (1 << b);
         }
-        applyResult(cpu);
+        applyResult(cpu, opcode, result);
         return this;
     }
 
-    public void applyResult(CPU cpu) {
-        if (Registers.isValidRegister(cpu, opcode.getSourceOperand().getName()) && opcode.getSourceOperand().isImmediate()) {
-            cpu.getRegisters().setByName(opcode.getSourceOperandString(), result);
+    public void applyResult(CPU cpu, Opcode opcode, int result) {
+        if (opcode.getSourceRegister() != Registers.NO_REGISTER && opcode.getSourceOperand().isImmediate()) {
+            cpu.getRegisters().set(opcode.getSourceRegister(), result);
         } else {
             int addr = cpu.getRegisters().getHL();
             cpu.getMemory().writeByte(addr, result);
@@ -52,10 +49,6 @@ public class BitFlagOperation implements MicroOperation {
         return 0;
     }
 
-    @Override
-    public int getResult() {
-        return result;
-    }
 
     public enum Type {
         RES,
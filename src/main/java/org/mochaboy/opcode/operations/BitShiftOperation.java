@@ -3,32 +3,31 @@ package org.mochaboy.opcode.operations;
 import org.mochaboy.CPU;
 import org.mochaboy.Memory;
 import org.mochaboy.opcode.Opcode;
+import org.mochaboy.opcode.OpcodeInfo;
+import org.mochaboy.opcode.OpcodePlan;
 import org.mochaboy.registers.Registers;
 
-import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 public class BitShiftOperation implements MicroOperation {
     private final Type type;
-    private final Supplier<Integer> targetValue;
-    private final Opcode opcode;
-    private int v;
-    private int result;
-    private int msb;
+    private final ToIntFunction<Opcode> targetValue;
+    private final boolean indirectHL; //Operand is [HL], so the target value is an address
 
-    public BitShiftOperation(Type type, Opcode opcode, Supplier<Integer> targetValue) {
+    public BitShiftOperation(Type type, OpcodePlan plan, ToIntFunction<Opcode> targetValue) {
         this.type = type;
         this.targetValue = targetValue;
-        this.opcode = opcode;
+        OpcodeInfo info = plan.getOpcodeInfo();
+        indirectHL = info.getOperandCount() > 0 && info.getOperand(0).getName().equals("HL");
     }
 
 
     @Override
-    public MicroOperation execute(CPU cpu, Memory memory) {
-        v = targetValue != null ? targetValue.get() : 0;
-        if (opcode.getOpcodeInfo().getOperands().length > 0 && opcode.getOpcodeInfo().getOperands()[0].getName().equals("HL")) {
-            v = memory.readWord(v);
-        }
-        msb = ((v >> 7) & 1);
+    public MicroOperation execute(CPU cpu, Memory memory, Opcode opcode) {
+        int v = targetValue != null ? targetValue.applyAsInt(opcode) : 0;
+        if (indirectHL) v = memory.readByte(v);
+        int result = 0;
+        int msb = ((v >> 7) & 1);
         switch (type) {
             case RL, RLA -> {
                 int carryIn = cpu.getRegisters().isFlagSet(Registers.FLAG_CARRY) ? 1 : 0;
@@ -68,16 +67,16 @@ public class BitShiftOperation implements MicroOperation {
                 result = ((upper >>> 4) | (lower << 4)) & 0xFF;
             }
         }
-        applyResult(cpu);
+        applyResult(cpu, opcode, result, msb);
         return this;
     }
 
-    public void applyResult(CPU cpu) {
-        String destRegister = "";
+    public void applyResult(CPU cpu, Opcode opcode, int result, int msb) {
+        int destRegister;
         if (opcode.getDestinationOperand() == null) {
-            destRegister = "A";
+            destRegister = Registers.REG_A;
         } else {
-            destRegister = opcode.getDestinationOperand().getName();
+            destRegister = opcode.getDestinationRegister();
             if (!opcode.getDestinationOperand().isImmediate()) {
                 cpu.getMemory().writeByte(cpu.getRegisters().getHL(), result);
                 opcode.setDestinationValue(result);
@@ -87,7 +86,7 @@ public class BitShiftOperation implements MicroOperation {
         }
         opcode.setDestinationValue(result); //Update value so flag calc can read it - this may be a problem elsewhere too
         opcode.setSourceValue(msb);
-        cpu.getRegisters().setByName(destRegister, result);
+        cpu.getRegisters().set(destRegister, result);
     }
 
     @Override
@@ -95,10 +94,6 @@ public class BitShiftOperation implements MicroOperation {
         return 0;
     }
 
-    @Override
-    public int getResult() {
-        return result;
-    }
 
     public enum Type {
         RL,
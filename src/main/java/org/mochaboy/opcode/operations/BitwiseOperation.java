@@ -3,40 +3,36 @@ package org.mochaboy.opcode.operations;
 import org.mochaboy.CPU;
 import org.mochaboy.Memory;
 import org.mochaboy.opcode.Opcode;
-import org.mochaboy.registers.Registers;
 
-import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 public class BitwiseOperation implements MicroOperation {
-    private final Supplier<Integer> sourceValue;
+    private final ToIntFunction<Opcode> sourceValue;
     private final Type type;
-    private final Opcode opcode;
-    private int result;
 
-    public BitwiseOperation(Type type, Opcode opcode, Supplier<Integer> sourceValue) {
+    public BitwiseOperation(Type type, ToIntFunction<Opcode> sourceValue) {
         this.sourceValue = sourceValue;
         this.type = type;
-        this.opcode = opcode;
     }
 
     @Override
-    public MicroOperation execute(CPU cpu, Memory memory) {
+    public MicroOperation execute(CPU cpu, Memory memory, Opcode opcode) {
         int x = cpu.getRegisters().getA();
         int y = 0;
-        if (sourceValue != null) y = sourceValue.get();
+        int result = 0;
+        if (sourceValue != null) y = sourceValue.applyAsInt(opcode);
         switch (type) {
             case AND -> result = (x & y) & 0xFF;
             case CPL -> result = ~x & 0xFF;
             case OR -> result = (x | y) & 0xFF;
             case XOR -> result = (x ^ y) & 0xFF;
         }
-        applyResult(cpu);
+        applyResult(cpu, result);
         return null;
     }
 
-    private void applyResult(CPU cpu) {
-        Registers r = cpu.getRegisters();
-        r.setByName("A", result);
+    private void applyResult(CPU cpu, int result) {
+        cpu.getRegisters().setA(result);
     }
 
     @Override
@@ -44,10 +40,6 @@ public class BitwiseOperation implements MicroOperation {
         return 0;
     }
 
-    @Override
-    public int getResult() {
-        return result;
-    }
 
     public enum Type {
         AND,
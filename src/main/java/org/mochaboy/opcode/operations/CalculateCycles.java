@@ -3,24 +3,21 @@ package org.mochaboy.opcode.operations;
 import org.mochaboy.CPU;
 import org.mochaboy.Memory;
 import org.mochaboy.opcode.Opcode;
+import org.mochaboy.opcode.OpcodeInfo;
 
 public class CalculateCycles implements MicroOperation {
-    private int[] cycleChoices;
-    private int realCycles;
-    private final Opcode opcode;
-
-    public CalculateCycles(Opcode opcode) {
-        this.opcode = opcode;
+    public CalculateCycles() {
     }
 
     @Override
-    public MicroOperation execute(CPU cpu, Memory memory) {
-        cycleChoices = opcode.getOpcodeInfo().getCycles();
-        if (cycleChoices.length == 1) {
-            realCycles = cycleChoices[0];
+    public MicroOperation execute(CPU cpu, Memory memory, Opcode opcode) {
+        OpcodeInfo info = opcode.getOpcodeInfo();
+        int realCycles;
+        if (info.getCycleCount() == 1) {
+            realCycles = info.getCycles(0);
         } else {
             boolean taken = opcode.isTaken();
-            realCycles = cycleChoices[taken ? 0 : 1];
+            realCycles = info.getCycles(taken ? 0 : 1);
         }
         opcode.setRealCycles(realCycles);
         return this;
@@ -30,9 +27,4 @@ public class CalculateCycles implements MicroOperation {
     public int getCycles() {
         return 0;
     }
-
-    @Override
-    public int getResult() {
-        return 0;
-    }
 }
@@ -3,55 +3,57 @@ package org.mochaboy.opcode.operations;
 import org.mochaboy.CPU;
 import org.mochaboy.Memory;
 import org.mochaboy.opcode.Opcode;
+import org.mochaboy.opcode.OpcodeInfo;
 import org.mochaboy.registers.Registers;
 
 public class CheckCC implements MicroOperation {
     private final Type type;
-    private final Opcode opcode;
 
-    public CheckCC(Type type, Opcode opcode) {
+    public CheckCC(Type type) {
         this.type = type;
-        this.opcode = opcode;
     }
 
     @Override
-    public MicroOperation execute(CPU cpu, Memory memory) {
+    public MicroOperation execute(CPU cpu, Memory memory, Opcode opcode) {
         Registers r = cpu.getRegisters();
         switch (type) {
             case Z -> {
                 if (!r.isFlagSet(Registers.FLAG_ZERO)) {
-                    opcode.setKillRemainingOps(true);
+                    notTaken(opcode);
                 } else opcode.setTaken(true);
             }
             case NZ -> {
                 if (r.isFlagSet(Registers.FLAG_ZERO)) {
-                    opcode.setKillRemainingOps(true);
+                    notTaken(opcode);
                 } else opcode.setTaken(true);
             }
             case C -> {
                 if (!r.isFlagSet(Registers.FLAG_CARRY)) {
-                    opcode.setKillRemainingOps(true);
+                    notTaken(opcode);
                 } else opcode.setTaken(true);
             }
             case NC -> {
                 if (r.isFlagSet(Registers.FLAG_CARRY)) {
-                    opcode.setKillRemainingOps(true);
+                    notTaken(opcode);
                 } else opcode.setTaken(true);
             }
         }
         return this;
     }
 
-    @Override
-    public int getCycles() {
-        return 0;
+    private static void notTaken(Opcode opcode) {
+        //CalculateCycles gets killed along with everything else, so settle on the not-taken cycle count here
+        OpcodeInfo info = opcode.getOpcodeInfo();
+        opcode.setRealCycles(info.getCycles(info.getCycleCount() - 1));
+        opcode.setKillRemainingOps(true);
     }
 
     @Override
-    public int getResult() {
+    public int getCycles() {
         return 0;
     }
 
+
     public enum Type {
         Z,
         NZ,
@@ -2,10 +2,11 @@ package org.mochaboy.opcode.operations;
 
 import org.mochaboy.CPU;
 import org.mochaboy.Memory;
+import org.mochaboy.opcode.Opcode;
 
 public class EmptyCycle implements MicroOperation{
     @Override
-    public MicroOperation execute(CPU cpu, Memory memory) {
+    public MicroOperation execute(CPU cpu, Memory memory, Opcode opcode) {
         return this;
     }
 
@@ -13,9 +14,4 @@ public class EmptyCycle implements MicroOperation{
     public int getCycles() {
         return 1;
     }
-
-    @Override
-    public int getResult() {
-        return 0;
-    }
 }
@@ -2,28 +2,29 @@ package org.mochaboy.opcode.operations;
 
 import org.mochaboy.CPU;
 import org.mochaboy.Memory;
+import org.mochaboy.opcode.Opcode;
 
-import java.util.function.Consumer;
-import java.util.function.Supplier;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
 
 public class FlipBytes implements MicroOperation {
 
-    private final Supplier<Integer> leftGetter;
-    private final Supplier<Integer> rightGetter;
-    private final Consumer<Integer> resultSetter;
+    private final ToIntFunction<Opcode> leftGetter;
+    private final ToIntFunction<Opcode> rightGetter;
+    private final ObjIntConsumer<Opcode> resultSetter;
 
-    public FlipBytes(Supplier<Integer> leftGetter, Supplier<Integer> rightGetter, Consumer<Integer> resultSetter) {
+    public FlipBytes(ToIntFunction<Opcode> leftGetter, ToIntFunction<Opcode> rightGetter, ObjIntConsumer<Opcode> resultSetter) {
         this.leftGetter = leftGetter;
         this.rightGetter = rightGetter;
         this.resultSetter = resultSetter;
     }
 
     @Override
-    public MicroOperation execute(CPU cpu, Memory memory) {
-        int low = leftGetter.get();
-        int high = rightGetter.get();
+    public MicroOperation execute(CPU cpu, Memory memory, Opcode opcode) {
+        int low = leftGetter.applyAsInt(opcode);
+        int high = rightGetter.applyAsInt(opcode);
         int n16 = (high << 8) | (low & 0xFF);
-        resultSetter.accept(n16);
+        resultSetter.accept(opcode, n16);
         return this;
     }
 
@@ -31,10 +32,4 @@ public class FlipBytes implements MicroOperation {
     public int getCycles() {
         return 0;
     }
-
-    @Override
-    public int getResult() {
-        return 0;
-    }
-
 }
@@ -5,14 +5,11 @@ import org.mochaboy.Memory;
 import org.mochaboy.opcode.Opcode;
 
 public class FlipOperands implements MicroOperation {
-    private final Opcode opcode;
-
-    public FlipOperands(Opcode opcode) {
-        this.opcode = opcode;
+    public FlipOperands() {
     }
 
     @Override
-    public MicroOperation execute(CPU cpu, Memory memory) {
+    public MicroOperation execute(CPU cpu, Memory memory, Opcode opcode) {
         int destination = opcode.getDestinationValue();
         int source = opcode.getSourceValue();
         opcode.setSourceValue(destination);
@@ -24,9 +21,4 @@ public class FlipOperands implements MicroOperation {
     public int getCycles() {
         return 0;
     }
-
-    @Override
-    public int getResult() {
-        return 0;
-    }
 }
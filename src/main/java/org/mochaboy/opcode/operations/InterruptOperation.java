@@ -2,18 +2,17 @@ package org.mochaboy.opcode.operations;
 
 import org.mochaboy.CPU;
 import org.mochaboy.Memory;
+import org.mochaboy.opcode.Opcode;
 
 public class InterruptOperation implements MicroOperation {
     private final Type type;
-    private final CPU cpu;
 
-    public InterruptOperation(Type type, CPU cpu) {
+    public InterruptOperation(Type type) {
         this.type = type;
-        this.cpu = cpu;
     }
 
     @Override
-    public MicroOperation execute(CPU cpu, Memory memory) {
+    public MicroOperation execute(CPU cpu, Memory memory, Opcode opcode) {
         switch (type) {
             case DI -> {
                 cpu.setIME(false);
@@ -39,10 +38,6 @@ public class InterruptOperation implements MicroOperation {
         else return 0;
     }
 
-    @Override
-    public int getResult() {
-        return 0;
-    }
 
     public enum Type {
         DI,
@@ -4,22 +4,20 @@ import org.mochaboy.CPU;
 import org.mochaboy.Memory;
 import org.mochaboy.opcode.Opcode;
 
-import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 public class JumpOperation implements MicroOperation{
 
     private final Type type;
-    private final Supplier<Integer> address;
-    private final Opcode opcode;
+    private final ToIntFunction<Opcode> address;
 
-    public JumpOperation(Type type, Opcode opcode, Supplier<Integer> address){
+    public JumpOperation(Type type, ToIntFunction<Opcode> address){
         this.type = type;
-        this. opcode = opcode;
         this.address = address;
     }
 
     @Override
-    public MicroOperation execute(CPU cpu, Memory memory) {
+    public MicroOperation execute(CPU cpu, Memory memory, Opcode opcode) {
         switch (type){
             case CALL -> {
 
@@ -33,10 +31,6 @@ public class JumpOperation implements MicroOperation{
         return 0;
     }
 
-    @Override
-    public int getResult() {
-        return 0;
-    }
 
     public enum Type{
         CALL,
@@ -7,24 +7,19 @@ import org.mochaboy.opcode.Opcode;
 import org.mochaboy.registers.Registers;
 
 public class Load implements MicroOperation {
-    private final Opcode opcode;
-
-    public Load(Opcode opcode) {
-        this.opcode = opcode;
+    public Load() {
     }
 
     @Override
-    public MicroOperation execute(CPU cpu, Memory memory) {
+    public MicroOperation execute(CPU cpu, Memory memory, Opcode opcode) {
         Registers r = cpu.getRegisters();
-        String ss = opcode.getSourceOperandString();
-        String ds = opcode.getDestinationOperandString();
         DataType destinationType = opcode.getDestinationType();
         DataType sourceType = opcode.getSourceType();
         int source;
 
         //Get the value to be copied
         if (sourceType == DataType.R8 || sourceType == DataType.R16) {
-            source = r.getByName(ss); //Pull the source value from a register
+            source = r.get(opcode.getSourceRegister()); //Pull the source value from a register
         }
         else if(sourceType == DataType.A8){
             //source = 0xFF00 | opcode.getSourceValue();
@@ -46,7 +41,8 @@ public class Load implements MicroOperation {
                     e8 = (byte) e8;
                     source = ((source + e8) & 0xFFFF);
                 }
-                if (Registers.isValidRegister(cpu, ds)) r.setByName(ds, source);
+                int ds = opcode.getDestinationRegister();
+                if (ds != Registers.NO_REGISTER) r.set(ds, source);
             }
             //Writes to memory
             case A8 -> {
@@ -68,9 +64,4 @@ public class Load implements MicroOperation {
     public int getCycles() {
         return 0;
     }
-
-    @Override
-    public int getResult() {
-        return 0;
-    }
 }
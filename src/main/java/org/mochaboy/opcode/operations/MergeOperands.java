@@ -2,27 +2,28 @@ package org.mochaboy.opcode.operations;
 
 import org.mochaboy.CPU;
 import org.mochaboy.Memory;
+import org.mochaboy.opcode.Opcode;
 
-import java.util.function.Consumer;
-import java.util.function.Supplier;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
 
 public class MergeOperands implements MicroOperation {
-    private final Supplier<Integer> leftGetter;
-    private final Supplier<Integer> rightGetter;
-    private final Consumer<Integer> resultSetter;
+    private final ToIntFunction<Opcode> leftGetter;
+    private final ToIntFunction<Opcode> rightGetter;
+    private final ObjIntConsumer<Opcode> resultSetter;
 
-    public MergeOperands(Supplier<Integer> leftGetter, Supplier<Integer> rightGetter, Consumer<Integer> resultSetter) {
+    public MergeOperands(ToIntFunction<Opcode> leftGetter, ToIntFunction<Opcode> rightGetter, ObjIntConsumer<Opcode> resultSetter) {
         this.leftGetter = leftGetter;
         this.rightGetter = rightGetter;
         this.resultSetter = resultSetter;
     }
 
     @Override
-    public MicroOperation execute(CPU cpu, Memory memory) {
-        int lo  = leftGetter.get() & 0xFF;
-        int hi  = rightGetter.get() & 0xFF;
+    public MicroOperation execute(CPU cpu, Memory memory, Opcode opcode) {
+        int lo  = leftGetter.applyAsInt(opcode) & 0xFF;
+        int hi  = rightGetter.applyAsInt(opcode) & 0xFF;
         int n16 = ((hi << 8) | lo) & 0xFFFF;
-        resultSetter.accept(n16);
+        resultSetter.accept(opcode, n16);
         return this;
     }
 
@@ -30,9 +31,4 @@ public class MergeOperands implements MicroOperation {
     public int getCycles() {
         return 0;
     }
-
-    @Override
-    public int getResult() {
-        return 0;
-    }
 }
@@ -4,9 +4,15 @@ import org.mochaboy.CPU;
 import org.mochaboy.Memory;
 import org.mochaboy.opcode.Opcode;
 
+/**
+ * A single step of an opcode's execution plan. Micro operations are shared between every execution of the same
+ * opcode, so they must not hold per-execution state - anything that changes goes into the {@link Opcode} context.
+ * <p>
+ * Operand values are read and written through {@code ToIntFunction<Opcode>} and {@code ObjIntConsumer<Opcode>}, usually
+ * method references to the context's int slots such as {@code Opcode::setSourceValue}, so nothing is boxed on the way.
+ */
 public interface MicroOperation {
-    MicroOperation execute(CPU cpu, Memory memory);
+    MicroOperation execute(CPU cpu, Memory memory, Opcode opcode);
 
     int getCycles();
-    int getResult();
 }
@@ -2,30 +2,30 @@ package org.mochaboy.opcode.operations;
 
 import org.mochaboy.CPU;
 import org.mochaboy.Memory;
+import org.mochaboy.opcode.Opcode;
 
-import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 public class ReadImmediate8bit implements MicroOperation {
-    private final Consumer<Integer> consumer;
-    private int result;
+    private final ObjIntConsumer<Opcode> consumer;
     private boolean addHRamOffset = false;
 
-    public ReadImmediate8bit(Consumer<Integer> consumer) {
+    public ReadImmediate8bit(ObjIntConsumer<Opcode> consumer) {
         this.consumer = consumer;
     }
 
-    public ReadImmediate8bit(Consumer<Integer> consumer, boolean addHRamOffset) {
+    public ReadImmediate8bit(ObjIntConsumer<Opcode> consumer, boolean addHRamOffset) {
         this.consumer = consumer;
         this.addHRamOffset = addHRamOffset;
     }
 
     @Override
-    public MicroOperation execute(CPU cpu, Memory memory) {
-        result = memory.readByte(cpu.getRegisters().getPC()) & 0xFF;
+    public MicroOperation execute(CPU cpu, Memory memory, Opcode opcode) {
+        int result = memory.readByte(cpu.getRegisters().getPC()) & 0xFF;
         //System.out.printf("\nReading byte at %04X: %02X", cpu.getRegisters().getPC(), result);
         cpu.getRegisters().incrementPC();
         if (addHRamOffset) result |= 0xFF00;
-        consumer.accept(result);
+        consumer.accept(opcode, result);
         return this;
     }
 
@@ -33,10 +33,4 @@ public class ReadImmediate8bit implements MicroOperation {
     public int getCycles() {
         return 1;
     }
-
-    @Override
-    public int getResult() {
-        return result;
-    }
-
 }
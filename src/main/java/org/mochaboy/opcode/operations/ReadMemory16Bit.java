@@ -2,24 +2,24 @@ package org.mochaboy.opcode.operations;
 
 import org.mochaboy.CPU;
 import org.mochaboy.Memory;
+import org.mochaboy.opcode.Opcode;
 
-import java.util.function.Consumer;
-import java.util.function.Supplier;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
 
 public class ReadMemory16Bit implements MicroOperation {
-    private final Consumer<Integer> consumer;
-    private final Supplier<Integer> address;
-    private int result;
+    private final ObjIntConsumer<Opcode> consumer;
+    private final ToIntFunction<Opcode> address;
 
-    public ReadMemory16Bit(Consumer<Integer> consumer, Supplier<Integer> address) {
+    public ReadMemory16Bit(ObjIntConsumer<Opcode> consumer, ToIntFunction<Opcode> address) {
         this.consumer = consumer;
         this.address = address;
     }
 
     @Override
-    public MicroOperation execute(CPU cpu, Memory memory) {
-        result = memory.readWord(address.get());
-        consumer.accept(result);
+    public MicroOperation execute(CPU cpu, Memory memory, Opcode opcode) {
+        int result = memory.readWord(address.applyAsInt(opcode));
+        consumer.accept(opcode, result);
         return this;
     }
 
@@ -27,9 +27,4 @@ public class ReadMemory16Bit implements MicroOperation {
     public int getCycles() {
         return 0;
     }
-
-    @Override
-    public int getResult() {
-        return 0;
-    }
 }
@@ -2,26 +2,25 @@ package org.mochaboy.opcode.operations;
 
 import org.mochaboy.CPU;
 import org.mochaboy.Memory;
+import org.mochaboy.opcode.Opcode;
 
-import java.util.function.Consumer;
-import java.util.function.Supplier;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
 
 public class ReadMemory8Bit implements MicroOperation {
-    private final Consumer<Integer> consumer;
-    private final Supplier<Integer> address;
-    private int result;
+    private final ObjIntConsumer<Opcode> consumer;
+    private final ToIntFunction<Opcode> address;
 
-    public ReadMemory8Bit(Consumer<Integer> consumer, Supplier<Integer> address) {
+    public ReadMemory8Bit(ObjIntConsumer<Opcode> consumer, ToIntFunction<Opcode> address) {
         this.consumer = consumer;
         this.address = address;
     }
 
     @Override
-    public MicroOperation execute(CPU cpu, Memory memory) {
-        int addr = 0;
-        if (address.get() != null) addr = address.get();
-        result = memory.readByte(addr);
-        consumer.accept(result);
+    public MicroOperation execute(CPU cpu, Memory memory, Opcode opcode) {
+        int addr = address.applyAsInt(opcode);
+        int result = memory.readByte(addr);
+        consumer.accept(opcode, result);
         return this;
     }
 
@@ -29,9 +28,4 @@ public class ReadMemory8Bit implements MicroOperation {
     public int getCycles() {
         return 0;
     }
-
-    @Override
-    public int getResult() {
-        return result;
-    }
 }
@@ -2,23 +2,27 @@ package org.mochaboy.opcode.operations;
 
 import org.mochaboy.CPU;
 import org.mochaboy.Memory;
+import org.mochaboy.opcode.Opcode;
+import org.mochaboy.registers.Registers;
 
-import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 public class ReadRegister8Bit implements MicroOperation {
-    private Consumer<Integer> consumer;
-    private String name;
-    private int result;
+    private final ObjIntConsumer<Opcode> consumer;
+    private final int register;
 
-    public ReadRegister8Bit(Consumer<Integer> consumer, String name) {
+    /**
+     * @param register Register index, see {@link Registers#indexOf(String)}
+     */
+    public ReadRegister8Bit(ObjIntConsumer<Opcode> consumer, int register) {
         this.consumer = consumer;
-        this.name = name;
+        this.register = register;
     }
 
     @Override
-    public MicroOperation execute(CPU cpu, Memory memory) {
-        result = cpu.getRegisters().getByName(name) & 0xFF;
-        consumer.accept(result);
+    public MicroOperation execute(CPU cpu, Memory memory, Opcode opcode) {
+        int result = cpu.getRegisters().get(register) & 0xFF;
+        consumer.accept(opcode, result);
         return this;
     }
 
@@ -26,9 +30,4 @@ public class ReadRegister8Bit implements MicroOperation {
     public int getCycles() {
         return 0;
     }
-
-    @Override
-    public int getResult() {
-        return result;
-    }
 }
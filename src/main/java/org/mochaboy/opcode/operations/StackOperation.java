@@ -5,32 +5,26 @@ import org.mochaboy.Memory;
 import org.mochaboy.opcode.Opcode;
 import org.mochaboy.registers.Registers;
 
-import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 public class StackOperation implements MicroOperation {
     private final Type type;
-    private final Opcode opcode;
-    private final Supplier<Integer> valueSupplier;
+    private final ToIntFunction<Opcode> valueSupplier;
 
-    public StackOperation(Type type, Opcode opcode, Supplier<Integer> valueSupplier) {
+    public StackOperation(Type type, ToIntFunction<Opcode> valueSupplier) {
         this.type = type;
-        this.opcode = opcode;
         this.valueSupplier = valueSupplier;
     }
 
     @Override
-    public MicroOperation execute(CPU cpu, Memory memory) {
+    public MicroOperation execute(CPU cpu, Memory memory, Opcode opcode) {
         Registers r = cpu.getRegisters();
-        int value = valueSupplier.get();
+        int value = valueSupplier.applyAsInt(opcode);
         switch (type) {
             case POP -> {
                 opcode.setDestinationValue(value);     // pass to FlagCalculator
 
-                if ("AF".equals(opcode.getDestinationOperandString())) {
-                    r.setAF(value);
-                } else {
-                    r.setByName(opcode.getDestinationOperandString(), value);
-                }
+                r.set(opcode.getDestinationRegister(), value);
                 r.setSP((r.getSP() + 2) & 0xFFFF);
             }
 
@@ -44,7 +38,7 @@ public class StackOperation implements MicroOperation {
             case PUSH_LOW -> {
                 int sp = (r.getSP() - 1) & 0xFFFF;
                 int low = value & 0xFF;
-                if ("AF".equals(opcode.getDestinationOperandString())) {
+                if (opcode.getDestinationRegister() == Registers.REG_AF) {
                     low &= 0xF0; //Mask flag nibble to preserve flags
                 }
                 memory.writeByte(sp, low);
@@ -60,10 +54,6 @@ public class StackOperation implements MicroOperation {
         return 1;
     }
 
-    @Override
-    public int getResult() {
-        return 0;
-    }
 
     public enum Type {
         PUSH_HIGH,
@@ -2,23 +2,24 @@ package org.mochaboy.opcode.operations;
 
 import org.mochaboy.CPU;
 import org.mochaboy.Memory;
+import org.mochaboy.opcode.Opcode;
 
-import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 public class WriteMemory8Bit implements MicroOperation{
-    private final Supplier<Integer> addressSupplier;
-    private final Supplier<Integer> sourceSupplier;
+    private final ToIntFunction<Opcode> addressSupplier;
+    private final ToIntFunction<Opcode> sourceSupplier;
 
-    public WriteMemory8Bit(Supplier<Integer> addressSupplier, Supplier<Integer> dataSupplier) {
+    public WriteMemory8Bit(ToIntFunction<Opcode> addressSupplier, ToIntFunction<Opcode> dataSupplier) {
         this.addressSupplier = addressSupplier;
         this.sourceSupplier = dataSupplier;
     }
 
 
     @Override
-    public MicroOperation execute(CPU cpu, Memory memory) {
-        int addr = addressSupplier.get() & 0xFFFF;
-        int data = sourceSupplier.get() & 0xFF;
+    public MicroOperation execute(CPU cpu, Memory memory, Opcode opcode) {
+        int addr = addressSupplier.applyAsInt(opcode) & 0xFFFF;
+        int data = sourceSupplier.applyAsInt(opcode) & 0xFF;
         memory.writeByte(addr, data);
         return this;
     }
@@ -27,9 +28,4 @@ public class WriteMemory8Bit implements MicroOperation{
     public int getCycles() {
         return 0;
     }
-
-    @Override
-    public int getResult() {
-        return 0;
-    }
 }
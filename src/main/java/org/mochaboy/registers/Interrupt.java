@@ -3,50 +3,79 @@ package org.mochaboy.registers;
 import org.mochaboy.CPU;
 import org.mochaboy.Memory;
 
-import java.util.HashMap;
-import java.util.Map;
-
+/**
+ * Interrupt controller. IE (FFFF) and IF (FF0F) live here rather than in memory, Memory hands reads and writes of
+ * those two addresses over, and IE & IF is kept up to date in {@link #getPending()} so checking for an interrupt is a
+ * single field load.
+ */
 public class Interrupt {
+    public static final int IF_ADDRESS = 0xFF0F;
+    public static final int IE_ADDRESS = 0xFFFF;
+
+    private static final INTERRUPT[] INTERRUPTS = INTERRUPT.values();
 
     private CPU cpu;
     private Memory memory;
 
-    private final Map<String, Integer> map;
-    private final Map<String, Integer> interruptMap;
+    private int ie;
+    private int iflag;
+    private int pending; //ie & iflag, only the five interrupt bits
 
     public Interrupt(CPU cpu, Memory memory) {
         this.cpu = cpu;
         this.memory = memory;
-        map = this.memory.getMemoryMap();
-        interruptMap = new HashMap<>();
-        populateInterruptMap();
-    }
-
-    private void populateInterruptMap() {
-        interruptMap.put("VBLANK", 0x0040);
-        interruptMap.put("STAT", 0x0048);
-        interruptMap.put("TIMER", 0x0050);
-        interruptMap.put("SERIAL", 0x0058);
-        interruptMap.put("JOYPAD", 0x0060);
+        memory.registerIo(IF_ADDRESS, this::read, this::write);
+        memory.setInterruptController(this);
     }
 
     public void setInterrupt(INTERRUPT interrupt) {
-        int bit = interrupt.ordinal();
-        int IF = memory.readByte(map.get("IF"));
-        IF = (IF | (1 << bit));
-        memory.writeByte(map.get("IF"), IF);
+        iflag |= 1 << interrupt.ordinal();
+        pending = ie & iflag & 0x1F;
         cpu.setHalt(false);
     }
 
+    /**
+     * @return IE & IF, non zero if any enabled interrupt is requested
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    /**
+     * Clear the highest priority pending request and jump to its handler.
+     */
+    public void servicePending() {
+        int bit = Integer.numberOfTrailingZeros(pending);
+        iflag &= ~(1 << bit);
+        pending = ie & iflag & 0x1F;
+        handleInterrupt(INTERRUPTS[bit]);
+    }
+
     public void handleInterrupt(INTERRUPT interrupt) {
         //if (!interrupt.name().equals("VBLANK")) {
             //System.out.println(interrupt.name());
         //}
         cpu.getStack().push(cpu.getRegisters().getPC());
-        cpu.getRegisters().setPC(interruptMap.get(interrupt.name()));
+        cpu.getRegisters().setPC(0x0040 + 8 * interrupt.ordinal());
         cpu.setIME(false);
     }
 
+    /**
+     * @param address IF_ADDRESS or IE_ADDRESS
+     */
+    public int read(int address) {
+        return address == IF_ADDRESS ? iflag : ie;
+    }
+
+    /**
+     * @param address IF_ADDRESS or IE_ADDRESS
+     */
+    public void write(int address, int value) {
+        if (address == IF_ADDRESS) iflag = value & 0xFF;
+        else ie = value & 0xFF;
+        pending = ie & iflag & 0x1F;
+    }
+
     public enum INTERRUPT {
         VBLANK,
         STAT,
@@ -56,7 +85,7 @@ public class Interrupt {
     }
 
     public String getInterruptsAsString() {
-        int IF = memory.readByte(map.get("IF"));
+        int IF = iflag;
         StringBuilder sb = new StringBuilder();
         sb.append("Interrupts: ");
         for (int i = 0; i < 5; i++) {
@@ -2,135 +2,181 @@ package org.mochaboy.registers;
 
 import org.mochaboy.CPU;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.function.BiConsumer;
-import java.util.function.Supplier;
-
+/**
+ * SM83 register file. Registers live in a small int array addressed by the REG_* indices, so micro ops can resolve an
+ * operand name to an index once when the opcode is decoded and snapshots are a plain array copy.
+ */
 public class Registers {
+    //8-bit registers and SP/PC, in the order they're stored
+    public static final int REG_A = 0;
+    public static final int REG_B = 1;
+    public static final int REG_C = 2;
+    public static final int REG_D = 3;
+    public static final int REG_E = 4;
+    public static final int REG_F = 5;
+    public static final int REG_H = 6;
+    public static final int REG_L = 7;
+    public static final int REG_SP = 8;
+    public static final int REG_PC = 9;
+    //Register pairs, combined from the 8-bit registers on access
+    public static final int REG_AF = 10;
+    public static final int REG_BC = 11;
+    public static final int REG_DE = 12;
+    public static final int REG_HL = 13;
+    public static final int NO_REGISTER = -1;
+
+    /**
+     * Number of ints in a register snapshot.
+     */
+    public static final int SNAPSHOT_SIZE = 10;
 
-    private final Map<String, Supplier<Integer>> registerGettersMap; //Will be needed to dynamically access registers as referenced by OpcodeInfo
-    private final Map<String, BiConsumer<Registers, Integer>> registerSettersMap;
-    private int A, B, C, D, E, F, H, L;
-    private int SP, PC;
     public static final int FLAG_ZERO = 1 << 7;
     public static final int FLAG_SUBTRACT = 1 << 6;
     public static final int FLAG_HALF_CARRY = 1 << 5;
     public static final int FLAG_CARRY = 1 << 4;
 
+    private final int[] file = new int[SNAPSHOT_SIZE];
+
     public Registers() {
-        registerGettersMap = new HashMap<>();
-        registerGettersMap.put("A", () -> A);
-        registerGettersMap.put("B", () -> B);
-        registerGettersMap.put("C", () -> C);
-        registerGettersMap.put("D", () -> D);
-        registerGettersMap.put("E", () -> E);
-        registerGettersMap.put("F", () -> F);
-        registerGettersMap.put("H", () -> H);
-        registerGettersMap.put("L", () -> L);
-        registerGettersMap.put("SP", () -> SP);
-        registerGettersMap.put("PC", () -> PC);
-        registerGettersMap.put("AF", this::getAF);
-        registerGettersMap.put("BC", this::getBC);
-        registerGettersMap.put("DE", this::getDE);
-        registerGettersMap.put("HL", this::getHL);
-
-        registerSettersMap = new HashMap<>();
-        registerSettersMap.put("A", Registers::setA);
-        registerSettersMap.put("B", Registers::setB);
-        registerSettersMap.put("C", Registers::setC);
-        registerSettersMap.put("D", Registers::setD);
-        registerSettersMap.put("E", Registers::setE);
-        registerSettersMap.put("H", Registers::setH);
-        registerSettersMap.put("L", Registers::setL);
-        registerSettersMap.put("SP", Registers::setSP);
-        registerSettersMap.put("PC", Registers::setPC);
-        registerSettersMap.put("AF", Registers::setAF);
-        registerSettersMap.put("BC", Registers::setBC);
-        registerSettersMap.put("DE", Registers::setDE);
-        registerSettersMap.put("HL", Registers::setHL);
+    }
 
+    /**
+     * Resolve an operand name from Opcodes.json to a register index.
+     *
+     * @return REG_* index, or NO_REGISTER if name isn't a register
+     */
+    public static int indexOf(String name) {
+        if (name == null) return NO_REGISTER;
+        return switch (name) {
+            case "A" -> REG_A;
+            case "B" -> REG_B;
+            case "C" -> REG_C;
+            case "D" -> REG_D;
+            case "E" -> REG_E;
+            case "F" -> REG_F;
+            case "H" -> REG_H;
+            case "L" -> REG_L;
+            case "SP" -> REG_SP;
+            case "PC" -> REG_PC;
+            case "AF" -> REG_AF;
+            case "BC" -> REG_BC;
+            case "DE" -> REG_DE;
+            case "HL" -> REG_HL;
+            default -> NO_REGISTER;
+        };
+    }
+
+    public int get(int register) {
+        return switch (register) {
+            case REG_AF -> getAF();
+            case REG_BC -> getBC();
+            case REG_DE -> getDE();
+            case REG_HL -> getHL();
+            default -> file[register];
+        };
+    }
+
+    public void set(int register, int value) {
+        switch (register) {
+            case REG_F -> setF(value);
+            case REG_AF -> setAF(value);
+            case REG_BC -> setBC(value);
+            case REG_DE -> setDE(value);
+            case REG_HL -> setHL(value);
+            default -> file[register] = value;
+        }
+    }
+
+    /**
+     * Copy every register into snapshot, which must hold at least SNAPSHOT_SIZE ints.
+     */
+    public void snapshot(int[] snapshot) {
+        System.arraycopy(file, 0, snapshot, 0, SNAPSHOT_SIZE);
+    }
+
+    public void restore(int[] snapshot) {
+        System.arraycopy(snapshot, 0, file, 0, SNAPSHOT_SIZE);
     }
 
     public int getA() {
-        return A;
+        return file[REG_A];
     }
 
     public void setA(int a) {
-        A = a;
+        file[REG_A] = a;
     }
 
     public int getB() {
-        return B;
+        return file[REG_B];
     }
 
     public void setB(int b) {
-        B = b;
+        file[REG_B] = b;
     }
 
     public int getC() {
-        return C;
+        return file[REG_C];
     }
 
     public void setC(int c) {
-        C = c;
+        file[REG_C] = c;
     }
 
     public int getD() {
-        return D;
+        return file[REG_D];
     }
 
     public void setD(int d) {
-        D = d;
+        file[REG_D] = d;
     }
 
     public int getE() {
-        return E;
+        return file[REG_E];
     }
 
     public void setE(int e) {
-        E = e;
+        file[REG_E] = e;
     }
 
     public int getF(){
-        return F;
+        return file[REG_F];
     }
 
     public void setF(int value){
-        F = (value & 0xF0);
+        file[REG_F] = (value & 0xF0);
     }
 
 
     public int getH() {
-        return H;
+        return file[REG_H];
     }
 
     public void setH(int h) {
-        H = h;
+        file[REG_H] = h;
     }
 
     public int getL() {
-        return L;
+        return file[REG_L];
     }
 
     public void setL(int l) {
-        L = l;
+        file[REG_L] = l;
     }
 
     public int getSP() {
-        return SP;
+        return file[REG_SP];
     }
 
     public void setSP(int SP) {
-        this.SP = SP;
+        file[REG_SP] = SP;
     }
 
     public int getPC() {
-        return PC;
+        return file[REG_PC];
     }
 
     public void setPC(int PC) {
-        this.PC = PC;
+        file[REG_PC] = PC;
     }
 
     public void incrementPC() {
@@ -143,75 +189,82 @@ public class Registers {
 
     //16-bit combined registers
     public int getAF() { //Accumulator and flags
-        return (A << 8) | F;
+        return (file[REG_A] << 8) | file[REG_F];
     }
 
     public void setAF(int val) {
-        A = (val >> 8) & 0xFF;
-        F = val & 0xF0; // Mask out the lower nibble
+        file[REG_A] = (val >> 8) & 0xFF;
+        file[REG_F] = val & 0xF0; // Mask out the lower nibble
     }
 
     public void setAFUnmasked(int val){
-        A = (val >> 8) & 0xFF;
-        F = val & 0xFF;
+        file[REG_A] = (val >> 8) & 0xFF;
+        file[REG_F] = val & 0xFF;
     }
 
     public int getBC() {
-        return (B << 8) | C;
+        return (file[REG_B] << 8) | file[REG_C];
     }
 
     public void setBC(int val) {
-        B = (val >> 8) & 0xFF;
-        C = val & 0xFF;
+        file[REG_B] = (val >> 8) & 0xFF;
+        file[REG_C] = val & 0xFF;
     }
 
     public int getDE() {
-        return (D << 8) | E;
+        return (file[REG_D] << 8) | file[REG_E];
     }
 
     public void setDE(int val) {
-        D = (val >> 8) & 0xFF;
-        E = val & 0xFF;
+        file[REG_D] = (val >> 8) & 0xFF;
+        file[REG_E] = val & 0xFF;
     }
 
     public int getHL() {
-        return (H << 8) | L;
+        return (file[REG_H] << 8) | file[REG_L];
     }
 
     public void setHL(int val) {
-        H = (val >> 8) & 0xFF;
-        L = val & 0xFF;
+        file[REG_H] = (val >> 8) & 0xFF;
+        file[REG_L] = val & 0xFF;
     }
 
     //Flags
 
     public boolean isFlagSet(int flag) {
-        return (F & flag) != 0;
+        return (file[REG_F] & flag) != 0;
     }
 
     public void setFlag(int flag) {
-        F |= flag;
+        file[REG_F] |= flag;
     }
 
     public void setFlag(int flag, boolean condition) {
-        F = (condition) ? (F | flag) & 0xF0 : (F & ~flag) & 0xF0;
+        file[REG_F] = (condition) ? (file[REG_F] | flag) & 0xF0 : (file[REG_F] & ~flag) & 0xF0;
     }
 
     public void clearFlag(int flag) {
-        F &= ~flag;
+        file[REG_F] &= ~flag;
     }
 
+    /**
+     * Name based access for tests and debugging. Micro ops resolve names with {@link #indexOf(String)} when they're
+     * built and use {@link #get(int)}/{@link #set(int, int)} instead.
+     */
     public int getByName(String name) {
-        if(registerGettersMap.get(name).get() == null) throw new NullPointerException("Invalid register name: " + name );
-        return registerGettersMap.get(name).get();
+        int register = indexOf(name);
+        if (register == NO_REGISTER) throw new IllegalArgumentException("Invalid register name: " + name);
+        return get(register);
     }
 
     public void setByName(String name, int value) {
-        registerSettersMap.get(name).accept(this, value);
+        int register = indexOf(name);
+        if (register == NO_REGISTER) throw new IllegalArgumentException("Invalid register name: " + name);
+        set(register, value);
     }
 
     public static boolean isValidRegister(CPU cpu, String s){
-        return cpu.getRegisters().registerGettersMap.get(s) != null;
+        return indexOf(s) != NO_REGISTER;
     }
 
 }
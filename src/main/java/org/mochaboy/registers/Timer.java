@@ -1,82 +1,155 @@
 package org.mochaboy.registers;
 
 import org.mochaboy.Memory;
-
-import java.util.Map;
-
+import org.mochaboy.Scheduler;
+
+/**
+ * DIV, TIMA, TMA and TAC (FF04-FF07).
+ * <p>
+ * Like the hardware, everything hangs off a 16-bit counter that goes up every cycle. DIV is its top byte, and TIMA
+ * goes up on each falling edge of the counter bit TAC selects. Here the counter is never stored, it's the scheduler's
+ * cycle count minus the cycle it was last reset on, so DIV and TIMA are only worked out when FF04-FF07 are read or
+ * written. The only scheduled event is the next TIMA overflow.
+ */
 public class Timer {
 
     public final static int DIV_INC_TIME_NS = 61035;
 
-    private final Memory memory;
+    //Counter bit whose falling edge clocks TIMA, by TAC & 3. 4096, 262144, 65536 and 16384 Hz.
+    private static final int[] TAC_BITS = {9, 3, 5, 7};
+
     private final Interrupt interrupt;
-    private final Map<String, Integer> map;
-    private int overflowDelay = 0;
+    private final Scheduler scheduler;
 
-    public Timer(Memory memory, Interrupt interrupt) {
-        this.memory = memory;
-        this.interrupt = interrupt;
-        map = this.memory.getMemoryMap();
+    private long counterBase; //Scheduler cycle the internal counter was last reset on
+    private long timaCounter; //Counter value TIMA was last brought up to date at, not wrapped
+    private int tima;
+    private int tma;
+    private int tac;
 
+    public Timer(Interrupt interrupt, Scheduler scheduler, Memory memory) {
+        this.interrupt = interrupt;
+        this.scheduler = scheduler;
+        counterBase = scheduler.now();
+        scheduler.setHandler(Scheduler.TIMA, this::onOverflow);
+        for (int address = 0xFF04; address <= 0xFF07; address++) {
+            memory.registerIo(address, this::read, this::write);
+        }
     }
 
-    public void incDiv() {
-        int div = getDiv() & 0xFF;
-        int address = map.get("DIV");
-        div++;
-        memory.writeByteUnrestricted(address, div & 0xFF);
+    /**
+     * @param address FF04-FF07
+     */
+    public int read(int address) {
+        return switch (address & 0x03) {
+            case 0 -> getDiv();
+            case 1 -> getTima();
+            case 2 -> tma;
+            default -> tac;
+        };
     }
 
-    public void resetDiv() {
-        memory.writeByteUnrestricted(map.get("DIV"), 0x00);
+    /**
+     * @param address FF04-FF07
+     */
+    public void write(int address, int value) {
+        value &= 0xFF;
+        syncTima();
+        switch (address & 0x03) {
+            case 0 -> {
+                //Any write clears the whole counter, which is a falling edge if the selected bit was set
+                if (timaSignal(tac, counter())) tick(1);
+                counterBase = scheduler.now();
+                timaCounter = 0;
+            }
+            case 1 -> tima = value;
+            case 2 -> tma = value;
+            default -> {
+                //Switching the input can also drop it from 1 to 0
+                if (timaSignal(tac, counter()) && !timaSignal(value, counter())) tick(1);
+                tac = value;
+            }
+        }
+        scheduleOverflow();
     }
 
-    public boolean incTima() {
-        int tima = getTima();
-        if (tima == 0xFF) {
-            resetTima(getTma());
-            return true;
-        } else {
-            memory.writeByteUnrestricted(map.get("TIMA"), (tima + 1) & 0xFF);
-            return false;
-        }
+    /**
+     * @return Cycles until TIMA next overflows and requests a timer interrupt, or Integer.MAX_VALUE if TIMA is stopped
+     */
+    public int cyclesUntilOverflow() {
+        if (!scheduler.isScheduled(Scheduler.TIMA)) return Integer.MAX_VALUE;
+        return (int) Math.max(1, scheduler.deadline(Scheduler.TIMA) - scheduler.now());
     }
 
-    public int getTima() {
-        return memory.readByteUnrestricted(map.get("TIMA"));
+    private void onOverflow(long deadline) {
+        syncTima(deadline - counterBase);
+        scheduleOverflow();
     }
 
-    public void resetTima(int value) {
-        memory.writeByteUnrestricted(map.get("TIMA"), value & 0xFF);
+    private long counter() {
+        return scheduler.now() - counterBase;
     }
 
-    public int getTma() {
-        return memory.readByteUnrestricted(map.get("TMA"));
+    private static boolean timaSignal(int tac, long counter) {
+        return (tac & 0b100) != 0 && (counter & (1L << TAC_BITS[tac & 0x03])) != 0;
     }
 
-    public int getTac() {
-        return memory.readByteUnrestricted(map.get("TAC"));
+    private void syncTima() {
+        syncTima(counter());
     }
 
+    /**
+     * Count the falling edges between the last sync and counter into TIMA.
+     */
+    private void syncTima(long counter) {
+        if (isTacEnabled()) {
+            int shift = TAC_BITS[tac & 0x03] + 1;
+            long edges = (counter >> shift) - (timaCounter >> shift);
+            if (edges > 0) tick(edges);
+        }
+        timaCounter = counter;
+    }
 
-    public boolean isTacEnabled() {
-        return (getTac() & 0b100) != 0;
-    }
-
-    public int getTacRate() {
-        int tac = getTac() & 0x03;
-        return switch (tac) {
-            //In m-cycles
-            case 0x00 -> 256;
-            case 0x01 -> 4;
-            case 0x02 -> 16;
-            case 0x03 -> 64;
-            default -> 0;
-        };
+    private void tick(long edges) {
+        long value = tima + edges;
+        while (value > 0xFF) {
+            value = tma + (value - 0x100);
+            interrupt.setInterrupt(Interrupt.INTERRUPT.TIMER);
+        }
+        tima = (int) value;
     }
 
+    /**
+     * Schedule the edge that takes TIMA past 0xFF. Must be called after syncTima().
+     */
+    private void scheduleOverflow() {
+        if (!isTacEnabled()) {
+            scheduler.cancel(Scheduler.TIMA);
+            return;
+        }
+        int shift = TAC_BITS[tac & 0x03] + 1;
+        long edge = ((timaCounter >> shift) + (0x100 - tima)) << shift;
+        scheduler.schedule(Scheduler.TIMA, counterBase + edge);
+    }
 
     public int getDiv() {
-        return memory.readByteUnrestricted(map.get("DIV"));
+        return (int) (counter() >> 8) & 0xFF;
+    }
+
+    public int getTima() {
+        syncTima();
+        return tima;
+    }
+
+    public int getTma() {
+        return tma;
+    }
+
+    public int getTac() {
+        return tac;
+    }
+
+    public boolean isTacEnabled() {
+        return (tac & 0b100) != 0;
     }
 }
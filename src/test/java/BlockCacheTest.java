@@ -0,0 +1,153 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mochaboy.CPU;
+import org.mochaboy.Memory;
+import org.mochaboy.WriteLog;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockCacheTest {
+    private Memory memory;
+    private CPU cpu;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        memory = new Memory();
+        cpu = new CPU(null, memory);
+        memory.setCpu(cpu);
+        cpu.setTestStepComplete(false);
+        cpu.setTestMode(true);
+        cpu.setCpuState(CPU.CPUState.FETCH);
+        cpu.getRegisters().setPC(0);
+        cpu.getRegisters().setSP(0xFFFE);
+    }
+
+    private void load(int address, int... bytes) {
+        for (int b : bytes) memory.writeByteUnrestricted(address++, b);
+    }
+
+    private int runUntilHalt() {
+        int cycles = 0;
+        while (!cpu.isHalt()) cycles += cpu.step();
+        return cycles;
+    }
+
+    @Test
+    void testLoopMatchesSwitchCore() {
+        load(0x0000,
+                0x06, 0x0A,       // LD B, 10
+                0x3C,             // loop: INC A
+                0x05,             // DEC B
+                0x20, 0xFC,       // JR NZ, loop
+                0x76);            // HALT
+
+        cpu.setEngine(CPU.Engine.SWITCH);
+        int expectedCycles = runUntilHalt();
+
+        cpu.setHalt(false);
+        cpu.getRegisters().setA(0);
+        cpu.getRegisters().setPC(0);
+        cpu.setEngine(CPU.Engine.BLOCK);
+        assertEquals(expectedCycles, runUntilHalt());
+        assertEquals(10, cpu.getRegisters().getA());
+        assertEquals(0x0007, cpu.getRegisters().getPC());
+    }
+
+    @Test
+    void testWriteInvalidatesBlock() {
+        cpu.setEngine(CPU.Engine.BLOCK);
+        load(0xC000, 0x3C, 0x76); // INC A, HALT
+        cpu.getRegisters().setPC(0xC000);
+        runUntilHalt();
+        assertEquals(1, cpu.getRegisters().getA());
+
+        memory.writeByte(0xC000, 0x3D); // DEC A
+        cpu.setHalt(false);
+        cpu.getRegisters().setPC(0xC000);
+        runUntilHalt();
+        assertEquals(0, cpu.getRegisters().getA());
+    }
+
+    // A block that patches an instruction further along in itself must not run the stale one
+    @Test
+    void testSelfModifyingBlockStops() {
+        cpu.setEngine(CPU.Engine.BLOCK);
+        load(0xC000,
+                0x21, 0x05, 0xC0, // LD HL, $C005
+                0x36, 0x3C,       // LD [HL], $3C (INC A)
+                0x00,             // NOP, becomes INC A
+                0x76);            // HALT
+        cpu.getRegisters().setA(0);
+        cpu.getRegisters().setPC(0xC000);
+        runUntilHalt();
+        assertEquals(1, cpu.getRegisters().getA());
+    }
+
+    @Test
+    void testCompiledLoopMatchesSwitchCore() {
+        load(0x0000,
+                0x06, 0x40,       // LD B, 64
+                0x3C,             // loop: INC A
+                0xCB, 0x37,       // SWAP A
+                0xCB, 0x37,       // SWAP A
+                0x05,             // DEC B
+                0x20, 0xF8,       // JR NZ, loop
+                0x76);            // HALT
+
+        cpu.setEngine(CPU.Engine.SWITCH);
+        int expectedCycles = runUntilHalt();
+
+        cpu.setHalt(false);
+        cpu.getRegisters().setA(0);
+        cpu.getRegisters().setPC(0);
+        cpu.setEngine(CPU.Engine.JIT);
+        cpu.getBlockCache().setCompileThreshold(2);
+        assertEquals(expectedCycles, runUntilHalt());
+        assertEquals(64, cpu.getRegisters().getA());
+        assertTrue(cpu.getBlockCache().getCompiledBlocks() > 0);
+    }
+
+    @Test
+    void testCompiledBlockStopsWhenItOverwritesItself() {
+        cpu.setEngine(CPU.Engine.JIT);
+        cpu.getBlockCache().setCompileThreshold(1);
+        load(0xC000,
+                0x21, 0x05, 0xC0, // LD HL, $C005
+                0x36, 0x3C,       // LD [HL], $3C (INC A)
+                0x00,             // NOP, becomes INC A
+                0x76);            // HALT
+        cpu.getRegisters().setPC(0xC000);
+        runUntilHalt();
+        assertEquals(1, cpu.getRegisters().getA());
+        assertEquals(2, cpu.getBlockCache().getCompiledBlocks());
+    }
+
+    // Every instruction of a block runs in one step, the write log still has to name the one that wrote
+    @Test
+    void testWriteLogInsideBlock() {
+        for (CPU.Engine engine : new CPU.Engine[]{CPU.Engine.SWITCH, CPU.Engine.BLOCK, CPU.Engine.JIT}) {
+            load(0xC000,
+                    0x00,             // NOP
+                    0x00,             // NOP
+                    0x77,             // LD [HL], A
+                    0x76);            // HALT
+            cpu.setEngine(engine);
+            cpu.getBlockCache().setCompileThreshold(1);
+            cpu.setHalt(false);
+            cpu.getRegisters().setHL(0xC100);
+            cpu.getRegisters().setPC(0xC000);
+            WriteLog log = new WriteLog();
+            memory.setWriteLog(log);
+            long start = cpu.getScheduler().now();
+            while (!cpu.isHalt()) cpu.getScheduler().advance(cpu.step());
+
+            assertEquals(1, log.size(), engine.name());
+            assertEquals(0xC100, log.getAddress(0), engine.name());
+            assertEquals(0xC002, log.getPc(0), engine.name());
+            assertEquals(start + 8, log.getCycle(0), engine.name());
+        }
+    }
+}
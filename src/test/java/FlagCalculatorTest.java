@@ -0,0 +1,56 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mochaboy.opcode.FlagCalculator;
+import org.mochaboy.opcode.FlagPlan;
+import org.mochaboy.opcode.OpcodeInfo;
+import org.mochaboy.opcode.OpcodeLoader;
+import org.mochaboy.opcode.OpcodeWrapper;
+import org.mochaboy.registers.Registers;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FlagCalculatorTest {
+    private static final int Z = Registers.FLAG_ZERO;
+    private static final int N = Registers.FLAG_SUBTRACT;
+    private static final int H = Registers.FLAG_HALF_CARRY;
+    private static final int C = Registers.FLAG_CARRY;
+
+    private OpcodeWrapper opcodes;
+    private FlagCalculator flagCalculator;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        opcodes = new OpcodeLoader().getOpcodeWrapper();
+        flagCalculator = new FlagCalculator();
+    }
+
+    private FlagPlan plan(String hexKey) {
+        OpcodeInfo info = opcodes.getUnprefixed().get(hexKey);
+        return flagCalculator.plan(info);
+    }
+
+    @Test
+    void testAddPlanComputesEveryFlag() {
+        FlagPlan add = plan("0x80"); // ADD A, B: Z 0 H C
+        assertEquals(Z | H | C, add.getComputedMask());
+        assertEquals(0, add.getSetMask());
+        assertEquals(0, add.getKeepMask());
+    }
+
+    @Test
+    void testIncPlanKeepsCarry() {
+        FlagPlan inc = plan("0x3C"); // INC A: Z 0 H -
+        assertEquals(Z | H, inc.getComputedMask());
+        assertEquals(C, inc.getKeepMask());
+    }
+
+    @Test
+    void testCplPlanOnlySetsFlags() {
+        FlagPlan cpl = plan("0x2F"); // CPL: - 1 1 -
+        assertEquals(0, cpl.getComputedMask());
+        assertEquals(N | H, cpl.getSetMask());
+        assertEquals(Z | C, cpl.getKeepMask());
+    }
+}
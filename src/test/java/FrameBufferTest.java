@@ -0,0 +1,102 @@
+import org.junit.jupiter.api.Test;
+import org.mochaboy.FrameBuffer;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameBufferTest {
+
+    private static void fill(FrameBuffer frameBuffer, int color) {
+        byte[] line = new byte[frameBuffer.getWidth()];
+        Arrays.fill(line, (byte) color);
+        for (int y = 0; y < frameBuffer.getHeight(); y++) {
+            frameBuffer.setLine(y, line);
+        }
+    }
+
+    @Test
+    void testFrameStaysUntilNextGetFrame() {
+        FrameBuffer frameBuffer = new FrameBuffer(4, 2);
+        assertEquals(0, frameBuffer.getFrameNumber());
+        assertFalse(frameBuffer.hasNewFrame());
+
+        fill(frameBuffer, 1);
+        assertEquals(1, frameBuffer.publish());
+        assertTrue(frameBuffer.hasNewFrame());
+        byte[] first = frameBuffer.getFrame();
+        assertEquals(1, frameBuffer.getFrameNumber());
+        assertEquals(1, first[7]);
+
+        fill(frameBuffer, FrameBuffer.pixel(FrameBuffer.PALETTE_OBP0, 2));
+        assertEquals(0xFF606060, frameBuffer.getPixel(3, 1), "Writer sees the frame it's drawing");
+        assertEquals(1, first[7], "Reader's frame isn't drawn over");
+        assertEquals(2, frameBuffer.publish());
+        fill(frameBuffer, 3);
+        assertEquals(3, frameBuffer.publish());
+
+        byte[] latest = frameBuffer.getFrame();
+        assertEquals(3, frameBuffer.getFrameNumber(), "Frame 2 was never picked up");
+        assertEquals(3, latest[0]);
+        assertFalse(frameBuffer.hasNewFrame());
+        frameBuffer.getFrame();
+        assertEquals(3, frameBuffer.getFrameNumber());
+    }
+
+    @Test
+    void testReaderNeverSeesATornFrame() throws InterruptedException {
+        FrameBuffer frameBuffer = new FrameBuffer(160, 144);
+        int frames = 2000;
+        Thread writer = new Thread(() -> {
+            for (int frame = 1; frame <= frames; frame++) {
+                fill(frameBuffer, frame);
+                frameBuffer.publish();
+            }
+        });
+        writer.start();
+
+        long last = 0;
+        while (last < frames) {
+            byte[] pixels = frameBuffer.getFrame();
+            long number = frameBuffer.getFrameNumber();
+            assertTrue(number >= last, "Frame numbers only go up");
+            for (byte pixel : pixels) {
+                assertEquals((byte) number, pixel);
+            }
+            last = number;
+        }
+        writer.join();
+    }
+
+    @Test
+    void testPresentationLookupTables() {
+        byte[] frame = {
+                FrameBuffer.pixel(FrameBuffer.PALETTE_BG, 0),
+                FrameBuffer.pixel(FrameBuffer.PALETTE_OBP0, 1),
+                FrameBuffer.pixel(FrameBuffer.PALETTE_OBP1, 2),
+                FrameBuffer.pixel(FrameBuffer.PALETTE_BG, 3)};
+        int[] argb = new int[4];
+        FrameBuffer.toArgb(frame, argb);
+        assertEquals(0xFFFFFFFF, argb[0]);
+        assertEquals(0xFFC0C0C0, argb[1]);
+        assertEquals(0xFF606060, argb[2]);
+        assertEquals(0xFF000000, argb[3]);
+
+        short[] rgb565 = new short[4];
+        FrameBuffer.toRgb565(frame, rgb565);
+        assertEquals((short) 0xFFFF, rgb565[0]);
+        assertEquals(0, rgb565[3]);
+
+        byte[] gray = new byte[4];
+        FrameBuffer.toGray(frame, gray);
+        assertEquals((byte) 0xC0, gray[1]);
+
+        int[] tinted = FrameBuffer.lut(FrameBuffer.ARGB_SHADES);
+        tinted[FrameBuffer.pixel(FrameBuffer.PALETTE_OBP1, 2)] = 0xFFFF0000;
+        FrameBuffer.convert(frame, tinted, argb);
+        assertEquals(0xFFFF0000, argb[2], "Sprite palettes can be told apart");
+        assertEquals(0xFF000000, argb[3]);
+    }
+}
@@ -0,0 +1,65 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mochaboy.CPU;
+import org.mochaboy.FrameBuffer;
+import org.mochaboy.Memory;
+import org.mochaboy.PPU;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HaltFastForwardTest {
+    private Memory memory;
+    private PPU ppu;
+    private CPU cpu;
+    private Map<String, Integer> map;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        memory = new Memory();
+        ppu = new PPU(memory, new FrameBuffer(160, 144), null);
+        memory.setPpu(ppu);
+        cpu = new CPU(ppu, memory);
+        memory.setCpu(cpu);
+        ppu.setCPU(cpu);
+        map = memory.getMemoryMap();
+    }
+
+    @Test
+    void testPpuEventsMatchSingleCycleStepping() {
+        memory.writeByteUnrestricted(map.get("LCDC"), 0x80);
+        ppu.step(1);
+        assertEquals(PPU.PPU_MODE.OAM_SCAN, ppu.getPpuMode());
+
+        // Walk one scanline both ways and check the skips land exactly on each mode change
+        int skipped = 0;
+        PPU.PPU_MODE[] expected = {PPU.PPU_MODE.DRAWING, PPU.PPU_MODE.HBLANK, PPU.PPU_MODE.OAM_SCAN};
+        for (PPU.PPU_MODE mode : expected) {
+            int distance = ppu.cyclesUntilNextEvent();
+            for (int i = 1; i < distance; i++) {
+                ppu.step(1);
+                assertEquals(distance - i, ppu.cyclesUntilNextEvent());
+            }
+            ppu.step(1);
+            skipped += distance;
+            assertEquals(mode, ppu.getPpuMode());
+        }
+        assertEquals(455, skipped);
+        assertEquals(1, memory.readByteUnrestricted(map.get("LY")));
+    }
+
+    @Test
+    void testLcdOffHasNoPpuEvents() {
+        assertEquals(Integer.MAX_VALUE, ppu.cyclesUntilNextEvent());
+    }
+
+    @Test
+    void testTimerOverflowDistance() {
+        assertEquals(Integer.MAX_VALUE, cpu.getTimer().cyclesUntilOverflow());
+        memory.writeByteUnrestricted(map.get("TAC"), 0x05); // enabled, 16 cycles per tick
+        memory.writeByteUnrestricted(map.get("TIMA"), 0xFD);
+        assertEquals(48, cpu.getTimer().cyclesUntilOverflow());
+    }
+}
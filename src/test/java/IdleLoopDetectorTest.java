@@ -0,0 +1,119 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mochaboy.CPU;
+import org.mochaboy.Cartridge;
+import org.mochaboy.IdleLoopDetector;
+import org.mochaboy.Memory;
+import org.mochaboy.mbc.MBC;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IdleLoopDetectorTest {
+    private static final int LOOP = 0x0200;
+
+    private Memory memory;
+    private CPU cpu;
+    private IdleLoopDetector detector;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        memory = new Memory();
+        cpu = new CPU(null, memory);
+        memory.setCpu(cpu);
+        cpu.setTestMode(true);
+        detector = cpu.getIdleLoopDetector();
+    }
+
+    private void load(int... bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            memory.writeByteUnrestricted(LOOP + i, bytes[i]);
+        }
+        cpu.getRegisters().setPC(LOOP);
+    }
+
+    @Test
+    void testLyPollIsSkippedInWholeIterations() {
+        load(0xF0, 0x44,  // LDH A, [LY]
+                0xFE, 0x90,  // CP 0x90
+                0x20, 0xFA); // JR NZ, LOOP
+        // 12 + 8 + 12 cycles per iteration
+        assertEquals(96, detector.cyclesToSkip(LOOP + 4, 100));
+        assertEquals(0, detector.cyclesToSkip(LOOP + 4, 31), "Next event is less than an iteration away");
+        assertEquals(1, detector.getLoopsDetected());
+        assertEquals(1, detector.getLoopsSkipped());
+        assertEquals(96, detector.getCyclesSkipped());
+    }
+
+    @Test
+    void testHramFlagPollIsSkipped() {
+        load(0x21, 0x80, 0xFF, // LD HL, 0xFF80 (before the loop)
+                0x7E,          // LD A, [HL]
+                0xA7,          // AND A
+                0x28, 0xFC);   // JR Z, LOOP + 3
+        cpu.getRegisters().setHL(0xFF80);
+        cpu.getRegisters().setPC(LOOP + 3);
+        // 8 + 4 + 12 cycles per iteration
+        assertEquals(24, detector.cyclesToSkip(LOOP + 5, 40));
+    }
+
+    @Test
+    void testCountdownIsNotIdle() {
+        load(0x05,         // DEC B
+                0x20, 0xFD); // JR NZ, LOOP
+        assertEquals(0, detector.cyclesToSkip(LOOP + 1, 1000));
+        assertEquals(0, detector.getLoopsDetected());
+    }
+
+    @Test
+    void testRegisterCarriedBetweenIterationsIsNotIdle() {
+        load(0xB8,         // CP B
+                0x47,        // LD B, A
+                0x20, 0xFC); // JR NZ, LOOP
+        assertEquals(0, detector.cyclesToSkip(LOOP + 2, 1000));
+    }
+
+    @Test
+    void testDivPollRunsForReal() {
+        load(0xF0, 0x04,  // LDH A, [DIV]
+                0xFE, 0x10,  // CP 0x10
+                0x20, 0xFA); // JR NZ, LOOP
+        assertEquals(0, detector.cyclesToSkip(LOOP + 4, 1000));
+    }
+
+    @Test
+    void testOnlyAfterTheJumpBack() {
+        load(0xF0, 0x44, 0xFE, 0x90, 0x20, 0xFA);
+        assertEquals(0, detector.cyclesToSkip(LOOP + 2, 1000), "Last instruction wasn't the jump");
+    }
+
+    // MBC1 mode 1 maps another bank at 0x0000, with different code at the same address
+    @Test
+    void testLowBankSwitchIsAnotherLoop() throws IOException {
+        byte[] rom = new byte[64 * MBC.ROM_BANK_SIZE];
+        int[] poll = {0xF0, 0x44, 0xFE, 0x90, 0x20, 0xFA}; // LDH A, [LY]; CP 0x90; JR NZ, LOOP
+        int[] countdown = {0x05, 0x20, 0xFD};              // DEC B; JR NZ, LOOP
+        for (int i = 0; i < poll.length; i++) rom[LOOP + i] = (byte) poll[i];
+        for (int i = 0; i < countdown.length; i++) rom[0x20 * MBC.ROM_BANK_SIZE + LOOP + i] = (byte) countdown[i];
+        rom[Cartridge.CART_TYPE] = 0x01; //MBC1
+        Path file = Files.createTempFile("idle", ".gb");
+        Files.write(file, rom);
+        memory = new Memory(new Cartridge(file));
+        Files.delete(file);
+        cpu = new CPU(null, memory);
+        memory.setCpu(cpu);
+        memory.setBootRomEnabled(false);
+        detector = cpu.getIdleLoopDetector();
+
+        cpu.getRegisters().setPC(LOOP);
+        assertEquals(96, detector.cyclesToSkip(LOOP, 100));
+
+        memory.writeByte(0x6000, 0x01); // Mode 1
+        memory.writeByte(0x4000, 0x01); // Bank 0x20 at 0x0000
+        cpu.getRegisters().setPC(LOOP);
+        assertEquals(0, detector.cyclesToSkip(LOOP, 100), "The countdown isn't idle");
+    }
+}
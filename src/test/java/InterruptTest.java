@@ -0,0 +1,62 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mochaboy.CPU;
+import org.mochaboy.Memory;
+import org.mochaboy.registers.Interrupt;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class InterruptTest {
+    private static final int IF = 0xFF0F;
+    private static final int IE = 0xFFFF;
+
+    private Memory memory;
+    private CPU cpu;
+    private Interrupt interrupt;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        memory = new Memory();
+        cpu = new CPU(null, memory);
+        memory.setCpu(cpu);
+        interrupt = cpu.getInterrupt();
+    }
+
+    @Test
+    void testPendingFollowsIeAndIfWrites() {
+        memory.writeByte(IF, 0x05);
+        assertEquals(0, interrupt.getPending(), "Nothing enabled yet");
+        memory.writeByte(IE, 0x04);
+        assertEquals(0x04, interrupt.getPending());
+        memory.writeByte(IF, 0xE0);
+        assertEquals(0, interrupt.getPending(), "Upper bits don't count as requests");
+        assertEquals(0xE0, memory.readByte(IF));
+        assertEquals(0x04, memory.readByte(IE));
+    }
+
+    @Test
+    void testSetInterruptUpdatesPendingAndWakes() {
+        memory.writeByte(IE, 0x1F);
+        cpu.setHalt(true);
+        interrupt.setInterrupt(Interrupt.INTERRUPT.TIMER);
+        assertEquals(0x04, interrupt.getPending());
+        assertEquals(0x04, memory.readByte(IF));
+        assertFalse(cpu.isHalt());
+    }
+
+    @Test
+    void testServicePendingTakesHighestPriority() {
+        cpu.getRegisters().setSP(0xDFFE);
+        cpu.getRegisters().setPC(0x1234);
+        memory.writeByte(IE, 0x1F);
+        memory.writeByte(IF, 0x14); //TIMER and JOYPAD
+        interrupt.servicePending();
+        assertEquals(0x0050, cpu.getRegisters().getPC());
+        assertEquals(0x10, memory.readByte(IF), "Only the serviced request is cleared");
+        assertEquals(0x10, interrupt.getPending());
+        assertEquals(0x1234, memory.readWord(cpu.getRegisters().getSP()));
+    }
+}
@@ -0,0 +1,230 @@
+import org.junit.jupiter.api.Test;
+import org.mochaboy.CPU;
+import org.mochaboy.Cartridge;
+import org.mochaboy.Memory;
+import org.mochaboy.Scheduler;
+import org.mochaboy.mbc.MBC;
+import org.mochaboy.mbc.MBC3;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MBCTest {
+
+    /**
+     * A cart whose banks each start with their own bank number, low byte then high byte.
+     */
+    private Memory load(int type, int banks, int ramSizeCode) throws IOException {
+        Path file = write(type, banks, ramSizeCode);
+        Memory memory = load(new Cartridge(file));
+        Files.delete(file);
+        memory.getCartridge().getSavePath().toFile().deleteOnExit(); //Battery carts get a save file
+        return memory;
+    }
+
+    private Path write(int type, int banks, int ramSizeCode) throws IOException {
+        byte[] rom = new byte[banks * MBC.ROM_BANK_SIZE];
+        for (int bank = 0; bank < banks; bank++) {
+            rom[bank * MBC.ROM_BANK_SIZE] = (byte) bank;
+            rom[bank * MBC.ROM_BANK_SIZE + 1] = (byte) (bank >> 8);
+        }
+        rom[Cartridge.CART_TYPE] = (byte) type;
+        rom[Cartridge.RAM_SIZE] = (byte) ramSizeCode;
+        Path file = Files.createTempFile("mbc", ".gb");
+        Files.write(file, rom);
+        return file;
+    }
+
+    private Memory load(Cartridge cartridge) throws IOException {
+        Memory memory = new Memory(cartridge);
+        CPU cpu = new CPU(null, memory);
+        memory.setCpu(cpu);
+        memory.setBootRomEnabled(false);
+        return memory;
+    }
+
+    @Test
+    void testMbc1RomBanks() throws IOException {
+        Memory memory = load(0x01, 128, 0);
+        assertEquals(1, memory.readWord(0x4000));
+        memory.writeByte(0x2000, 0x05);
+        assertEquals(5, memory.readWord(0x4000));
+        assertEquals(5, memory.getRomBank());
+        memory.writeByte(0x2000, 0x00);
+        assertEquals(1, memory.readWord(0x4000), "Bank 0 selects bank 1");
+        memory.writeByte(0x4000, 0x01);
+        assertEquals(0x21, memory.readWord(0x4000), "Upper bits come from the second register");
+        assertEquals(0, memory.readWord(0x0000));
+        memory.writeByte(0x6000, 0x01);
+        assertEquals(0x20, memory.readWord(0x0000), "Mode 1 banks 0x0000 too");
+    }
+
+    @Test
+    void testMbc1Ram() throws IOException {
+        Memory memory = load(0x03, 4, 0x03);
+        assertEquals(0xFF, memory.readByte(0xA000), "RAM starts disabled");
+        memory.writeByte(0x0000, 0x0A);
+        memory.writeByte(0xA000, 0x12);
+        memory.writeByte(0x6000, 0x01);
+        memory.writeByte(0x4000, 0x02);
+        memory.writeByte(0xA000, 0x34);
+        assertEquals(0x34, memory.readByte(0xA000));
+        memory.writeByte(0x4000, 0x00);
+        assertEquals(0x12, memory.readByte(0xA000));
+        assertEquals(0x34, memory.getMbc().getRam()[2 * MBC.RAM_BANK_SIZE] & 0xFF);
+        memory.writeByte(0x0000, 0x00);
+        memory.writeByte(0xA000, 0x56);
+        assertEquals(0xFF, memory.readByte(0xA000));
+        assertEquals(0x12, memory.getMbc().getRam()[0]);
+    }
+
+    @Test
+    void testBankSwitchDoesNotCopy() throws IOException {
+        Memory memory = load(0x19, 8, 0);
+        memory.writeByte(0x2000, 0x03);
+        byte[] rom = memory.getCartridge().getCartData();
+        rom[3 * MBC.ROM_BANK_SIZE + 0x10] = 0x77;
+        assertEquals(0x77, memory.readByte(0x4010), "The window reads the cartridge array in place");
+    }
+
+    @Test
+    void testMappedRomIsSharedAndBanked() throws IOException {
+        Path file = write(0x19, 8, 0);
+        try {
+            Cartridge first = Cartridge.mapped(file);
+            Cartridge second = Cartridge.mapped(file);
+            assertSame(first.getMappedData(), second.getMappedData(), "One mapping per file");
+            assertNull(first.getCartData());
+
+            Memory memory = load(first);
+            assertEquals(1, memory.readWord(0x4000));
+            memory.writeByte(0x2000, 0x06);
+            assertEquals(6, memory.readWord(0x4000));
+            assertEquals(0x19, memory.readByte(Cartridge.CART_TYPE));
+            assertEquals(1, load(second).readWord(0x4000), "Instances bank independently");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testOpenMapsWhenAsked() throws IOException {
+        Path file = write(0x19, 8, 0);
+        try {
+            assertFalse(Cartridge.open(file).isMapped());
+            System.setProperty(Cartridge.MAPPED_ROM_PROPERTY, "true");
+            assertTrue(Cartridge.open(file).isMapped());
+        } finally {
+            System.clearProperty(Cartridge.MAPPED_ROM_PROPERTY);
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testMbc2NibbleRam() throws IOException {
+        Memory memory = load(0x06, 16, 0);
+        memory.writeByte(0x2100, 0x07);
+        assertEquals(7, memory.readWord(0x4000));
+        memory.writeByte(0x2000, 0x03);
+        assertEquals(7, memory.readWord(0x4000), "Address bit 8 clear is the RAM enable register");
+        memory.writeByte(0x0000, 0x0A);
+        memory.writeByte(0xA001, 0xAB);
+        assertEquals(0xFB, memory.readByte(0xA001));
+        assertEquals(0xFB, memory.readByte(0xA201), "512 cells repeat through the window");
+    }
+
+    @Test
+    void testMbc3RamBanksAndClockLatch() throws IOException {
+        Memory memory = load(0x10, 128, 0x03);
+        memory.writeByte(0x2000, 0x7F);
+        assertEquals(0x7F, memory.readWord(0x4000));
+        memory.writeByte(0x0000, 0x0A);
+        memory.writeByte(0x4000, 0x01);
+        memory.writeByte(0xA000, 0x42);
+        memory.writeByte(0x4000, 0x08); //Seconds
+        memory.writeByte(0xA000, 30);
+        assertEquals(0, memory.readByte(0xA000), "Nothing latched yet");
+        memory.writeByte(0x6000, 0x00);
+        memory.writeByte(0x6000, 0x01);
+        assertEquals(30, memory.readByte(0xA000));
+        memory.writeByte(0x4000, 0x01);
+        assertEquals(0x42, memory.readByte(0xA000));
+    }
+
+    private static int readClock(Memory memory, int register) {
+        memory.writeByte(0x4000, register);
+        return memory.readByte(0xA000);
+    }
+
+    private static void latch(Memory memory) {
+        memory.writeByte(0x6000, 0x00);
+        memory.writeByte(0x6000, 0x01);
+    }
+
+    @Test
+    void testMbc3ClockCountsEmulatedCycles() throws IOException {
+        Memory memory = load(0x10, 4, 0x03);
+        Scheduler scheduler = memory.getCpu().getScheduler();
+        memory.writeByte(0x0000, 0x0A);
+        memory.writeByte(0x4000, 0x09); //Minutes
+        memory.writeByte(0xA000, 59);
+
+        scheduler.advance((int) MBC3.CYCLES_PER_SECOND * 61 - 1);
+        latch(memory);
+        assertEquals(0, readClock(memory, 0x08), "A cycle short of 61 seconds");
+        assertEquals(0, readClock(memory, 0x09));
+        assertEquals(1, readClock(memory, 0x0A), "Minutes carried into hours");
+
+        scheduler.advance(1);
+        assertEquals(0, readClock(memory, 0x08), "Registers only change when latched");
+        latch(memory);
+        assertEquals(1, readClock(memory, 0x08));
+    }
+
+    @Test
+    void testMbc3ClockHaltAndDayCarry() throws IOException {
+        Memory memory = load(0x0F, 4, 0);
+        Scheduler scheduler = memory.getCpu().getScheduler();
+        memory.writeByte(0x0000, 0x0A);
+        memory.writeByte(0x4000, 0x0C);
+        memory.writeByte(0xA000, 0x41); //Halted, day bit 8 set
+        memory.writeByte(0x4000, 0x0B);
+        memory.writeByte(0xA000, 0xFF); //Day 511
+        memory.writeByte(0x4000, 0x0A);
+        memory.writeByte(0xA000, 23);
+        memory.writeByte(0x4000, 0x09);
+        memory.writeByte(0xA000, 59);
+        memory.writeByte(0x4000, 0x08);
+        memory.writeByte(0xA000, 59);
+
+        scheduler.advance((int) MBC3.CYCLES_PER_SECOND * 10);
+        latch(memory);
+        assertEquals(59, readClock(memory, 0x08), "Halted clocks don't count");
+
+        memory.writeByte(0x4000, 0x0C);
+        memory.writeByte(0xA000, 0x01);
+        scheduler.advance((int) MBC3.CYCLES_PER_SECOND);
+        latch(memory);
+        assertEquals(0, readClock(memory, 0x08));
+        assertEquals(0, readClock(memory, 0x0B));
+        assertEquals(0x80, readClock(memory, 0x0C), "Day counter wrapped and set the carry");
+    }
+
+    @Test
+    void testMbc5NineBitBank() throws IOException {
+        Memory memory = load(0x1B, 512, 0x04);
+        memory.writeByte(0x2000, 0x00);
+        assertEquals(0, memory.readWord(0x4000), "MBC5 can map bank 0");
+        memory.writeByte(0x2000, 0x34);
+        memory.writeByte(0x3000, 0x01);
+        assertEquals(0x134, memory.readWord(0x4000));
+        assertEquals(0x134, memory.getRomBank());
+    }
+}
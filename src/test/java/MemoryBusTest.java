@@ -0,0 +1,143 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mochaboy.CPU;
+import org.mochaboy.Cartridge;
+import org.mochaboy.Input;
+import org.mochaboy.Memory;
+import org.mochaboy.WriteLog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MemoryBusTest {
+    private Memory memory;
+    private CPU cpu;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        byte[] rom = new byte[0x8000];
+        for (int i = 0; i < rom.length; i++) rom[i] = (byte) (i >> 8);
+        rom[0x0000] = (byte) 0xC3;
+        rom[0x4000] = (byte) 0x80;
+        Path file = Files.createTempFile("membus", ".gb");
+        Files.write(file, rom);
+        memory = new Memory(new Cartridge(file));
+        Files.delete(file);
+        cpu = new CPU(null, memory);
+        memory.setCpu(cpu);
+    }
+
+    @Test
+    void testCartridgeRomIsReadOnly() {
+        memory.setBootRomEnabled(false);
+        assertEquals(0xC3, memory.readByte(0x0000));
+        assertEquals(0x80, memory.readByte(0x4000), "ROM bytes read unsigned");
+        memory.writeByte(0x4000, 0x12);
+        assertEquals(0x80, memory.readByte(0x4000));
+    }
+
+    @Test
+    void testBootRomUnmappedByFf50() {
+        int bootByte = memory.readByte(0x0000);
+        memory.writeByte(0xFF50, 0x01);
+        assertEquals(0xC3, memory.readByte(0x0000));
+        assertEquals(0x01, memory.readByte(0x0100), "Only the first page was overlaid");
+        memory.setBootRomEnabled(true);
+        assertEquals(bootByte, memory.readByte(0x0000));
+    }
+
+    @Test
+    void testBlockedVramAndOam() {
+        memory.writeByte(0x8000, 0x42);
+        memory.setVramBlocked(true);
+        assertEquals(0xFF, memory.readByte(0x8000));
+        memory.writeByte(0x8000, 0x99);
+        memory.setVramBlocked(false);
+        assertEquals(0x42, memory.readByte(0x8000), "Writes while blocked are dropped");
+
+        memory.writeByte(0xFEA0, 0x11);
+        memory.setOamBlocked(true);
+        assertEquals(0xFF, memory.readByte(0xFE00));
+        assertEquals(0x11, memory.readByte(0xFEA0), "Past OAM isn't blocked");
+    }
+
+    @Test
+    void testWordsAcrossPages() {
+        memory.writeWord(0xC0FF, 0xBEEF);
+        assertEquals(0xEF, memory.readByte(0xC0FF));
+        assertEquals(0xBE, memory.readByte(0xC100));
+        assertEquals(0xBEEF, memory.readWord(0xC0FF));
+        WriteLog log = new WriteLog();
+        memory.setWriteLog(log);
+        memory.writeWord(0xC010, 0x1234);
+        assertEquals(0x1234, memory.readWord(0xC010));
+        assertEquals(2, log.size());
+        assertEquals(0x12, log.getValue(0), "High byte is written last");
+        assertEquals(0xC011, log.getAddress(0));
+        assertEquals(0x34, log.getValue(1));
+        assertEquals(0xC010, log.getAddress(1));
+    }
+
+    @Test
+    void testTestModeIsFlatRam() {
+        cpu.setTestMode(true);
+        memory.writeByte(0x4000, 0x12);
+        assertEquals(0x12, memory.readByte(0x4000));
+        memory.setVramBlocked(true);
+        memory.writeByte(0x8000, 0x34);
+        assertEquals(0x34, memory.readByte(0x8000));
+        cpu.setTestMode(false);
+        assertEquals(0x80, memory.readByte(0x4000));
+    }
+
+    @Test
+    void testIoRegistersDispatchToTheirHandlers() {
+        new Input(memory);
+        memory.writeByte(0xFF00, 0x3F);
+        assertEquals(0x1F, memory.readByte(0xFF00), "CPU sees the joypad");
+        assertEquals(0x30, memory.readByteUnrestricted(0xFF00), "Only the select bits are written");
+
+        memory.writeByte(0xFF05, 0x42);
+        assertEquals(0x42, memory.readByte(0xFF05));
+        assertEquals(0x42, cpu.getTimer().getTima());
+
+        int[] written = new int[1];
+        memory.registerIo(0xFF4C, address -> 0x99, (address, value) -> written[0] = value);
+        memory.writeByte(0xFF4C, 0x12);
+        assertEquals(0x12, written[0]);
+        assertEquals(0x99, memory.readByte(0xFF4C));
+        assertEquals(0x99, memory.readByteUnrestricted(0xFF4C));
+    }
+
+    @Test
+    void testWriteLogKeepsTheNewestWrites() {
+        memory.writeByte(0xC000, 0x01); //Nothing subscribed, nothing recorded
+        WriteLog log = new WriteLog(3);
+        assertEquals(4, log.capacity(), "Capacity rounds up to a power of two");
+        memory.setWriteLog(log);
+        for (int i = 0; i < 6; i++) memory.writeByte(0xC000 + i, 0x10 + i);
+        memory.writeByte(0xFF05, 0x42); //IO goes through the log too
+
+        assertEquals(7, log.getTotal());
+        assertEquals(4, log.size());
+        assertEquals(0xFF05, log.getAddress(0));
+        assertEquals(0x42, log.getValue(0));
+        assertEquals(0xC003, log.getAddress(3), "Oldest writes are overwritten");
+        assertEquals(0x13, log.getValue(3));
+        assertEquals(cpu.getScheduler().now(), log.getCycle(0));
+
+        memory.setWriteLog(null);
+        memory.writeByte(0xC000, 0x99);
+        assertEquals(7, log.getTotal());
+    }
+
+    @Test
+    void testIeWithoutCpu() {
+        Memory bare = new Memory();
+        bare.writeByte(0xFFFF, 0x1F);
+        assertEquals(0x1F, bare.readByte(0xFFFF), "IE is plain memory until an interrupt controller is attached");
+    }
+}
@@ -0,0 +1,71 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mochaboy.CPU;
+import org.mochaboy.Memory;
+import org.mochaboy.opcode.Opcode;
+import org.mochaboy.opcode.OpcodePlan;
+import org.mochaboy.registers.Registers;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class OpcodeCacheTest {
+    private Memory memory;
+    private CPU cpu;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        memory = new Memory();
+        cpu = new CPU(null, memory);
+        memory.setCpu(cpu);
+        cpu.setTestStepComplete(false);
+        cpu.setTestMode(true);
+        cpu.setCpuState(CPU.CPUState.FETCH);
+        cpu.getRegisters().setPC(0);
+    }
+
+    private void runInstruction() {
+        cpu.setTestStepComplete(false);
+        while (!cpu.isTestStepComplete()) cpu.step();
+    }
+
+    // The same plan and context are reused, so a taken branch must not leak into the next run of that opcode
+    @Test
+    void testConditionalJumpReusesPlan() {
+        // JR NZ,+2 at 0x0000 and again at 0x0002
+        memory.writeByteUnrestricted(0, 0x20);
+        memory.writeByteUnrestricted(1, 0x02);
+        memory.writeByteUnrestricted(2, 0x20);
+        memory.writeByteUnrestricted(3, 0x02);
+
+        cpu.getRegisters().setFlag(Registers.FLAG_ZERO, true);
+        runInstruction();
+        assertEquals(0x0002, cpu.getRegisters().getPC());
+        Opcode context = cpu.getCurrentOpcodeObject();
+        OpcodePlan plan = context.getPlan();
+
+        cpu.getRegisters().setFlag(Registers.FLAG_ZERO, false);
+        runInstruction();
+        assertEquals(0x0006, cpu.getRegisters().getPC());
+        assertSame(context, cpu.getCurrentOpcodeObject());
+        assertSame(plan, cpu.getCurrentOpcodeObject().getPlan());
+    }
+
+    // RST targets are baked into the plan and must be restored on every execution
+    @Test
+    void testRstInitialValues() {
+        cpu.getRegisters().setSP(0xFFFE);
+        memory.writeByteUnrestricted(0x0000, 0xFF); // RST $38
+        memory.writeByteUnrestricted(0x0038, 0xCF); // RST $08
+        memory.writeByteUnrestricted(0x0008, 0xFF); // RST $38
+
+        runInstruction();
+        assertEquals(0x0038, cpu.getRegisters().getPC());
+        runInstruction();
+        assertEquals(0x0008, cpu.getRegisters().getPC());
+        runInstruction();
+        assertEquals(0x0038, cpu.getRegisters().getPC());
+    }
+}
@@ -0,0 +1,61 @@
+import org.junit.jupiter.api.Test;
+import org.mochaboy.CPU;
+import org.mochaboy.Memory;
+import org.mochaboy.opcode.OpcodeCache;
+import org.mochaboy.opcode.OpcodeInfo;
+import org.mochaboy.opcode.OpcodeLoader;
+import org.mochaboy.opcode.OpcodeTable;
+import org.mochaboy.opcode.OpcodeWrapper;
+import org.mochaboy.opcode.Operand;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpcodeTableTest {
+
+    @Test
+    void testTableMatchesOpcodesJson() throws IOException {
+        OpcodeWrapper json = new OpcodeLoader().getOpcodeWrapper();
+        for (int index = 0; index < OpcodeTable.SIZE; index++) {
+            boolean prefixed = index >= OpcodeTable.CB_OFFSET;
+            Map<String, OpcodeInfo> map = prefixed ? json.getCbprefixed() : json.getUnprefixed();
+            OpcodeInfo expected = map.get(String.format("0x%02X", index & 0xFF));
+            OpcodeInfo actual = OpcodeTable.get(index & 0xFF, prefixed);
+            String label = String.format("index 0x%03X", index);
+
+            assertEquals(expected.getOpcode(), actual.getOpcode(), label);
+            assertEquals(expected.getMnemonic(), actual.getMnemonic(), label);
+            assertEquals(expected.getBytes(), actual.getBytes(), label);
+            assertEquals(expected.isImmediate(), actual.isImmediate(), label);
+            assertEquals(expected.getCycleCount(), actual.getCycleCount(), label);
+            for (int i = 0; i < expected.getCycleCount(); i++) {
+                assertEquals(expected.getCycles(i), actual.getCycles(i), label);
+            }
+            assertEquals(expected.getFlags().getZ(), actual.getFlags().getZ(), label);
+            assertEquals(expected.getFlags().getN(), actual.getFlags().getN(), label);
+            assertEquals(expected.getFlags().getH(), actual.getFlags().getH(), label);
+            assertEquals(expected.getFlags().getC(), actual.getFlags().getC(), label);
+            assertEquals(expected.getOperandCount(), actual.getOperandCount(), label);
+            for (int i = 0; i < expected.getOperandCount(); i++) {
+                Operand e = expected.getOperand(i);
+                Operand a = actual.getOperand(i);
+                assertEquals(e.getName(), a.getName(), label);
+                assertEquals(e.getBytes(), a.getBytes(), label);
+                assertEquals(e.isImmediate(), a.isImmediate(), label);
+                assertEquals(e.isIncrement(), a.isIncrement(), label);
+                assertEquals(e.isDecrement(), a.isDecrement(), label);
+            }
+        }
+    }
+
+    @Test
+    void testCpusShareDecodedOpcodes() throws IOException {
+        CPU first = new CPU(null, new Memory());
+        CPU second = new CPU(null, new Memory());
+        assertSame(OpcodeCache.shared(), first.getOpcodeCache());
+        assertSame(first.getOpcodeCache(), second.getOpcodeCache());
+        assertSame(OpcodeTable.get(0x3E, false), first.getOpcodeCache().get(0x3E, false).getOpcodeInfo());
+    }
+}
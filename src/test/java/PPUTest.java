@@ -2,6 +2,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mochaboy.FrameBuffer;
 import org.mochaboy.Memory;
+import org.mochaboy.MemoryMap;
 import org.mochaboy.PPU;
 
 import java.util.Map;
@@ -94,4 +95,54 @@ public class PPUTest {
         assertEquals(0xFFFFFFFF, frameBuffer.getPixel(0, 2));
         assertEquals(0xFF000000, frameBuffer.getPixel(3, 2));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testScrolledTileSpansAndWindow() {
+        Map<String, Integer> map = memory.getMemoryMap();
+        memory.writeByteUnrestricted(map.get("LCDC"), 0xF1); // LCD on, window on 9C00, tiles at 8000, BG on
+        memory.writeByteUnrestricted(map.get("SCX"), 3);
+        memory.writeByteUnrestricted(map.get("BGP"), 0xE4);
+        memory.writeByteUnrestricted(map.get("WY"), 0);
+        memory.writeByteUnrestricted(map.get("WX"), 57); // window starts at x=50
+        memory.writeByteUnrestricted(map.get("LY"), 0);
+
+        // tile n is solid color n
+        for (int tile = 0; tile < 4; tile++) {
+            for (int row = 0; row < 8; row++) {
+                memory.writeByteUnrestricted(0x8000 + tile * 16 + row * 2, (tile & 1) != 0 ? 0xFF : 0x00);
+                memory.writeByteUnrestricted(0x8000 + tile * 16 + row * 2 + 1, (tile & 2) != 0 ? 0xFF : 0x00);
+            }
+        }
+        for (int i = 0; i < 32; i++) {
+            memory.writeByteUnrestricted(0x9800 + i, 1 + i % 3); // BG cycles light, dark, black
+            memory.writeByteUnrestricted(0x9C00 + i, 0x00); // window is white
+        }
+
+        ppu.drawScanline();
+
+        assertEquals(0xFFC0C0C0, frameBuffer.getPixel(0, 0));
+        assertEquals(0xFFC0C0C0, frameBuffer.getPixel(4, 0), "First tile is cut short by SCX");
+        assertEquals(0xFF606060, frameBuffer.getPixel(5, 0));
+        assertEquals(0xFF606060, frameBuffer.getPixel(12, 0));
+        assertEquals(0xFF000000, frameBuffer.getPixel(13, 0));
+        assertEquals(0xFF000000, frameBuffer.getPixel(44, 0));
+        assertEquals(0xFFC0C0C0, frameBuffer.getPixel(49, 0), "Last background tile is cut short by WX");
+        assertEquals(0xFFFFFFFF, frameBuffer.getPixel(50, 0));
+        assertEquals(0xFFFFFFFF, frameBuffer.getPixel(159, 0));
+    }
+
+    @Test
+    void testPaletteWritesTakeEffectOnTheNextLine() {
+        memory.writeByteUnrestricted(MemoryMap.LCDC, 0x91); // LCD on, tiles at 8000, BG on
+        memory.writeByteUnrestricted(MemoryMap.BGP, 0xE4);
+        memory.writeByteUnrestricted(MemoryMap.LY, 0);
+        ppu.drawScanline();
+        assertEquals(0xFFFFFFFF, frameBuffer.getPixel(0, 0));
+
+        memory.writeByteUnrestricted(MemoryMap.BGP, 0xE7); // color 0 is black now
+        memory.writeByteUnrestricted(MemoryMap.LY, 1);
+        ppu.drawScanline();
+        assertEquals(0xFFFFFFFF, frameBuffer.getPixel(0, 0), "Lines already drawn keep their shade");
+        assertEquals(0xFF000000, frameBuffer.getPixel(0, 1));
+    }
+}
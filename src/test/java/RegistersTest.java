@@ -0,0 +1,39 @@
+import org.junit.jupiter.api.Test;
+import org.mochaboy.registers.Registers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RegistersTest {
+
+    @Test
+    void testPairsShareStorageWithHalves() {
+        Registers r = new Registers();
+        r.set(Registers.indexOf("HL"), 0xC0DE);
+        assertEquals(0xC0, r.get(Registers.REG_H));
+        assertEquals(0xDE, r.get(Registers.REG_L));
+
+        r.set(Registers.REG_AF, 0x12FF);
+        assertEquals(0x12F0, r.get(Registers.REG_AF), "Low nibble of F is always 0");
+    }
+
+    @Test
+    void testSnapshotRestore() {
+        Registers r = new Registers();
+        r.setBC(0x1234);
+        r.setSP(0xFFFE);
+        int[] snapshot = new int[Registers.SNAPSHOT_SIZE];
+        r.snapshot(snapshot);
+
+        r.setBC(0);
+        r.setSP(0);
+        r.restore(snapshot);
+        assertEquals(0x1234, r.getBC());
+        assertEquals(0xFFFE, r.getSP());
+    }
+
+    @Test
+    void testUnknownNameIsNotARegister() {
+        assertEquals(Registers.NO_REGISTER, Registers.indexOf("n8"));
+        assertEquals(Registers.NO_REGISTER, Registers.indexOf(null));
+    }
+}
@@ -0,0 +1,187 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mochaboy.CPU;
+import org.mochaboy.Cartridge;
+import org.mochaboy.Memory;
+import org.mochaboy.mbc.MBC3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SaveFileTest {
+    private Path dir;
+    private Path rom;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("save");
+        dir.toFile().deleteOnExit();
+        rom = dir.resolve("game.gb");
+        rom.toFile().deleteOnExit();
+        dir.resolve("game.sav").toFile().deleteOnExit();
+        byte[] data = new byte[4 * 0x4000];
+        data[Cartridge.CART_TYPE] = 0x03; //MBC1+RAM+BATTERY
+        data[Cartridge.RAM_SIZE] = 0x03; //32 KiB
+        Files.write(rom, data);
+    }
+
+    private Memory start() throws IOException {
+        Memory memory = new Memory(new Cartridge(rom));
+        CPU cpu = new CPU(null, memory);
+        memory.setCpu(cpu);
+        memory.setBootRomEnabled(false);
+        memory.getSaveFile().setFlushInterval(0); //Only flush when the test says so
+        memory.writeByte(0x0000, 0x0A);
+        return memory;
+    }
+
+    @Test
+    void testWritesReachSaveFileOnFlush() throws IOException {
+        Memory memory = start();
+        Path save = dir.resolve("game.sav");
+        assertEquals(0x8000, Files.size(save));
+
+        memory.writeByte(0x6000, 0x01);
+        memory.writeByte(0x4000, 0x01);
+        memory.writeByte(0xA123, 0x5A);
+        assertTrue(memory.getSaveFile().isDirty());
+        assertEquals(0, Files.readAllBytes(save)[0x2123], "Nothing is written before a flush");
+
+        memory.getSaveFile().flush();
+        assertFalse(memory.getSaveFile().isDirty());
+        assertEquals(0x5A, Files.readAllBytes(save)[0x2123]);
+    }
+
+    @Test
+    void testCloseFlushesAndRamIsReloaded() throws IOException {
+        Memory memory = start();
+        memory.writeWord(0xBFFE, 0xCAFE);
+        memory.closeSaveFile();
+
+        Memory reloaded = start();
+        assertEquals(0xCAFE, reloaded.readWord(0xBFFE));
+        reloaded.closeSaveFile();
+    }
+
+    @Test
+    void testEmulationThreadClosesSaveFileWhenKilled() throws Exception {
+        Memory memory = start();
+        memory.writeByte(0xA000, 0x42);
+        CPU cpu = memory.getCpu();
+        cpu.start();
+        cpu.kill();
+        cpu.join();
+        assertFalse(memory.getSaveFile().isDirty());
+        assertEquals(0x42, Files.readAllBytes(dir.resolve("game.sav"))[0]);
+    }
+
+    @Test
+    void testClockWritesDontDirtyRam() throws IOException {
+        setCartType(0x10); //MBC3+TIMER+RAM+BATTERY
+        Memory memory = start();
+        memory.writeByte(0x4000, 0x08); //Seconds
+        memory.writeByte(0xA000, 30);
+        assertFalse(memory.getSaveFile().isDirty());
+        memory.closeSaveFile();
+    }
+
+    @Test
+    void testNoSaveFileWithoutBattery() throws IOException {
+        setCartType(0x02); //MBC1+RAM
+        assertNull(new Memory(new Cartridge(rom)).getSaveFile());
+        assertFalse(Files.exists(dir.resolve("game.sav")));
+    }
+
+    private void setCartType(int type) throws IOException {
+        byte[] data = Files.readAllBytes(rom);
+        data[Cartridge.CART_TYPE] = (byte) type;
+        Files.write(rom, data);
+    }
+
+    private static int readClock(Memory memory, int register) {
+        memory.writeByte(0x6000, 0x00);
+        memory.writeByte(0x6000, 0x01);
+        memory.writeByte(0x4000, register);
+        return memory.readByte(0xA000);
+    }
+
+    @Test
+    void testClockIsSavedAfterRam() throws IOException {
+        setCartType(0x10); //MBC3+TIMER+RAM+BATTERY
+        Memory memory = start();
+        memory.writeByte(0x4000, 0x0A);
+        memory.writeByte(0xA000, 5); //Hours
+        memory.getCpu().getScheduler().advance((int) MBC3.CYCLES_PER_SECOND * 3);
+        memory.closeSaveFile();
+
+        Path save = dir.resolve("game.sav");
+        assertEquals(0x8000 + 48, Files.size(save));
+        ByteBuffer clock = ByteBuffer.wrap(Files.readAllBytes(save)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(3, clock.getInt(0x8000));
+        assertEquals(5, clock.getInt(0x8000 + 8));
+
+        Memory reloaded = start();
+        assertEquals(3, readClock(reloaded, 0x08));
+        assertEquals(5, readClock(reloaded, 0x0A));
+        reloaded.closeSaveFile();
+    }
+
+    private static int savedClock(Path save, int register) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(save)).order(ByteOrder.LITTLE_ENDIAN).getInt(0x8000 + 4 * register);
+    }
+
+    @Test
+    void testRunningClockIsOnlySavedWhenWrittenOrClosed() throws IOException {
+        setCartType(0x10);
+        Memory memory = start();
+        Path save = dir.resolve("game.sav");
+        memory.writeByte(0x4000, 0x0A);
+        memory.writeByte(0xA000, 5); //Hours
+        memory.getSaveFile().flush();
+        assertEquals(5, savedClock(save, 2));
+
+        memory.getCpu().getScheduler().advance((int) MBC3.CYCLES_PER_SECOND * 3);
+        memory.getMbc().publishClock();
+        memory.getSaveFile().flush();
+        assertEquals(0, savedClock(save, 0), "Nothing was written, so the clock isn't saved");
+
+        memory.closeSaveFile();
+        assertEquals(3, savedClock(save, 0));
+    }
+
+    @Test
+    void testClockCatchesUpOnlyWhenAsked() throws IOException {
+        setCartType(0x10);
+        start().closeSaveFile();
+        Path save = dir.resolve("game.sav");
+        byte[] data = Files.readAllBytes(save);
+        ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putLong(0x8000 + 40,
+                System.currentTimeMillis() / 1000 - 2 * 3600 - 30);
+        Files.write(save, data);
+
+        Memory memory = start();
+        assertEquals(0, readClock(memory, 0x0A), "Loading alone doesn't move the clock");
+        ((MBC3) memory.getMbc()).catchUpToWallClock();
+        assertEquals(2, readClock(memory, 0x0A));
+        memory.closeSaveFile();
+    }
+
+    @Test
+    void testDirtyPagesAreWrittenInTheBackground() throws Exception {
+        Memory memory = start();
+        memory.getSaveFile().setFlushInterval(1);
+        memory.writeByte(0xA000, 0x77);
+        Path save = dir.resolve("game.sav");
+        for (int i = 0; i < 500 && Files.readAllBytes(save)[0] != 0x77; i++) Thread.sleep(2);
+        assertEquals(0x77, Files.readAllBytes(save)[0]);
+        memory.closeSaveFile();
+    }
+}
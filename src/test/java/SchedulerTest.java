@@ -0,0 +1,73 @@
+import org.junit.jupiter.api.Test;
+import org.mochaboy.CPU;
+import org.mochaboy.Memory;
+import org.mochaboy.Scheduler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchedulerTest {
+
+    @Test
+    void testEventsRunInDeadlineOrder() {
+        Scheduler scheduler = new Scheduler();
+        List<Integer> fired = new ArrayList<>();
+        for (int event = 0; event < Scheduler.EVENT_COUNT; event++) {
+            int id = event;
+            scheduler.setHandler(event, deadline -> fired.add(id));
+        }
+        scheduler.schedule(Scheduler.PPU, 10);
+        scheduler.schedule(Scheduler.DMA, 30);
+        scheduler.schedule(Scheduler.TIMA, 10);
+        scheduler.schedule(Scheduler.SERIAL, 50);
+        scheduler.cancel(Scheduler.SERIAL);
+        scheduler.schedule(Scheduler.DMA, 5); // moved earlier
+        assertEquals(5, scheduler.nextDeadline());
+
+        scheduler.advance(4);
+        assertTrue(fired.isEmpty());
+        scheduler.advance(8);
+        assertEquals(List.of(Scheduler.DMA, Scheduler.TIMA, Scheduler.PPU), fired);
+        assertEquals(Scheduler.NEVER, scheduler.nextDeadline());
+        assertFalse(scheduler.isScheduled(Scheduler.SERIAL));
+    }
+
+    @Test
+    void testHandlersCatchUpWithinOneAdvance() {
+        Scheduler scheduler = new Scheduler();
+        int[] ticks = new int[1];
+        scheduler.setHandler(Scheduler.PPU, deadline -> {
+            ticks[0]++;
+            scheduler.schedule(Scheduler.PPU, deadline + 4);
+        });
+        scheduler.schedule(Scheduler.PPU, 4);
+        scheduler.advance(24);
+        assertEquals(6, ticks[0]);
+        assertEquals(28, scheduler.deadline(Scheduler.PPU));
+    }
+
+    @Test
+    void testTimerOverflowRaisesInterrupt() throws IOException {
+        Memory memory = new Memory();
+        CPU cpu = new CPU(null, memory);
+        memory.setCpu(cpu);
+        Map<String, Integer> map = memory.getMemoryMap();
+        memory.writeByteUnrestricted(map.get("TAC"), 0x05); // enabled, 16 cycles per tick
+        memory.writeByteUnrestricted(map.get("TIMA"), 0xFE);
+        memory.writeByteUnrestricted(map.get("TMA"), 0x42);
+
+        cpu.getScheduler().advance(16);
+        assertEquals(0xFF, memory.readByteUnrestricted(map.get("TIMA")));
+        assertEquals(0, memory.readByteUnrestricted(map.get("IF")) & 0x04);
+        cpu.getScheduler().advance(16);
+        assertEquals(0x42, memory.readByteUnrestricted(map.get("TIMA")));
+        assertEquals(0x04, memory.readByteUnrestricted(map.get("IF")) & 0x04);
+
+        cpu.getScheduler().advance(224);
+        assertEquals(1, memory.readByteUnrestricted(map.get("DIV")));
+    }
+}
@@ -0,0 +1,111 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mochaboy.CPU;
+import org.mochaboy.FrameBuffer;
+import org.mochaboy.Memory;
+import org.mochaboy.MemoryMap;
+import org.mochaboy.PPU;
+import org.mochaboy.SpriteIndex;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SpriteIndexTest {
+    private Memory memory;
+    private SpriteIndex sprites;
+
+    @BeforeEach
+    void setUp() {
+        memory = new Memory();
+        sprites = memory.getSpriteIndex();
+    }
+
+    private void putSprite(int sprite, int y, int x, int tile, int attr) {
+        int address = 0xFE00 + sprite * 4;
+        memory.writeByteUnrestricted(address, y + 16);
+        memory.writeByteUnrestricted(address + 1, x + 8);
+        memory.writeByteUnrestricted(address + 2, tile);
+        memory.writeByteUnrestricted(address + 3, attr);
+    }
+
+    @Test
+    void testTenSpritesPerLineInOamOrder() {
+        for (int sprite = 0; sprite < 12; sprite++) {
+            putSprite(sprite, 20, 100 - sprite * 8, 0, 0);
+        }
+        putSprite(12, 24, 0, 0, 0);
+        sprites.update(8);
+
+        assertEquals(10, sprites.count(20));
+        assertEquals(10, sprites.count(24));
+        assertEquals(1, sprites.count(28), "Sprite 12 only shows below the others");
+        assertEquals(12, sprites.sprite(28, 0));
+        for (int n = 0; n < 10; n++) {
+            assertEquals(9 - n, sprites.sprite(20, n), "Sorted by X, sprites 10 and 11 dropped");
+        }
+    }
+
+    @Test
+    void testEqualXKeepsOamOrderAndTallSprites() {
+        putSprite(3, 0, 40, 0, 0);
+        putSprite(1, 0, 40, 0, 0);
+        putSprite(2, 0, 32, 0, 0);
+        sprites.update(8);
+        assertEquals(2, sprites.sprite(0, 0));
+        assertEquals(1, sprites.sprite(0, 1));
+        assertEquals(3, sprites.sprite(0, 2));
+        assertEquals(0, sprites.count(8));
+
+        sprites.update(16);
+        assertEquals(3, sprites.count(15), "Height change rebuilds");
+    }
+
+    @Test
+    void testOamWriteAndDmaInvalidate() throws IOException {
+        sprites.update(8);
+        assertEquals(0, sprites.count(50));
+        putSprite(0, 50, 0, 0, 0);
+        sprites.update(8);
+        assertEquals(1, sprites.count(50));
+
+        memory.writeByteUnrestricted(0xC000, 60 + 16);
+        memory.writeByteUnrestricted(0xC001, 8);
+        memory.setCpu(new CPU(null, memory));
+        memory.writeByte(MemoryMap.DMA, 0xC0);
+        sprites.update(8);
+        assertEquals(0, sprites.count(50));
+        assertEquals(1, sprites.count(60));
+    }
+
+    @Test
+    void testLowerXWinsAndHidesSpritesBehind() {
+        FrameBuffer frameBuffer = new FrameBuffer(160, 144);
+        PPU ppu = new PPU(memory, frameBuffer, null);
+        memory.writeByteUnrestricted(MemoryMap.LCDC, 0x93); // LCD on, tiles at 8000, sprites and BG on
+        memory.writeByteUnrestricted(MemoryMap.BGP, 0xE4);
+        memory.writeByteUnrestricted(MemoryMap.OBP0, 0xE4);
+        memory.writeByteUnrestricted(MemoryMap.LY, 0);
+        for (int row = 0; row < 8; row++) {
+            memory.writeByteUnrestricted(0x8010 + row * 2, 0xFF); // tile 1 light gray
+            memory.writeByteUnrestricted(0x8020 + row * 2 + 1, 0xFF); // tile 2 dark gray
+            memory.writeByteUnrestricted(0x8030 + row * 2, 0xFF); // tile 3 black, background
+            memory.writeByteUnrestricted(0x8030 + row * 2 + 1, 0xFF);
+        }
+        memory.writeByteUnrestricted(0x9801, 3); // background black under x 8-15
+
+        putSprite(0, 0, 4, 2, 0); // dark gray at x 4-11, drawn second
+        putSprite(1, 0, 0, 1, 0); // light gray at x 0-7, lower X wins
+        putSprite(2, 0, 10, 1, 0x80); // behind a black background at x 10-17
+        putSprite(3, 0, 9, 2, 0x80); // X 9 beats sprite 2, and hides under the background too
+        ppu.drawScanline();
+
+        assertEquals(0xFFC0C0C0, frameBuffer.getPixel(7, 0));
+        assertEquals(0xFF606060, frameBuffer.getPixel(8, 0));
+        assertEquals(0xFF606060, frameBuffer.getPixel(11, 0));
+        assertEquals(0xFF000000, frameBuffer.getPixel(12, 0), "Sprite 3 is under the background");
+        assertEquals(0xFF000000, frameBuffer.getPixel(15, 0), "Sprite 2 is hidden by sprite 3 and then the background");
+        assertEquals(0xFF606060, frameBuffer.getPixel(16, 0), "Sprite 3 shows over white background");
+        assertEquals(0xFFC0C0C0, frameBuffer.getPixel(17, 0));
+    }
+}
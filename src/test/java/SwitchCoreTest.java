@@ -0,0 +1,141 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.mochaboy.CPU;
+import org.mochaboy.Memory;
+import org.mochaboy.registers.Registers;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SwitchCoreTest {
+    private Memory memory;
+    private CPU cpu;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        memory = new Memory();
+        cpu = new CPU(null, memory);
+        memory.setCpu(cpu);
+        cpu.setTestStepComplete(false);
+        cpu.setTestMode(true);
+        cpu.setCpuState(CPU.CPUState.FETCH);
+        cpu.getRegisters().setPC(0);
+    }
+
+    private int runInstruction() {
+        cpu.setTestStepComplete(false);
+        int cycles = 0;
+        while (!cpu.isTestStepComplete()) cycles += cpu.step();
+        return cycles;
+    }
+
+    @Test
+    void testCallAndReturn() {
+        cpu.setEngine(CPU.Engine.SWITCH);
+        Registers r = cpu.getRegisters();
+        r.setSP(0xFFFE);
+        memory.writeByteUnrestricted(0x0000, 0xCD); // CALL $0010
+        memory.writeByteUnrestricted(0x0001, 0x10);
+        memory.writeByteUnrestricted(0x0002, 0x00);
+        memory.writeByteUnrestricted(0x0010, 0x3C); // INC A
+        memory.writeByteUnrestricted(0x0011, 0xC9); // RET
+
+        assertEquals(24, runInstruction());
+        assertEquals(0x0010, r.getPC());
+        assertEquals(0xFFFC, r.getSP());
+        assertEquals(0x03, memory.readByteUnrestricted(0xFFFC));
+
+        assertEquals(4, runInstruction());
+        assertEquals(16, runInstruction());
+        assertEquals(0x0003, r.getPC());
+        assertEquals(0xFFFE, r.getSP());
+        assertEquals(1, r.getA());
+    }
+
+    @Test
+    void testConditionalCycles() {
+        cpu.setEngine(CPU.Engine.SWITCH);
+        memory.writeByteUnrestricted(0x0000, 0x28); // JR Z,+4
+        memory.writeByteUnrestricted(0x0001, 0x04);
+
+        cpu.getRegisters().setFlag(Registers.FLAG_ZERO, false);
+        assertEquals(8, runInstruction());
+        assertEquals(0x0002, cpu.getRegisters().getPC());
+
+        cpu.getRegisters().setPC(0);
+        cpu.getRegisters().setFlag(Registers.FLAG_ZERO, true);
+        assertEquals(12, runInstruction());
+        assertEquals(0x0006, cpu.getRegisters().getPC());
+    }
+
+    @Test
+    void testPrefixedOpcode() {
+        cpu.setEngine(CPU.Engine.SWITCH);
+        cpu.getRegisters().setHL(0xC000);
+        memory.writeByteUnrestricted(0xC000, 0x81);
+        memory.writeByteUnrestricted(0x0000, 0xCB); // RRC [HL]
+        memory.writeByteUnrestricted(0x0001, 0x0E);
+
+        assertEquals(16, runInstruction());
+        assertEquals(0xC0, memory.readByteUnrestricted(0xC000));
+        assertTrue(cpu.getRegisters().isFlagSet(Registers.FLAG_CARRY));
+    }
+
+    @Test
+    void testLockstepCommitsOnce() {
+        cpu.setEngine(CPU.Engine.LOCKSTEP);
+        Registers r = cpu.getRegisters();
+        r.setSP(0xFFFE);
+        r.setBC(0x1234);
+        memory.writeByteUnrestricted(0x0000, 0xC5); // PUSH BC
+        memory.writeByteUnrestricted(0x0001, 0x3C); // INC A
+
+        runInstruction();
+        runInstruction();
+        //The switch core's run is journaled, so the writes and the increment only happen once
+        assertEquals(0xFFFC, r.getSP());
+        assertEquals(0x12, memory.readByteUnrestricted(0xFFFD));
+        assertEquals(0x34, memory.readByteUnrestricted(0xFFFC));
+        assertEquals(1, r.getA());
+        assertEquals(2, cpu.getLockstepChecker().getInstructionsChecked());
+        assertNull(cpu.getLockstepChecker().getFirstDivergence());
+    }
+
+    static IntStream opcodes() {
+        //0x000-0x0FF unprefixed, 0x100-0x1FF CB prefixed
+        return IntStream.range(0, 0x200).filter(op -> op != 0xCB);
+    }
+
+    // Both engines have to agree on registers, flags, writes and cycles for every opcode
+    @ParameterizedTest(name = "opcode {0}")
+    @MethodSource("opcodes")
+    void testEnginesAgree(int opcode) {
+        cpu.setEngine(CPU.Engine.LOCKSTEP);
+        Random random = new Random(opcode);
+        Registers r = cpu.getRegisters();
+        for (int i = 0; i < 16; i++) {
+            for (int address = 0x8000; address < 0x10000; address++) {
+                memory.writeByteUnrestricted(address, random.nextInt(0x100));
+            }
+            r.setAF(random.nextInt(0x10000));
+            r.setBC(random.nextInt(0x10000));
+            r.setDE(random.nextInt(0x10000));
+            r.setHL(0x8000 | random.nextInt(0x8000));
+            r.setSP(0xC000 + random.nextInt(0x1000));
+            r.setPC(0x0100);
+            int pc = 0x0100;
+            if (opcode > 0xFF) memory.writeByteUnrestricted(pc++, 0xCB);
+            memory.writeByteUnrestricted(pc++, opcode & 0xFF);
+            memory.writeByteUnrestricted(pc++, random.nextInt(0x100));
+            memory.writeByteUnrestricted(pc, random.nextInt(0x100));
+
+            runInstruction();
+            assertNull(cpu.getLockstepChecker().getFirstDivergence());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mochaboy.CPU;
+import org.mochaboy.Memory;
+import org.mochaboy.TileCache;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TileCacheTest {
+    private Memory memory;
+    private TileCache tileCache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        memory = new Memory();
+        CPU cpu = new CPU(null, memory);
+        memory.setCpu(cpu);
+        tileCache = memory.getTileCache();
+    }
+
+    private int pixel(int tile, int y, int x) {
+        return tileCache.getPixels()[TileCache.rowIndex(tile, y) + x];
+    }
+
+    @Test
+    void testRowIsDecodedOnWrite() {
+        memory.writeByte(0x8012, 0b1010_0101); //Tile 1, row 1, low plane
+        memory.writeByte(0x8013, 0b1100_0011); //High plane
+        int[] expected = {3, 2, 1, 0, 0, 1, 2, 3};
+        for (int x = 0; x < 8; x++) {
+            assertEquals(expected[x], pixel(1, 1, x), "Pixel " + x);
+        }
+        assertEquals(0, pixel(1, 0, 0), "Other rows untouched");
+    }
+
+    @Test
+    void testWordAcrossRows() {
+        memory.writeWord(0x97FD, 0xFFFF); //High plane of tile 383 row 6, low plane of row 7
+        assertEquals(2, pixel(383, 6, 0));
+        assertEquals(1, pixel(383, 7, 7));
+        assertEquals(383, TileCache.tileAt(0x97FF));
+    }
+
+    @Test
+    void testTileMapWritesIgnored() {
+        memory.writeByte(0x9800, 0xFF);
+        for (int tile = 0; tile < TileCache.TILE_COUNT; tile++) {
+            assertEquals(0, pixel(tile, 7, 7));
+        }
+    }
+
+    @Test
+    void testRebuildPicksUpDirectWrites() {
+        memory.getMemoryArray()[0x8000] = (byte) 0x80;
+        assertEquals(0, pixel(0, 0, 0));
+        tileCache.rebuild();
+        assertEquals(1, pixel(0, 0, 0));
+    }
+}
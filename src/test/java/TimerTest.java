@@ -0,0 +1,76 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mochaboy.CPU;
+import org.mochaboy.Memory;
+import org.mochaboy.Scheduler;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TimerTest {
+    private static final int DIV = 0xFF04;
+    private static final int TIMA = 0xFF05;
+    private static final int TAC = 0xFF07;
+
+    private Memory memory;
+    private Scheduler scheduler;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        memory = new Memory();
+        CPU cpu = new CPU(null, memory);
+        memory.setCpu(cpu);
+        scheduler = cpu.getScheduler();
+    }
+
+    @Test
+    void testDivIsTopByteOfCounter() {
+        scheduler.advance(255);
+        assertEquals(0, memory.readByteUnrestricted(DIV));
+        scheduler.advance(1);
+        assertEquals(1, memory.readByteUnrestricted(DIV));
+        scheduler.advance(256 * 300);
+        assertEquals((1 + 300) & 0xFF, memory.readByteUnrestricted(DIV));
+
+        memory.writeByteUnrestricted(DIV, 0x77);
+        assertEquals(0, memory.readByteUnrestricted(DIV), "Writing DIV resets it");
+    }
+
+    @Test
+    void testTacRates() {
+        int[] periods = {1024, 16, 64, 256};
+        for (int rate = 0; rate < 4; rate++) {
+            memory.writeByteUnrestricted(DIV, 0);
+            memory.writeByteUnrestricted(TIMA, 0);
+            memory.writeByteUnrestricted(TAC, 0x04 | rate);
+            scheduler.advance(periods[rate] * 10 - 1);
+            assertEquals(9, memory.readByteUnrestricted(TIMA), "rate " + rate);
+            scheduler.advance(1);
+            assertEquals(10, memory.readByteUnrestricted(TIMA), "rate " + rate);
+        }
+    }
+
+    @Test
+    void testDivResetIsAFallingEdge() {
+        memory.writeByteUnrestricted(TAC, 0x05); // bit 3
+        scheduler.advance(8); // bit 3 set, no edge yet
+        assertEquals(0, memory.readByteUnrestricted(TIMA));
+        memory.writeByteUnrestricted(DIV, 0);
+        assertEquals(1, memory.readByteUnrestricted(TIMA));
+
+        scheduler.advance(4); // bit 3 clear, resetting doesn't tick
+        memory.writeByteUnrestricted(DIV, 0);
+        assertEquals(1, memory.readByteUnrestricted(TIMA));
+    }
+
+    @Test
+    void testDisablingTacIsAFallingEdge() {
+        memory.writeByteUnrestricted(TAC, 0x05);
+        scheduler.advance(8);
+        memory.writeByteUnrestricted(TAC, 0x01);
+        assertEquals(1, memory.readByteUnrestricted(TIMA));
+        scheduler.advance(1024);
+        assertEquals(1, memory.readByteUnrestricted(TIMA), "Stopped");
+    }
+}